@@ -40,6 +40,12 @@ public class AxisComponentModel extends AspectModel<AxisComponentModel.Aspect> i
    */
   private boolean myFirstUpdate = true;
 
+  /**
+   * Whether the ranges or the settings of the axis changed since the last update. Otherwise the update, and the repaint of the axis,
+   * are skipped.
+   */
+  private boolean myDirty = true;
+
   /**
    * @param range     a Range object this AxisComponent listens to for the min/max values.
    * @param formatter formatter used for determining the tick marker and labels that need to be rendered.
@@ -47,10 +53,16 @@ public class AxisComponentModel extends AspectModel<AxisComponentModel.Aspect> i
   public AxisComponentModel(@NotNull Range range, @NotNull BaseAxisFormatter formatter) {
     myRange = range;
     myFormatter = formatter;
+    myRange.addDependency(this).onChange(Range.Aspect.RANGE, this::markDirty);
   }
 
   @Override
   public void update(long elapsedNs) {
+    if (!myDirty) {
+      return;
+    }
+    myDirty = false;
+
     // During the animate/updateData phase, the axis updates the range's max to a new target based on whether myClampToMajorTicks is enabled
     //    - This would increase the max to an integral multiplier of the major interval.
     if (myClampToMajorTicks) {
@@ -71,7 +83,6 @@ public class AxisComponentModel extends AspectModel<AxisComponentModel.Aspect> i
     }
     myFirstUpdate = false;
 
-    //TODO also change when data changes
     changed(Aspect.AXIS);
   }
 
@@ -80,6 +91,8 @@ public class AxisComponentModel extends AspectModel<AxisComponentModel.Aspect> i
    */
   public void setGlobalRange(@NotNull Range globalRange) {
     myGlobalRange = globalRange;
+    myGlobalRange.addDependency(this).onChange(Range.Aspect.RANGE, this::markDirty);
+    markDirty();
   }
 
   /**
@@ -87,6 +100,7 @@ public class AxisComponentModel extends AspectModel<AxisComponentModel.Aspect> i
    */
   public void setLabel(@NotNull String label) {
     myLabel = label;
+    markDirty();
   }
 
   /**
@@ -94,6 +108,7 @@ public class AxisComponentModel extends AspectModel<AxisComponentModel.Aspect> i
    */
   public void setClampToMajorTicks(boolean clampToMajorTicks) {
     myClampToMajorTicks = clampToMajorTicks;
+    markDirty();
   }
 
   @NotNull
@@ -119,4 +134,8 @@ public class AxisComponentModel extends AspectModel<AxisComponentModel.Aspect> i
   public double getZero() {
     return myGlobalRange != null ? myGlobalRange.getMin() : myRange.getMin();
   }
+
+  private void markDirty() {
+    myDirty = true;
+  }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import gnu.trove.TLongArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link DataSeries} that keeps the samples fetched from another, typically expensive (e.g. RPC backed), series, so that repeatedly
+ * asking for a range that moves a little (e.g. the view range while the timeline is streaming) only queries the source for the parts of
+ * the range that aren't cached yet: the newly exposed edges and the tail of the data, which may still be growing.
+ *
+ * The source must return all of its samples within the requested range, sorted by x. It may also return some samples around the range.
+ * Samples after the last one received are never considered final, as they may not have been produced yet.
+ *
+ * Samples further than {@link #EVICTION_RANGE_LENGTHS} times the length of the requested range from it are dropped.
+ *
+ * The cached samples are also summarized in a {@link MinMaxPyramid}, so that reading a long range at a given width costs about the same
+ * whatever the number of samples in the range, e.g. when zoomed out over a long session.
+ */
+public class CachedLongDataSeries implements LongSeries {
+  static final int EVICTION_RANGE_LENGTHS = 2;
+
+  @NotNull private final DataSeries<Long> mySource;
+
+  @NotNull private final TLongArrayList myX = new TLongArrayList();
+  @NotNull private final TLongArrayList myY = new TLongArrayList();
+
+  @NotNull private final MinMaxPyramid myPyramid = new MinMaxPyramid(myX, myY);
+
+  /**
+   * The x range where the cache has all the samples of the source. Empty when min > max.
+   */
+  private double myCachedMin = Double.POSITIVE_INFINITY;
+  private double myCachedMax = Double.NEGATIVE_INFINITY;
+
+  public CachedLongDataSeries(@NotNull DataSeries<Long> source) {
+    mySource = source;
+  }
+
+  @Override
+  public List<SeriesData<Long>> getDataForXRange(@NotNull Range xRange) {
+    List<SeriesData<Long>> data = new ArrayList<>();
+    if (!update(xRange)) {
+      return data;
+    }
+    int toIndex = getToIndex(xRange);
+    for (int i = getFromIndex(xRange); i <= toIndex; i++) {
+      data.add(new SeriesData<>(myX.get(i), myY.get(i)));
+    }
+    return data;
+  }
+
+  @Override
+  public void getDataForXRange(@NotNull Range xRange, @NotNull LongSeriesBuffer buffer) {
+    buffer.clear();
+    if (!update(xRange)) {
+      return;
+    }
+    int toIndex = getToIndex(xRange);
+    for (int i = getFromIndex(xRange); i <= toIndex; i++) {
+      buffer.add(myX.get(i), myY.get(i));
+    }
+  }
+
+  @Override
+  public void getDataForXRange(@NotNull Range xRange, int width, @NotNull LongSeriesBuffer buffer) {
+    buffer.clear();
+    if (!update(xRange)) {
+      return;
+    }
+    myPyramid.getSummary(getFromIndex(xRange), getToIndex(xRange), width, buffer);
+  }
+
+  /**
+   * Fetches what isn't cached yet of {@code xRange} and evicts what is too far from it.
+   *
+   * @return whether there are cached samples to return for the range.
+   */
+  private boolean update(@NotNull Range xRange) {
+    if (xRange.isEmpty()) {
+      return false;
+    }
+
+    double min = xRange.getMin();
+    double max = xRange.getMax();
+    if (myCachedMin > myCachedMax || max < myCachedMin || min > myCachedMax) {
+      // Nothing in common with what is cached (e.g. the user jumped to another part of the timeline), start over.
+      clear();
+      myCachedMin = min;
+      myCachedMax = min;
+      append(min, max);
+    }
+    else {
+      if (min < myCachedMin) {
+        prepend(min, myCachedMin);
+      }
+      if (max > myCachedMax) {
+        append(myCachedMax, max);
+      }
+    }
+    evict(min - xRange.getLength() * EVICTION_RANGE_LENGTHS, max + xRange.getLength() * EVICTION_RANGE_LENGTHS);
+    return !myX.isEmpty();
+  }
+
+  // Include the samples right outside of the range, so lines can be drawn up to its edges.
+  private int getFromIndex(@NotNull Range xRange) {
+    return Math.max(0, lastIndexAtOrBefore((long)xRange.getMin()));
+  }
+
+  private int getToIndex(@NotNull Range xRange) {
+    return Math.min(myX.size() - 1, lastIndexAtOrBefore((long)xRange.getMax()) + 1);
+  }
+
+  public void clear() {
+    myX.clear();
+    myY.clear();
+    myPyramid.clear();
+    myCachedMin = Double.POSITIVE_INFINITY;
+    myCachedMax = Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * @return the number of cached samples.
+   */
+  public int size() {
+    return myX.size();
+  }
+
+  /**
+   * Fetches the samples in [min, max], with max being after the cached samples, and keeps the ones after the cached samples.
+   */
+  private void append(double min, double max) {
+    long lastX = myX.isEmpty() ? Long.MIN_VALUE : myX.get(myX.size() - 1);
+    int size = myX.size();
+    for (SeriesData<Long> sample : mySource.getDataForXRange(new Range(min, max))) {
+      if (sample.x > lastX) {
+        myX.add(sample.x);
+        myY.add(sample.value);
+        lastX = sample.x;
+      }
+    }
+    if (myX.size() > size) {
+      myPyramid.samplesAppended(myX.size() - size);
+    }
+    // Only what comes before the last sample is final, more samples may show up after it later.
+    myCachedMax = myX.isEmpty() ? myCachedMin : Math.max(myCachedMin, myX.get(myX.size() - 1));
+  }
+
+  /**
+   * Fetches the samples in [min, max], with min being before the cached samples, and keeps the ones before the cached samples.
+   */
+  private void prepend(double min, double max) {
+    long firstX = myX.isEmpty() ? Long.MAX_VALUE : myX.get(0);
+    TLongArrayList x = new TLongArrayList();
+    TLongArrayList y = new TLongArrayList();
+    for (SeriesData<Long> sample : mySource.getDataForXRange(new Range(min, max))) {
+      if (sample.x < firstX && (x.isEmpty() || sample.x > x.get(x.size() - 1))) {
+        x.add(sample.x);
+        y.add(sample.value);
+      }
+    }
+    myX.insert(0, x.toNativeArray());
+    myY.insert(0, y.toNativeArray());
+    if (!x.isEmpty()) {
+      myPyramid.samplesPrepended(x.size());
+    }
+    myCachedMin = min;
+  }
+
+  /**
+   * Drops the samples outside of [min, max].
+   */
+  private void evict(double min, double max) {
+    int removedAfter = 0;
+    while (removedAfter < myX.size() && myX.get(myX.size() - 1 - removedAfter) > max) {
+      removedAfter++;
+    }
+    if (removedAfter > 0) {
+      myX.remove(myX.size() - removedAfter, removedAfter);
+      myY.remove(myY.size() - removedAfter, removedAfter);
+      myPyramid.samplesRemovedFromTail(removedAfter);
+      myCachedMax = Math.min(myCachedMax, max);
+    }
+
+    int removedBefore = 0;
+    while (removedBefore < myX.size() && myX.get(removedBefore) < min) {
+      removedBefore++;
+    }
+    if (removedBefore > 0) {
+      myX.remove(0, removedBefore);
+      myY.remove(0, removedBefore);
+      myPyramid.samplesRemovedFromHead(removedBefore);
+      myCachedMin = Math.max(myCachedMin, min);
+    }
+  }
+
+  /**
+   * @return the index of the last cached sample whose x is not greater than {@code x}, or -1 if there is none.
+   */
+  private int lastIndexAtOrBefore(long x) {
+    int index = myX.binarySearch(x);
+    // NOTE: binarySearch returns -(insertion point + 1) if not found.
+    return index >= 0 ? index : -index - 2;
+  }
+}
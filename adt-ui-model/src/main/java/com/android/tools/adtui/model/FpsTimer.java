@@ -26,13 +26,20 @@ import java.awt.event.ActionListener;
 public final class FpsTimer extends StopwatchTimer implements ActionListener {
   public static final long ONE_FRAME_IN_NS = 1000000000 / FpsTimer.DEFAULT_FPS;
 
+  /**
+   * The rate the timer drops to while idle.
+   */
+  public static final int IDLE_FPS = 5;
+
   private static final int DEFAULT_FPS = 60;
 
   private final Timer myTimer;
+  private final int myDelayMs;
   private long myFrameTime;
 
   public FpsTimer(int fps) {
-    myTimer = new Timer(1000 / fps, this);
+    myDelayMs = 1000 / fps;
+    myTimer = new Timer(myDelayMs, this);
   }
 
   public FpsTimer() {
@@ -59,6 +66,15 @@ public final class FpsTimer extends StopwatchTimer implements ActionListener {
     }
   }
 
+  @Override
+  public void setIdle(boolean idle) {
+    myTimer.setDelay(idle ? Math.max(myDelayMs, 1000 / IDLE_FPS) : myDelayMs);
+    if (!idle && isRunning()) {
+      // Don't wait for the (long) pending idle tick.
+      myTimer.restart();
+    }
+  }
+
   @Override
   public void actionPerformed(ActionEvent e) {
     long now = System.nanoTime();
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class LineChartModel extends AspectModel<LineChartModel.Aspect> implements Updatable {
 
@@ -30,6 +31,11 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
     LINE_CHART
   }
 
+  /**
+   * How often the series are read again while none of their ranges change, to pick up samples that arrived after the range last moved.
+   */
+  static final long REFRESH_NS = TimeUnit.SECONDS.toNanos(1);
+
   @NotNull
   private final List<RangedContinuousSeries> mySeries = new ArrayList<>();
 
@@ -38,17 +44,37 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
    */
   private boolean myFirstUpdate = true;
 
+  /**
+   * Reused by every update to read the series without boxing their values.
+   */
+  @NotNull
+  private final LongSeriesBuffer myData = new LongSeriesBuffer();
+
+  /**
+   * Whether the series or their ranges changed since the last update. Otherwise the update, and the repaint of the chart, are skipped.
+   */
+  private boolean myDirty = true;
+  private long mySinceRefreshNs;
+
   @Override
   public void update(long elapsedNs) {
+    mySinceRefreshNs += elapsedNs;
+    if (!myDirty && mySinceRefreshNs < REFRESH_NS) {
+      return;
+    }
+    myDirty = false;
+    mySinceRefreshNs = 0;
+
     Map<Range, Double> max = new HashMap<>();
     // TODO Handle stacked configs
     for (RangedContinuousSeries ranged : mySeries) {
       Range range = ranged.getYRange();
       double yMax = Double.MIN_VALUE;
 
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
-      for (int i = 0; i < seriesList.size(); i++) {
-        double value = seriesList.get(i).value;
+      // Summarized series keep their extrema, so the maximum is exact even at the lowest resolution.
+      ranged.getSeries(myData, 1);
+      for (int i = 0; i < myData.size(); i++) {
+        double value = myData.getY(i);
         if (yMax < value) {
           yMax = value;
         }
@@ -70,7 +96,6 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
 
     myFirstUpdate = false;
 
-    // TODO: Depend on the other things
     changed(Aspect.LINE_CHART);
   }
 
@@ -80,10 +105,30 @@ public class LineChartModel extends AspectModel<LineChartModel.Aspect> implement
 
   public void add(RangedContinuousSeries series) {
     mySeries.add(series);
+    series.getXRange().addDependency(this).onChange(Range.Aspect.RANGE, this::markDirty);
+    series.getYRange().addDependency(this).onChange(Range.Aspect.RANGE, this::markDirty);
+    markDirty();
   }
 
   public void remove(RangedContinuousSeries series) {
     mySeries.remove(series);
+    // Ranges are usually shared between series, so only stop listening to the ones no remaining series uses.
+    removeDependenciesIfUnused(series.getXRange());
+    removeDependenciesIfUnused(series.getYRange());
+    markDirty();
+  }
+
+  private void removeDependenciesIfUnused(@NotNull Range range) {
+    for (RangedContinuousSeries series : mySeries) {
+      if (series.getXRange() == range || series.getYRange() == range) {
+        return;
+      }
+    }
+    range.removeDependencies(this);
+  }
+
+  private void markDirty() {
+    myDirty = true;
   }
 
   @NotNull
@@ -18,7 +18,7 @@ package com.android.tools.adtui.model;
 import gnu.trove.TLongArrayList;
 import org.jetbrains.annotations.NotNull;
 
-public class LongDataSeries extends BaseDataSeries<Long> {
+public class LongDataSeries extends BaseDataSeries<Long> implements LongSeries {
 
   @NotNull
   private final TLongArrayList mY = new TLongArrayList();
@@ -33,4 +33,18 @@ public class LongDataSeries extends BaseDataSeries<Long> {
   public Long getY(int index) {
     return mY.get(index);
   }
+
+  @Override
+  public void getDataForXRange(@NotNull Range xRange, @NotNull LongSeriesBuffer buffer) {
+    buffer.clear();
+    if (size() == 0 || xRange.isEmpty()) {
+      return;
+    }
+
+    // Same samples as BaseDataSeries#getDataForXRange.
+    int toIndex = getNearestXIndex((long)xRange.getMax());
+    for (int i = getNearestXIndex((long)xRange.getMin()); i <= toIndex; i++) {
+      buffer.add(mX.get(i), mY.get(i));
+    }
+  }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link DataSeries} of long values that can also be read into a reusable {@link LongSeriesBuffer}, without boxing.
+ */
+public interface LongSeries extends DataSeries<Long> {
+  /**
+   * Replaces the content of {@code buffer} with the same samples as {@link #getDataForXRange(Range)} would return.
+   */
+  void getDataForXRange(@NotNull Range xRange, @NotNull LongSeriesBuffer buffer);
+
+  /**
+   * Same as {@link #getDataForXRange(Range, LongSeriesBuffer)}, but when the range holds more samples than needed to draw it
+   * {@code width} pixels wide, the series may return a subset of them instead, as long as it keeps the first and last samples, and the
+   * minimum and maximum samples of at least {@code width} groups of consecutive samples covering the range, so that the extrema are exact.
+   * The default implementation returns all the samples.
+   */
+  default void getDataForXRange(@NotNull Range xRange, int width, @NotNull LongSeriesBuffer buffer) {
+    getDataForXRange(xRange, buffer);
+  }
+}
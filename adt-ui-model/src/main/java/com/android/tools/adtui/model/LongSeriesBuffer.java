@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A growable buffer of (x, y) samples stored in primitive arrays. It is meant to be kept and refilled, e.g. once per frame, so that
+ * reading a {@link LongSeries} doesn't allocate a {@link SeriesData} and a boxed value per sample.
+ */
+public final class LongSeriesBuffer {
+  private static final int INITIAL_CAPACITY = 16;
+
+  @NotNull private long[] myX = new long[INITIAL_CAPACITY];
+  @NotNull private long[] myY = new long[INITIAL_CAPACITY];
+  private int mySize;
+
+  public int size() {
+    return mySize;
+  }
+
+  public boolean isEmpty() {
+    return mySize == 0;
+  }
+
+  @VisibleForTesting
+  int getCapacity() {
+    return myX.length;
+  }
+
+  public long getX(int index) {
+    assert index < mySize;
+    return myX[index];
+  }
+
+  public long getY(int index) {
+    assert index < mySize;
+    return myY[index];
+  }
+
+  public void add(long x, long y) {
+    if (mySize == myX.length) {
+      int capacity = myX.length * 2;
+      myX = Arrays.copyOf(myX, capacity);
+      myY = Arrays.copyOf(myY, capacity);
+    }
+    myX[mySize] = x;
+    myY[mySize] = y;
+    mySize++;
+  }
+
+  public void set(int index, long x, long y) {
+    assert index < mySize;
+    myX[index] = x;
+    myY[index] = y;
+  }
+
+  public void setY(int index, long y) {
+    assert index < mySize;
+    myY[index] = y;
+  }
+
+  /**
+   * Drops the samples from {@code size} on. The capacity is kept.
+   */
+  public void truncate(int size) {
+    assert size <= mySize;
+    mySize = size;
+  }
+
+  public void clear() {
+    mySize = 0;
+  }
+
+  /**
+   * Replaces the content of this buffer with the content of {@code other}.
+   */
+  public void copyFrom(@NotNull LongSeriesBuffer other) {
+    clear();
+    for (int i = 0; i < other.mySize; i++) {
+      add(other.myX[i], other.myY[i]);
+    }
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import gnu.trove.TLongArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multi-resolution summaries of a list of samples sorted by x, used to read a long range of samples at a given resolution in time
+ * proportional to the resolution rather than to the number of samples.
+ *
+ * Level k (k >= 1) splits the samples in buckets of {@link #FANOUT}^k consecutive samples and keeps, for each bucket, the samples with the
+ * minimum and the maximum values. The summaries are maintained incrementally as samples are added or dropped at either end of the list,
+ * see the {@code samples*} methods. Buckets are aligned on a global sample index which doesn't change when samples are added or dropped
+ * at the beginning of the list, so the existing buckets stay valid.
+ *
+ * A bucket only holds correct values while all of its samples are in the list. Buckets partially out of the list are kept, but never read.
+ */
+final class MinMaxPyramid {
+  static final int FANOUT = 4;
+
+  /**
+   * The samples, owned and modified by the caller.
+   */
+  @NotNull private final TLongArrayList myX;
+  @NotNull private final TLongArrayList myY;
+
+  /**
+   * The global index of the first sample.
+   */
+  private long myOffset;
+
+  /**
+   * The levels, starting at level 1. Levels are only added once there are enough samples to fill a bucket.
+   */
+  @NotNull private final List<Level> myLevels = new ArrayList<>();
+
+  MinMaxPyramid(@NotNull TLongArrayList x, @NotNull TLongArrayList y) {
+    myX = x;
+    myY = y;
+  }
+
+  void clear() {
+    myOffset = 0;
+    myLevels.clear();
+  }
+
+  /**
+   * Must be called after {@code count} samples are inserted at the beginning of the list.
+   */
+  void samplesPrepended(int count) {
+    myOffset -= count;
+    update(myOffset, myOffset + count - 1);
+  }
+
+  /**
+   * Must be called after {@code count} samples are added at the end of the list.
+   */
+  void samplesAppended(int count) {
+    long end = myOffset + myX.size() - 1;
+    update(end - count + 1, end);
+  }
+
+  /**
+   * Must be called after {@code count} samples are removed from the beginning of the list.
+   */
+  void samplesRemovedFromHead(int count) {
+    myOffset += count;
+    if (myX.isEmpty()) {
+      clear();
+      return;
+    }
+    for (Level level : myLevels) {
+      level.removeBefore(Math.floorDiv(myOffset, level.myBucketSize));
+    }
+    removeLevelsLargerThanList();
+  }
+
+  /**
+   * Must be called after {@code count} samples are removed from the end of the list.
+   */
+  void samplesRemovedFromTail(int count) {
+    if (myX.isEmpty()) {
+      clear();
+      return;
+    }
+    long end = myOffset + myX.size() - 1;
+    for (Level level : myLevels) {
+      level.removeAfter(Math.floorDiv(end, level.myBucketSize));
+    }
+    removeLevelsLargerThanList();
+  }
+
+  /**
+   * Levels whose buckets can't be filled aren't updated when samples are added (see {@link #update(long, long)}), so they are dropped and
+   * fully recomputed once there are enough samples again.
+   */
+  private void removeLevelsLargerThanList() {
+    while (!myLevels.isEmpty() && myLevels.get(myLevels.size() - 1).myBucketSize > myX.size()) {
+      myLevels.remove(myLevels.size() - 1);
+    }
+  }
+
+  /**
+   * Adds to {@code buffer} the samples from {@code fromIndex} to {@code toIndex} (inclusive), or a summary of them if there are more than
+   * enough to be drawn {@code width} pixels wide. The summary keeps the first and last samples, and the minimum and maximum samples of at
+   * least one bucket per pixel, which makes its extrema exact.
+   */
+  void getSummary(int fromIndex, int toIndex, int width, @NotNull LongSeriesBuffer buffer) {
+    int count = toIndex - fromIndex + 1;
+    int maxLevel = 0;
+    while (maxLevel < myLevels.size() && myLevels.get(maxLevel).myBucketSize * Math.max(width, 1) <= count) {
+      maxLevel++;
+    }
+    if (maxLevel == 0 || count <= 2) {
+      for (int i = fromIndex; i <= toIndex; i++) {
+        buffer.add(myX.get(i), myY.get(i));
+      }
+      return;
+    }
+
+    // The first and last samples are always kept, so the line reaches the edges of the range.
+    buffer.add(myX.get(fromIndex), myY.get(fromIndex));
+    long last = myOffset + toIndex - 1;
+    long index = myOffset + fromIndex + 1;
+    while (index <= last) {
+      // Use the coarsest bucket starting at this sample which isn't past the range, the edges use finer and finer buckets.
+      int level = maxLevel;
+      while (level > 0) {
+        long bucketSize = myLevels.get(level - 1).myBucketSize;
+        if (Math.floorMod(index, bucketSize) == 0 && index + bucketSize - 1 <= last) {
+          break;
+        }
+        level--;
+      }
+
+      if (level == 0) {
+        int localIndex = (int)(index - myOffset);
+        buffer.add(myX.get(localIndex), myY.get(localIndex));
+        index++;
+      }
+      else {
+        Level bucketLevel = myLevels.get(level - 1);
+        bucketLevel.addBucket(Math.floorDiv(index, bucketLevel.myBucketSize), buffer);
+        index += bucketLevel.myBucketSize;
+      }
+    }
+    buffer.add(myX.get(toIndex), myY.get(toIndex));
+  }
+
+  /**
+   * Recomputes the buckets of all levels that contain samples of the global index range [from, to], from the finest level up.
+   */
+  private void update(long from, long to) {
+    int size = myX.size();
+    long first = myOffset;
+    long last = myOffset + size - 1;
+    long bucketSize = FANOUT;
+    for (int i = 0; bucketSize <= size; i++, bucketSize *= FANOUT) {
+      if (i == myLevels.size()) {
+        // A new level, all of its buckets need to be computed.
+        myLevels.add(new Level(bucketSize));
+        from = first;
+        to = last;
+      }
+      for (long bucket = Math.floorDiv(from, bucketSize); bucket <= Math.floorDiv(to, bucketSize); bucket++) {
+        computeBucket(i, bucket, first, last);
+      }
+    }
+  }
+
+  private void computeBucket(int levelIndex, long bucket, long first, long last) {
+    Level level = myLevels.get(levelIndex);
+    long from = Math.max(first, bucket * level.myBucketSize);
+    long to = Math.min(last, (bucket + 1) * level.myBucketSize - 1);
+    long minX = 0, minY = Long.MAX_VALUE;
+    long maxX = 0, maxY = Long.MIN_VALUE;
+
+    if (levelIndex == 0) {
+      for (long index = from; index <= to; index++) {
+        int localIndex = (int)(index - myOffset);
+        long y = myY.get(localIndex);
+        if (y < minY) {
+          minX = myX.get(localIndex);
+          minY = y;
+        }
+        if (y > maxY) {
+          maxX = myX.get(localIndex);
+          maxY = y;
+        }
+      }
+    }
+    else {
+      Level children = myLevels.get(levelIndex - 1);
+      long fromChild = Math.max(children.myFirstBucket, Math.floorDiv(from, children.myBucketSize));
+      long toChild = Math.min(children.myFirstBucket + children.size() - 1, Math.floorDiv(to, children.myBucketSize));
+      for (long child = fromChild; child <= toChild; child++) {
+        int position = (int)(child - children.myFirstBucket);
+        if (children.myMinY.get(position) < minY) {
+          minX = children.myMinX.get(position);
+          minY = children.myMinY.get(position);
+        }
+        if (children.myMaxY.get(position) > maxY) {
+          maxX = children.myMaxX.get(position);
+          maxY = children.myMaxY.get(position);
+        }
+      }
+    }
+    level.set(bucket, minX, minY, maxX, maxY);
+  }
+
+  private static final class Level {
+    private final long myBucketSize;
+
+    /**
+     * The index of the first bucket stored.
+     */
+    private long myFirstBucket;
+
+    @NotNull private final TLongArrayList myMinX = new TLongArrayList();
+    @NotNull private final TLongArrayList myMinY = new TLongArrayList();
+    @NotNull private final TLongArrayList myMaxX = new TLongArrayList();
+    @NotNull private final TLongArrayList myMaxY = new TLongArrayList();
+
+    private Level(long bucketSize) {
+      myBucketSize = bucketSize;
+    }
+
+    private int size() {
+      return myMinX.size();
+    }
+
+    private void set(long bucket, long minX, long minY, long maxX, long maxY) {
+      if (size() == 0) {
+        myFirstBucket = bucket;
+      }
+      else if (bucket < myFirstBucket) {
+        long[] padding = new long[(int)(myFirstBucket - bucket)];
+        myMinX.insert(0, padding);
+        myMinY.insert(0, padding);
+        myMaxX.insert(0, padding);
+        myMaxY.insert(0, padding);
+        myFirstBucket = bucket;
+      }
+      while (bucket >= myFirstBucket + size()) {
+        myMinX.add(0);
+        myMinY.add(0);
+        myMaxX.add(0);
+        myMaxY.add(0);
+      }
+
+      int position = (int)(bucket - myFirstBucket);
+      myMinX.set(position, minX);
+      myMinY.set(position, minY);
+      myMaxX.set(position, maxX);
+      myMaxY.set(position, maxY);
+    }
+
+    /**
+     * Adds the minimum and maximum samples of a bucket to {@code buffer}, in x order.
+     */
+    private void addBucket(long bucket, @NotNull LongSeriesBuffer buffer) {
+      int position = (int)(bucket - myFirstBucket);
+      long minX = myMinX.get(position);
+      long maxX = myMaxX.get(position);
+      if (minX < maxX) {
+        buffer.add(minX, myMinY.get(position));
+        buffer.add(maxX, myMaxY.get(position));
+      }
+      else if (minX > maxX) {
+        buffer.add(maxX, myMaxY.get(position));
+        buffer.add(minX, myMinY.get(position));
+      }
+      else {
+        buffer.add(minX, myMinY.get(position));
+      }
+    }
+
+    private void removeBefore(long bucket) {
+      int count = (int)Math.max(0, Math.min(size(), bucket - myFirstBucket));
+      if (count > 0) {
+        myMinX.remove(0, count);
+        myMinY.remove(0, count);
+        myMaxX.remove(0, count);
+        myMaxY.remove(0, count);
+        myFirstBucket += count;
+      }
+    }
+
+    private void removeAfter(long bucket) {
+      int keep = (int)Math.max(0, Math.min(size(), bucket - myFirstBucket + 1));
+      int count = size() - keep;
+      if (count > 0) {
+        myMinX.remove(keep, count);
+        myMinY.remove(keep, count);
+        myMaxX.remove(keep, count);
+        myMaxY.remove(keep, count);
+      }
+    }
+  }
+}
@@ -36,6 +36,33 @@ public class RangedContinuousSeries extends RangedSeries<Long> {
     myName = name;
   }
 
+  /**
+   * Replaces the content of {@code buffer} with the data in view. Series implementing {@link LongSeries} are read without boxing.
+   */
+  public void getSeries(@NotNull LongSeriesBuffer buffer) {
+    if (mSeries instanceof LongSeries) {
+      ((LongSeries)mSeries).getDataForXRange(mXRange, buffer);
+      return;
+    }
+
+    buffer.clear();
+    for (SeriesData<Long> data : getSeries()) {
+      buffer.add(data.x, data.value);
+    }
+  }
+
+  /**
+   * Same as {@link #getSeries(LongSeriesBuffer)}, but series implementing {@link LongSeries} may only return the samples needed to draw
+   * the data in view {@code width} pixels wide, see {@link LongSeries#getDataForXRange(Range, int, LongSeriesBuffer)}.
+   */
+  public void getSeries(@NotNull LongSeriesBuffer buffer, int width) {
+    if (mSeries instanceof LongSeries) {
+      ((LongSeries)mSeries).getDataForXRange(mXRange, width, buffer);
+      return;
+    }
+    getSeries(buffer);
+  }
+
   @NotNull
   public Range getYRange() {
     return mYRange;
@@ -42,6 +42,13 @@ public abstract class StopwatchTimer {
   public abstract boolean isRunning();
   public abstract void stop();
 
+  /**
+   * Asks the timer to tick at a lower rate while {@code idle}, as nothing is expected to change much. Timers that can't do so, e.g.
+   * timers controlled by tests, keep ticking as usual.
+   */
+  public void setIdle(boolean idle) {
+  }
+
   /**
    * Child classes are responsible for signaling when and how much time has elapsed.
    *
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model.updater;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A histogram of durations (e.g. how long each frame of an {@link Updater} took), with buckets whose upper bounds grow in powers of
+ * two milliseconds: bucket 0 counts durations under 1ms, bucket 1 durations under 2ms, bucket 2 under 4ms, and so on. The last bucket
+ * counts everything that doesn't fit in the others.
+ */
+public final class FrameTimeHistogram {
+  public static final int BUCKET_COUNT = 12;
+
+  private static final long ONE_MS_IN_NS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final long[] myCounts = new long[BUCKET_COUNT];
+  private long myCount;
+  private long myTotalNs;
+  private long myMaxNs;
+
+  public void record(long durationNs) {
+    myCounts[getBucket(durationNs)]++;
+    myCount++;
+    myTotalNs += durationNs;
+    myMaxNs = Math.max(myMaxNs, durationNs);
+  }
+
+  /**
+   * @return the number of durations recorded.
+   */
+  public long getCount() {
+    return myCount;
+  }
+
+  /**
+   * @return the number of durations recorded in {@code bucket}.
+   */
+  public long getCount(int bucket) {
+    return myCounts[bucket];
+  }
+
+  /**
+   * @return the (exclusive) upper bound of the durations counted in {@code bucket}, {@link Long#MAX_VALUE} for the last bucket.
+   */
+  public static long getUpperBoundNs(int bucket) {
+    return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : ONE_MS_IN_NS << bucket;
+  }
+
+  public long getMaxNs() {
+    return myMaxNs;
+  }
+
+  public long getAverageNs() {
+    return myCount == 0 ? 0 : myTotalNs / myCount;
+  }
+
+  /**
+   * @return the upper bound of the bucket containing the given percentile (between 0 and 100) of the recorded durations, or 0 if none
+   * was recorded.
+   */
+  public long getPercentileUpperBoundNs(double percentile) {
+    if (myCount == 0) {
+      return 0;
+    }
+    long rank = (long)Math.ceil(myCount * percentile / 100);
+    long count = 0;
+    for (int bucket = 0; bucket < BUCKET_COUNT - 1; bucket++) {
+      count += myCounts[bucket];
+      if (count >= rank) {
+        return getUpperBoundNs(bucket);
+      }
+    }
+    return getUpperBoundNs(BUCKET_COUNT - 1);
+  }
+
+  public void clear() {
+    Arrays.fill(myCounts, 0);
+    myCount = 0;
+    myTotalNs = 0;
+    myMaxNs = 0;
+  }
+
+  private static int getBucket(long durationNs) {
+    long ms = durationNs / ONE_MS_IN_NS;
+    // The number of bits needed to represent ms is the first power of two above it.
+    return Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(ms));
+  }
+}
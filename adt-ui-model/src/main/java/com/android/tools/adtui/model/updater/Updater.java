@@ -16,23 +16,39 @@
 
 package com.android.tools.adtui.model.updater;
 
+import com.android.tools.adtui.model.AspectObserver;
+import com.android.tools.adtui.model.FpsTimer;
+import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.StopwatchTimer;
 import com.google.common.annotations.VisibleForTesting;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 /**
  * An auxiliary object that synchronizes a group of {@link Updatable} via a simple update loop
  * running at a specific frame rate. This ensures all UI components and model classes are reading
  * and displaying consistent information at any given time.
+ *
+ * When none of the ranges passed to {@link #wakeUpOn(Range)} changed for {@link #IDLE_DELAY_NS}, and {@link #wakeUp()} wasn't called
+ * either, the updater asks its timer to slow down to an idle rate (see {@link StopwatchTimer#setIdle(boolean)}) until the next change.
+ * Updaters that were never given a range to wake up on always run at full rate.
+ *
+ * The time spent in each frame is recorded in {@link #getFrameTimes()}.
  */
 public class Updater implements StopwatchTimer.TickHandler {
 
   public static final float DEFAULT_LERP_FRACTION = 0.99f;
   public static final float DEFAULT_LERP_THRESHOLD_PERCENTAGE = 0.001f;
 
+  /**
+   * How long the updater keeps running at full rate after the last change, so that interpolations triggered by it can settle.
+   */
+  public static final long IDLE_DELAY_NS = TimeUnit.SECONDS.toNanos(1);
+
   private final List<Updatable> mComponents;
   private List<Updatable> mToRegister;
   private List<Updatable> mToUnregister;
@@ -41,7 +57,25 @@ public class Updater implements StopwatchTimer.TickHandler {
 
   private boolean mUpdating;
 
+  @NotNull private final AspectObserver mObserver = new AspectObserver();
+  private boolean mCanIdle;
+  private long mSinceWakeUpNs;
+  private boolean mIdle;
+
+  @NotNull private final FrameTimeHistogram mFrameTimes = new FrameTimeHistogram();
+  @NotNull private final FrameTimeHistogram mMissedDeadlines = new FrameTimeHistogram();
+  @NotNull private final LongSupplier mClock;
+
   public Updater(@NotNull StopwatchTimer timer) {
+    this(timer, System::nanoTime);
+  }
+
+  /**
+   * @param clock the time, in nanoseconds, used to measure how long each frame takes.
+   */
+  @VisibleForTesting
+  Updater(@NotNull StopwatchTimer timer, @NotNull LongSupplier clock) {
+    mClock = clock;
     mComponents = new LinkedList<>();
     mToRegister = new LinkedList<>();
     mToUnregister = new LinkedList<>();
@@ -93,8 +127,52 @@ public class Updater implements StopwatchTimer.TickHandler {
     mReset = true;
   }
 
+  /**
+   * Keeps the updater running at full rate, or brings it back to it, whenever {@code range} changes.
+   */
+  public void wakeUpOn(@NotNull Range range) {
+    range.addDependency(mObserver).onChange(Range.Aspect.RANGE, this::wakeUp);
+    mCanIdle = true;
+  }
+
+  /**
+   * Keeps the updater running at full rate for at least {@link #IDLE_DELAY_NS}, e.g. because something the {@link Updatable}s depend
+   * on changed.
+   */
+  public void wakeUp() {
+    mSinceWakeUpNs = 0;
+    if (mIdle) {
+      mIdle = false;
+      mTimer.setIdle(false);
+    }
+  }
+
+  public boolean isIdle() {
+    return mIdle;
+  }
+
+  /**
+   * @return how long the frames took to update, from the time the timer ticked to the time all the {@link Updatable}s were updated.
+   */
+  @NotNull
+  public FrameTimeHistogram getFrameTimes() {
+    return mFrameTimes;
+  }
+
+  /**
+   * @return by how much the frames that took longer than {@link FpsTimer#ONE_FRAME_IN_NS} to update exceeded it.
+   */
+  @NotNull
+  public FrameTimeHistogram getMissedDeadlines() {
+    return mMissedDeadlines;
+  }
+
   @Override
   public void onTick(long elapsedNs) {
+    long startNs = mClock.getAsLong();
+    // Changes made by the updatables themselves (e.g. the timeline streaming) wake the updater up again.
+    mSinceWakeUpNs += elapsedNs;
+
     mUpdating = true;
     if (mReset) {
       mComponents.forEach(Updatable::reset);
@@ -110,6 +188,17 @@ public class Updater implements StopwatchTimer.TickHandler {
 
     mToUnregister.clear();
     mToRegister.clear();
+
+    if (mCanIdle && !mIdle && mSinceWakeUpNs >= IDLE_DELAY_NS) {
+      mIdle = true;
+      mTimer.setIdle(true);
+    }
+
+    long frameNs = mClock.getAsLong() - startNs;
+    mFrameTimes.record(frameNs);
+    if (frameNs > FpsTimer.ONE_FRAME_IN_NS) {
+      mMissedDeadlines.record(frameNs - FpsTimer.ONE_FRAME_IN_NS);
+    }
   }
 
   /**
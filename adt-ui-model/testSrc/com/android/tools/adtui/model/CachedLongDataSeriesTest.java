@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CachedLongDataSeriesTest {
+  private static final long PADDING = 10;
+
+  private DefaultDataSeries<Long> myData;
+  private List<Range> myRequests;
+  private CachedLongDataSeries mySeries;
+
+  @Before
+  public void setUp() {
+    myData = new DefaultDataSeries<>();
+    myRequests = new ArrayList<>();
+    // Like the RPC backed series, return some extra samples around the requested range.
+    mySeries = new CachedLongDataSeries(range -> {
+      myRequests.add(new Range(range));
+      List<SeriesData<Long>> data = new ArrayList<>();
+      for (SeriesData<Long> sample : myData.getAllData()) {
+        if (sample.x >= range.getMin() - PADDING && sample.x <= range.getMax() + PADDING) {
+          data.add(sample);
+        }
+      }
+      return data;
+    });
+  }
+
+  @Test
+  public void streamingOnlyRequestsTheTail() {
+    Range range = new Range(0, 100);
+    for (long x = 0; x <= 100; x += 10) {
+      myData.add(x, x * 2);
+    }
+    assertSameData(range);
+    assertEquals(1, myRequests.size());
+
+    // Querying the same range again doesn't hit the source.
+    assertSameData(range);
+    assertEquals(1, myRequests.size());
+
+    for (long x = 110; x <= 300; x += 10) {
+      myData.add(x, x * 2);
+      range.set(x - 100, x);
+      assertSameData(range);
+      assertLastRequest(x - 10, x);
+    }
+  }
+
+  @Test
+  public void samplesAddedAfterTheLastOneAreFetched() {
+    Range range = new Range(0, 100);
+    myData.add(0, 1L);
+    myData.add(10, 2L);
+    assertSameData(range);
+
+    // The source hadn't produced these samples yet when the range was first requested.
+    myData.add(20, 3L);
+    myData.add(30, 4L);
+    assertSameData(range);
+    assertLastRequest(10, 100);
+  }
+
+  @Test
+  public void scrollingBackOnlyRequestsTheNewlyExposedEdge() {
+    for (long x = 0; x <= 1000; x += 10) {
+      myData.add(x, x);
+    }
+    Range range = new Range(500, 600);
+    assertSameData(range);
+
+    range.set(450, 550);
+    assertSameData(range);
+    assertLastRequest(450, 500);
+
+    // Jumping away starts over.
+    range.set(0, 100);
+    assertSameData(range);
+    assertLastRequest(0, 100);
+  }
+
+  @Test
+  public void samplesFarFromTheRangeAreEvicted() {
+    Range range = new Range(0, 100);
+    for (long x = 0; x <= 10000; x += 10) {
+      myData.add(x, x);
+      if (x >= 100) {
+        range.set(x - 100, x);
+        assertSameData(range);
+      }
+    }
+    assertTrue(mySeries.size() <= (2 * CachedLongDataSeries.EVICTION_RANGE_LENGTHS + 1) * 100 / 10 + 1);
+
+    // Evicted samples are fetched again when needed.
+    range.set(0, 100);
+    assertSameData(range);
+  }
+
+  @Test
+  public void emptyRange() {
+    myData.add(0, 1L);
+    assertEquals(0, mySeries.getDataForXRange(new Range()).size());
+    assertEquals(0, myRequests.size());
+  }
+
+  @Test
+  public void summaryKeepsEdgesAndExtrema() {
+    Random random = new Random(1);
+    for (long x = 0; x < 20000; x++) {
+      myData.add(x * 10, (long)random.nextInt(1000));
+    }
+    // Stream, zoom and scroll around, so samples get added and evicted at both ends of the cache.
+    Range range = new Range(0, 1000);
+    for (int i = 0; i < 500; i++) {
+      double length = i < 100 ? 1000 : 10 + random.nextInt(100000);
+      double min = i < 100 ? i * 100 : Math.max(0, range.getMin() + random.nextInt(20000) - 10000);
+      range.set(min, min + length);
+      assertSummary(range, 1 + random.nextInt(500));
+    }
+  }
+
+  @Test
+  public void summarySizeDoesntDependOnTheNumberOfSamples() {
+    int width = 1000;
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    for (long x = 0; x < 1000000; x++) {
+      myData.add(x, x % 1000);
+      if (x == 9999 || x == 99999 || x == 999999) {
+        mySeries.getDataForXRange(new Range(0, x), width, buffer);
+        assertTrue(buffer.size() >= width);
+        assertTrue(buffer.size() <= 2 * MinMaxPyramid.FANOUT * width + 100);
+      }
+    }
+  }
+
+  private void assertLastRequest(double min, double max) {
+    Range request = myRequests.get(myRequests.size() - 1);
+    assertEquals(min, request.getMin(), 0);
+    assertEquals(max, request.getMax(), 0);
+  }
+
+  /**
+   * Checks that the cached series returns the samples of the source within the range, plus the closest one on each side.
+   */
+  private void assertSameData(Range range) {
+    List<SeriesData<Long>> expected = new ArrayList<>();
+    int from = myData.getNearestXIndex((long)range.getMin());
+    int to = myData.getNearestXIndex((long)range.getMax());
+    if (myData.getX(to) <= range.getMax()) {
+      to = Math.min(to + 1, myData.size() - 1);
+    }
+    for (int i = from; i <= to; i++) {
+      expected.add(new SeriesData<>(myData.getX(i), myData.getY(i)));
+    }
+
+    List<SeriesData<Long>> actual = mySeries.getDataForXRange(range);
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).x, actual.get(i).x);
+      assertEquals(expected.get(i).value, actual.get(i).value);
+    }
+  }
+
+  /**
+   * Checks that the summary of the range only has samples of the source, including the ones at the edges and the extrema.
+   */
+  private void assertSummary(Range range, int width) {
+    List<SeriesData<Long>> expected = mySeries.getDataForXRange(range);
+    LongSeriesBuffer summary = new LongSeriesBuffer();
+    mySeries.getDataForXRange(range, width, summary);
+    if (expected.size() <= width) {
+      assertEquals(expected.size(), summary.size());
+    }
+    if (expected.isEmpty()) {
+      return;
+    }
+
+    assertEquals((long)expected.get(0).x, summary.getX(0));
+    assertEquals((long)expected.get(expected.size() - 1).x, summary.getX(summary.size() - 1));
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (SeriesData<Long> sample : expected) {
+      min = Math.min(min, sample.value);
+      max = Math.max(max, sample.value);
+    }
+    long summaryMin = Long.MAX_VALUE;
+    long summaryMax = Long.MIN_VALUE;
+    int expectedIndex = 0;
+    for (int i = 0; i < summary.size(); i++) {
+      while (expected.get(expectedIndex).x < summary.getX(i)) {
+        expectedIndex++;
+      }
+      assertEquals((long)expected.get(expectedIndex).x, summary.getX(i));
+      assertEquals((long)expected.get(expectedIndex).value, summary.getY(i));
+      summaryMin = Math.min(summaryMin, summary.getY(i));
+      summaryMax = Math.max(summaryMax, summary.getY(i));
+    }
+    assertEquals(min, summaryMin);
+    assertEquals(max, summaryMax);
+  }
+}
@@ -19,6 +19,8 @@ import com.android.tools.adtui.model.updater.Updater;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class LineChartModelTest {
 
@@ -43,4 +45,61 @@ public class LineChartModelTest {
     t.step();
     assertEquals(100, yRange.getMax(), 0);  // after update.
   }
-}
\ No newline at end of file
+
+  @Test
+  public void updatesAreSkippedWhileRangesDontChange() {
+    Range xRange = new Range(0, 100);
+    Range yRange = new Range(0, 100);
+    DefaultDataSeries<Long> testSeries = new DefaultDataSeries<>();
+    testSeries.add(0, 10L);
+    FakeTimer t = new FakeTimer();
+    Updater updater = new Updater(t);
+    LineChartModel model = new LineChartModel();
+    model.add(new RangedContinuousSeries("test", xRange, yRange, testSeries));
+    updater.register(model);
+
+    AspectObserver observer = new AspectObserver();
+    boolean[] changed = {false};
+    model.addDependency(observer).onChange(LineChartModel.Aspect.LINE_CHART, () -> changed[0] = true);
+    t.step();
+    assertTrue(changed[0]);
+
+    changed[0] = false;
+    t.step();
+    assertFalse(changed[0]);
+
+    xRange.set(50, 150);
+    t.step();
+    assertTrue(changed[0]);
+
+    // Samples that arrive without any range change still show up eventually.
+    changed[0] = false;
+    testSeries.add(60, 1000L);
+    t.tick(LineChartModel.REFRESH_NS);
+    assertTrue(changed[0]);
+    assertEquals(1000, yRange.getMax(), 10);
+  }
+
+  @Test
+  public void removingSeriesRemovesRangeDependencies() {
+    Range xRange = new Range(0, 100);
+    Range yRange1 = new Range(0, 100);
+    Range yRange2 = new Range(0, 100);
+    RangedContinuousSeries series1 = new RangedContinuousSeries("test1", xRange, yRange1, new DefaultDataSeries<>());
+    RangedContinuousSeries series2 = new RangedContinuousSeries("test2", xRange, yRange2, new DefaultDataSeries<>());
+    LineChartModel model = new LineChartModel();
+    model.add(series1);
+    model.add(series2);
+    assertEquals(2, xRange.getDependenciesSize());
+    assertEquals(1, yRange1.getDependenciesSize());
+
+    // The x range is still used by the other series.
+    model.remove(series1);
+    assertEquals(0, yRange1.getDependenciesSize());
+    assertTrue(xRange.getDependenciesSize() > 0);
+
+    model.remove(series2);
+    assertEquals(0, xRange.getDependenciesSize());
+    assertEquals(0, yRange2.getDependenciesSize());
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.adtui.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LongSeriesBufferTest {
+  @Test
+  public void refillingKeepsTheCapacity() {
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    for (long i = 0; i < 100; i++) {
+      buffer.add(i, i * 2);
+    }
+    int capacity = buffer.getCapacity();
+    assertTrue(capacity >= 100);
+
+    buffer.clear();
+    assertTrue(buffer.isEmpty());
+    for (long i = 0; i < 100; i++) {
+      buffer.add(i, i * 3);
+    }
+    assertEquals(capacity, buffer.getCapacity());
+    assertEquals(100, buffer.size());
+    assertEquals(99, buffer.getX(99));
+    assertEquals(297, buffer.getY(99));
+
+    buffer.truncate(10);
+    assertEquals(10, buffer.size());
+    assertEquals(capacity, buffer.getCapacity());
+  }
+
+  @Test
+  public void copyFromReplacesTheContent() {
+    LongSeriesBuffer source = new LongSeriesBuffer();
+    source.add(1, 10);
+    source.add(2, 20);
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    buffer.add(5, 50);
+    buffer.add(6, 60);
+    buffer.add(7, 70);
+
+    buffer.copyFrom(source);
+    assertEquals(2, buffer.size());
+    assertEquals(2, buffer.getX(1));
+    assertEquals(20, buffer.getY(1));
+  }
+
+  @Test
+  public void rangedSeriesFillsTheBufferWithoutBoxing() {
+    UnboxedOnlySeries series = new UnboxedOnlySeries();
+    for (long x = 0; x <= 1000; x += 10) {
+      series.add(x, x * 2);
+    }
+    Range xRange = new Range(0, 500);
+    RangedContinuousSeries rangedSeries = new RangedContinuousSeries("test", xRange, new Range(0, 2000), series);
+
+    LongSeriesBuffer buffer = new LongSeriesBuffer();
+    rangedSeries.getSeries(buffer);
+    int capacity = buffer.getCapacity();
+    assertEquals(51, buffer.size());
+
+    // Streaming: the range moves, and the same buffer is refilled for each frame.
+    for (int frame = 0; frame < 50; frame++) {
+      xRange.shift(10);
+      rangedSeries.getSeries(buffer);
+      assertEquals(51, buffer.size());
+      assertEquals(xRange.getMin(), buffer.getX(0), 0);
+      assertEquals((long)xRange.getMin() * 2, buffer.getY(0));
+      assertEquals(xRange.getMax(), buffer.getX(buffer.size() - 1), 0);
+    }
+    assertEquals(capacity, buffer.getCapacity());
+  }
+
+  /**
+   * A series which fails if it is read through the boxed {@link DataSeries#getDataForXRange(Range)}.
+   */
+  private static final class UnboxedOnlySeries extends LongDataSeries {
+    @Override
+    public List<SeriesData<Long>> getDataForXRange(@NotNull Range xRange) {
+      throw new AssertionError("Read as boxed samples");
+    }
+  }
+}
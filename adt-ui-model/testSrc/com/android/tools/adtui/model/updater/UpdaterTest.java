@@ -16,6 +16,8 @@
 package com.android.tools.adtui.model.updater;
 
 import com.android.tools.adtui.model.FakeTimer;
+import com.android.tools.adtui.model.FpsTimer;
+import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.updater.Updatable;
 import com.android.tools.adtui.model.updater.Updater;
 import org.junit.Before;
@@ -150,6 +152,57 @@ public class UpdaterTest {
     assertEquals(Arrays.asList(updatableA, updatableB), reset);
   }
 
+  @Test
+  public void idlesWhenRangesDontChange() {
+    Range range = new Range(0, 10);
+    myUpdater.wakeUpOn(range);
+
+    myUpdater.getTimer().tick(Updater.IDLE_DELAY_NS / 2);
+    assertFalse(myUpdater.isIdle());
+    myUpdater.getTimer().tick(Updater.IDLE_DELAY_NS / 2);
+    assertTrue(myUpdater.isIdle());
+
+    range.set(5, 15);
+    assertFalse(myUpdater.isIdle());
+    myUpdater.getTimer().tick(Updater.IDLE_DELAY_NS / 2);
+    assertFalse(myUpdater.isIdle());
+  }
+
+  @Test
+  public void rangesChangedByUpdatablesKeepTheUpdaterAwake() {
+    Range range = new Range(0, 10);
+    myUpdater.wakeUpOn(range);
+    myUpdater.register(elapsedNs -> range.shift(1));
+
+    for (int i = 0; i < 10; i++) {
+      myUpdater.getTimer().tick(Updater.IDLE_DELAY_NS);
+      assertFalse(myUpdater.isIdle());
+    }
+  }
+
+  @Test
+  public void neverIdlesWithoutRangesToWakeUpOn() {
+    myUpdater.getTimer().tick(Updater.IDLE_DELAY_NS * 10);
+    assertFalse(myUpdater.isIdle());
+  }
+
+  @Test
+  public void frameTimesAreRecorded() {
+    long[] clockNs = {0};
+    Updater updater = new Updater(new FakeTimer(), () -> clockNs[0]);
+    updater.register(elapsedNs -> {
+      // Only the second frame is slow.
+      clockNs[0] += updater.getFrameTimes().getCount() == 1 ? 3 * FpsTimer.ONE_FRAME_IN_NS : FpsTimer.ONE_FRAME_IN_NS / 2;
+    });
+    for (int i = 0; i < 3; i++) {
+      updater.getTimer().tick(1);
+    }
+    assertEquals(3, updater.getFrameTimes().getCount());
+    assertEquals(3 * FpsTimer.ONE_FRAME_IN_NS, updater.getFrameTimes().getMaxNs());
+    assertEquals(1, updater.getMissedDeadlines().getCount());
+    assertEquals(2 * FpsTimer.ONE_FRAME_IN_NS, updater.getMissedDeadlines().getMaxNs());
+  }
+
   private static class FakeUpdatable implements Updatable {
     private final List<Updatable> myUpdated;
 
@@ -15,6 +15,7 @@
  */
 package com.android.tools.adtui.chart.linechart;
 
+import com.android.tools.adtui.model.LongSeriesBuffer;
 import com.android.tools.adtui.model.SeriesData;
 import org.jetbrains.annotations.NotNull;
 
@@ -23,6 +24,10 @@ import java.awt.geom.PathIterator;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * The reducer used by {@link LineChart} by default. The in-place versions of the reduce methods don't allocate, which makes instances
+ * stateful: an instance must not be used from several threads at the same time.
+ */
 class DefaultLineChartReducer implements LineChartReducer {
   private static final float EPS  = 1e-6f;
 
@@ -31,6 +36,15 @@ class DefaultLineChartReducer implements LineChartReducer {
    */
   private static int PATH_ITERATOR_COORDS_COUNT = 6;
 
+  @NotNull private final float[] myCoords = new float[PATH_ITERATOR_COORDS_COUNT];
+
+  /**
+   * The current point of the path being reduced into, tracked here because {@link Path2D#getCurrentPoint()} allocates.
+   */
+  private boolean myHasCurrentPoint;
+  private float myCurrentX;
+  private float myCurrentY;
+
   /**
    * A simple reducer which reduces when,
    * 1. When the data is for a stepped line and if two consecutive values are equal (except for the last two points),
@@ -60,11 +74,30 @@ class DefaultLineChartReducer implements LineChartReducer {
   }
 
   /**
-  * The basic idea behind this algorithm is to reduce number of points to available pixels.
-  * For every pixel it draws 4 points: the first point, the last point,
-  * the points with minimum and maximum Y coordinates within a pixel.
-  * It draws similar shape with the original, because of the fact that width of a line is 1px.
-  */
+   * Same algorithm as {@link #reduceData(List, LineConfig)}. The reduced samples are compacted at the beginning of the buffer, which
+   * works in place as there are never more of them than samples read so far.
+   */
+  @Override
+  public void reduceData(@NotNull LongSeriesBuffer data, @NotNull LineConfig config) {
+    int reducedSize = 0;
+    for (int i = 0; i < data.size(); i++) {
+      long x = data.getX(i);
+      long y = data.getY(i);
+      while (reducedSize >= 2) {
+        long preLast = data.getY(reducedSize - 2);
+        long last = data.getY(reducedSize - 1);
+
+        if (preLast == last && (config.isStepped() || last == y)) {
+          reducedSize--;
+        } else {
+          break;
+        }
+      }
+      data.set(reducedSize++, x, y);
+    }
+    data.truncate(reducedSize);
+  }
+
   @NotNull
   @Override
   public Path2D reducePath(@NotNull Path2D path, @NotNull LineConfig config) {
@@ -73,7 +106,27 @@ class DefaultLineChartReducer implements LineChartReducer {
     }
 
     Path2D resultPath = new Path2D.Float();
-    float[] coords = new float[PATH_ITERATOR_COORDS_COUNT];
+    reducePath(path, config, resultPath);
+    return resultPath;
+  }
+
+  /**
+  * The basic idea behind this algorithm is to reduce number of points to available pixels.
+  * For every pixel it draws 4 points: the first point, the last point,
+  * the points with minimum and maximum Y coordinates within a pixel.
+  * It draws similar shape with the original, because of the fact that width of a line is 1px.
+  */
+  @Override
+  public void reducePath(@NotNull Path2D path, @NotNull LineConfig config, @NotNull Path2D resultPath) {
+    resultPath.reset();
+    myHasCurrentPoint = false;
+
+    PathIterator iterator = path.getPathIterator(null);
+    if (iterator.isDone()) {
+      return;
+    }
+
+    float[] coords = myCoords;
     float pixel = -1;
     float minX = -1, minY = -1;
     float maxX = -1, maxY = -1;
@@ -81,7 +134,6 @@ class DefaultLineChartReducer implements LineChartReducer {
     int minIndex = -1, maxIndex = -1;
     int curIndex = 0;
 
-    PathIterator iterator = path.getPathIterator(null);
     while (!iterator.isDone()) {
       int segType = iterator.currentSegment(coords);
       assert segType == PathIterator.SEG_MOVETO || segType == PathIterator.SEG_LINETO;
@@ -139,58 +191,64 @@ class DefaultLineChartReducer implements LineChartReducer {
 
     if (config.isStepped()) {
       // The last point won't be added if Y value is the same with previous point, so let's add it
-      if (resultPath.getCurrentPoint() == null || equals((float)resultPath.getCurrentPoint().getY(), curY)) {
+      if (!myHasCurrentPoint || equals(myCurrentY, curY)) {
         addToPath(resultPath, curX, curY);
       }
     }
-    return resultPath;
   }
 
-  private static void addMinMaxPoints(@NotNull Path2D path,
+  private void addMinMaxPoints(@NotNull Path2D path,
                                @NotNull LineConfig config,
                                int minIndex, float minX, float minY,
                                int maxIndex, float maxX, float maxY) {
     if (minIndex < maxIndex) {
-      addToResultPath(path, config, minX, minY, maxX, maxY);
+      addToResultPath(path, config, minX, minY);
+      addToResultPath(path, config, maxX, maxY);
     } else {
-      addToResultPath(path, config, maxX, maxY, minX, minY);
+      addToResultPath(path, config, maxX, maxY);
+      addToResultPath(path, config, minX, minY);
     }
   }
 
-  private static void addToResultPath(@NotNull Path2D path, @NotNull LineConfig config, float ...coords) {
-    assert coords.length % 2 == 0;
-    for (int i = 0; i < coords.length; i += 2) {
-      float x = coords[i], y = coords[i + 1];
-      if (config.isStepped()) {
-        addToSteppedLinePath(path, x, y);
-      } else {
-        addToPath(path, x, y);
-      }
+  private void addToResultPath(@NotNull Path2D path, @NotNull LineConfig config, float x, float y) {
+    if (config.isStepped()) {
+      addToSteppedLinePath(path, x, y);
+    } else {
+      addToPath(path, x, y);
     }
   }
 
-  private static void addToSteppedLinePath(@NotNull Path2D path, float x, float y) {
-    if (path.getCurrentPoint() == null) {
-      path.moveTo(x, y);
+  private void addToSteppedLinePath(@NotNull Path2D path, float x, float y) {
+    if (!myHasCurrentPoint) {
+      moveTo(path, x, y);
     } else {
-      if (!equals(y, (float)path.getCurrentPoint().getY())) {
-        addToPath(path, x, (float)path.getCurrentPoint().getY());
+      if (!equals(y, myCurrentY)) {
+        addToPath(path, x, myCurrentY);
         addToPath(path, x, y);
       }
     }
   }
 
-  private static void addToPath(@NotNull Path2D path, float x, float y) {
-    if (path.getCurrentPoint() == null) {
-      path.moveTo(x, y);
+  private void addToPath(@NotNull Path2D path, float x, float y) {
+    if (!myHasCurrentPoint) {
+      moveTo(path, x, y);
     } else {
       // Don't repeat the current point
-      if (!equals((float)path.getCurrentPoint().getX(), x) || !equals((float)path.getCurrentPoint().getY(), y)) {
+      if (!equals(myCurrentX, x) || !equals(myCurrentY, y)) {
         path.lineTo(x, y);
+        myCurrentX = x;
+        myCurrentY = y;
       }
     }
   }
 
+  private void moveTo(@NotNull Path2D path, float x, float y) {
+    path.moveTo(x, y);
+    myHasCurrentPoint = true;
+    myCurrentX = x;
+    myCurrentY = y;
+  }
+
   private static boolean equals(float a, float b) {
     return Math.abs(a - b) <= EPS;
   }
@@ -19,8 +19,8 @@ package com.android.tools.adtui.chart.linechart;
 import com.android.annotations.VisibleForTesting;
 import com.android.tools.adtui.AnimatedComponent;
 import com.android.tools.adtui.model.LineChartModel;
+import com.android.tools.adtui.model.LongSeriesBuffer;
 import com.android.tools.adtui.model.RangedContinuousSeries;
-import com.android.tools.adtui.model.SeriesData;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.*;
@@ -47,6 +47,33 @@ public class LineChart extends AnimatedComponent {
     Path2D myPreviousDashPath;
   }
 
+  /**
+   * The buffers used to draw a series, kept between frames so that drawing doesn't allocate.
+   */
+  private static class SeriesBuffers {
+    @NotNull final LongSeriesBuffer myData = new LongSeriesBuffer();
+
+    /**
+     * The path of the series is alternately built in one of these, as the path of the previous frame is still needed to adjust the dash
+     * phase (see {@link DashInfo#myPreviousDashPath}).
+     */
+    @NotNull final Path2D[] myPaths = {new Path2D.Float(), new Path2D.Float()};
+    int myPathIndex;
+
+    @NotNull final Path2D myScaledPath = new Path2D.Float();
+    @NotNull final Path2D myReducedPath = new Path2D.Float();
+
+    @NotNull
+    Path2D nextPath() {
+      myPathIndex = 1 - myPathIndex;
+      Path2D path = myPaths[myPathIndex];
+      path.reset();
+      return path;
+    }
+  }
+
+  private static final BasicStroke MAX_LINE_STROKE = new BasicStroke(1, CAP_SQUARE, JOIN_MITER, 10, new float[]{3.0f, 3.0f}, 0.0f);
+
   @NotNull final LineChartModel myModel;
 
   /**
@@ -109,6 +136,24 @@ public class LineChart extends AnimatedComponent {
 
   private Map<LineConfig, DashInfo> myDashInfoCache = new HashMap<>();
 
+  @NotNull
+  private final Map<RangedContinuousSeries, SeriesBuffers> mySeriesBuffers = new HashMap<>();
+
+  /**
+   * The sum of the stacked series drawn so far in the current frame.
+   */
+  @NotNull
+  private final LongSeriesBuffer myStackedData = new LongSeriesBuffer();
+
+  @NotNull
+  private final AffineTransform myScale = new AffineTransform();
+
+  @NotNull
+  private final List<Path2D> myTransformedPaths = new ArrayList<>();
+
+  @NotNull
+  private final List<LineConfig> myTransformedConfigs = new ArrayList<>();
+
   @VisibleForTesting
   public LineChart(@NotNull LineChartModel model, @NotNull LineChartReducer reducer) {
     myLinePaths = new ArrayList<>();
@@ -164,12 +209,11 @@ public class LineChart extends AnimatedComponent {
   private void redraw(@NotNull Dimension dim) {
     long duration = System.nanoTime();
 
-    // Store the last stacked series to use them to increment the Y values
-    // of the current stacked series.
-    List<SeriesData<Long>> lastStackedSeries = null;
+    // Whether myStackedData holds the last stacked series, to use it to increment the Y values of the current stacked series.
+    boolean hasStackedData = false;
 
-    Deque<Path2D> orderedPaths = new ArrayDeque<>(myLinesConfig.size());
-    Deque<RangedContinuousSeries> orderedSeries = new ArrayDeque<>(myLinesConfig.size());
+    myLinePaths.clear();
+    myLinePathSeries.clear();
 
     for (RangedContinuousSeries ranged : myModel.getSeries()) {
       if (ranged.getXRange().isEmpty() || ranged.getXRange().isPoint()
@@ -178,10 +222,14 @@ public class LineChart extends AnimatedComponent {
       }
       final LineConfig config = getLineConfig(ranged);
 
-      List<SeriesData<Long>> seriesList = ranged.getSeries();
+      SeriesBuffers buffers = mySeriesBuffers.computeIfAbsent(ranged, series -> new SeriesBuffers());
+      LongSeriesBuffer data = buffers.myData;
       if (config.isStacked()) {
-        if (lastStackedSeries == null) {
-          lastStackedSeries = new ArrayList<>(seriesList);
+        // The samples of summarized series aren't aligned on x, so stacked series need all of them.
+        ranged.getSeries(data);
+        if (!hasStackedData) {
+          myStackedData.copyFrom(data);
+          hasStackedData = true;
         }
         else {
           // If the current series is stacked, increment its value by the value of the last stacked
@@ -189,15 +237,18 @@ public class LineChart extends AnimatedComponent {
           // points than the last stacked series (meaning that the last one was populated in a
           // prior iteration). In this case, ignore the new points (i.e. we take only the intersection
           // across all series).
-          for (int i = 0; i < seriesList.size() && i < lastStackedSeries.size(); ++i) {
+          for (int i = 0; i < data.size() && i < myStackedData.size(); ++i) {
             // An assumption is made here that the x values across series are aligned.
-            lastStackedSeries.get(i).value += seriesList.get(i).value;
+            myStackedData.setY(i, myStackedData.getY(i) + data.getY(i));
           }
-          seriesList = lastStackedSeries;
+          data.copyFrom(myStackedData);
         }
       }
+      else {
+        ranged.getSeries(data, dim.width);
+      }
 
-      Path2D path = new Path2D.Float();
+      Path2D path = buffers.nextPath();
       double xMin = ranged.getXRange().getMin();
       double xLength = ranged.getXRange().getLength();
       double yMin = ranged.getYRange().getMin();
@@ -207,51 +258,60 @@ public class LineChart extends AnimatedComponent {
       double firstXd = 0f;
       // Actual value of first point
       double firstX = 0;
-      seriesList = myReducer.reduceData(seriesList, config);
-      for (SeriesData<Long> data : seriesList) {
+      // The current point of the path, tracked here because Path2D#getCurrentPoint allocates.
+      boolean hasCurrentPoint = false;
+      float currentXd = 0;
+      float currentYd = 0;
+      // Reduces the copy of the data, so the stacked sum isn't affected.
+      myReducer.reduceData(data, config);
+      for (int i = 0; i < data.size(); i++) {
         // TODO: refactor to allow different types (e.g. double)
-        double xd = (data.x - xMin) / xLength;
+        double xd = (data.getX(i) - xMin) / xLength;
         // Swing's (0, 0) coordinate is in top-left. As we use bottom-left (0, 0), we need to adjust the y coordinate.
-        double yd = 1 - (data.value - yMin) / yLength;
+        double yd = 1 - (data.getY(i) - yMin) / yLength;
 
-        if (path.getCurrentPoint() == null) {
+        if (!hasCurrentPoint) {
           path.moveTo(xd, yd);
           firstXd = xd;
-          firstX = data.x;
+          firstX = data.getX(i);
+          hasCurrentPoint = true;
         }
         else {
           // If the chart is stepped, a horizontal line should be drawn from the current
           // point (e.g. (x0, y0)) to the destination's X value (e.g. (x1, y0)) before
           // drawing a line to the destination point itself (e.g. (x1, y1)).
           if (config.isStepped()) {
-            float y = (float)path.getCurrentPoint().getY();
-            path.lineTo(xd, y);
+            path.lineTo(xd, currentYd);
           }
           path.lineTo(xd, yd);
         }
+        // Path2D.Float stores the coordinates as floats.
+        currentXd = (float)xd;
+        currentYd = (float)yd;
       }
 
-      if (myFillEndGap && path.getCurrentPoint() != null) {
+      if (myFillEndGap && hasCurrentPoint) {
         // Extends the last point on the path to the end
-        path.lineTo(Math.max(path.getCurrentPoint().getX(), 1f), path.getCurrentPoint().getY());
+        currentXd = Math.max(currentXd, 1f);
+        path.lineTo(currentXd, currentYd);
       }
 
-      if (config.isFilled() && path.getCurrentPoint() != null) {
+      if (config.isFilled() && hasCurrentPoint) {
         // If the chart is filled, draw a line from the last point to X
         // axis and another one from this new point to the first destination point.
-        path.lineTo(path.getCurrentPoint().getX(), 1f);
+        path.lineTo(currentXd, 1f);
         path.lineTo(firstXd, 1f);
       }
 
       if (config.isFilled()) {
         // Draw the filled lines first, otherwise other lines won't be visible.
         // Also, to draw stacked and filled lines correctly, they need to be drawn in reverse order to their adding order.
-        orderedPaths.addFirst(path);
-        orderedSeries.addFirst(ranged);
+        myLinePaths.add(0, path);
+        myLinePathSeries.add(0, ranged);
       }
       else {
-        orderedPaths.addLast(path);
-        orderedSeries.addLast(ranged);
+        myLinePaths.add(path);
+        myLinePathSeries.add(ranged);
       }
 
       if (config.isDash() && config.isAdjustDash()) {
@@ -276,11 +336,8 @@ public class LineChart extends AnimatedComponent {
       }
     }
 
-    myLinePaths.clear();
-    myLinePaths.addAll(orderedPaths);
-
-    myLinePathSeries.clear();
-    myLinePathSeries.addAll(orderedSeries);
+    // Drop the buffers of the series removed from the model.
+    mySeriesBuffers.keySet().retainAll(myModel.getSeries());
 
     addDebugInfo("postAnimate time: %d ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - duration));
   }
@@ -310,23 +367,29 @@ public class LineChart extends AnimatedComponent {
     addDebugInfo("Redraws in the last second %d", myLastRedraws);
 
     g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-    AffineTransform scale = new AffineTransform(dim.getWidth(), 0, 0, dim.getHeight() - myTopPadding, myXOffset, myYOffset + myTopPadding);
+    myScale.setTransform(dim.getWidth(), 0, 0, dim.getHeight() - myTopPadding, myXOffset, myYOffset + myTopPadding);
 
     if (myShowMaxLine) {
       g2d.setColor(myMaxLineColor);
-      g2d.setStroke(new BasicStroke(1, CAP_SQUARE, JOIN_MITER, 10, new float[]{3.0f, 3.0f}, 0.0f));
+      g2d.setStroke(MAX_LINE_STROKE);
       g2d.drawLine(myMaxLineMargin, 0, dim.width, 0);
     }
 
     // Cache the transformed line paths for reuse below.
-    List<Path2D> transformedPaths = new ArrayList<>(myLinePaths.size());
-    List<LineConfig> configs = new ArrayList<>(myLinePaths.size());
+    List<Path2D> transformedPaths = myTransformedPaths;
+    List<LineConfig> configs = myTransformedConfigs;
+    transformedPaths.clear();
+    configs.clear();
 
     for (int i = 0; i < myLinePaths.size(); ++i) {
-      Path2D scaledPath = new Path2D.Float(myLinePaths.get(i), scale);
+      SeriesBuffers buffers = mySeriesBuffers.get(myLinePathSeries.get(i));
+      Path2D scaledPath = buffers.myScaledPath;
+      scaledPath.reset();
+      scaledPath.append(myLinePaths.get(i).getPathIterator(myScale), false);
       LineConfig config = getLineConfig(myLinePathSeries.get(i));
       configs.add(config);
-      scaledPath = myReducer.reducePath(scaledPath, config);
+      myReducer.reducePath(scaledPath, config, buffers.myReducedPath);
+      scaledPath = buffers.myReducedPath;
       transformedPaths.add(scaledPath);
 
       if (isDrawDebugInfo()) {
@@ -15,9 +15,12 @@
  */
 package com.android.tools.adtui.chart.linechart;
 
+import com.android.tools.adtui.model.LongSeriesBuffer;
 import com.android.tools.adtui.model.SeriesData;
+import org.jetbrains.annotations.NotNull;
 
 import java.awt.geom.Path2D;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -36,4 +39,30 @@ public interface LineChartReducer {
    * The result shouldn't affect the looking of the line when it's drawn.
    */
   Path2D reducePath(Path2D path, LineConfig config);
+
+  /**
+   * Same as {@link #reduceData(List, LineConfig)}, but reduces {@code data} in place. {@link LineChart} calls this version every frame,
+   * implementations should override it so that it doesn't allocate.
+   */
+  default void reduceData(@NotNull LongSeriesBuffer data, @NotNull LineConfig config) {
+    List<SeriesData<Long>> list = new ArrayList<>(data.size());
+    for (int i = 0; i < data.size(); i++) {
+      list.add(new SeriesData<>(data.getX(i), data.getY(i)));
+    }
+    List<SeriesData<Long>> reduced = reduceData(list, config);
+    data.clear();
+    for (SeriesData<Long> sample : reduced) {
+      data.add(sample.x, sample.value);
+    }
+  }
+
+  /**
+   * Same as {@link #reducePath(Path2D, LineConfig)}, but writes the reduced path into {@code result}, which is reset first.
+   * {@link LineChart} calls this version every frame, implementations should override it so that it doesn't allocate.
+   */
+  default void reducePath(@NotNull Path2D path, @NotNull LineConfig config, @NotNull Path2D result) {
+    Path2D reduced = reducePath(path, config);
+    result.reset();
+    result.append(reduced, false);
+  }
 }
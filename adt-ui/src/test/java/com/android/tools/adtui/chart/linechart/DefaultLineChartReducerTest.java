@@ -15,6 +15,7 @@
  */
 package com.android.tools.adtui.chart.linechart;
 
+import com.android.tools.adtui.model.LongSeriesBuffer;
 import com.android.tools.adtui.model.SeriesData;
 import com.google.common.collect.ImmutableList;
 import org.junit.Before;
@@ -89,6 +90,46 @@ public class DefaultLineChartReducerTest {
     assertSeriesEquals(expected, result);
   }
 
+  @Test
+  public void reduceDataInPlaceMatchesReduceData() {
+    Random random = new Random(1);
+    for (boolean stepped : new boolean[]{false, true}) {
+      myConfig.setStepped(stepped);
+      List<SeriesData<Long>> data = new ArrayList<>();
+      LongSeriesBuffer buffer = new LongSeriesBuffer();
+      for (int i = 0; i < 1000; i++) {
+        long value = random.nextInt(3);
+        data.add(new SeriesData<>(i, value));
+        buffer.add(i, value);
+      }
+
+      List<SeriesData<Long>> expected = myReducer.reduceData(data, myConfig);
+      myReducer.reduceData(buffer, myConfig);
+      List<SeriesData<Long>> result = new ArrayList<>();
+      for (int i = 0; i < buffer.size(); i++) {
+        result.add(new SeriesData<>(buffer.getX(i), buffer.getY(i)));
+      }
+      assertSeriesEquals(expected, result);
+    }
+  }
+
+  @Test
+  public void reducePathIntoReusedPath() {
+    float[][] given = {{0, 5}, {0.1f, 5}, {0.1f, 4}, {0.2f, 4}, {0.2f, 6}, {0.3f, 6}, {0.3f, 4.1f}, {0.5f, 4.1f}, {0.5f, 4.9f}, {3, 4.9f}};
+    convertToScreenCoordinates(given);
+    Path2D result = new Path2D.Float();
+    result.moveTo(42, 42);
+
+    for (boolean stepped : new boolean[]{false, true, false}) {
+      myConfig.setStepped(stepped);
+      myReducer.reducePath(convertToPath(given), myConfig, result);
+      assertPointsEquals(convertToArray(myReducer.reducePath(convertToPath(given), myConfig)), convertToArray(result));
+    }
+
+    myReducer.reducePath(new Path2D.Float(), myConfig, result);
+    assertThat(result.getCurrentPoint()).isNull();
+  }
+
   @Test
   public void simpleReducePath() {
     float[][] given = {{0, 0}, {0.1f, 1}, {0.2f, 6}, {0.3f, 4}, {1, 2}, {1.1f, 5}};
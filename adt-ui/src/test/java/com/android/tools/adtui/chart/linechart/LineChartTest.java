@@ -18,9 +18,13 @@ package com.android.tools.adtui.chart.linechart;
 import com.android.tools.adtui.model.*;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.concurrent.TimeUnit;
 
 import static java.awt.BasicStroke.CAP_SQUARE;
@@ -207,6 +211,54 @@ public class LineChartTest {
     Assert.assertEquals(0, config.getAdjustedDashPhase(), LineChart.EPSILON);
   }
 
+  /**
+   * Streams a ten minute, four series, stacked memory-like chart and checks that drawing frames doesn't allocate in proportion to the
+   * number of samples in view.
+   */
+  @Test
+  public void testStreamingFramesDontAllocatePerSample() throws Exception {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)bean;
+    Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+    long samplesPerSecond = 10;
+    long viewLengthMs = TimeUnit.MINUTES.toMillis(10);
+    LineChartModel model = new LineChartModel();
+    Range xRange = new Range(0, viewLengthMs);
+    Range yRange = new Range(0, 0);
+    LineChart chart = new LineChart(model);
+    for (int i = 0; i < 4; i++) {
+      LongDataSeries series = new LongDataSeries();
+      for (long x = 0; x <= 2 * viewLengthMs; x += 1000 / samplesPerSecond) {
+        series.add(x, (x / 1000 + i) % 7 * 1024);
+      }
+      RangedContinuousSeries rangedSeries = new RangedContinuousSeries("series" + i, xRange, yRange, series);
+      model.add(rangedSeries);
+      chart.configure(rangedSeries, new LineConfig(LineConfig.getColor(i)).setStacked(true).setFilled(true));
+    }
+    chart.setSize(1000, 200);
+    Graphics2D graphics = new BufferedImage(1000, 200, BufferedImage.TYPE_INT_ARGB).createGraphics();
+
+    // Warm up, so the reused buffers have grown to their final size.
+    int frames = 100;
+    for (int i = 0; i < frames; i++) {
+      shiftRangeAndRepaintChart(chart, model, xRange, graphics, 100);
+    }
+
+    long threadId = Thread.currentThread().getId();
+    long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < frames; i++) {
+      shiftRangeAndRepaintChart(chart, model, xRange, graphics, 100);
+    }
+    long bytesPerFrame = (threadBean.getThreadAllocatedBytes(threadId) - allocatedBytes) / frames;
+    long samplesInView = 4 * viewLengthMs / 1000 * samplesPerSecond;
+
+    // Boxing the samples in view alone would take more than 16 bytes per sample, the bound leaves room for the Java2D allocations.
+    Assert.assertTrue("Allocated " + bytesPerFrame + " bytes per frame for " + samplesInView + " samples",
+                      bytesPerFrame < samplesInView);
+  }
+
   private void shiftRangeAndRepaintChart(@NotNull LineChart chart,
                                          @NotNull LineChartModel model,
                                          @NotNull Range range,
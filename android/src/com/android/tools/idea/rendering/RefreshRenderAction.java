@@ -62,6 +62,7 @@ public class RefreshRenderAction extends AnAction {
       AndroidFacet facet = AndroidFacet.getInstance(configuration.getModule());
       if (facet != null) {
         facet.refreshResources();
+        RenderService.getInstance(facet).getResultCache().clear();
       }
 
       configuration.updated(ConfigurationListener.MASK_RENDERING);
@@ -40,6 +40,7 @@ public class RenderResult {
   @NotNull private final Result myRenderResult;
   @NotNull private final Map<Object, PropertiesMap> myDefaultProperties;
   @NotNull private final Module myModule;
+  @NotNull private final RenderResultStats myStats;
 
   protected RenderResult(@NotNull PsiFile file,
                          @NotNull Module module,
@@ -50,6 +51,19 @@ public class RenderResult {
                          @NotNull List<ViewInfo> systemRootViews,
                          @NotNull ImagePool.Image image,
                          @NotNull Map<Object, PropertiesMap> defaultProperties) {
+    this(file, module, logger, renderTask, renderResult, rootViews, systemRootViews, image, defaultProperties, RenderResultStats.EMPTY);
+  }
+
+  private RenderResult(@NotNull PsiFile file,
+                       @NotNull Module module,
+                       @NotNull RenderLogger logger,
+                       @Nullable RenderTask renderTask,
+                       @NotNull Result renderResult,
+                       @NotNull List<ViewInfo> rootViews,
+                       @NotNull List<ViewInfo> systemRootViews,
+                       @NotNull ImagePool.Image image,
+                       @NotNull Map<Object, PropertiesMap> defaultProperties,
+                       @NotNull RenderResultStats stats) {
     myRenderTask = renderTask;
     myModule = module;
     myFile = file;
@@ -59,6 +73,16 @@ public class RenderResult {
     mySystemRootViews = systemRootViews;
     myImage = image;
     myDefaultProperties = defaultProperties;
+    myStats = stats;
+  }
+
+  /**
+   * Returns a copy of this result with the timings of the render that produced it.
+   */
+  @NotNull
+  RenderResult createWithStats(@NotNull RenderResultStats stats) {
+    return new RenderResult(myFile, myModule, myLogger, myRenderTask, myRenderResult, myRootViews, mySystemRootViews, myImage,
+                            myDefaultProperties, stats);
   }
 
   /**
@@ -182,6 +206,11 @@ public class RenderResult {
     return myDefaultProperties;
   }
 
+  @NotNull
+  public RenderResultStats getStats() {
+    return myStats;
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this)
@@ -189,6 +218,7 @@ public class RenderResult {
       .add("psiFile", myFile)
       .add("rootViews", myRootViews)
       .add("systemViews", mySystemRootViews)
+      .add("stats", myStats)
       .toString();
   }
 }
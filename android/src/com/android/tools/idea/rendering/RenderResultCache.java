@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.ide.common.rendering.api.ViewInfo;
+import com.android.ide.common.res2.ResourceItem;
+import com.android.resources.ResourceType;
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.res.AppResourceRepository;
+import com.android.tools.idea.res.LocalResourceRepository;
+import com.android.tools.idea.res.PsiProjectListener;
+import com.android.tools.idea.res.ResourceNotificationManager.ResourceVersion;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.xml.XmlTag;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded cache of successful {@link RenderResult}s, so that showing a layout again (e.g. when switching back to its editor) can reuse
+ * the image and view hierarchy of the last render instead of inflating and rendering the layout again.
+ *
+ * <p>A result is only returned for a {@link Key} describing exactly what it was rendered from: the contents of the file and of the layouts
+ * it references, the {@link Configuration} and its modification count, the generations of the resources and the project (see
+ * {@link ResourceVersion}) and the count of edits to other resource files (see {@link PsiProjectListener#getResourceEditCount()}),
+ * since editing a drawable or a color state list doesn't change the generation of the resources. Any change to one of them produces a
+ * different key, so entries never need to be invalidated explicitly; stale ones are simply evicted. The entries are weighed by the pixels
+ * of their images and held softly.
+ */
+public final class RenderResultCache {
+  /** Enough for a few full screen renders of a large device. */
+  private static final int MAX_CACHED_PIXELS = 4 * 2560 * 1440;
+
+  private final Cache<Key, RenderResult> myCache;
+
+  public RenderResultCache() {
+    this(MAX_CACHED_PIXELS);
+  }
+
+  @VisibleForTesting
+  RenderResultCache(int maxCachedPixels) {
+    // A single segment, since the weight limit is split between segments and a render of a large device would exceed a fraction of it
+    myCache = CacheBuilder.newBuilder()
+      .concurrencyLevel(1)
+      .maximumWeight(maxCachedPixels)
+      .weigher((Key key, RenderResult result) -> result.hasImage()
+                                                 ? result.getRenderedImage().getWidth() * result.getRenderedImage().getHeight()
+                                                 : 0)
+      .softValues()
+      .build();
+  }
+
+  /**
+   * Returns the result cached for {@code key}, or null if there is none or if the PSI of the file was recreated since the result was
+   * rendered, since the view hierarchy of the result then refers to invalid tags.
+   */
+  @Nullable
+  public RenderResult get(@NotNull Key key) {
+    RenderResult result = myCache.getIfPresent(key);
+    if (result == null) {
+      return null;
+    }
+    if (!ApplicationManager.getApplication().runReadAction(
+      (Computable<Boolean>)() -> result.getFile().isValid() && hasValidTags(result.getSystemRootViews()))) {
+      myCache.invalidate(key);
+      return null;
+    }
+    return result;
+  }
+
+  /**
+   * Caches {@code result} for {@code key}. Results of failed renders aren't cached.
+   */
+  public void put(@NotNull Key key, @NotNull RenderResult result) {
+    if (result.getRenderResult().isSuccess() && result.hasImage() && !result.getLogger().hasErrors()) {
+      myCache.put(key, result);
+    }
+  }
+
+  public void clear() {
+    myCache.invalidateAll();
+  }
+
+  @VisibleForTesting
+  long size() {
+    myCache.cleanUp();
+    return myCache.size();
+  }
+
+  private static boolean hasValidTags(@NotNull List<ViewInfo> views) {
+    for (ViewInfo view : views) {
+      Object cookie = view.getCookie();
+      if (cookie instanceof TagSnapshot) {
+        XmlTag tag = ((TagSnapshot)cookie).tag;
+        if (tag != null && !tag.isValid()) {
+          return false;
+        }
+      }
+      if (!hasValidTags(view.getChildren())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * What a render result depends on. Keys are compared by the hash of the file contents rather than its modification stamp, so that an
+   * edit that is undone maps back to the result rendered before it.
+   */
+  public static final class Key {
+    /** References to project layouts, e.g. from {@code <include>}, {@code tools:layout} or {@code tools:listitem}. */
+    private static final Pattern LAYOUT_REFERENCE = Pattern.compile("@layout/([\\w.]+)");
+
+    @NotNull private final VirtualFile myFile;
+    @NotNull private final HashCode myContentHash;
+    @NotNull private final Configuration myConfiguration;
+    private final long myConfigurationModificationCount;
+    @NotNull private final ResourceVersion myVersion;
+    private final long myResourceEditCount;
+    private final boolean myDesignMode;
+    @Nullable private final String myAdaptiveIconMaskPath;
+
+    private Key(@NotNull VirtualFile file,
+                @NotNull HashCode contentHash,
+                @NotNull Configuration configuration,
+                @NotNull ResourceVersion version,
+                long resourceEditCount,
+                boolean designMode,
+                @Nullable String adaptiveIconMaskPath) {
+      myFile = file;
+      myContentHash = contentHash;
+      myConfiguration = configuration;
+      myConfigurationModificationCount = configuration.getModificationCount();
+      myVersion = version.withoutFileGeneration();
+      myResourceEditCount = resourceEditCount;
+      myDesignMode = designMode;
+      myAdaptiveIconMaskPath = adaptiveIconMaskPath;
+    }
+
+    /**
+     * @param version              the version of the resources the file is rendered with, see
+     *                             {@link com.android.tools.idea.res.ResourceNotificationManager#getCurrentVersion}
+     * @param designMode           whether the file is rendered with {@link RenderTask#useDesignMode}
+     * @param adaptiveIconMaskPath the mask set with {@link LayoutlibCallbackImpl#setAdaptiveIconMaskPath}
+     * @return the key, or null if the file isn't backed by a {@link VirtualFile}
+     */
+    @Nullable
+    public static Key create(@NotNull PsiFile file,
+                             @NotNull Configuration configuration,
+                             @NotNull ResourceVersion version,
+                             boolean designMode,
+                             @Nullable String adaptiveIconMaskPath) {
+      VirtualFile virtualFile = file.getVirtualFile();
+      if (virtualFile == null) {
+        return null;
+      }
+      HashCode contentHash =
+        ApplicationManager.getApplication().runReadAction((Computable<HashCode>)() -> hashContents(file, configuration));
+      long resourceEditCount = PsiProjectListener.getInstance(file.getProject()).getResourceEditCount();
+      return new Key(virtualFile, contentHash, configuration, version, resourceEditCount, designMode, adaptiveIconMaskPath);
+    }
+
+    /**
+     * Hashes the text of {@code file} and of every project layout it references, directly or through another referenced layout. Their
+     * views are inflated as part of the file, and editing their attributes doesn't change the generation of the resources.
+     */
+    @NotNull
+    private static HashCode hashContents(@NotNull PsiFile file, @NotNull Configuration configuration) {
+      Hasher hasher = Hashing.murmur3_128().newHasher();
+      AppResourceRepository resources = AppResourceRepository.getOrCreateInstance(configuration.getModule());
+      Set<String> visitedLayouts = new HashSet<>();
+      Deque<PsiFile> files = new ArrayDeque<>();
+      files.add(file);
+      while (!files.isEmpty()) {
+        String text = files.remove().getText();
+        hasher.putInt(text.length()).putUnencodedChars(text);
+        if (resources == null) {
+          continue;
+        }
+        Matcher matcher = LAYOUT_REFERENCE.matcher(text);
+        while (matcher.find()) {
+          String layoutName = matcher.group(1);
+          if (!visitedLayouts.add(layoutName)) {
+            continue;
+          }
+          List<ResourceItem> items = resources.getResourceItem(ResourceType.LAYOUT, layoutName);
+          if (items == null) {
+            continue;
+          }
+          for (ResourceItem item : items) {
+            PsiFile layoutFile = LocalResourceRepository.getItemPsiFile(configuration.getModule().getProject(), item);
+            if (layoutFile != null) {
+              files.add(layoutFile);
+            }
+          }
+        }
+      }
+      return hasher.hash();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      Key key = (Key)o;
+      return myFile.equals(key.myFile) &&
+             myContentHash.equals(key.myContentHash) &&
+             // Configurations don't implement equals, each file has its own instance.
+             myConfiguration == key.myConfiguration &&
+             myConfigurationModificationCount == key.myConfigurationModificationCount &&
+             myVersion.equals(key.myVersion) &&
+             myResourceEditCount == key.myResourceEditCount &&
+             myDesignMode == key.myDesignMode &&
+             Objects.equals(myAdaptiveIconMaskPath, key.myAdaptiveIconMaskPath);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myFile, myContentHash, System.identityHashCode(myConfiguration), myConfigurationModificationCount, myVersion,
+                          myResourceEditCount, myDesignMode, myAdaptiveIconMaskPath);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+        .add("file", myFile.getPath())
+        .add("contentHash", myContentHash)
+        .add("configurationModificationCount", myConfigurationModificationCount)
+        .add("version", myVersion)
+        .add("resourceEditCount", myResourceEditCount)
+        .add("designMode", myDesignMode)
+        .toString();
+    }
+  }
+}
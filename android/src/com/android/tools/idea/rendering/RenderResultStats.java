@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Timings of the render that produced a {@link RenderResult}. Steps that didn't run for the result (e.g. the inflate when the render
+ * reused an existing session) are -1.
+ */
+public final class RenderResultStats {
+  public static final RenderResultStats EMPTY = new RenderResultStats(-1, -1, -1);
+
+  private final long myQueueWaitMs;
+  private final long myInflateDurationMs;
+  private final long myRenderDurationMs;
+
+  public RenderResultStats(long queueWaitMs, long inflateDurationMs, long renderDurationMs) {
+    myQueueWaitMs = queueWaitMs;
+    myInflateDurationMs = inflateDurationMs;
+    myRenderDurationMs = renderDurationMs;
+  }
+
+  /**
+   * Returns how long the actions of this render waited for the render thread.
+   */
+  public long getQueueWaitMs() {
+    return myQueueWaitMs;
+  }
+
+  public long getInflateDurationMs() {
+    return myInflateDurationMs;
+  }
+
+  public long getRenderDurationMs() {
+    return myRenderDurationMs;
+  }
+
+  /**
+   * Returns the timings of a render that ran after the inflate {@code inflateStats} comes from.
+   */
+  @NotNull
+  public RenderResultStats withInflate(@NotNull RenderResultStats inflateStats) {
+    long queueWaitMs = inflateStats.myQueueWaitMs >= 0 ? inflateStats.myQueueWaitMs + Math.max(myQueueWaitMs, 0) : myQueueWaitMs;
+    return new RenderResultStats(queueWaitMs, inflateStats.myInflateDurationMs, myRenderDurationMs);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+      .add("queueWaitMs", myQueueWaitMs)
+      .add("inflateDurationMs", myInflateDurationMs)
+      .add("renderDurationMs", myRenderDurationMs)
+      .toString();
+  }
+}
@@ -54,9 +54,12 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.io.IOException;
+import java.util.Comparator;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 
 import static com.android.SdkConstants.TAG_PREFERENCE_SCREEN;
 import static com.intellij.lang.annotation.HighlightSeverity.ERROR;
@@ -71,14 +74,26 @@ public class RenderService extends AndroidFacetScopedService {
                                                                               ApplicationManager.getApplication().isUnitTestMode()
                                                                               ? 60
                                                                               : 6));
+  /** Number of ms that a synchronous render action waits in total, behind other actions and running, before timing out */
+  private static final long DEFAULT_RENDER_QUEUE_TIMEOUT_MS = Long.getLong("layoutlib.queue.timeout", 5 * DEFAULT_RENDER_THREAD_TIMEOUT_MS);
   /** Number of ms that we will keep the render thread alive when idle */
   private static final long RENDER_THREAD_IDLE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
 
   @VisibleForTesting
   public static long ourRenderThreadTimeoutMs = DEFAULT_RENDER_THREAD_TIMEOUT_MS;
+  @VisibleForTesting
+  public static long ourRenderQueueTimeoutMs = DEFAULT_RENDER_QUEUE_TIMEOUT_MS;
+  /** The clock timing the render actions, in ns. */
+  @VisibleForTesting
+  static LongSupplier ourClock = System::nanoTime;
   private static final AtomicReference<Thread> ourRenderingThread = new AtomicReference<>();
   private static ExecutorService ourRenderingExecutor;
+  /** Orders the render actions with the same priority in submission order, since the priority queue isn't FIFO. */
+  private static final AtomicLong ourRenderActionSequence = new AtomicLong();
   private static final AtomicInteger ourTimeoutExceptionCounter = new AtomicInteger(0);
+  private static final long NOT_RUNNING = Long.MIN_VALUE;
+  /** When the render thread started the action it's running, {@link #NOT_RUNNING} if it's idle. */
+  private static volatile long ourRunningActionStartNs = NOT_RUNNING;
 
   private static final Key<RenderService> KEY = Key.create(RenderService.class.getName());
 
@@ -88,10 +103,22 @@ public class RenderService extends AndroidFacetScopedService {
     ShutDownTracker.getInstance().registerShutdownTask(RenderService::shutdownRenderExecutor);
   }
 
+  /**
+   * The priority of render actions waiting for the render thread. Renders for the visible editors go before background renders, like
+   * thumbnails and icons, that were queued earlier.
+   */
+  public enum RenderPriority {
+    INTERACTIVE,
+    BACKGROUND
+  }
+
   private static void innerInitializeRenderExecutor() {
+    // Layoutlib isn't thread safe (its state is static and a global lock guards every session), so there is still a single render thread;
+    // the queue decides which action it runs next.
     ourRenderingExecutor = new ThreadPoolExecutor(0, 1,
                              RENDER_THREAD_IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS,
-                             new LinkedBlockingQueue<>(),
+                             new PriorityBlockingQueue<>(11, Comparator.comparing((Runnable r) -> ((RenderAction)r).myPriority)
+                               .thenComparingLong(r -> ((RenderAction)r).mySequence)),
                              (Runnable r) -> {
                                Thread renderingThread =
                                  new Thread(null, r, "Layoutlib Render Thread");
@@ -142,6 +169,8 @@ public class RenderService extends AndroidFacetScopedService {
 
   private final ImagePool myImagePool = new ImagePool();
 
+  private final RenderResultCache myResultCache = new RenderResultCache();
+
   /**
    * @return the {@linkplain RenderService} for the given facet.
    */
@@ -317,6 +346,15 @@ public class RenderService extends AndroidFacetScopedService {
   protected void onServiceDisposal(@NotNull AndroidFacet facet) {
     facet.putUserData(KEY, null);
     myImagePool.dispose();
+    myResultCache.clear();
+  }
+
+  /**
+   * Returns the cache of the results of the renders of this facet's files.
+   */
+  @NotNull
+  public RenderResultCache getResultCache() {
+    return myResultCache;
   }
 
   @NotNull
@@ -368,18 +406,30 @@ public class RenderService extends AndroidFacetScopedService {
    * method.
    */
   public static <T> T runRenderAction(@NotNull Callable<T> callable) throws Exception {
+    return runRenderAction(callable, RenderPriority.INTERACTIVE);
+  }
+
+  /**
+   * Runs a action that requires the rendering lock with the given priority. Layoutlib is not thread safe so any rendering actions should
+   * be called using this method.
+   */
+  public static <T> T runRenderAction(@NotNull Callable<T> callable, @NotNull RenderPriority priority) throws Exception {
     try {
       // If the number of timeouts exceeds a certain threshold, stop waiting so the caller doesn't block. We try to submit a task that
       // clean-up the timeout counter instead. If it goes through, it means the queue is free.
       if (ourTimeoutExceptionCounter.get() > 3) {
-        ourRenderingExecutor.submit(() -> ourTimeoutExceptionCounter.set(0)).get(50, TimeUnit.MILLISECONDS);
+        submit(Executors.callable(() -> ourTimeoutExceptionCounter.set(0)), priority).get(50, TimeUnit.MILLISECONDS);
       }
-      T result = ourRenderingExecutor.submit(callable).get(ourRenderThreadTimeoutMs, TimeUnit.MILLISECONDS);
+      T result = waitForRenderAction(submit(callable, priority));
       // The executor seems to be taking tasks so reset the counter
       ourTimeoutExceptionCounter.set(0);
 
       return result;
     }
+    catch (RenderQueueTimeoutException e) {
+      // The render thread is busy rather than stuck, so this doesn't make the following actions fail fast.
+      throw new TimeoutException("Preview timed out waiting for other layouts to render.");
+    }
     catch (TimeoutException e) {
       ourTimeoutExceptionCounter.incrementAndGet();
 
@@ -394,6 +444,43 @@ public class RenderService extends AndroidFacetScopedService {
     }
   }
 
+  /**
+   * Waits for {@code future} until the render thread spends more than {@link #ourRenderThreadTimeoutMs} on a single action, either this
+   * one or one queued before it. The time spent waiting behind actions that finish in time doesn't count, so a background action queued
+   * behind many interactive renders doesn't time out, nor make the following renders fail fast. It is still capped by
+   * {@link #ourRenderQueueTimeoutMs}, after which the action is cancelled, so that a caller doesn't wait behind a stream of interactive
+   * renders forever.
+   */
+  private static <T> T waitForRenderAction(@NotNull Future<T> future) throws Exception {
+    long timeoutNs = TimeUnit.MILLISECONDS.toNanos(ourRenderThreadTimeoutMs);
+    long deadlineNs = ourClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(ourRenderQueueTimeoutMs);
+    while (true) {
+      long actionStartNs = ourRunningActionStartNs;
+      long nowNs = ourClock.getAsLong();
+      long waitNs = actionStartNs == NOT_RUNNING ? timeoutNs : actionStartNs + timeoutNs - nowNs;
+      if (waitNs <= 0) {
+        throw new TimeoutException();
+      }
+      if (deadlineNs - nowNs <= 0) {
+        future.cancel(false);
+        throw new RenderQueueTimeoutException();
+      }
+      try {
+        return future.get(Math.min(waitNs, deadlineNs - nowNs), TimeUnit.NANOSECONDS);
+      }
+      catch (TimeoutException ignored) {
+        // Either the render thread moved on to another action, which gets its own time, or the running action is over time, or this
+        // action waited too long in total.
+      }
+    }
+  }
+
+  /**
+   * Thrown by {@link #waitForRenderAction(Future)} when an action waited longer than {@link #ourRenderQueueTimeoutMs} in total.
+   */
+  private static final class RenderQueueTimeoutException extends TimeoutException {
+  }
+
   /**
    * Runs an action that requires the rendering lock. Layoutlib is not thread safe so any rendering actions should be called using this
    * method.
@@ -402,10 +489,18 @@ public class RenderService extends AndroidFacetScopedService {
    */
   @NotNull
   public static <T> ListenableFuture<T> runAsyncRenderAction(@NotNull Callable<T> callable) {
-    ListenableFutureTask<T> future = ListenableFutureTask.create(callable);
-    ourRenderingExecutor.submit(future);
+    return runAsyncRenderAction(callable, RenderPriority.INTERACTIVE);
+  }
 
-    return future;
+  /**
+   * Runs an action that requires the rendering lock with the given priority. Layoutlib is not thread safe so any rendering actions should
+   * be called using this method.
+   * <p/>
+   * This method will run the passed action asynchronously and return a {@link ListenableFuture}
+   */
+  @NotNull
+  public static <T> ListenableFuture<T> runAsyncRenderAction(@NotNull Callable<T> callable, @NotNull RenderPriority priority) {
+    return submit(callable, priority);
   }
 
   /**
@@ -415,7 +510,40 @@ public class RenderService extends AndroidFacetScopedService {
    * This method will run the passed action asynchronously
    */
   public static void runAsyncRenderAction(@NotNull Runnable runnable) {
-    ourRenderingExecutor.submit(runnable);
+    submit(Executors.callable(runnable), RenderPriority.INTERACTIVE);
+  }
+
+  @NotNull
+  private static <T> ListenableFuture<T> submit(@NotNull Callable<T> callable, @NotNull RenderPriority priority) {
+    ListenableFutureTask<T> future = ListenableFutureTask.create(callable);
+    ourRenderingExecutor.execute(new RenderAction(future, priority, ourRenderActionSequence.getAndIncrement()));
+    return future;
+  }
+
+  /**
+   * An action in the queue of the render thread, see {@link RenderPriority}.
+   */
+  private static final class RenderAction implements Runnable {
+    @NotNull private final Runnable myRunnable;
+    @NotNull private final RenderPriority myPriority;
+    private final long mySequence;
+
+    private RenderAction(@NotNull Runnable runnable, @NotNull RenderPriority priority, long sequence) {
+      myRunnable = runnable;
+      myPriority = priority;
+      mySequence = sequence;
+    }
+
+    @Override
+    public void run() {
+      ourRunningActionStartNs = ourClock.getAsLong();
+      try {
+        myRunnable.run();
+      }
+      finally {
+        ourRunningActionStartNs = NOT_RUNNING;
+      }
+    }
   }
 
 
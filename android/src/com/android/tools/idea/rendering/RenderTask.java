@@ -44,6 +44,7 @@ import com.android.tools.idea.res.AppResourceRepository;
 import com.android.tools.idea.res.AssetRepositoryImpl;
 import com.android.tools.idea.res.ResourceHelper;
 import com.android.tools.idea.ui.designer.EditorDesignSurface;
+import com.android.annotations.concurrency.GuardedBy;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
@@ -151,6 +152,15 @@ public class RenderTask implements IImageFactory {
   private final List<ListenableFuture<?>> myRunningFutures = new LinkedList<>();
   private AtomicBoolean isDisposed = new AtomicBoolean(false);
 
+  @NotNull private RenderService.RenderPriority myPriority = RenderService.RenderPriority.INTERACTIVE;
+  /**
+   * The render queued by {@link #renderInner()} that didn't start yet. It renders the state of the task at the time it runs, so later
+   * render requests return it instead of queueing another render.
+   */
+  @GuardedBy("myPendingRenderLock")
+  @Nullable private ListenableFuture<RenderResult> myPendingRender;
+  private final Object myPendingRenderLock = new Object();
+
   /**
    * Don't create this task directly; obtain via {@link RenderService}
    */
@@ -275,8 +285,9 @@ public class RenderTask implements IImageFactory {
         // Wait for all current running operations to complete
         Futures.successfulAsList(currentRunningFutures).get(5, TimeUnit.SECONDS);
       }
-      catch (InterruptedException | ExecutionException e) {
-        // We do not care about these exceptions since we are disposing the task anyway
+      catch (InterruptedException | ExecutionException | TimeoutException e) {
+        // We do not care about these exceptions since we are disposing the task anyway, the session is disposed after the actions
+        // already queued on the render thread
         LOG.debug(e);
       }
       myLayoutlibCallback.setLogger(IRenderLogger.NULL_LOGGER);
@@ -355,6 +366,21 @@ public class RenderTask implements IImageFactory {
     return this;
   }
 
+  /**
+   * Sets the priority of the render actions of this task in the render queue. The default is
+   * {@link RenderService.RenderPriority#INTERACTIVE}, tasks rendering thumbnails or icons that aren't waited for should use
+   * {@link RenderService.RenderPriority#BACKGROUND}.
+   *
+   * @param priority the priority of the render actions of this task
+   * @return this (such that chains of setters can be stringed together)
+   */
+  @SuppressWarnings("UnusedReturnValue")
+  @NotNull
+  public RenderTask setPriority(@NotNull RenderService.RenderPriority priority) {
+    myPriority = priority;
+    return this;
+  }
+
   /**
    * Sets the overriding background color to be used, if any. The color should be a
    * bitmask of AARRGGBB. The default is null.
@@ -642,7 +668,7 @@ public class RenderTask implements IImageFactory {
     }
 
     synchronized (myRunningFutures) {
-      ListenableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable);
+      ListenableFuture<V> newFuture = RenderService.runAsyncRenderAction(callable, myPriority);
       Futures.addCallback(newFuture, new FutureCallback<V>() {
         @Override
         public void onSuccess(@Nullable V result) {
@@ -678,14 +704,23 @@ public class RenderTask implements IImageFactory {
     }
 
     try {
-      return RenderService.runRenderAction(() -> createRenderSession((width, height) -> {
-        if (myImageFactoryDelegate != null) {
-          return myImageFactoryDelegate.getImage(width, height);
-        }
+      long queuedNs = System.nanoTime();
+      return RenderService.runRenderAction(() -> {
+        long startNs = System.nanoTime();
+        RenderResult result = createRenderSession((width, height) -> {
+          if (myImageFactoryDelegate != null) {
+            return myImageFactoryDelegate.getImage(width, height);
+          }
 
-        //noinspection UndesirableClassUsage
-        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-      }));
+          //noinspection UndesirableClassUsage
+          return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        });
+        if (result == null) {
+          return null;
+        }
+        return result.createWithStats(new RenderResultStats(TimeUnit.NANOSECONDS.toMillis(startNs - queuedNs),
+                                                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs), -1));
+      }, myPriority);
     }
     catch (final Exception e) {
       String message = e.getMessage();
@@ -740,6 +775,13 @@ public class RenderTask implements IImageFactory {
     // During development only:
     //assert !ApplicationManager.getApplication().isReadAccessAllowed() : "Do not hold read lock during render!";
 
+    synchronized (myPendingRenderLock) {
+      if (myPendingRender != null && !myPendingRender.isDone()) {
+        return myPendingRender;
+      }
+    }
+
+    RenderResultStats inflateStats = RenderResultStats.EMPTY;
     if (myRenderSession == null) {
       RenderResult renderResult = inflate();
       Result result = renderResult != null ? renderResult.getRenderResult() : null;
@@ -752,21 +794,42 @@ public class RenderTask implements IImageFactory {
         }
         return Futures.immediateFuture(renderResult);
       }
+      inflateStats = renderResult.getStats();
     }
     assert myPsiFile != null;
 
     try {
-      return runAsyncRenderAction(() -> {
-        myRenderSession.render();
-        RenderResult result =
-          RenderResult.create(this, myRenderSession, myPsiFile, myLogger, myImagePool.copyOf(myRenderSession.getImage()));
-        Result renderResult = result.getRenderResult();
-        if (renderResult.getException() != null) {
-          reportException(renderResult.getException());
-          myLogger.error(null, renderResult.getErrorMessage(), renderResult.getException(), null, null);
+      RenderResultStats finalInflateStats = inflateStats;
+      long queuedNs = System.nanoTime();
+      synchronized (myPendingRenderLock) {
+        if (myPendingRender != null && !myPendingRender.isDone()) {
+          // Another thread queued a render meanwhile.
+          return myPendingRender;
         }
-        return result;
-      });
+        myPendingRender = runAsyncRenderAction(() -> {
+          synchronized (myPendingRenderLock) {
+            // From now on, changes to the task need a new render.
+            myPendingRender = null;
+          }
+          long startNs = System.nanoTime();
+          myRenderSession.render();
+          RenderResult result =
+            RenderResult.create(this, myRenderSession, myPsiFile, myLogger, myImagePool.copyOf(myRenderSession.getImage()));
+          Result renderResult = result.getRenderResult();
+          if (renderResult.getException() != null) {
+            reportException(renderResult.getException());
+            myLogger.error(null, renderResult.getErrorMessage(), renderResult.getException(), null, null);
+          }
+          RenderResultStats stats = new RenderResultStats(TimeUnit.NANOSECONDS.toMillis(startNs - queuedNs), -1,
+                                                          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs))
+            .withInflate(finalInflateStats);
+          if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Rendered %1$s: %2$s", myPsiFile.getName(), stats));
+          }
+          return result.createWithStats(stats);
+        });
+        return myPendingRender;
+      }
     }
     catch (final Exception e) {
       reportException(e);
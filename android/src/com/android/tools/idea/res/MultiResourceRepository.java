@@ -31,10 +31,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.annotation.concurrent.GuardedBy;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /**
  * The  is a super class for several of the other repositories; it’s not really used on its own. Its only purpose is to be able to combine
@@ -42,26 +39,21 @@ import java.util.Set;
  * same resource type+name combination will replace/hide any previous definitions of the same resource.
  *
  * <p>In the resource repository hierarchy, the MultiResourceRepository is an internal node, never a leaf.
+ *
+ * <p>The merged resources are cached in an immutable {@link Snapshot}, replaced (under {@code ITEM_MAP_LOCK}) whenever something is merged
+ * or a child changes. Reading what is already merged doesn't take the lock, and a change in a child only drops the (namespace, type) slices
+ * it affects, which are merged again the next time they are read.
  */
 @SuppressWarnings("InstanceGuardedByStatic") // TODO: The whole locking scheme for resource repositories needs to be reworked.
 public abstract class MultiResourceRepository extends LocalResourceRepository {
-  @GuardedBy("ITEM_MAP_LOCK")
-  private List<? extends LocalResourceRepository> myChildren;
+  // Only replaced under ITEM_MAP_LOCK, the list itself is never modified.
+  private volatile List<? extends LocalResourceRepository> myChildren;
 
   @GuardedBy("ITEM_MAP_LOCK")
   private long[] myModificationCounts;
 
-  @GuardedBy("ITEM_MAP_LOCK")
-  private ResourceTable myFullTable;
-
-  @GuardedBy("ITEM_MAP_LOCK")
-  private Set<String> myCachedNamespaces;
-
-  @GuardedBy("ITEM_MAP_LOCK")
-  private final ResourceTable myCachedMaps = new ResourceTable();
-
-  @GuardedBy("ITEM_MAP_LOCK")
-  private final Map<ResourceType, Boolean> myCachedHasResourcesOfType = Maps.newEnumMap(ResourceType.class);
+  // Only replaced under ITEM_MAP_LOCK, read without it.
+  @NotNull private volatile Snapshot mySnapshot = Snapshot.EMPTY;
 
   @GuardedBy("ITEM_MAP_LOCK")
   private Map<String, DataBindingInfo> myDataBindingResourceFiles = Maps.newHashMap();
@@ -83,7 +75,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
         }
       }
       setModificationCount(ourModificationCounter.incrementAndGet());
-      myChildren = children;
+      myChildren = ImmutableList.copyOf(children);
       myModificationCounts = new long[children.size()];
       if (children.size() == 1) {
         // Make sure that the modification count of the child and the parent are same. This is
@@ -96,18 +88,14 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
         resources.addParent(this);
         myModificationCounts[i] = resources.getModificationCount();
       }
-      myFullTable = null;
-      myCachedMaps.clear();
-      myCachedHasResourcesOfType.clear();
+      mySnapshot = Snapshot.EMPTY;
     }
 
     invalidateParentCaches();
   }
 
   public List<? extends LocalResourceRepository> getChildren() {
-    synchronized (ITEM_MAP_LOCK) {
-      return ImmutableList.copyOf(myChildren);
-    }
+    return myChildren;
   }
 
   @Override
@@ -173,47 +161,61 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
 
   @NotNull
   @Override
-  public synchronized Set<String> getNamespaces() {
+  public Set<String> getNamespaces() {
+    Set<String> namespaces = mySnapshot.myNamespaces;
+    if (namespaces != null) {
+      return namespaces;
+    }
+
     synchronized (ITEM_MAP_LOCK) {
-      if (myCachedNamespaces == null) {
+      namespaces = mySnapshot.myNamespaces;
+      if (namespaces == null) {
         if (myChildren.size() == 1) {
-          myCachedNamespaces = myChildren.get(0).getNamespaces();
+          namespaces = myChildren.get(0).getNamespaces();
         } else {
-          myCachedNamespaces = new SmartHashSet<>();
+          namespaces = new SmartHashSet<>();
           for (LocalResourceRepository child : myChildren) {
             for (String namespace : child.getNamespaces()) {
-              myCachedNamespaces.add(ResourceNamespaces.normalizeNamespace(namespace));
+              namespaces.add(ResourceNamespaces.normalizeNamespace(namespace));
             }
           }
         }
+        mySnapshot = mySnapshot.withNamespaces(namespaces);
       }
 
-      return myCachedNamespaces;
+      return namespaces;
     }
   }
 
   @NonNull
   @Override
   protected ResourceTable getFullTable() {
+    ResourceTable fullTable = mySnapshot.myFullTable;
+    if (fullTable != null) {
+      return fullTable;
+    }
+
     synchronized (ITEM_MAP_LOCK) {
-      if (myFullTable == null) {
+      fullTable = mySnapshot.myFullTable;
+      if (fullTable == null) {
         if (myChildren.size() == 1) {
-          myFullTable = myChildren.get(0).getItems();
+          fullTable = myChildren.get(0).getItems();
         }
         else {
-          myFullTable = new ResourceTable();
+          fullTable = new ResourceTable();
           for (String namespace : getNamespaces()) {
             for (ResourceType type : ResourceType.values()) {
               ListMultimap<String, ResourceItem> map = getMap(namespace, type, false);
               if (map != null) {
-                myFullTable.put(namespace, type, map);
+                fullTable.put(namespace, type, map);
               }
             }
           }
         }
+        mySnapshot = mySnapshot.withFullTable(fullTable);
       }
 
-      return myFullTable;
+      return fullTable;
     }
   }
 
@@ -222,9 +224,14 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
   protected ListMultimap<String, ResourceItem> getMap(@Nullable String namespace,
                                                       @NonNull ResourceType type,
                                                       boolean create) {
+    // Should I assert !create here? If we try to manipulate the cache it won't work right...
+    ListMultimap<String, ResourceItem> map = mySnapshot.myMaps.get(namespace, type);
+    if (map != null) {
+      return map;
+    }
+
     synchronized (ITEM_MAP_LOCK) {
-      // Should I assert !create here? If we try to manipulate the cache it won't work right...
-      ListMultimap<String, ResourceItem> map = myCachedMaps.get(namespace, type);
+      map = mySnapshot.myMaps.get(namespace, type);
       if (map != null) {
         return map;
       }
@@ -243,7 +250,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
       // Merge all items of the given type
       merge(visited, namespace, type, seenQualifiers, map);
 
-      myCachedMaps.put(namespace, type, map);
+      mySnapshot = mySnapshot.withMap(namespace, type, map);
 
       return map;
     }
@@ -264,19 +271,25 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
 
   @Override
   public boolean hasResourcesOfType(@NotNull ResourceType type) {
-    synchronized (ITEM_MAP_LOCK) {
-      if (myChildren.size() == 1) {
-        return myChildren.get(0).hasResourcesOfType(type);
-      }
+    List<? extends LocalResourceRepository> children = myChildren;
+    if (children.size() == 1) {
+      return children.get(0).hasResourcesOfType(type);
+    }
+
+    Boolean cachedResult = mySnapshot.myHasResourcesOfType.get(type);
+    if (cachedResult != null) {
+      return cachedResult;
+    }
 
-      Boolean cachedResult = myCachedHasResourcesOfType.get(type);
+    synchronized (ITEM_MAP_LOCK) {
+      cachedResult = mySnapshot.myHasResourcesOfType.get(type);
       if (cachedResult != null) {
         return cachedResult;
       }
 
       Set<LocalResourceRepository> visited = Sets.newHashSet();
       boolean result = computeHasResourcesOfType(type, visited);
-      myCachedHasResourcesOfType.put(type, result);
+      mySnapshot = mySnapshot.withHasResourcesOfType(type, result);
       return result;
     }
   }
@@ -314,10 +327,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
     synchronized (ITEM_MAP_LOCK) {
       assert myChildren.contains(repository) : repository;
 
-      myCachedNamespaces = null;
-      myCachedMaps.clear();
-      myCachedHasResourcesOfType.clear();
-      myFullTable = null;
+      mySnapshot = Snapshot.EMPTY;
       setModificationCount(ourModificationCounter.incrementAndGet());
 
       invalidateParentCaches();
@@ -332,16 +342,7 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
     synchronized (ITEM_MAP_LOCK) {
       assert myChildren.contains(repository) : repository;
 
-      for (ResourceType type : types) {
-        myCachedNamespaces = null;
-        myCachedMaps.remove(namespace, type);
-
-        if (ResourceNamespaces.isDefaultNamespace(namespace)) {
-          myCachedHasResourcesOfType.remove(type);
-        }
-      }
-
-      myFullTable = null;
+      mySnapshot = mySnapshot.without(namespace, types);
       setModificationCount(ourModificationCounter.incrementAndGet());
 
       invalidateParentCaches(namespace, types);
@@ -384,4 +385,76 @@ public abstract class MultiResourceRepository extends LocalResourceRepository {
       return result;
     }
   }
+
+  /**
+   * The merged resources of the children, as far as they have been merged. Snapshots and what they reference are never modified once
+   * published, changes are made by publishing a modified copy.
+   */
+  private static final class Snapshot {
+    static final Snapshot EMPTY = new Snapshot(new ResourceTable(), null, null, Maps.newEnumMap(ResourceType.class));
+
+    @NotNull final ResourceTable myMaps;
+    @Nullable final ResourceTable myFullTable;
+    @Nullable final Set<String> myNamespaces;
+    @NotNull final Map<ResourceType, Boolean> myHasResourcesOfType;
+
+    private Snapshot(@NotNull ResourceTable maps,
+                     @Nullable ResourceTable fullTable,
+                     @Nullable Set<String> namespaces,
+                     @NotNull Map<ResourceType, Boolean> hasResourcesOfType) {
+      myMaps = maps;
+      myFullTable = fullTable;
+      myNamespaces = namespaces;
+      myHasResourcesOfType = hasResourcesOfType;
+    }
+
+    @NotNull
+    Snapshot withMap(@Nullable String namespace, @NotNull ResourceType type, @NotNull ListMultimap<String, ResourceItem> map) {
+      ResourceTable maps = copy(myMaps);
+      maps.put(namespace, type, map);
+      return new Snapshot(maps, myFullTable, myNamespaces, myHasResourcesOfType);
+    }
+
+    @NotNull
+    Snapshot withFullTable(@NotNull ResourceTable fullTable) {
+      return new Snapshot(myMaps, fullTable, myNamespaces, myHasResourcesOfType);
+    }
+
+    @NotNull
+    Snapshot withNamespaces(@NotNull Set<String> namespaces) {
+      return new Snapshot(myMaps, myFullTable, namespaces, myHasResourcesOfType);
+    }
+
+    @NotNull
+    Snapshot withHasResourcesOfType(@NotNull ResourceType type, boolean hasResources) {
+      Map<ResourceType, Boolean> hasResourcesOfType = Maps.newEnumMap(ResourceType.class);
+      hasResourcesOfType.putAll(myHasResourcesOfType);
+      hasResourcesOfType.put(type, hasResources);
+      return new Snapshot(myMaps, myFullTable, myNamespaces, hasResourcesOfType);
+    }
+
+    /**
+     * @return a copy of this snapshot without what depends on the given types in the given namespace. The other merged maps are kept.
+     */
+    @NotNull
+    Snapshot without(@Nullable String namespace, @NotNull ResourceType... types) {
+      ResourceTable maps = copy(myMaps);
+      Map<ResourceType, Boolean> hasResourcesOfType = Maps.newEnumMap(ResourceType.class);
+      hasResourcesOfType.putAll(myHasResourcesOfType);
+      for (ResourceType type : types) {
+        maps.remove(namespace, type);
+        if (ResourceNamespaces.isDefaultNamespace(namespace)) {
+          hasResourcesOfType.remove(type);
+        }
+      }
+      return new Snapshot(maps, null, null, hasResourcesOfType);
+    }
+
+    @NotNull
+    private static ResourceTable copy(@NotNull ResourceTable table) {
+      ResourceTable copy = new ResourceTable();
+      copy.putAll(table);
+      return copy;
+    }
+  }
 }
@@ -18,6 +18,7 @@ package com.android.tools.idea.res;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.module.Module;
+import com.intellij.util.containers.ContainerUtil;
 import org.jetbrains.android.facet.AndroidFacet;
 import org.jetbrains.android.util.AndroidUtils;
 import org.jetbrains.annotations.Contract;
@@ -78,10 +79,12 @@ public final class ProjectResourceRepository extends MultiResourceRepository {
   }
 
   private static List<LocalResourceRepository> computeRepositories(@NotNull final AndroidFacet facet) {
-    LocalResourceRepository main = ModuleResourceRepository.getOrCreateInstance(facet);
-
     // List of module facets the given module depends on
     List<AndroidFacet> dependentFacets = AndroidUtils.getAllAndroidDependencies(facet.getModule(), true);
+    // Scan the resource folders of all these modules in parallel, the module repositories below then find them in the registry.
+    ResourceFolderRegistry.loadInParallel(ContainerUtil.prepend(dependentFacets, facet));
+
+    LocalResourceRepository main = ModuleResourceRepository.getOrCreateInstance(facet);
     if (dependentFacets.isEmpty()) {
       return Collections.singletonList(main);
     }
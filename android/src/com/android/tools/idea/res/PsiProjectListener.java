@@ -36,6 +36,8 @@ import static com.android.SdkConstants.FD_RES_RAW;
 
 public class PsiProjectListener extends AbstractProjectComponent implements PsiTreeChangeListener {
   @NotNull private final Map<VirtualFile, ResourceFolderRepository> myListeners = Maps.newHashMap();
+  /** Number of PSI changes to resource files outside of layout folders, see {@link #getResourceEditCount()}. */
+  private volatile long myResourceEditCount;
 
   public static void addRoot(@NotNull Project project, @NotNull VirtualFile root, @NotNull ResourceFolderRepository repository) {
     synchronized (PsiProjectListener.class) {
@@ -71,6 +73,27 @@ public class PsiProjectListener extends AbstractProjectComponent implements PsiT
     myListeners.remove(root);
   }
 
+  /**
+   * Returns a count that changes with every edit of a resource file other than a layout, e.g. a drawable, color state list or menu.
+   * Editing the attributes of those files doesn't change the generation of the resources, and unlike the listeners of the
+   * {@link ResourceNotificationManager} this one is registered even when no editor is showing, so the count also covers edits made
+   * while the layout editor is hidden.
+   */
+  public long getResourceEditCount() {
+    return myResourceEditCount;
+  }
+
+  private void recordEdit(@Nullable VirtualFile file) {
+    if (file == null) {
+      return;
+    }
+    // PSI events are only sent in write actions, so there is a single writer
+    VirtualFile folder = file.isDirectory() ? null : file.getParent();
+    if (folder == null || ResourceFolderType.getFolderType(folder.getName()) != ResourceFolderType.LAYOUT) {
+      myResourceEditCount++;
+    }
+  }
+
   static boolean isRelevantFileType(@NotNull FileType fileType) {
     if (fileType == StdFileTypes.JAVA) { // fail fast for vital file type
       return false;
@@ -176,6 +199,7 @@ public class PsiProjectListener extends AbstractProjectComponent implements PsiT
   private void dispatchChildAdded(@NotNull PsiTreeChangeEvent event, @Nullable VirtualFile virtualFile) {
     ResourceFolderRepository repository = findRepository(virtualFile);
     if (repository != null) {
+      recordEdit(virtualFile);
       repository.getPsiListener().childAdded(event);
     }
   }
@@ -212,6 +236,7 @@ public class PsiProjectListener extends AbstractProjectComponent implements PsiT
   private void dispatchChildRemoved(@NotNull PsiTreeChangeEvent event, @Nullable VirtualFile virtualFile) {
     ResourceFolderRepository repository = findRepository(virtualFile);
     if (repository != null) {
+      recordEdit(virtualFile);
       repository.getPsiListener().childRemoved(event);
     }
   }
@@ -241,6 +266,7 @@ public class PsiProjectListener extends AbstractProjectComponent implements PsiT
   private void dispatchChildReplaced(@NotNull PsiTreeChangeEvent event, @Nullable VirtualFile virtualFile) {
     ResourceFolderRepository repository = findRepository(virtualFile);
     if (repository != null) {
+      recordEdit(virtualFile);
       repository.getPsiListener().childReplaced(event);
     }
   }
@@ -281,6 +307,7 @@ public class PsiProjectListener extends AbstractProjectComponent implements PsiT
   private void dispatchChildrenChanged(@NotNull PsiTreeChangeEvent event, @Nullable VirtualFile virtualFile) {
     ResourceFolderRepository repository = findRepository(virtualFile);
     if (repository != null) {
+      recordEdit(virtualFile);
       repository.getPsiListener().childrenChanged(event);
     }
   }
@@ -327,6 +354,7 @@ public class PsiProjectListener extends AbstractProjectComponent implements PsiT
   private void dispatchChildMoved(@NotNull PsiTreeChangeEvent event, @Nullable VirtualFile virtualFile) {
     ResourceFolderRepository repository = findRepository(virtualFile);
     if (repository != null) {
+      recordEdit(virtualFile);
       repository.getPsiListener().childMoved(event);
     }
 
@@ -384,6 +412,7 @@ public class PsiProjectListener extends AbstractProjectComponent implements PsiT
   private void dispatchPropertyChange(@NotNull PsiTreeChangeEvent event, @Nullable VirtualFile virtualFile) {
     ResourceFolderRepository repository = findRepository(virtualFile);
     if (repository != null) {
+      recordEdit(virtualFile);
       repository.getPsiListener().propertyChanged(event);
     }
   }
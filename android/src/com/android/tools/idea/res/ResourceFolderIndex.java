@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import com.google.common.collect.Maps;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary index of the files found in the file resource folders (layout, drawable, raw, ...) of a resource directory, saved next to the
+ * blob of {@link ResourceFolderRepository} so that the next initial scan doesn't need to check the type of every file again. The folders
+ * are still listed, to find their files by name.
+ *
+ * <p>Each folder is stored with the timestamp it had when it was listed. Adding, removing or renaming a file changes the timestamp of
+ * its folder, so the files of a folder whose timestamp still matches can be taken from the index. The contents of the files don't matter
+ * here: the resources of non-XML files only depend on their paths, and XML files are still loaded through the blob or parsed.
+ *
+ * <p>The file is small and read into a heap buffer rather than mapped: the repository rewrites it while the index read from it is still in
+ * use, and a mapped file can't be replaced on Windows. It starts with a header (magic, version and the number of folders, files and strings),
+ * followed by the folder table, the file table, the offsets of the pooled strings and the strings themselves:
+ * <pre>
+ *   folder: int nameIndex, long timestamp, int firstFile, int fileCount
+ *   file:   int nameIndex, byte flags
+ *   string: short length, UTF-8 bytes
+ * </pre>
+ */
+final class ResourceFolderIndex {
+  static final String FILE_NAME = "file_resources.index";
+
+  private static final int MAGIC = 0x52464958;
+  /** Bump when the format changes, older indices are then ignored and rewritten. */
+  private static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 5 * 4;
+  private static final int FOLDER_SIZE = 4 + 8 + 4 + 4;
+  private static final int FILE_SIZE = 4 + 1;
+  private static final byte FLAG_ID_GENERATING = 1;
+
+  @NotNull private final ByteBuffer myBuffer;
+  private final int myFileTableOffset;
+  private final int myStringTableOffset;
+  @NotNull private final String[] myStrings;
+  @NotNull private final Map<String, Integer> myFoldersByName;
+
+  private ResourceFolderIndex(@NotNull ByteBuffer buffer, int folderCount, int fileCount, int stringCount) {
+    myBuffer = buffer;
+    myFileTableOffset = HEADER_SIZE + folderCount * FOLDER_SIZE;
+    myStringTableOffset = myFileTableOffset + fileCount * FILE_SIZE;
+    myStrings = new String[stringCount];
+    myFoldersByName = Maps.newHashMapWithExpectedSize(folderCount);
+    for (int folder = 0; folder < folderCount; folder++) {
+      myFoldersByName.put(getString(myBuffer.getInt(getFolderOffset(folder))), folder);
+    }
+  }
+
+  /**
+   * Reads the index saved in {@code file}.
+   *
+   * @return the index, or null if the file doesn't exist or was written with another version of the format
+   */
+  @Nullable
+  static ResourceFolderIndex read(@NotNull File file) throws IOException {
+    if (!file.isFile()) {
+      return null;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      return null;
+    }
+    int folderCount = buffer.getInt(8);
+    int fileCount = buffer.getInt(12);
+    int stringCount = buffer.getInt(16);
+    long tablesSize = HEADER_SIZE + (long)folderCount * FOLDER_SIZE + (long)fileCount * FILE_SIZE + (long)stringCount * 4;
+    if (folderCount < 0 || fileCount < 0 || stringCount < 0 || tablesSize > buffer.limit()) {
+      throw new IOException("Corrupted resource index " + file);
+    }
+    if (!isValid(buffer, folderCount, fileCount, stringCount)) {
+      throw new IOException("Corrupted resource index " + file);
+    }
+    return new ResourceFolderIndex(buffer, folderCount, fileCount, stringCount);
+  }
+
+  /**
+   * Checks that every index and offset in the tables points inside the file, so that reading the index never fails once it is read.
+   */
+  private static boolean isValid(@NotNull ByteBuffer buffer, int folderCount, int fileCount, int stringCount) {
+    int fileTableOffset = HEADER_SIZE + folderCount * FOLDER_SIZE;
+    int stringTableOffset = fileTableOffset + fileCount * FILE_SIZE;
+    for (int folder = 0; folder < folderCount; folder++) {
+      int offset = getFolderOffset(folder);
+      int firstFile = buffer.getInt(offset + 12);
+      int folderFileCount = buffer.getInt(offset + 16);
+      if (!isIndexValid(buffer.getInt(offset), stringCount) ||
+          firstFile < 0 || folderFileCount < 0 || (long)firstFile + folderFileCount > fileCount) {
+        return false;
+      }
+    }
+    for (int fileEntry = 0; fileEntry < fileCount; fileEntry++) {
+      if (!isIndexValid(buffer.getInt(fileTableOffset + fileEntry * FILE_SIZE), stringCount)) {
+        return false;
+      }
+    }
+    int stringsOffset = stringTableOffset + stringCount * 4;
+    for (int string = 0; string < stringCount; string++) {
+      int offset = buffer.getInt(stringTableOffset + string * 4);
+      if (offset < stringsOffset || offset > buffer.limit() - 2 || offset + 2 + (buffer.getShort(offset) & 0xFFFF) > buffer.limit()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isIndexValid(int index, int count) {
+    return index >= 0 && index < count;
+  }
+
+  /**
+   * @return the index of the folder named {@code name} if it was indexed with the given timestamp, -1 otherwise.
+   */
+  int findFolder(@NotNull String name, long timestamp) {
+    Integer folder = myFoldersByName.get(name);
+    return folder != null && myBuffer.getLong(getFolderOffset(folder) + 4) == timestamp ? folder : -1;
+  }
+
+  int getFirstFile(int folder) {
+    return myBuffer.getInt(getFolderOffset(folder) + 12);
+  }
+
+  int getFileCount(int folder) {
+    return myBuffer.getInt(getFolderOffset(folder) + 16);
+  }
+
+  @NotNull
+  String getFileName(int file) {
+    return getString(myBuffer.getInt(getFileOffset(file)));
+  }
+
+  /**
+   * @return whether the file was an XML file of an id-generating folder type, see {@link ResourceFolderRepository}.
+   */
+  boolean isIdGenerating(int file) {
+    return (myBuffer.get(getFileOffset(file) + 4) & FLAG_ID_GENERATING) != 0;
+  }
+
+  private static int getFolderOffset(int folder) {
+    return HEADER_SIZE + folder * FOLDER_SIZE;
+  }
+
+  private int getFileOffset(int file) {
+    return myFileTableOffset + file * FILE_SIZE;
+  }
+
+  @NotNull
+  private String getString(int index) {
+    String string = myStrings[index];
+    if (string == null) {
+      int offset = myBuffer.getInt(myStringTableOffset + index * 4);
+      byte[] bytes = new byte[myBuffer.getShort(offset) & 0xFFFF];
+      ByteBuffer slice = myBuffer.duplicate();
+      slice.position(offset + 2);
+      slice.get(bytes);
+      string = new String(bytes, StandardCharsets.UTF_8);
+      myStrings[index] = string;
+    }
+    return string;
+  }
+
+  /**
+   * Collects the folders and files seen by a scan, to save them as a {@link ResourceFolderIndex}.
+   */
+  static final class Builder {
+    private final List<String> myStrings = new ArrayList<>();
+    private final Map<String, Integer> myStringIndices = Maps.newHashMap();
+    private final List<long[]> myFolders = new ArrayList<>();
+    private final List<int[]> myFiles = new ArrayList<>();
+
+    /**
+     * Starts a new folder, the following {@link #addFile} calls add files to it.
+     */
+    void addFolder(@NotNull String name, long timestamp) {
+      myFolders.add(new long[]{getStringIndex(name), timestamp, myFiles.size(), 0});
+    }
+
+    void addFile(@NotNull String name, boolean idGenerating) {
+      assert !myFolders.isEmpty();
+      myFolders.get(myFolders.size() - 1)[3]++;
+      myFiles.add(new int[]{getStringIndex(name), idGenerating ? FLAG_ID_GENERATING : 0});
+    }
+
+    private int getStringIndex(@NotNull String string) {
+      return myStringIndices.computeIfAbsent(string, s -> {
+        myStrings.add(s);
+        return myStrings.size() - 1;
+      });
+    }
+
+    /**
+     * Writes the index to a temporary file and then moves it to {@code file}, so that a failed write doesn't leave a partial index.
+     */
+    void write(@NotNull File file) throws IOException {
+      File tempFile = new File(file.getPath() + ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(myFolders.size());
+        out.writeInt(myFiles.size());
+        out.writeInt(myStrings.size());
+        for (long[] folder : myFolders) {
+          out.writeInt((int)folder[0]);
+          out.writeLong(folder[1]);
+          out.writeInt((int)folder[2]);
+          out.writeInt((int)folder[3]);
+        }
+        for (int[] fileEntry : myFiles) {
+          out.writeInt(fileEntry[0]);
+          out.writeByte(fileEntry[1]);
+        }
+        List<byte[]> encodedStrings = new ArrayList<>(myStrings.size());
+        int offset = HEADER_SIZE + myFolders.size() * FOLDER_SIZE + myFiles.size() * FILE_SIZE + myStrings.size() * 4;
+        for (String string : myStrings) {
+          byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+          if (bytes.length > 0xFFFF) {
+            throw new IOException("Name too long to be indexed: " + string);
+          }
+          encodedStrings.add(bytes);
+          out.writeInt(offset);
+          offset += 2 + bytes.length;
+        }
+        for (byte[] bytes : encodedStrings) {
+          out.writeShort(bytes.length);
+          out.write(bytes);
+        }
+      }
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+}
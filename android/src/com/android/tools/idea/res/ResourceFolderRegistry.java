@@ -15,12 +15,16 @@
  */
 package com.android.tools.idea.res;
 
+import com.android.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.intellij.facet.ProjectFacetManager;
 import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.StatusBarProgress;
 import com.intellij.openapi.project.DumbModeTask;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
@@ -39,6 +43,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import static com.intellij.util.ExceptionUtil.rethrowUnchecked;
 
 public class ResourceFolderRegistry {
   private final static Object DIR_MAP_LOCK = new Object();
@@ -46,6 +53,10 @@ public class ResourceFolderRegistry {
   @GuardedBy("DIR_MAP_LOCK")
   private final static Map<VirtualFile, ResourceFolderRepository> ourDirMap = Maps.newHashMap();
 
+  /** The directories whose repositories are being created, so that concurrent requests don't scan them again. */
+  @GuardedBy("DIR_MAP_LOCK")
+  private final static Map<VirtualFile, FutureTask<ResourceFolderRepository>> ourPendingDirs = Maps.newHashMap();
+
   public static void reset() {
     synchronized (DIR_MAP_LOCK) {
       for (Map.Entry<VirtualFile, ResourceFolderRepository> entry : ourDirMap.entrySet()) {
@@ -68,20 +79,77 @@ public class ResourceFolderRegistry {
   public static ResourceFolderRepository get(@NotNull final AndroidFacet facet,
                                              @NotNull final VirtualFile dir,
                                              @Nullable String namespace) {
+    Project project = facet.getModule().getProject();
+    FutureTask<ResourceFolderRepository> task;
+    boolean isCreator = false;
     synchronized (DIR_MAP_LOCK) {
       ResourceFolderRepository repository = ourDirMap.get(dir);
-      if (repository == null) {
-        Project project = facet.getModule().getProject();
+      if (repository != null) {
+        return repository;
+      }
+      task = ourPendingDirs.get(dir);
+      if (task == null) {
         // TODO: namespaces: use the namespace as the cache key.
-        repository = ResourceFolderRepository.create(facet, dir, namespace);
-        putRepositoryInCache(project, dir, repository);
+        task = new FutureTask<>(() -> putRepositoryInCache(project, dir, ResourceFolderRepository.create(facet, dir, namespace)));
+        ourPendingDirs.put(dir, task);
+        isCreator = true;
+      }
+    }
+
+    // Scan outside of DIR_MAP_LOCK, so that the repositories of different directories can be created concurrently.
+    if (isCreator) {
+      try {
+        // The read lock is taken before the task is started and held until it is done, see below.
+        ApplicationManager.getApplication().runReadAction(task);
+      }
+      finally {
+        synchronized (DIR_MAP_LOCK) {
+          ourPendingDirs.remove(dir);
+        }
       }
-      return repository;
+    }
+    else if (ApplicationManager.getApplication().isReadAccessAllowed()) {
+      // Waiting for a thread blocked on the read lock by a pending write action would deadlock, as the write action waits for this thread's
+      // read lock. If the creator didn't start the task yet, e.g. because it is blocked that way, it is run here instead. Otherwise the
+      // creator already holds the read lock, so it can't be blocked by the write action and waiting for it is safe.
+      task.run();
+    }
+
+    try {
+      return task.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ProcessCanceledException(e);
+    }
+    catch (ExecutionException e) {
+      if (!isCreator && e.getCause() instanceof ProcessCanceledException) {
+        // The thread creating the repository was canceled, but this one wasn't.
+        return get(facet, dir, namespace);
+      }
+      Throwable cause = e.getCause();
+      rethrowUnchecked(cause);
+      throw new RuntimeException(cause);
     }
   }
 
-  private static void putRepositoryInCache(@NotNull Project project, @NotNull final VirtualFile dir,
-                                           @NotNull ResourceFolderRepository repository) {
+  /**
+   * Adds {@code repository} to the registry, unless another thread registered a repository for {@code dir} first.
+   *
+   * @return the repository registered for {@code dir}
+   */
+  @NotNull
+  private static ResourceFolderRepository putRepositoryInCache(@NotNull Project project, @NotNull final VirtualFile dir,
+                                                               @NotNull ResourceFolderRepository repository) {
+    synchronized (DIR_MAP_LOCK) {
+      ResourceFolderRepository cached = ourDirMap.get(dir);
+      if (cached != null) {
+        Disposer.dispose(repository);
+        return cached;
+      }
+      ourDirMap.put(dir, repository);
+    }
+
     PsiProjectListener.addRoot(project, dir, repository);
     // Some of the resources in the ResourceFolderRepository might actually contain pointers to the Project instance so we need
     // to make sure we invalidate those whenever the project is closed.
@@ -94,10 +162,7 @@ public class ResourceFolderRegistry {
         Disposer.dispose(repositoryFromMap);
       }
     });
-
-    synchronized (DIR_MAP_LOCK) {
-      ourDirMap.put(dir, repository);
-    }
+    return repository;
   }
 
   /**
@@ -129,6 +194,70 @@ public class ResourceFolderRegistry {
     return resDirectories;
   }
 
+  /**
+   * Creates the repositories of the resource directories of {@code facets} that aren't in the registry yet, in parallel, instead of one
+   * after another on the calling thread as the repository tree gets built.
+   *
+   * <p>Can be called with read access, as the repository tree is built in a read action: the calling thread scans the directories that
+   * no pooled thread started yet and only waits for the scans that hold the read lock, see {@link #get(AndroidFacet, VirtualFile, String)}.
+   * Cancelling the progress indicator of the calling thread stops the load, the progress is reported in the status bar if there is no
+   * such indicator.
+   */
+  static void loadInParallel(@NotNull List<AndroidFacet> facets) {
+    Map<VirtualFile, AndroidFacet> resDirectories = getResourceDirectoriesForFacets(facets);
+    filterOutCached(resDirectories);
+    if (resDirectories.size() < 2) {
+      // Nothing to parallelize, the directory will be loaded as the tree gets built.
+      return;
+    }
+
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    if (indicator == null) {
+      ProgressManager.getInstance().runProcess(() -> createRepositories(resDirectories), new StatusBarProgress());
+    }
+    else {
+      createRepositories(resDirectories);
+    }
+  }
+
+  private static void createRepositories(@NotNull Map<VirtualFile, AndroidFacet> resDirectories) {
+    ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+    indicator.setText2("Loading resources");
+    // The calling thread is one of the scanning threads.
+    int maxThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+    BoundedTaskExecutor parallelExecutor = new BoundedTaskExecutor(PooledThreadExecutor.INSTANCE, Math.max(1, maxThreads - 1));
+    for (Map.Entry<VirtualFile, AndroidFacet> entry : resDirectories.entrySet()) {
+      // The repositories are added to the registry as they are created.
+      parallelExecutor.submit(() -> get(entry.getValue(), entry.getKey(), null));
+    }
+
+    int numDone = 0;
+    for (Map.Entry<VirtualFile, AndroidFacet> entry : resDirectories.entrySet()) {
+      indicator.checkCanceled();
+      indicator.setFraction((double)numDone++ / resDirectories.size());
+      try {
+        // Scans the directory if no pooled thread started it yet, waits for it otherwise.
+        get(entry.getValue(), entry.getKey(), null);
+      }
+      catch (ProcessCanceledException e) {
+        throw e;
+      }
+      catch (RuntimeException e) {
+        // Loading ahead is only for performance, the directory is scanned again as the tree gets built.
+      }
+    }
+  }
+
+  /**
+   * @return whether the repository of {@code dir} is in the registry, without creating it.
+   */
+  @VisibleForTesting
+  static boolean isCached(@NotNull VirtualFile dir) {
+    synchronized (DIR_MAP_LOCK) {
+      return ourDirMap.containsKey(dir);
+    }
+  }
+
   /**
    * Populate the registry's in-memory ResourceFolderRepository caches (if not already cached).
    */
@@ -166,15 +295,12 @@ public class ResourceFolderRegistry {
         return;
       }
       Application application = ApplicationManager.getApplication();
-      List<ResourceFolderRepository> repositories;
       // Beware if the current thread is holding the write lock. The current thread will
       // end up waiting for helper threads to finish, and the helper threads will be
       // acquiring a read lock (which would then block because of the write lock).
       assert !application.isWriteAccessAllowed();
-      repositories = executeParallel(indicator, resDirectories);
-      for (ResourceFolderRepository repository : repositories) {
-        putRepositoryInCache(myProject, repository.getResourceDir(), repository);
-      }
+      // The repositories are added to the registry as they are created.
+      executeParallel(indicator, resDirectories);
     }
 
     private static List<ResourceFolderRepository> executeParallel(@NotNull ProgressIndicator indicator,
@@ -212,7 +338,7 @@ public class ResourceFolderRegistry {
       @NotNull final BoundedTaskExecutor myParallelBuildExecutor,
       @NotNull final AndroidFacet facet,
       @NotNull final VirtualFile dir) {
-      return myParallelBuildExecutor.submit(() -> ResourceFolderRepository.create(facet, dir, null));
+      return myParallelBuildExecutor.submit(() -> get(facet, dir, null));
     }
   }
 
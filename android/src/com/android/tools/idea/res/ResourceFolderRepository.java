@@ -115,13 +115,19 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     myNamespace = namespace;
 
     ResourceMerger merger = loadPreviousStateIfExists();
-    myInitialScanState = new InitialScanState(merger, VfsUtilCore.virtualToIoFile(myResourceDir));
+    myInitialScanState = new InitialScanState(merger, VfsUtilCore.virtualToIoFile(myResourceDir), loadFileIndexIfExists());
     scanRemainingFiles();
     Application app = ApplicationManager.getApplication();
     // For now, automatically save the state. We may want to move this out to a separate task.
     if (!hasFreshFileCache() && !app.isUnitTestMode()) {
       saveStateToFile();
     }
+    else if (!myInitialScanState.hasFreshFileIndex() && !app.isUnitTestMode()) {
+      File blobRoot = ResourceFolderRepositoryFileCacheService.get().getResourceDir(myModule.getProject(), myResourceDir);
+      if (blobRoot != null) {
+        saveFileIndex(blobRoot);
+      }
+    }
     // Clear some unneeded state (myInitialScanState's resource merger holds a second map of items).
     // Skip for unit tests, which may need to test saving separately (saving is normally skipped for unit tests).
     if (!app.isUnitTestMode()) {
@@ -178,6 +184,41 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
       LOG.error("Failed to saveStateToFile", e);
       // Delete the blob root just in case it's in an inconsistent state.
       FileUtil.delete(blobRoot);
+      return;
+    }
+    saveFileIndex(blobRoot);
+  }
+
+  /**
+   * Saves the folders and files seen by the initial scan as a {@link ResourceFolderIndex} in {@code blobRoot}, for
+   * {@link #loadFileIndexIfExists}.
+   */
+  private void saveFileIndex(@NotNull File blobRoot) {
+    try {
+      FileUtil.createDirectory(blobRoot);
+      myInitialScanState.myFileIndexBuilder.write(new File(blobRoot, ResourceFolderIndex.FILE_NAME));
+    }
+    catch (IOException e) {
+      // The index only speeds up the next scan.
+      LOG.warn("Failed to save the resource index in " + blobRoot, e);
+    }
+  }
+
+  /**
+   * Reads the {@link ResourceFolderIndex} saved by {@link #saveFileIndex}, if there is one.
+   */
+  @Nullable
+  private ResourceFolderIndex loadFileIndexIfExists() {
+    File blobRoot = ResourceFolderRepositoryFileCacheService.get().getResourceDir(myModule.getProject(), myResourceDir);
+    if (blobRoot == null) {
+      return null;
+    }
+    try {
+      return ResourceFolderIndex.read(new File(blobRoot, ResourceFolderIndex.FILE_NAME));
+    }
+    catch (IOException e) {
+      LOG.warn("Failed to load the resource index in " + blobRoot, e);
+      return null;
     }
   }
 
@@ -285,6 +326,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
   static class InitialScanState {
     int numXml; // Doesn't count files that are explicitly skipped
     int numXmlReparsed;
+    int numFoldersIndexed;
+    int numFoldersRescanned;
 
     final ResourceMerger myResourceMerger;
     final ResourceSet myResourceSet;
@@ -292,8 +335,12 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
     final File myResourceDir;
     final Collection<PsiFileResourceQueueEntry> myPsiFileResourceQueue = new ArrayList<>();
     final Collection<PsiValueResourceQueueEntry> myPsiValueResourceQueue = new ArrayList<>();
+    /** The index saved by a previous scan, dropped if it turns out to be corrupted. */
+    @Nullable ResourceFolderIndex myFileIndex;
+    /** The folders and files seen by this scan, to save them for the next one. */
+    final ResourceFolderIndex.Builder myFileIndexBuilder = new ResourceFolderIndex.Builder();
 
-    public InitialScanState(ResourceMerger merger, File resourceDir) {
+    public InitialScanState(ResourceMerger merger, File resourceDir, @Nullable ResourceFolderIndex fileIndex) {
       myResourceMerger = merger;
       assert myResourceMerger.getDataSets().size() == 1;
       myResourceSet = myResourceMerger.getDataSets().get(0);
@@ -302,6 +349,14 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
       myResourceSet.setTrackSourcePositions(false);
       myILogger = new LogWrapper(LOG).alwaysLogAsDebug(true).allowVerbose(false);
       myResourceDir = resourceDir;
+      myFileIndex = fileIndex;
+    }
+
+    /**
+     * @return true if all the file resource folders were found in the index, so it doesn't need to be saved again
+     */
+    boolean hasFreshFileIndex() {
+      return myFileIndex != null && numFoldersRescanned == 0;
     }
 
     public void countCacheHit() {
@@ -469,17 +524,78 @@ public final class ResourceFolderRepository extends LocalResourceRepository {
 
     ListMultimap<String, ResourceItem> map = getMap(myNamespace, type, true);
 
+    // Read the timestamp before listing the files, so that files added meanwhile make the indexed folder stale.
+    long timestamp = directory.getTimeStamp();
+    ResourceFolderIndex.Builder indexBuilder = myInitialScanState.myFileIndexBuilder;
+    indexBuilder.addFolder(directory.getName(), timestamp);
+    if (scanIndexedFileResourceFolder(directory, timestamp, folderType, qualifiers, folderConfiguration, type, map)) {
+      myInitialScanState.numFoldersIndexed++;
+      return;
+    }
+    myInitialScanState.numFoldersRescanned++;
+
     for (VirtualFile file : directory.getChildren()) {
       if (file.isValid() && !file.isDirectory()) {
         FileType fileType = file.getFileType();
         boolean idGeneratingFile = idGeneratingFolder && fileType == StdFileTypes.XML;
         if (PsiProjectListener.isRelevantFileType(fileType) || folderType == RAW) {
+          indexBuilder.addFile(file.getName(), idGeneratingFile);
           scanFileResourceFile(qualifiers, folderType, folderConfiguration, type, idGeneratingFile, map, file);
         } // TODO: Else warn about files that aren't expected to be found here?
       }
     }
   }
 
+  /**
+   * Scans the files recorded for {@code directory} in the index of the previous scan, skipping the file type checks. The folder is still
+   * listed once, to find the recorded files by name.
+   *
+   * @return false if the folder isn't in the index or changed since it was indexed, in which case it needs to be scanned normally
+   */
+  private boolean scanIndexedFileResourceFolder(@NotNull VirtualFile directory,
+                                                long timestamp,
+                                                ResourceFolderType folderType,
+                                                String qualifiers,
+                                                FolderConfiguration folderConfiguration,
+                                                ResourceType type,
+                                                ListMultimap<String, ResourceItem> map) {
+    ResourceFolderIndex index = myInitialScanState.myFileIndex;
+    if (index == null) {
+      return false;
+    }
+    // The index was validated when read, so reading it doesn't fail.
+    int folder = index.findFolder(directory.getName(), timestamp);
+    if (folder == -1) {
+      return false;
+    }
+    int firstFile = index.getFirstFile(folder);
+    int fileCount = index.getFileCount(folder);
+    // The children are listed once, findChild would search them again for every file.
+    VirtualFile[] children = directory.getChildren();
+    Map<String, VirtualFile> childrenByName = Maps.newHashMapWithExpectedSize(children.length);
+    for (VirtualFile child : children) {
+      childrenByName.put(child.getName(), child);
+    }
+    List<VirtualFile> files = new ArrayList<>(fileCount);
+    List<Boolean> idGenerating = new ArrayList<>(fileCount);
+    for (int i = firstFile; i < firstFile + fileCount; i++) {
+      VirtualFile file = childrenByName.get(index.getFileName(i));
+      if (file == null || !file.isValid() || file.isDirectory()) {
+        // The timestamp didn't catch the change (e.g. its resolution is too coarse).
+        return false;
+      }
+      files.add(file);
+      idGenerating.add(index.isIdGenerating(i));
+    }
+
+    for (int i = 0; i < files.size(); i++) {
+      VirtualFile file = files.get(i);
+      myInitialScanState.myFileIndexBuilder.addFile(file.getName(), idGenerating.get(i));
+      scanFileResourceFile(qualifiers, folderType, folderConfiguration, type, idGenerating.get(i), map, file);
+    }
+    return true;
+  }
+
   private void scanFileResourceFileAsPsi(String qualifiers,
                                          ResourceFolderType folderType,
                                          FolderConfiguration folderConfiguration,
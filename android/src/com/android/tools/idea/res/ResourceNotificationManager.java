@@ -832,6 +832,14 @@ public class ResourceNotificationManager {
       myOtherGeneration = otherGeneration;
     }
 
+    /**
+     * Returns this version without the modification stamp of the file, for callers that track the contents of the file by other means.
+     */
+    @NotNull
+    public ResourceVersion withoutFileGeneration() {
+      return new ResourceVersion(myResourceGeneration, 0L, myConfigurationGeneration, myProjectConfigurationGeneration, myOtherGeneration);
+    }
+
     @Override
     public boolean equals(Object o) {
       if (this == o) return true;
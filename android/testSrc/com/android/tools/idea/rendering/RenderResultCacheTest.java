@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.rendering;
+
+import com.android.tools.idea.configurations.Configuration;
+import com.android.tools.idea.configurations.ConfigurationListener;
+import com.android.tools.idea.res.ResourceNotificationManager;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+public class RenderResultCacheTest extends RenderTestBase {
+  private static final String LAYOUT = "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                                       "    android:layout_height=\"match_parent\"\n" +
+                                       "    android:layout_width=\"match_parent\">\n" +
+                                       "    <TextView\n" +
+                                       "        android:layout_width=\"wrap_content\"\n" +
+                                       "        android:layout_height=\"wrap_content\"\n" +
+                                       "        android:text=\"Hello\"/>\n" +
+                                       "</LinearLayout>";
+  private static final String DRAWABLE = "<shape xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+                                         "    <solid android:color=\"#FF0000\"/>\n" +
+                                         "</shape>";
+
+  public void testKeyCoversRenderInputs() throws Exception {
+    PsiFile file = myFixture.addFileToProject("res/layout/layout.xml", LAYOUT);
+    Configuration configuration = getConfiguration(file.getVirtualFile(), DEFAULT_DEVICE_ID);
+    RenderTask task = createRenderTask(file.getVirtualFile(), configuration, mock(RenderLogger.class));
+    RenderResult result = task.render().get();
+    task.dispose().get(5, TimeUnit.SECONDS);
+
+    RenderResultCache cache = new RenderResultCache();
+    RenderResultCache.Key key = createKey(file, configuration, true);
+    assertNotNull(key);
+    cache.put(key, result);
+    assertSame(result, cache.get(createKey(file, configuration, true)));
+    assertNull(cache.get(createKey(file, configuration, false)));
+
+    configuration.updated(ConfigurationListener.CFG_THEME);
+    assertNull(cache.get(createKey(file, configuration, true)));
+
+    RenderResultCache.Key updatedKey = createKey(file, configuration, true);
+    cache.put(updatedKey, result);
+    assertSame(result, cache.get(updatedKey));
+    Document document = PsiDocumentManager.getInstance(getProject()).getDocument(file);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      document.replaceString(0, document.getTextLength(), LAYOUT.replace("Hello", "World"));
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+    assertNull(cache.get(createKey(file, configuration, true)));
+
+    // Editing a drawable doesn't change the generation of the resources, but it does change the key
+    PsiFile drawable = myFixture.addFileToProject("res/drawable/shape.xml", DRAWABLE);
+    updatedKey = createKey(file, configuration, true);
+    cache.put(updatedKey, result);
+    assertSame(result, cache.get(createKey(file, configuration, true)));
+    Document drawableDocument = PsiDocumentManager.getInstance(getProject()).getDocument(drawable);
+    assertNotNull(drawableDocument);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      drawableDocument.replaceString(0, drawableDocument.getTextLength(), DRAWABLE.replace("#FF0000", "#00FF00"));
+      PsiDocumentManager.getInstance(getProject()).commitDocument(drawableDocument);
+    });
+    assertNull(cache.get(createKey(file, configuration, true)));
+
+    cache.clear();
+    assertNull(cache.get(updatedKey));
+  }
+
+  public void testResultsAreWeighedByPixels() throws Exception {
+    PsiFile file = myFixture.addFileToProject("res/layout/layout.xml", LAYOUT);
+    Configuration configuration = getConfiguration(file.getVirtualFile(), DEFAULT_DEVICE_ID);
+    RenderTask task = createRenderTask(file.getVirtualFile(), configuration, mock(RenderLogger.class));
+    RenderResult result = task.render().get();
+    task.dispose().get(5, TimeUnit.SECONDS);
+    int pixels = result.getRenderedImage().getWidth() * result.getRenderedImage().getHeight();
+
+    RenderResultCache cache = new RenderResultCache(pixels);
+    cache.put(createKey(file, configuration, true), result);
+    cache.put(createKey(file, configuration, false), result);
+    assertEquals(1, cache.size());
+
+    // Failed renders aren't cached
+    cache.clear();
+    cache.put(createKey(file, configuration, true), RenderResult.createBlank(file));
+    assertEquals(0, cache.size());
+  }
+
+  private RenderResultCache.Key createKey(@NotNull PsiFile file, @NotNull Configuration configuration, boolean designMode) {
+    ResourceNotificationManager.ResourceVersion version =
+      ResourceNotificationManager.getInstance(getProject()).getCurrentVersion(myFacet, file, configuration);
+    return RenderResultCache.Key.create(file, configuration, version, designMode, null);
+  }
+}
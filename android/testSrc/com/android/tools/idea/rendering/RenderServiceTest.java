@@ -18,10 +18,17 @@ package com.android.tools.idea.rendering;
 import com.android.ide.common.rendering.api.ViewInfo;
 import com.google.common.util.concurrent.ListenableFuture;
 import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
 
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutionException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 
 public class RenderServiceTest extends TestCase {
   public void testGetSafeBounds() {
@@ -79,4 +86,172 @@ public class RenderServiceTest extends TestCase {
     future.get();
     assertTrue(called.get());
   }
-}
\ No newline at end of file
+
+  public void testInteractiveActionsRunBeforeBackgroundActions() throws Exception {
+    CountDownLatch countDownLatch = new CountDownLatch(1);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    // Keep the render thread busy while the other actions get queued.
+    ListenableFuture<Void> blocker = RenderService.runAsyncRenderAction(() -> {
+      countDownLatch.await();
+      return null;
+    });
+    List<ListenableFuture<Boolean>> futures = new ArrayList<>();
+    futures.add(RenderService.runAsyncRenderAction(() -> order.add("background1"), RenderService.RenderPriority.BACKGROUND));
+    futures.add(RenderService.runAsyncRenderAction(() -> order.add("background2"), RenderService.RenderPriority.BACKGROUND));
+    futures.add(RenderService.runAsyncRenderAction(() -> order.add("interactive1"), RenderService.RenderPriority.INTERACTIVE));
+    futures.add(RenderService.runAsyncRenderAction(() -> order.add("interactive2"), RenderService.RenderPriority.INTERACTIVE));
+
+    countDownLatch.countDown();
+    blocker.get();
+    for (ListenableFuture<Boolean> future : futures) {
+      future.get();
+    }
+    assertEquals(Arrays.asList("interactive1", "interactive2", "background1", "background2"), order);
+  }
+
+  public void testQueueWaitDoesNotCountAgainstTheTimeout() throws Exception {
+    long timeoutMs = RenderService.ourRenderThreadTimeoutMs;
+    LongSupplier clock = RenderService.ourClock;
+    AtomicLong nowNs = new AtomicLong();
+    RenderService.ourRenderThreadTimeoutMs = 500;
+    RenderService.ourClock = nowNs::get;
+    ExecutorService waiter = Executors.newSingleThreadExecutor();
+    try {
+      // Each action finishes in time, but the background action waits behind all of them for longer than the timeout.
+      List<CountDownLatch> releaseLatches = queueBlockingActions(4);
+      Future<String> background = waitForRenderAction(waiter, nowNs, () -> "done");
+      runBlockingActions(releaseLatches, nowNs, 400);
+      assertEquals("done", background.get(10, TimeUnit.SECONDS));
+
+      // An action running over time still times out the actions waiting behind it.
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch countDownLatch = new CountDownLatch(1);
+      ListenableFuture<Void> blocker = RenderService.runAsyncRenderAction(() -> {
+        started.countDown();
+        countDownLatch.await();
+        return null;
+      });
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      nowNs.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+      try {
+        RenderService.runRenderAction(() -> "done", RenderService.RenderPriority.BACKGROUND);
+        fail("Expected a timeout");
+      }
+      catch (TimeoutException expected) {
+      }
+      finally {
+        countDownLatch.countDown();
+      }
+      blocker.get();
+      // The render thread is free again.
+      assertEquals("done", RenderService.runRenderAction(() -> "done"));
+    }
+    finally {
+      waiter.shutdownNow();
+      RenderService.ourRenderThreadTimeoutMs = timeoutMs;
+      RenderService.ourClock = clock;
+    }
+  }
+
+  public void testQueueWaitIsCapped() throws Exception {
+    long timeoutMs = RenderService.ourRenderThreadTimeoutMs;
+    long queueTimeoutMs = RenderService.ourRenderQueueTimeoutMs;
+    LongSupplier clock = RenderService.ourClock;
+    AtomicLong nowNs = new AtomicLong();
+    RenderService.ourRenderThreadTimeoutMs = 500;
+    RenderService.ourRenderQueueTimeoutMs = 1000;
+    RenderService.ourClock = nowNs::get;
+    ExecutorService waiter = Executors.newSingleThreadExecutor();
+    try {
+      // Each action finishes in time, but the background action waits behind them for longer than the cap.
+      AtomicBoolean called = new AtomicBoolean();
+      List<CountDownLatch> releaseLatches = queueBlockingActions(3);
+      Future<String> background = waitForRenderAction(waiter, nowNs, () -> {
+        called.set(true);
+        return "done";
+      });
+      runBlockingActions(releaseLatches.subList(0, 4), nowNs, 400);
+      // The last action is only released once the cap is over, otherwise the background action could run before the waiting thread
+      // notices.
+      assertTrue(releaseLatches.get(4).await(10, TimeUnit.SECONDS));
+      nowNs.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+      try {
+        background.get(10, TimeUnit.SECONDS);
+        fail("Expected a timeout");
+      }
+      catch (ExecutionException expected) {
+        assertTrue(expected.getCause() instanceof TimeoutException);
+      }
+      finally {
+        releaseLatches.get(5).countDown();
+      }
+
+      // The action timed out in the queue is never run, and the render thread doesn't fail fast.
+      assertEquals("done", RenderService.runRenderAction(() -> "done"));
+      assertFalse(called.get());
+    }
+    finally {
+      waiter.shutdownNow();
+      RenderService.ourRenderThreadTimeoutMs = timeoutMs;
+      RenderService.ourRenderQueueTimeoutMs = queueTimeoutMs;
+      RenderService.ourClock = clock;
+    }
+  }
+
+  /**
+   * Queues {@code count} interactive actions, each of them waiting for its latch once started, see {@link #runBlockingActions}.
+   *
+   * @return a latch counted down once the action started and a latch releasing it, for each action
+   */
+  private static List<CountDownLatch> queueBlockingActions(int count) {
+    List<CountDownLatch> latches = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      RenderService.runAsyncRenderAction(() -> {
+        started.countDown();
+        release.await();
+        return null;
+      });
+      latches.add(started);
+      latches.add(release);
+    }
+    return latches;
+  }
+
+  /**
+   * Lets the actions queued by {@link #queueBlockingActions} run one after another, each of them taking {@code durationMs} of the clock.
+   */
+  private static void runBlockingActions(@NotNull List<CountDownLatch> latches, @NotNull AtomicLong nowNs, long durationMs)
+    throws InterruptedException {
+    for (int i = 0; i < latches.size(); i += 2) {
+      assertTrue(latches.get(i).await(10, TimeUnit.SECONDS));
+      nowNs.addAndGet(TimeUnit.MILLISECONDS.toNanos(durationMs));
+      latches.get(i + 1).countDown();
+    }
+  }
+
+  /**
+   * Runs {@code callable} as a synchronous background render action on {@code waiter}, timed by {@code nowNs}. Returns once the action
+   * is queued and the waiting thread reads the clock.
+   */
+  @NotNull
+  private static <T> Future<T> waitForRenderAction(@NotNull ExecutorService waiter,
+                                                   @NotNull AtomicLong nowNs,
+                                                   @NotNull Callable<T> callable) throws InterruptedException {
+    AtomicReference<Thread> waitingThread = new AtomicReference<>();
+    CountDownLatch waiting = new CountDownLatch(1);
+    RenderService.ourClock = () -> {
+      if (Thread.currentThread() == waitingThread.get()) {
+        waiting.countDown();
+      }
+      return nowNs.get();
+    };
+    Future<T> future = waiter.submit(() -> {
+      waitingThread.set(Thread.currentThread());
+      return RenderService.runRenderAction(callable, RenderService.RenderPriority.BACKGROUND);
+    });
+    assertTrue(waiting.await(10, TimeUnit.SECONDS));
+    return future;
+  }
+}
@@ -169,6 +169,37 @@ public class RenderTaskTest extends RenderTestBase {
     task.dispose().get(5, TimeUnit.SECONDS);
   }
 
+  public void testQueuedRendersAreCoalesced() throws Exception {
+    VirtualFile file = myFixture.addFileToProject("res/layout/layout.xml", SIMPLE_LAYOUT).getVirtualFile();
+    Configuration configuration = getConfiguration(file, DEFAULT_DEVICE_ID);
+    RenderLogger logger = mock(RenderLogger.class);
+
+    RenderTask task = createRenderTask(file, configuration, logger);
+    RenderResult inflateResult = task.inflate();
+    checkSimpleLayoutResult(inflateResult);
+    assertTrue(inflateResult.getStats().getInflateDurationMs() >= 0);
+
+    // Keep the render thread busy, so that the renders stay queued.
+    CountDownLatch countDownLatch = new CountDownLatch(1);
+    ListenableFuture<Void> blocker = RenderService.runAsyncRenderAction(() -> {
+      countDownLatch.await();
+      return null;
+    });
+    ListenableFuture<RenderResult> render1 = task.render();
+    ListenableFuture<RenderResult> render2 = task.render();
+    assertSame(render1, render2);
+    countDownLatch.countDown();
+    blocker.get();
+
+    checkSimpleLayoutResult(render1);
+    RenderResultStats stats = render1.get().getStats();
+    assertTrue(stats.getQueueWaitMs() >= 0);
+    assertTrue(stats.getRenderDurationMs() >= 0);
+    // Once the render ran, a new render is queued.
+    assertNotSame(render1, task.render());
+    task.dispose().get(5, TimeUnit.SECONDS);
+  }
+
   public void testAsyncCallAndDispose()
     throws IOException, ExecutionException, InterruptedException, BrokenBarrierException, TimeoutException {
     VirtualFile layoutFile = myFixture.addFileToProject("res/layout/foo.xml", "").getVirtualFile();
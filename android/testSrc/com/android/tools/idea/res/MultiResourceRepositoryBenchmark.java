@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import com.android.resources.ResourceType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures the read throughput of a {@link MultiResourceRepository} read from 8 threads while another thread keeps adding resources to
+ * one of its children. This is not a unit test, run it as an application, optionally with the duration in seconds (5 by default).
+ */
+public final class MultiResourceRepositoryBenchmark {
+  private static final int READER_COUNT = 8;
+  private static final int RESOURCE_COUNT = 1000;
+
+  public static void main(String[] args) throws Exception {
+    long durationNs = TimeUnit.SECONDS.toNanos(args.length > 0 ? Long.parseLong(args[0]) : 5);
+
+    MultiResourceRepositoryTest.EditableRepository child1 = new MultiResourceRepositoryTest.EditableRepository();
+    MultiResourceRepositoryTest.EditableRepository child2 = new MultiResourceRepositoryTest.EditableRepository();
+    for (int i = 0; i < RESOURCE_COUNT; i++) {
+      child1.add(ResourceType.STRING, "string" + i);
+      child2.add(ResourceType.DRAWABLE, "drawable" + i);
+    }
+    MultiResourceRepository repository = MultiResourceRepositoryTest.createRepository(child1, child2);
+
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicLong reads = new AtomicLong();
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    CountDownLatch finished = new CountDownLatch(READER_COUNT);
+    List<Thread> readers = new ArrayList<>();
+    for (int i = 0; i < READER_COUNT; i++) {
+      Thread reader = new Thread(() -> {
+        try {
+          long threadReads = 0;
+          while (!done.get()) {
+            if (repository.getItemsOfType(ResourceType.STRING).size() < RESOURCE_COUNT ||
+                repository.getItemsOfType(ResourceType.DRAWABLE).size() < RESOURCE_COUNT) {
+              throw new IllegalStateException("Resources are missing from the merged repository");
+            }
+            threadReads += 2;
+          }
+          reads.addAndGet(threadReads);
+        }
+        catch (Throwable t) {
+          failure.compareAndSet(null, t);
+        }
+        finally {
+          finished.countDown();
+        }
+      }, "Reader " + i);
+      readers.add(reader);
+      reader.start();
+    }
+
+    long startNs = System.nanoTime();
+    int edits = 0;
+    while (System.nanoTime() - startNs < durationNs) {
+      child1.add(ResourceType.ID, "id" + edits++);
+    }
+    done.set(true);
+    finished.await();
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+
+    System.out.println(String.format("%d readers: %d reads (%d per ms) and %d edits in %d ms", readers.size(), reads.get(),
+                                     reads.get() / Math.max(elapsedMs, 1), edits, elapsedMs));
+  }
+}
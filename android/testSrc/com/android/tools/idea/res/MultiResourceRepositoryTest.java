@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import com.android.ide.common.res2.ResourceItem;
+import com.android.resources.ResourceType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MultiResourceRepositoryTest {
+  @Test
+  public void childChangesOnlyDropTheAffectedTypes() {
+    EditableRepository child1 = new EditableRepository();
+    EditableRepository child2 = new EditableRepository();
+    child1.add(ResourceType.ID, "id1");
+    child1.add(ResourceType.STRING, "string1");
+    child2.add(ResourceType.ID, "id2");
+    MultiResourceRepository repository = createRepository(child1, child2);
+
+    assertEquals(2, repository.getItemsOfType(ResourceType.ID).size());
+    assertEquals(1, repository.getItemsOfType(ResourceType.STRING).size());
+    Object strings = repository.getMap(null, ResourceType.STRING, false);
+    assertSame(strings, repository.getMap(null, ResourceType.STRING, false));
+
+    long modificationCount = repository.getModificationCount();
+    child2.add(ResourceType.ID, "id3");
+    assertTrue(repository.getModificationCount() > modificationCount);
+    assertEquals(3, repository.getItemsOfType(ResourceType.ID).size());
+    // The merged strings didn't depend on the change.
+    assertSame(strings, repository.getMap(null, ResourceType.STRING, false));
+
+    child2.add(ResourceType.STRING, "string2");
+    assertEquals(2, repository.getItemsOfType(ResourceType.STRING).size());
+    assertTrue(repository.hasResourcesOfType(ResourceType.STRING));
+    assertFalse(repository.hasResourcesOfType(ResourceType.LAYOUT));
+  }
+
+  /**
+   * Reads the merged resources while an edit of a child holds {@code ITEM_MAP_LOCK}. The read doesn't wait for the edit and returns the
+   * merged map from before it, and reads after the edit return a new map including it.
+   */
+  @Test
+  public void readsDuringAnEditReturnTheMergedMapFromBeforeIt() throws Exception {
+    EditableRepository child1 = new EditableRepository();
+    EditableRepository child2 = new EditableRepository();
+    child1.add(ResourceType.ID, "id1");
+    child2.add(ResourceType.STRING, "string1");
+    MultiResourceRepository repository = createRepository(child1, child2);
+    ListMultimap<String, ResourceItem> idsBeforeEdit = repository.getMap(null, ResourceType.ID, false);
+    assertNotNull(idsBeforeEdit);
+
+    CountDownLatch editing = new CountDownLatch(1);
+    CountDownLatch readDone = new CountDownLatch(1);
+    Thread editor = new Thread(() -> child1.add(ResourceType.ID, "id2", () -> {
+      editing.countDown();
+      Uninterruptibles.awaitUninterruptibly(readDone, 10, TimeUnit.SECONDS);
+    }));
+    editor.start();
+    assertTrue(editing.await(10, TimeUnit.SECONDS));
+
+    // The edit only releases the lock once the read is done, so a read taking the lock would time out.
+    ExecutorService reader = Executors.newSingleThreadExecutor();
+    try {
+      Future<ListMultimap<String, ResourceItem>> idsDuringEdit = reader.submit(() -> repository.getMap(null, ResourceType.ID, false));
+      assertSame(idsBeforeEdit, idsDuringEdit.get(10, TimeUnit.SECONDS));
+    }
+    finally {
+      readDone.countDown();
+      reader.shutdownNow();
+    }
+    editor.join(TimeUnit.SECONDS.toMillis(10));
+    assertFalse(editor.isAlive());
+
+    ListMultimap<String, ResourceItem> idsAfterEdit = repository.getMap(null, ResourceType.ID, false);
+    assertNotNull(idsAfterEdit);
+    assertNotSame(idsBeforeEdit, idsAfterEdit);
+    assertEquals(ImmutableSet.of("id1", "id2"), idsAfterEdit.keySet());
+    // Merged maps are never modified once published.
+    assertEquals(ImmutableSet.of("id1"), idsBeforeEdit.keySet());
+  }
+
+  @NotNull
+  static MultiResourceRepository createRepository(@NotNull LocalResourceRepository... children) {
+    return new MultiResourceRepository("unit test", ImmutableList.copyOf(children)) {};
+  }
+
+  static class EditableRepository extends TestLocalResourceRepository {
+    void add(@NotNull ResourceType type, @NotNull String name) {
+      add(type, name, () -> {});
+    }
+
+    /**
+     * Adds a resource like {@link #add(ResourceType, String)}, running {@code beforeNotifyingParents} while holding the lock, after the
+     * resource is added but before the parents are told to drop their merged maps.
+     */
+    void add(@NotNull ResourceType type, @NotNull String name, @NotNull Runnable beforeNotifyingParents) {
+      synchronized (ITEM_MAP_LOCK) {
+        //noinspection ConstantConditions
+        getMap(null, type, true).put(name, new ResourceItem(name, null, type, null, null));
+        setModificationCount(ourModificationCounter.incrementAndGet());
+        beforeNotifyingParents.run();
+        invalidateParentCaches(null, type);
+      }
+    }
+  }
+}
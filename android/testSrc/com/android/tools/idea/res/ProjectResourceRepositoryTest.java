@@ -51,6 +51,7 @@ import org.jetbrains.annotations.NotNull;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static com.android.builder.model.AndroidProject.PROJECT_TYPE_LIBRARY;
@@ -274,7 +275,7 @@ public class ProjectResourceRepositoryTest extends AndroidTestCase {
       addModuleWithAndroidFacet(projectBuilder, modules, "plib1", PROJECT_TYPE_LIBRARY);
       addModuleWithAndroidFacet(projectBuilder, modules, "plib2", PROJECT_TYPE_LIBRARY);
     }
-    else if (testName.equals("dependencies")) { // for unit test testDependencies
+    else if (testName.equals("dependencies") || testName.equals("loadInParallel")) {
       addModuleWithAndroidFacet(projectBuilder, modules, "sharedlib", PROJECT_TYPE_LIBRARY);
       addModuleWithAndroidFacet(projectBuilder, modules, "lib1", PROJECT_TYPE_LIBRARY);
       addModuleWithAndroidFacet(projectBuilder, modules, "lib2", PROJECT_TYPE_LIBRARY);
@@ -382,6 +383,51 @@ public class ProjectResourceRepositoryTest extends AndroidTestCase {
     assertFalse(lib1Resources.hasResourceItem(ResourceType.STRING, "unique_string"));
   }
 
+  public void testLoadInParallel() throws Exception {
+    myFixture.copyFileToProject(LAYOUT, "res/layout/layout1.xml");
+    myFixture.copyFileToProject(VALUES, "additionalModules/sharedlib/res/values/sharedvalues.xml");
+    myFixture.copyFileToProject(VALUES_OVERLAY1, "additionalModules/lib2/res/values/lib2values.xml");
+
+    Modules modules = new Modules(getProject());
+    List<AndroidFacet> facets = new ArrayList<>();
+    for (Module module : Arrays.asList(modules.getAppModule(), modules.getModule("lib1"), modules.getModule("lib2"),
+                                       modules.getModule("sharedlib"))) {
+      assertNotNull(module);
+      AndroidFacet facet = AndroidFacet.getInstance(module);
+      assertNotNull(facet);
+      facets.add(facet);
+    }
+
+    List<VirtualFile> dirs = facets.stream().flatMap(facet -> facet.getAllResourceDirectories().stream()).collect(Collectors.toList());
+    assertFalse(dirs.stream().allMatch(ResourceFolderRegistry::isCached));
+
+    // The repository tree is built in a read action, which doesn't keep the directories from being loaded in parallel.
+    ApplicationManager.getApplication().executeOnPooledThread(
+      () -> ApplicationManager.getApplication().runReadAction(() -> ResourceFolderRegistry.loadInParallel(facets)))
+      .get(30, TimeUnit.SECONDS);
+    for (VirtualFile dir : dirs) {
+      assertTrue(dir.getPath(), ResourceFolderRegistry.isCached(dir));
+    }
+
+    // The module repositories are built from the repositories loaded in parallel.
+    for (AndroidFacet facet : facets) {
+      LocalResourceRepository moduleResources = ModuleResourceRepository.getOrCreateInstance(facet);
+      for (VirtualFile dir : facet.getAllResourceDirectories()) {
+        ResourceFolderRepository folderResources = ResourceFolderRegistry.get(facet, dir);
+        assertSame(folderResources, ResourceFolderRegistry.get(facet, dir));
+        if (moduleResources instanceof MultiResourceRepository) {
+          assertTrue(((MultiResourceRepository)moduleResources).getChildren().contains(folderResources));
+        }
+        else {
+          assertSame(moduleResources, folderResources);
+        }
+      }
+    }
+    AndroidFacet sharedLibFacet = facets.get(3);
+    assertTrue(ModuleResourceRepository.getOrCreateInstance(sharedLibFacet).hasResourceItem(ResourceType.STRING, "ellipsis"));
+    assertTrue(ModuleResourceRepository.getOrCreateInstance(facets.get(2)).hasResourceItem(ResourceType.STRING, "unique_string"));
+  }
+
   private static void addModuleDependency(Module from, Module to) {
     final ModifiableRootModel model = ModuleRootManager.getInstance(from).getModifiableModel();
     model.addModuleOrderEntry(to);
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.res;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ResourceFolderIndexTest {
+  @Rule
+  public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void readsWhatWasWritten() throws Exception {
+    File file = writeIndex();
+    ResourceFolderIndex index = ResourceFolderIndex.read(file);
+    assertNotNull(index);
+
+    assertEquals(-1, index.findFolder("layout", 2));
+    int folder = index.findFolder("layout", 1);
+    assertEquals(0, folder);
+    assertEquals(2, index.getFileCount(folder));
+    int firstFile = index.getFirstFile(folder);
+    assertEquals("main.xml", index.getFileName(firstFile));
+    assertTrue(index.isIdGenerating(firstFile));
+    assertEquals("icon.png", index.getFileName(firstFile + 1));
+    assertFalse(index.isIdGenerating(firstFile + 1));
+  }
+
+  @Test
+  public void corruptedStringOffsetsAreRejectedWhenRead() throws Exception {
+    File file = writeIndex();
+    ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    // The offset of the first string follows the header, the folder table (one folder) and the file table (two files).
+    buffer.putInt(5 * 4 + (4 + 8 + 4 + 4) + 2 * (4 + 1), -1);
+    Files.write(file.toPath(), buffer.array());
+
+    try {
+      ResourceFolderIndex.read(file);
+      fail("The corrupted index was read");
+    }
+    catch (IOException expected) {
+    }
+  }
+
+  private File writeIndex() throws IOException {
+    ResourceFolderIndex.Builder builder = new ResourceFolderIndex.Builder();
+    builder.addFolder("layout", 1);
+    builder.addFile("main.xml", true);
+    builder.addFile("icon.png", false);
+    File file = new File(myTemporaryFolder.getRoot(), ResourceFolderIndex.FILE_NAME);
+    builder.write(file);
+    return file;
+  }
+}
@@ -4003,6 +4003,42 @@ public class ResourceFolderRepositoryTest extends AndroidTestCase {
     assertTrue(fromBlob.hasResourceItem(ResourceType.STRING, "hello_world"));
   }
 
+  public void testFileIndex() throws Exception {
+    myFixture.copyFileToProject(LAYOUT1, "res/layout/layout.xml");
+    myFixture.copyFileToProject(DRAWABLE, "res/drawable/logo.png");
+    VirtualFile file1 = myFixture.copyFileToProject(DRAWABLE, "res/drawable-hdpi/logo.png");
+    myFixture.copyFileToProject(STRINGS, "res/values/strings.xml");
+    final ResourceFolderRepository resources = createRepository();
+    assertNotNull(resources);
+    assertFalse(resources.getInitialScanState().hasFreshFileIndex());
+    assertEquals(3, resources.getInitialScanState().numFoldersRescanned);
+    resources.saveStateToFile();
+    ResourceFolderRegistry.reset();
+
+    // All the file resource folders are unchanged, so their files are taken from the index.
+    final ResourceFolderRepository fromIndex = createRepository();
+    assertNotNull(fromIndex);
+    assertTrue(fromIndex.getInitialScanState().hasFreshFileIndex());
+    assertEquals(3, fromIndex.getInitialScanState().numFoldersIndexed);
+    assertEquals(0, fromIndex.getInitialScanState().numXmlReparsed);
+    assertTrue(fromIndex.equalFilesItems(resources));
+    ResourceFolderRegistry.reset();
+
+    final PsiFile psiFile1 = PsiManager.getInstance(getProject()).findFile(file1);
+    assertNotNull(psiFile1);
+    WriteCommandAction.runWriteCommandAction(null, psiFile1::delete);
+
+    // Only the folder of the deleted file is scanned again.
+    final ResourceFolderRepository afterDelete = createRepository();
+    assertNotNull(afterDelete);
+    assertFalse(afterDelete.getInitialScanState().hasFreshFileIndex());
+    assertEquals(2, afterDelete.getInitialScanState().numFoldersIndexed);
+    assertEquals(1, afterDelete.getInitialScanState().numFoldersRescanned);
+    assertTrue(afterDelete.hasResourceItem(ResourceType.LAYOUT, "layout"));
+    assertTrue(afterDelete.hasResourceItem(ResourceType.ID, "noteArea"));
+    assertEquals(1, afterDelete.getResourceItem(ResourceType.DRAWABLE, "logo").size());
+  }
+
   public void testSerializationEditXmlFileAndLoad() throws Exception {
     VirtualFile file1 = myFixture.copyFileToProject(STRINGS, "res/values/strings.xml");
     File file1AsFile = VfsUtilCore.virtualToIoFile(file1);
@@ -110,6 +110,8 @@ public class ThumbnailManager extends AndroidFacetScopedService {
     RenderTask task = renderService.createTask(file, configuration, logger, surface);
     if (task != null) {
       task.setDecorations(false);
+      // Thumbnails shouldn't delay the renders of the layout editor.
+      task.setPriority(RenderService.RenderPriority.BACKGROUND);
     }
     return task;
   }
@@ -88,6 +88,18 @@ public class LayoutlibSceneManager extends SceneManager {
   private static final int RENDER_DELAY_MS = 10;
   private RenderTask myRenderTask;
   private static final Object RENDERING_LOCK = new Object();
+  /** Key to cache the first render of {@link #myRenderTask} with, null once it's cached or if it can't be cached. */
+  @GuardedBy("RENDERING_LOCK")
+  private RenderResultCache.Key myRenderTaskKey;
+  /** Key of what {@link #myRenderTask} was inflated from, null if there is no task or if it can't be cached. */
+  @GuardedBy("RENDERING_LOCK")
+  private RenderResultCache.Key myInflatedKey;
+  /** Whether {@link #myRenderResult} was taken from the {@link RenderResultCache}, there is no {@link #myRenderTask} then. */
+  @GuardedBy("RENDERING_LOCK")
+  private boolean myUsesCachedResult;
+  /** Whether the next render can show the cached {@link #myRenderResult} instead of rendering. */
+  @GuardedBy("RENDERING_LOCK")
+  private boolean myCachedResultPending;
   private ResourceNotificationManager.ResourceVersion myRenderedVersion;
   private final ReentrantReadWriteLock myRenderResultLock = new ReentrantReadWriteLock();
   @GuardedBy("myRenderResultLock")
@@ -197,6 +209,7 @@ public class LayoutlibSceneManager extends SceneManager {
         if (myRenderTask != null) {
           myRenderTask.dispose();
           myRenderTask = null;
+          myInflatedKey = null;
         }
       }
       myRenderResultLock.writeLock().lock();
@@ -492,8 +505,13 @@ public class LayoutlibSceneManager extends SceneManager {
    */
   @Override
   public void layout(boolean animate) {
-    if (myRenderTask != null) {
-      synchronized (RENDERING_LOCK) {
+    synchronized (RENDERING_LOCK) {
+      if (myRenderTask == null && myUsesCachedResult) {
+        // The result shown was taken from the cache, without a render session to run the layout pass in. Inflating again skips the cache.
+        myCachedResultPending = false;
+        inflate(false);
+      }
+      if (myRenderTask != null) {
         RenderResult result = null;
         try {
           result = myRenderTask.layout().get();
@@ -565,7 +583,8 @@ public class LayoutlibSceneManager extends SceneManager {
   /**
    * Synchronously inflates the model and updates the view hierarchy
    *
-   * @param force forces the model to be re-inflated even if a previous version was already inflated
+   * @param force forces the model to be re-inflated even if a previous version was already inflated, unless the current render session
+   *              was inflated from the same inputs
    * @returns whether the model was inflated in this call or not
    */
   private boolean inflate(boolean force) {
@@ -584,7 +603,7 @@ public class LayoutlibSceneManager extends SceneManager {
 
     RenderResult result = null;
     synchronized (RENDERING_LOCK) {
-      if (myRenderTask != null && !force) {
+      if ((myRenderTask != null || myCachedResultPending) && !force) {
         // No need to inflate
         return false;
       }
@@ -595,13 +614,39 @@ public class LayoutlibSceneManager extends SceneManager {
 
       RenderService renderService = RenderService.getInstance(getModel().getFacet());
       RenderLogger logger = renderService.createLogger();
+      String adaptiveIconMaskPath = ((NlDesignSurface)getDesignSurface()).getAdaptiveIconShape().getPathDescription();
+      // Animations render frames that depend on the elapsed time, which isn't part of the key
+      RenderResultCache.Key key = myElapsedFrameTimeMs == -1
+                                  ? RenderResultCache.Key.create(getModel().getFile(), configuration, myRenderedVersion,
+                                                                 !isRenderViewPort(), adaptiveIconMaskPath)
+                                  : null;
+      if (key != null && key.equals(myInflatedKey) && myRenderTask != null && !myRenderTask.isDisposed()) {
+        // The session was inflated from the same inputs, keep it (and any state of its views) rather than replacing it. Once it has
+        // rendered them (its key is cleared then), the next render can show that result as well.
+        myCachedResultPending = myRenderTaskKey == null;
+        return false;
+      }
+      // Once a cached result is shown, another render means something needs the session (e.g. to scroll or toggle the state of a view)
+      RenderResult cachedResult = key != null && (force || !myUsesCachedResult) ? renderService.getResultCache().get(key) : null;
       if (myRenderTask != null && !myRenderTask.isDisposed()) {
         myRenderTask.dispose();
       }
-      myRenderTask = renderService.createTask(getModel().getFile(), configuration, logger, getDesignSurface());
-      setupRenderTask(myRenderTask);
+      myUsesCachedResult = cachedResult != null;
+      myCachedResultPending = cachedResult != null;
+      if (cachedResult != null) {
+        myRenderTask = null;
+        myRenderTaskKey = null;
+        myInflatedKey = null;
+        result = cachedResult;
+      }
+      else {
+        myRenderTask = renderService.createTask(getModel().getFile(), configuration, logger, getDesignSurface());
+        myRenderTaskKey = key;
+        myInflatedKey = key;
+        setupRenderTask(myRenderTask);
+      }
       if (myRenderTask != null) {
-        myRenderTask.getLayoutlibCallback().setAdaptiveIconMaskPath(((NlDesignSurface)getDesignSurface()).getAdaptiveIconShape().getPathDescription());
+        myRenderTask.getLayoutlibCallback().setAdaptiveIconMaskPath(adaptiveIconMaskPath);
         if (!isRenderViewPort()) {
           myRenderTask.useDesignMode(getModel().getFile());
         }
@@ -609,6 +654,7 @@ public class LayoutlibSceneManager extends SceneManager {
         if (result == null || !result.getRenderResult().isSuccess()) {
           myRenderTask.dispose();
           myRenderTask = null;
+          myInflatedKey = null;
 
           if (result == null) {
             result = RenderResult.createBlank(getModel().getFile());
@@ -625,7 +671,7 @@ public class LayoutlibSceneManager extends SceneManager {
         myRenderResultLock.writeLock().unlock();
       }
 
-      return myRenderTask != null;
+      return myRenderTask != null || myUsesCachedResult;
     }
   }
 
@@ -698,11 +744,20 @@ public class LayoutlibSceneManager extends SceneManager {
     boolean inflated = inflate(false);
 
     synchronized (RENDERING_LOCK) {
-      if (myRenderTask != null) {
+      if (myCachedResultPending) {
+        // The inflate found the result of an identical render, which is already shown
+        myCachedResultPending = false;
+      }
+      else if (myRenderTask != null) {
         if (myElapsedFrameTimeMs != -1) {
           myRenderTask.setElapsedFrameTimeNanos(TimeUnit.MILLISECONDS.toNanos(myElapsedFrameTimeMs));
         }
         RenderResult result = Futures.getUnchecked(myRenderTask.render());
+        if (result != null && myRenderTaskKey != null && myElapsedFrameTimeMs == -1) {
+          // Later renders of the task can depend on state the key doesn't capture, like the scroll position of views
+          RenderService.getInstance(getModel().getFacet()).getResultCache().put(myRenderTaskKey, result);
+          myRenderTaskKey = null;
+        }
         // When the layout was inflated in this same call, we do not have to update the hierarchy again
         if (result != null && !inflated) {
           updateHierarchy(result);
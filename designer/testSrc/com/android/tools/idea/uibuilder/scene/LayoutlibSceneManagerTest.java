@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.idea.uibuilder.scene;
+
+import com.android.tools.idea.common.model.NlModel;
+import com.android.tools.idea.rendering.RenderResult;
+import com.android.tools.idea.rendering.RenderService;
+import com.android.tools.idea.uibuilder.LayoutTestCase;
+import com.android.tools.idea.uibuilder.adaptiveicon.ShapeMenuAction;
+import com.android.tools.idea.uibuilder.surface.NlDesignSurface;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.xml.XmlFile;
+import org.jetbrains.annotations.NotNull;
+
+public class LayoutlibSceneManagerTest extends LayoutTestCase {
+  private static final String INCLUDED_LAYOUT = "<TextView xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                                                "    android:layout_width=\"wrap_content\"\n" +
+                                                "    android:layout_height=\"wrap_content\"\n" +
+                                                "    android:text=\"Hello\"/>";
+  private static final String LAYOUT = "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+                                       "    android:layout_width=\"match_parent\"\n" +
+                                       "    android:layout_height=\"match_parent\">\n" +
+                                       "    <include layout=\"@layout/included\"/>\n" +
+                                       "</LinearLayout>";
+
+  private NlDesignSurface mySurface;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    mySurface = new NlDesignSurface(getProject(), false, getTestRootDisposable());
+    RenderService.getInstance(myFacet).getResultCache().clear();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    try {
+      Disposer.dispose(mySurface);
+      mySurface = null;
+    }
+    finally {
+      super.tearDown();
+    }
+  }
+
+  public void testCachedResults() {
+    PsiFile included = myFixture.addFileToProject("res/layout/included.xml", INCLUDED_LAYOUT);
+    XmlFile file = (XmlFile)myFixture.addFileToProject("res/layout/layout.xml", LAYOUT);
+    LayoutlibSceneManager manager = createSceneManager(file);
+
+    manager.render(null);
+    RenderResult rendered = manager.getRenderResult();
+    assertNotNull(rendered);
+    assertTrue(rendered.getRenderResult().isSuccess());
+
+    // Nothing changed, the inflate keeps the session and the render doesn't replace its result.
+    manager.updateModel();
+    assertSame(rendered, manager.getRenderResult());
+    manager.render(null);
+    assertSame(rendered, manager.getRenderResult());
+
+    // Rendering with another mask replaces the session, and going back to the first mask shows its cached result.
+    mySurface.setAdaptiveIconShape(ShapeMenuAction.AdaptiveIconShape.CIRCLE);
+    manager.updateModel();
+    manager.render(null);
+    assertNotSame(rendered, manager.getRenderResult());
+    mySurface.setAdaptiveIconShape(ShapeMenuAction.AdaptiveIconShape.getDefaultShape());
+    manager.updateModel();
+    assertSame(rendered, manager.getRenderResult());
+    manager.render(null);
+    assertSame(rendered, manager.getRenderResult());
+
+    // A layout pass needs a render session, which the cached result doesn't have.
+    manager.layout(false);
+    RenderResult inflated = manager.getRenderResult();
+    assertNotSame(rendered, inflated);
+    assertTrue(inflated.getRenderResult().isSuccess());
+
+    // The new session was inflated from the same inputs, so it is kept rather than swapped for the cached result.
+    manager.updateModel();
+    assertSame(inflated, manager.getRenderResult());
+
+    // Editing the included layout doesn't change the generation of the resources, but it does change the key.
+    Document document = PsiDocumentManager.getInstance(getProject()).getDocument(included);
+    assertNotNull(document);
+    WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+      document.setText(INCLUDED_LAYOUT.replace("Hello", "World"));
+      PsiDocumentManager.getInstance(getProject()).commitDocument(document);
+    });
+    manager.updateModel();
+    assertNotSame(rendered, manager.getRenderResult());
+    assertNotSame(inflated, manager.getRenderResult());
+
+    Disposer.dispose(manager);
+  }
+
+  @NotNull
+  private LayoutlibSceneManager createSceneManager(@NotNull XmlFile file) {
+    NlModel model = NlModel.create(mySurface, getTestRootDisposable(), myFacet, file);
+    // Avoid rendering any other components (nav bar and similar) so we do not have dependencies on the Material theme
+    model.getConfiguration().setTheme("android:Theme.NoTitleBar.Fullscreen");
+    return new LayoutlibSceneManager(model, mySurface);
+  }
+}
@@ -15,13 +15,28 @@
  */
 package com.android.tools.datastore;
 
+import com.android.tools.datastore.database.DataStoreTable;
+import com.android.tools.datastore.database.RetentionPolicy;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.sqlite.SQLiteConfig;
 
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DataStoreDatabase {
   public enum Characteristic {
@@ -34,13 +49,60 @@ public class DataStoreDatabase {
     return Logger.getInstance(DataStoreDatabase.class);
   }
 
+  /**
+   * Period at which the writes buffered by the tables are flushed and committed as a single transaction.
+   */
+  public static final long COMMIT_PERIOD_MS = 1000;
+
+  /**
+   * How long {@link #disconnect()} waits for an in-flight commit or retention pass to finish.
+   */
+  public static final long DISCONNECT_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(5);
+
+  /**
+   * Period at which the {@link RetentionPolicy} is applied.
+   */
+  public static final long RETENTION_PERIOD_MS = TimeUnit.SECONDS.toMillis(10);
+
+  /**
+   * In-memory databases live in the IDE process, so by default they evict their oldest data past this size.
+   */
+  public static final RetentionPolicy DEFAULT_PERFORMANT_RETENTION_POLICY =
+    new RetentionPolicy(RetentionPolicy.UNLIMITED, 512L * 1024 * 1024, RetentionPolicy.DEFAULT_BUCKET_NS);
+
+  /**
+   * File-backed databases, like the shared namespace every service writes its time series to, only cost disk space, so they get a
+   * larger budget before they evict their oldest data.
+   */
+  public static final RetentionPolicy DEFAULT_DURABLE_RETENTION_POLICY =
+    new RetentionPolicy(RetentionPolicy.UNLIMITED, 4L * 1024 * 1024 * 1024, RetentionPolicy.DEFAULT_BUCKET_NS);
+
+  /**
+   * Number of read-only connections opened on {@link Characteristic#DURABLE} databases, so that queries do not have to share the
+   * connection the pollers write through.
+   */
+  public static final int READ_CONNECTION_COUNT = 4;
+
   private final Connection myConnection;
+  @NotNull private final List<Connection> myReadConnections;
+  private final AtomicInteger myNextReadConnection = new AtomicInteger();
+  private final ThreadLocal<Connection> myThreadReadConnection = new ThreadLocal<>();
+  private volatile RetentionPolicy myRetentionPolicy;
+  private final Object myCommitLock = new Object();
+  // Number of writes handed to the tables so far, and how many of them the last commit covered. Used so that queries served from
+  // the read connections, which only see committed rows, can commit first when there is something to commit.
+  private final AtomicLong myWriteCount = new AtomicLong();
+  private volatile long myCommittedWriteCount;
+  private final ScheduledExecutorService myCommitTimer =
+    Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("DataStoreCommitTimer").setDaemon(true).build());
 
   /**
    * @param dbPath the path to the backing DB file, if {@link Characteristic#DURABLE}.
    */
   public DataStoreDatabase(@NotNull String dbPath, @NotNull Characteristic characteristic) {
     Connection connection = null;
+    List<Connection> readConnections = new ArrayList<>();
+    RetentionPolicy retentionPolicy = RetentionPolicy.UNBOUNDED;
     try {
       // For older versions of the JDBC we need to force load the sqlite.JDBC driver to trigger static initializer's and register
       // the JDBC driver with the java DriverMangaer.
@@ -49,6 +111,7 @@ public class DataStoreDatabase {
       switch (characteristic) {
         case PERFORMANT:
           connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+          retentionPolicy = DEFAULT_PERFORMANT_RETENTION_POLICY;
           break;
         case DURABLE:
           File dbFile = new File(dbPath);
@@ -58,38 +121,189 @@ public class DataStoreDatabase {
               getLogger().error("Unable to create parent directory");
             }
           }
-          connection = DriverManager.getConnection(String.format("jdbc:sqlite:%s", dbFile.getPath()));
+          String url = String.format("jdbc:sqlite:%s", dbFile.getPath());
+          connection = DriverManager.getConnection(url);
+          retentionPolicy = DEFAULT_DURABLE_RETENTION_POLICY;
+          // Write-ahead logging lets the read connections query a consistent snapshot while the writer keeps appending.
+          try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+          }
+          SQLiteConfig readConfig = new SQLiteConfig();
+          readConfig.setReadOnly(true);
+          for (int i = 0; i < READ_CONNECTION_COUNT; i++) {
+            readConnections.add(readConfig.createConnection(url));
+          }
           break;
         default:
           throw new RuntimeException("Characteristic not handled!");
       }
 
-      // Performance optimization.
-      // TODO: Create a timer and commit the database transaction every X seconds.
+      // Performance optimization: writes are group-committed by the commit timer instead of one transaction per row.
       connection.setAutoCommit(false);
     }
     catch (ClassNotFoundException | SQLException e) {
       getLogger().error(e);
     }
     myConnection = connection;
+    myReadConnections = Collections.unmodifiableList(readConnections);
+    myRetentionPolicy = retentionPolicy;
+    if (myConnection != null) {
+      myCommitTimer.scheduleWithFixedDelay(this::commit, COMMIT_PERIOD_MS, COMMIT_PERIOD_MS, TimeUnit.MILLISECONDS);
+      myCommitTimer.scheduleWithFixedDelay(this::applyRetentionPolicy, RETENTION_PERIOD_MS, RETENTION_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
   }
 
-  public void disconnect() {
+  @NotNull
+  public RetentionPolicy getRetentionPolicy() {
+    return myRetentionPolicy;
+  }
+
+  public void setRetentionPolicy(@NotNull RetentionPolicy retentionPolicy) {
+    myRetentionPolicy = retentionPolicy;
+  }
+
+  /**
+   * Evicts the data falling outside of the current {@link RetentionPolicy}. This runs periodically on the commit timer, while the
+   * pollers keep queueing their writes.
+   *
+   * @return the number of rows evicted.
+   */
+  public int applyRetentionPolicy() {
+    RetentionPolicy policy = myRetentionPolicy;
     try {
-      myConnection.commit();
+      if (policy.isUnbounded() || myConnection.isClosed()) {
+        return 0;
+      }
+      int evicted = 0;
+      boolean overBudget = isOverBudget(policy);
+      while (true) {
+        // Each pass evicts everything past the maximum age, but only the oldest bucket of each session when the database is over
+        // budget. Keep going until it fits, so that a backlog of data is not left to shrink by a single bucket every period.
+        int passEvicted = DataStoreTable.applyRetentionPolicy(myConnection, policy, overBudget);
+        evicted += passEvicted;
+        if (!overBudget || passEvicted == 0) {
+          return evicted;
+        }
+        overBudget = isOverBudget(policy);
+      }
     }
     catch (SQLException e) {
-      getLogger().error(e);
+      getLogger().warn(e);
+      return 0;
+    }
+  }
+
+  private boolean isOverBudget(@NotNull RetentionPolicy policy) throws SQLException {
+    return policy.getMaxBytes() != RetentionPolicy.UNLIMITED && getSizeBytes() > policy.getMaxBytes();
+  }
+
+  /**
+   * @return the number of bytes used by the database, not counting the pages that were freed and can be reused.
+   */
+  public long getSizeBytes() throws SQLException {
+    return (queryPragma("page_count") - queryPragma("freelist_count")) * queryPragma("page_size");
+  }
+
+  private long queryPragma(@NotNull String pragma) throws SQLException {
+    try (Statement statement = myConnection.createStatement(); ResultSet result = statement.executeQuery("PRAGMA " + pragma)) {
+      return result.next() ? result.getLong(1) : 0;
     }
-    finally {
+  }
+
+  /**
+   * Flushes the writes buffered by the tables backed by this database and commits them.
+   */
+  public void commit() {
+    synchronized (myCommitLock) {
       try {
-        if (!myConnection.isClosed()) {
-          myConnection.close();
+        if (myConnection.isClosed()) {
+          return;
         }
+        long writeCount = myWriteCount.get();
+        DataStoreTable.flushTables(myConnection);
+        myConnection.commit();
+        myCommittedWriteCount = writeCount;
+      }
+      catch (SQLException e) {
+        // A failed periodic commit is retried on the next tick, with the rows still part of the open transaction.
+        getLogger().warn(e);
+      }
+    }
+  }
+
+  /**
+   * Records that a table queued or wrote rows that are not committed yet.
+   */
+  public void onWrite() {
+    myWriteCount.incrementAndGet();
+  }
+
+  /**
+   * @return true if rows were written since the last {@link #commit()}, in which case they are not visible to queries going
+   * through the {@link #getReadConnection() read connections} until the next commit.
+   */
+  public boolean hasUncommittedWrites() {
+    return myWriteCount.get() != myCommittedWriteCount;
+  }
+
+  /**
+   * @return the read-only connection assigned to the calling thread, or null if this database has no read connections (e.g.
+   * {@link Characteristic#PERFORMANT} databases, which cannot be shared between connections), in which case queries should go
+   * through {@link #getConnection()}.
+   */
+  @Nullable
+  public Connection getReadConnection() {
+    if (myReadConnections.isEmpty()) {
+      return null;
+    }
+    Connection connection = myThreadReadConnection.get();
+    if (connection == null) {
+      // Threads are pinned to a connection so that their prepared statements stay valid; assign them round-robin.
+      connection = myReadConnections.get(Math.floorMod(myNextReadConnection.getAndIncrement(), myReadConnections.size()));
+      myThreadReadConnection.set(connection);
+    }
+    return connection;
+  }
+
+  public void disconnect() {
+    // Let an in-flight commit or eviction finish before the connections are closed underneath it. The periodic tasks are not
+    // run again once the timer is shut down; the final flush and commit below pick up whatever they would have written.
+    myCommitTimer.shutdown();
+    try {
+      if (!myCommitTimer.awaitTermination(DISCONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        getLogger().warn("Timed out waiting for the commit timer to finish");
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (Connection readConnection : myReadConnections) {
+      try {
+        readConnection.close();
+      }
+      catch (SQLException e) {
+        getLogger().warn(e);
+      }
+    }
+    synchronized (myCommitLock) {
+      try {
+        DataStoreTable.flushTables(myConnection);
+        myConnection.commit();
       }
       catch (SQLException e) {
         getLogger().error(e);
       }
+      finally {
+        try {
+          if (!myConnection.isClosed()) {
+            myConnection.close();
+          }
+        }
+        catch (SQLException e) {
+          getLogger().error(e);
+        }
+      }
     }
   }
 
@@ -17,6 +17,8 @@ package com.android.tools.datastore;
 
 import com.android.annotations.VisibleForTesting;
 import com.android.tools.analytics.UsageTracker;
+import com.android.tools.datastore.database.TimeSeriesBackend;
+import com.android.tools.datastore.poller.PollScheduler;
 import com.android.tools.datastore.service.*;
 import com.android.tools.profiler.proto.*;
 import com.google.wireless.android.sdk.stats.AndroidProfilerDbStats;
@@ -25,6 +27,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import io.grpc.*;
 import io.grpc.inprocess.InProcessServerBuilder;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
@@ -52,6 +55,12 @@ public class DataStoreService {
   private static final long REPORT_INITIAL_DELAY = TimeUnit.MINUTES.toMillis(15);
   private static final long REPORT_PERIOD = TimeUnit.HOURS.toMillis(1);
 
+  /**
+   * Where the CPU, memory and network services keep their periodic samples. The monitors query them on every frame, and the tables
+   * are recreated on every start anyway, so they are kept decoded in memory rather than in the shared database.
+   */
+  public static final TimeSeriesBackend TIME_SERIES_BACKEND = TimeSeriesBackend.COLUMNAR;
+
   public static class BackingNamespace {
     public static final BackingNamespace DEFAULT_SHARED_NAMESPACE = new BackingNamespace("default.sql", DURABLE);
 
@@ -131,9 +140,9 @@ public class DataStoreService {
     myProfilerService = new ProfilerService(this, myFetchExecutor, mySessionIdLookup);
     registerService(myProfilerService);
     registerService(new EventService(this, myFetchExecutor, mySessionIdLookup));
-    registerService(new CpuService(this, myFetchExecutor, mySessionIdLookup));
-    registerService(new MemoryService(this, myFetchExecutor, mySessionIdLookup));
-    registerService(new NetworkService(this, myFetchExecutor, mySessionIdLookup));
+    registerService(new CpuService(this, myFetchExecutor, mySessionIdLookup, TIME_SERIES_BACKEND));
+    registerService(new MemoryService(this, myFetchExecutor, mySessionIdLookup, TIME_SERIES_BACKEND));
+    registerService(new NetworkService(this, myFetchExecutor, mySessionIdLookup, TIME_SERIES_BACKEND));
   }
 
   @VisibleForTesting
@@ -155,7 +164,7 @@ public class DataStoreService {
       assert !namespace.myNamespace.isEmpty();
       DataStoreDatabase db = myDatabases.computeIfAbsent(namespace, backingNamespace -> createDatabase(
         myDatastoreDirectory + backingNamespace.myNamespace, backingNamespace.myCharacteristic));
-      service.setBackingStore(namespace, db.getConnection());
+      service.setBackingStore(namespace, db);
     });
 
     // Build server and start listening for RPC calls for the registered service
@@ -187,6 +196,14 @@ public class DataStoreService {
     }
   }
 
+  /**
+   * Polls {@code session}, the one whose data is being displayed, at the full rate and slows down the pollers of every other session.
+   * A null session slows down all of them, e.g. while the profiler is hidden.
+   */
+  public void setForegroundSession(@Nullable Common.Session session) {
+    PollScheduler.getInstance().setForegroundSession(session);
+  }
+
   public void shutdown() {
     myReportTimer.cancel();
     myServer.shutdownNow();
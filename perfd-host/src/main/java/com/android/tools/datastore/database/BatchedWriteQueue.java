@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.sql.SQLException;
+
+/**
+ * A bounded ring of pending row writes owned by a {@link DataStoreTable}. Producers (typically pollers) append rows with
+ * {@link #offer(Enum, Object[])}, and {@link #flush(BatchExecutor)} drains them in insertion order, handing consecutive rows
+ * that share a statement to the executor so they can be sent as a single JDBC batch.
+ *
+ * The queue also keeps track of the metrics needed to tune the write pipeline: the current and peak queue depth, and the
+ * latency of each flush.
+ */
+public final class BatchedWriteQueue<T extends Enum> {
+  private static Logger getLogger() {
+    return Logger.getInstance(BatchedWriteQueue.class);
+  }
+
+  interface BatchExecutor<T> {
+    /**
+     * Executes rows [start, end) of {@code rows} as a single batch of {@code statement}.
+     */
+    void executeBatch(@NotNull T statement, @NotNull Object[][] rows, int start, int end) throws SQLException;
+  }
+
+  private final Object myQueueLock = new Object();
+  private final Object myFlushLock = new Object();
+
+  // Ring buffer of pending rows, guarded by myQueueLock.
+  private final Object[] myStatements;
+  private final Object[][] myRows;
+  private int myHead;
+  private int mySize;
+
+  // Rows being flushed, guarded by myFlushLock. Preallocated so a flush does not allocate.
+  private final Object[] myFlushStatements;
+  private final Object[][] myFlushRows;
+
+  // Metrics, guarded by myQueueLock.
+  private int myPeakDepth;
+  private long myFlushCount;
+  private long myFlushedRowCount;
+  private long myDroppedRowCount;
+  private long myTotalFlushLatencyNs;
+  private long myMaxFlushLatencyNs;
+  private long myLastFlushLatencyNs;
+
+  BatchedWriteQueue(int capacity) {
+    assert capacity > 0;
+    myStatements = new Object[capacity];
+    myRows = new Object[capacity][];
+    myFlushStatements = new Object[capacity];
+    myFlushRows = new Object[capacity][];
+  }
+
+  /**
+   * Appends a row to the queue.
+   *
+   * @return true if the queue is full after appending the row, in which case the caller is expected to {@link #flush(BatchExecutor)}.
+   * If the calling thread is interrupted while waiting for room in a full queue, the row is dropped and false is returned.
+   */
+  boolean offer(@NotNull T statement, @NotNull Object[] params) {
+    synchronized (myQueueLock) {
+      while (mySize == myStatements.length) {
+        // Another producer filled the ring and has not flushed it yet. Wait for the flush rather than dropping rows.
+        try {
+          myQueueLock.wait();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          myDroppedRowCount++;
+          getLogger().warn("Interrupted while waiting for the write queue to be flushed, dropping a row of " + statement);
+          return false;
+        }
+      }
+      int tail = (myHead + mySize) % myStatements.length;
+      myStatements[tail] = statement;
+      myRows[tail] = params;
+      mySize++;
+      myPeakDepth = Math.max(myPeakDepth, mySize);
+      return mySize == myStatements.length;
+    }
+  }
+
+  /**
+   * Drains every pending row and executes them through {@code executor}. Flushes are serialized, so rows reach the database in
+   * the order they were offered even when several threads flush concurrently.
+   *
+   * If {@code executor} fails, the rows of the failing batch and of every batch after it are dropped: they cannot be put back
+   * ahead of the rows offered since, and retrying a batch that the database rejected would fail again. The loss is logged and
+   * counted by {@link #getDroppedRowCount()}.
+   */
+  @SuppressWarnings("unchecked")
+  void flush(@NotNull BatchExecutor<T> executor) throws SQLException {
+    synchronized (myFlushLock) {
+      int count;
+      synchronized (myQueueLock) {
+        count = mySize;
+        if (count == 0) {
+          return;
+        }
+        for (int i = 0; i < count; i++) {
+          int index = (myHead + i) % myStatements.length;
+          myFlushStatements[i] = myStatements[index];
+          myFlushRows[i] = myRows[index];
+          myStatements[index] = null;
+          myRows[index] = null;
+        }
+        myHead = 0;
+        mySize = 0;
+        myQueueLock.notifyAll();
+      }
+
+      long startNs = System.nanoTime();
+      int flushed = 0;
+      try {
+        for (int i = 1; i <= count; i++) {
+          if (i == count || myFlushStatements[i] != myFlushStatements[flushed]) {
+            executor.executeBatch((T)myFlushStatements[flushed], myFlushRows, flushed, i);
+            flushed = i;
+          }
+        }
+      }
+      finally {
+        if (flushed < count) {
+          getLogger().warn(String.format("Failed to write %d of %d queued rows, starting with a row of %s, dropping them",
+                                         count - flushed, count, myFlushStatements[flushed]));
+        }
+        for (int i = 0; i < count; i++) {
+          myFlushStatements[i] = null;
+          myFlushRows[i] = null;
+        }
+        long latencyNs = System.nanoTime() - startNs;
+        synchronized (myQueueLock) {
+          myFlushCount++;
+          myFlushedRowCount += flushed;
+          myDroppedRowCount += count - flushed;
+          myTotalFlushLatencyNs += latencyNs;
+          myMaxFlushLatencyNs = Math.max(myMaxFlushLatencyNs, latencyNs);
+          myLastFlushLatencyNs = latencyNs;
+        }
+      }
+    }
+  }
+
+  public int getCapacity() {
+    return myStatements.length;
+  }
+
+  /**
+   * @return the number of rows currently waiting to be flushed.
+   */
+  public int getQueueDepth() {
+    synchronized (myQueueLock) {
+      return mySize;
+    }
+  }
+
+  /**
+   * @return the largest number of rows that were waiting to be flushed at any one time.
+   */
+  public int getPeakQueueDepth() {
+    synchronized (myQueueLock) {
+      return myPeakDepth;
+    }
+  }
+
+  public long getFlushCount() {
+    synchronized (myQueueLock) {
+      return myFlushCount;
+    }
+  }
+
+  public long getFlushedRowCount() {
+    synchronized (myQueueLock) {
+      return myFlushedRowCount;
+    }
+  }
+
+  /**
+   * @return the number of rows that were offered but never written, because their flush failed or the offering thread was
+   * interrupted.
+   */
+  public long getDroppedRowCount() {
+    synchronized (myQueueLock) {
+      return myDroppedRowCount;
+    }
+  }
+
+  public long getLastFlushLatencyNs() {
+    synchronized (myQueueLock) {
+      return myLastFlushLatencyNs;
+    }
+  }
+
+  public long getMaxFlushLatencyNs() {
+    synchronized (myQueueLock) {
+      return myMaxFlushLatencyNs;
+    }
+  }
+
+  public long getAverageFlushLatencyNs() {
+    synchronized (myQueueLock) {
+      return myFlushCount == 0 ? 0 : myTotalFlushLatencyNs / myFlushCount;
+    }
+  }
+}
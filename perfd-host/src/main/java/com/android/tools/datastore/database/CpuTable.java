@@ -21,6 +21,7 @@ import com.google.protobuf3jarjar.ByteString;
 import com.google.protobuf3jarjar.InvalidProtocolBufferException;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -53,8 +54,19 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
     return Logger.getInstance(CpuTable.class);
   }
 
+  /**
+   * Holds the CPU usage samples when the table uses the {@link TimeSeriesBackend#COLUMNAR} backend, null otherwise.
+   */
+  @Nullable private final TimeSeriesColumnStore<CpuProfiler.CpuProfilerData> myCpuDataStore;
+
   public CpuTable(@NotNull Map<Common.Session, Long> sesstionIdLookup) {
+    this(sesstionIdLookup, TimeSeriesBackend.SQLITE);
+  }
+
+  public CpuTable(@NotNull Map<Common.Session, Long> sesstionIdLookup, @NotNull TimeSeriesBackend backend) {
     super(sesstionIdLookup);
+    // Cpu_Data rows are inserted with "INSERT OR REPLACE", so duplicated samples replace the existing ones.
+    myCpuDataStore = backend == TimeSeriesBackend.COLUMNAR ? new TimeSeriesColumnStore<>(true) : null;
   }
 
   @Override
@@ -129,17 +141,41 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
     }
   }
 
+  @Override
+  protected int evict(@NotNull RetentionPolicy policy, boolean overBudget) throws SQLException {
+    int evicted = myCpuDataStore != null
+                  ? myCpuDataStore.applyRetentionPolicy(policy)
+                  : evictTimeBuckets("Cpu_Data", "Timestamp", "Timestamp", null, policy, overBudget);
+    // QUERY_THREAD_ACTIVITIES needs the state each thread was in before the requested range, so keep the newest activity of each
+    // thread that precedes the cutoff.
+    evicted += evictTimeBuckets("Thread_Activities", "Timestamp", "Timestamp",
+                                "NOT EXISTS (SELECT 1 FROM Thread_Activities AS newer WHERE newer.AppId = Thread_Activities.AppId " +
+                                "AND newer.Session = %1$d AND newer.ThreadId = Thread_Activities.ThreadId " +
+                                "AND newer.Timestamp > Thread_Activities.Timestamp AND newer.Timestamp < %2$d)",
+                                policy, overBudget);
+    return evicted;
+  }
+
   public void insert(Common.Session session, CpuProfiler.CpuProfilerData data) {
+    if (myCpuDataStore != null) {
+      myCpuDataStore.insert(new TimeSeriesColumnStore.SeriesKey(getSessionId(session), data.getBasicInfo().getProcessId(), 0),
+                            data.getBasicInfo().getEndTimestamp(), data);
+      return;
+    }
     execute(CpuStatements.INSERT_CPU_DATA, data.getBasicInfo().getProcessId(), data.getBasicInfo().getEndTimestamp(), session,
             data.toByteArray());
   }
 
   public List<CpuProfiler.CpuProfilerData> getCpuDataByRequest(CpuProfiler.CpuDataRequest request) {
     List<CpuProfiler.CpuProfilerData> cpuData = new ArrayList<>();
-    try {
-      ResultSet results =
-        executeQuery(CpuStatements.QUERY_CPU_DATA, request.getProcessId(), request.getSession(), request.getStartTimestamp(),
-                     request.getEndTimestamp());
+    if (myCpuDataStore != null) {
+      myCpuDataStore.getRange(new TimeSeriesColumnStore.SeriesKey(getSessionId(request.getSession()), request.getProcessId(), 0),
+                              request.getStartTimestamp(), request.getEndTimestamp(), cpuData);
+      return cpuData;
+    }
+    try (ResultSet results =
+           executeQuery(CpuStatements.QUERY_CPU_DATA, request.getProcessId(), request.getSession(), request.getStartTimestamp(),
+                        request.getEndTimestamp())) {
       while (results.next()) {
         CpuProfiler.CpuProfilerData.Builder data = CpuProfiler.CpuProfilerData.newBuilder();
         data.mergeFrom(results.getBytes(DATA_COLUMN));
@@ -177,20 +213,19 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
   public List<CpuProfiler.GetThreadsResponse.Thread> getThreadsDataByRequest(CpuProfiler.GetThreadsRequest request) {
     // Use a TreeMap to preserve the threads sorting order (by tid)
     Map<Integer, CpuProfiler.GetThreadsResponse.Thread.Builder> threads = new TreeMap<>();
-    try {
-      ResultSet activities = executeQuery(CpuStatements.QUERY_THREAD_ACTIVITIES,
-                                          // Used as the timestamp of the states that happened before the request
-                                          request.getStartTimestamp(),
-                                          request.getProcessId(),
-                                          request.getSession(),
-                                          // Used to get the the states that happened before the request
-                                          request.getStartTimestamp(),
-                                          request.getProcessId(),
-                                          request.getSession(),
-                                          // The start and end timestamps below are used to get the activities that
-                                          // happened in the interval (start, end]
-                                          request.getStartTimestamp(),
-                                          request.getEndTimestamp());
+    try (ResultSet activities = executeQuery(CpuStatements.QUERY_THREAD_ACTIVITIES,
+                                             // Used as the timestamp of the states that happened before the request
+                                             request.getStartTimestamp(),
+                                             request.getProcessId(),
+                                             request.getSession(),
+                                             // Used to get the the states that happened before the request
+                                             request.getStartTimestamp(),
+                                             request.getProcessId(),
+                                             request.getSession(),
+                                             // The start and end timestamps below are used to get the activities that
+                                             // happened in the interval (start, end]
+                                             request.getStartTimestamp(),
+                                             request.getEndTimestamp())) {
       while (activities.next()) {
         // Thread id should be the first column
         int tid = activities.getInt(1);
@@ -221,11 +256,10 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
 
   public List<CpuProfiler.TraceInfo> getTraceInfo(CpuProfiler.GetTraceInfoRequest request) {
     List<CpuProfiler.TraceInfo> traceInfo = new ArrayList<>();
-    try {
-      ResultSet results =
-        executeQuery(CpuStatements.QUERY_TRACE_INFO, request.getProcessId(), request.getSession(), request.getToTimestamp(),
-                     request.getFromTimestamp(),
-                     request.getFromTimestamp());
+    try (ResultSet results =
+           executeQuery(CpuStatements.QUERY_TRACE_INFO, request.getProcessId(), request.getSession(), request.getToTimestamp(),
+                        request.getFromTimestamp(),
+                        request.getFromTimestamp())) {
       while (results.next()) {
         // QUERY_TRACE_INFO will return only one column.
         byte[] data = results.getBytes(1);
@@ -242,8 +276,7 @@ public class CpuTable extends DataStoreTable<CpuTable.CpuStatements> {
   }
 
   public TraceData getTraceData(int appId, int traceId, Common.Session session) {
-    try {
-      ResultSet results = executeQuery(CpuStatements.FIND_TRACE_DATA, appId, traceId, session);
+    try (ResultSet results = executeQuery(CpuStatements.FIND_TRACE_DATA, appId, traceId, session)) {
       if (results.next()) {
         byte[] data = results.getBytes(DATA_COLUMN);
         if (data != null) {
@@ -15,18 +15,19 @@
  */
 package com.android.tools.datastore.database;
 
+import com.android.tools.datastore.DataStoreDatabase;
 import com.android.tools.profiler.proto.Common;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Interface a {@link com.android.tools.datastore.ServicePassThrough} object returns to indicate this object is
@@ -37,8 +38,22 @@ public abstract class DataStoreTable<T extends Enum> {
   private static final long KEYS_ERROR = -1;
   private static final Set<DataStoreTableErrorCallback> ERROR_CALLBACKS = new HashSet();
 
+  /**
+   * Number of pending rows a table buffers before the writing thread flushes them itself.
+   */
+  public static final int WRITE_QUEUE_CAPACITY = 512;
+
+  /**
+   * Tables that have been initialized, so that {@link #flushTables(Connection)} can drain them before a commit.
+   */
+  private static final Set<DataStoreTable> INITIALIZED_TABLES = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
   private Connection myConnection;
+  @Nullable private DataStoreDatabase myDatabase;
   private final ThreadLocal<Map<T, PreparedStatement>> myStatementMap = new ThreadLocal<>();
+  private final ThreadLocal<Map<T, PreparedStatement>> myReadStatementMap = new ThreadLocal<>();
+  private final Map<T, String> myStatementSql = new ConcurrentHashMap<>();
+  private final BatchedWriteQueue<T> myWriteQueue = new BatchedWriteQueue<>(WRITE_QUEUE_CAPACITY);
   protected final Map<Common.Session, Long> mySessionIdLookup;
 
   public interface DataStoreTableErrorCallback {
@@ -56,6 +71,16 @@ public abstract class DataStoreTable<T extends Enum> {
    */
   public void initialize(@NotNull Connection connection) {
     myConnection = connection;
+    INITIALIZED_TABLES.add(this);
+  }
+
+  /**
+   * Initializes the table against {@code database}. Writes go through {@link DataStoreDatabase#getConnection()}, and queries are
+   * served from the database's read connections when it has any.
+   */
+  public final void initialize(@NotNull DataStoreDatabase database) {
+    myDatabase = database;
+    initialize(database.getConnection());
   }
 
   /**
@@ -84,6 +109,151 @@ public abstract class DataStoreTable<T extends Enum> {
     }
   }
 
+  /**
+   * Flushes the pending writes of every table backed by {@code connection}. Called before committing the connection so that
+   * the commit covers every row handed to the tables so far.
+   */
+  public static void flushTables(@NotNull Connection connection) {
+    List<DataStoreTable> tables;
+    synchronized (INITIALIZED_TABLES) {
+      tables = new ArrayList<>(INITIALIZED_TABLES);
+    }
+    for (DataStoreTable table : tables) {
+      if (table.myConnection == connection) {
+        table.flush();
+      }
+    }
+  }
+
+  /**
+   * Applies {@code policy} to every table backed by {@code connection}.
+   *
+   * @param overBudget whether the database is currently larger than {@link RetentionPolicy#getMaxBytes()}.
+   * @return the number of rows evicted.
+   */
+  public static int applyRetentionPolicy(@NotNull Connection connection, @NotNull RetentionPolicy policy, boolean overBudget) {
+    List<DataStoreTable> tables;
+    synchronized (INITIALIZED_TABLES) {
+      tables = new ArrayList<>(INITIALIZED_TABLES);
+    }
+    int evicted = 0;
+    for (DataStoreTable table : tables) {
+      if (table.myConnection == connection && !table.isClosed()) {
+        table.flush();
+        try {
+          evicted += table.evict(policy, overBudget);
+        }
+        catch (SQLException ex) {
+          onError(ex);
+        }
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * Evicts the rows that fall outside of {@code policy}. Tables holding time series that grow for the lifetime of a session
+   * should override this, typically through {@link #evictTimeBuckets}; by default nothing is evicted.
+   *
+   * @return the number of rows evicted.
+   */
+  protected int evict(@NotNull RetentionPolicy policy, boolean overBudget) throws SQLException {
+    return 0;
+  }
+
+  /**
+   * Deletes, per session, the time buckets of {@code table} that fall outside of {@code policy}.
+   *
+   * @param timeColumn    column holding the timestamp used to decide how old a session's data is.
+   * @param evictColumn   column compared against the eviction cutoff, usually the same as {@code timeColumn}.
+   * @param keepCondition optional SQL condition selecting rows that must be kept regardless of age. It is formatted with the
+   *                      session id and the eviction cutoff, in that order.
+   * @return the number of rows evicted.
+   */
+  protected int evictTimeBuckets(@NotNull String table,
+                                 @NotNull String timeColumn,
+                                 @NotNull String evictColumn,
+                                 @Nullable String keepCondition,
+                                 @NotNull RetentionPolicy policy,
+                                 boolean overBudget) throws SQLException {
+    return evictTimeBuckets(table, "Session", timeColumn, evictColumn, keepCondition, policy, overBudget);
+  }
+
+  /**
+   * Same as {@link #evictTimeBuckets(String, String, String, String, RetentionPolicy, boolean)}, for tables whose rows are not
+   * keyed by session: the buckets are computed per distinct value of {@code groupColumn} instead.
+   */
+  protected int evictTimeBuckets(@NotNull String table,
+                                 @NotNull String groupColumn,
+                                 @NotNull String timeColumn,
+                                 @NotNull String evictColumn,
+                                 @Nullable String keepCondition,
+                                 @NotNull RetentionPolicy policy,
+                                 boolean overBudget) throws SQLException {
+    List<long[]> sessionRanges = new ArrayList<>();
+    try (Statement statement = myConnection.createStatement();
+         ResultSet results = statement.executeQuery(
+           String.format("SELECT %s, MIN(%s), MAX(%s) FROM %s GROUP BY %s", groupColumn, timeColumn, timeColumn, table, groupColumn))) {
+      while (results.next()) {
+        sessionRanges.add(new long[]{results.getLong(1), results.getLong(2), results.getLong(3)});
+      }
+    }
+
+    int evicted = 0;
+    for (long[] range : sessionRanges) {
+      long cutoff = policy.getEvictionCutoff(range[1], range[2], overBudget);
+      if (cutoff <= range[1]) {
+        continue;
+      }
+      String delete = String.format("DELETE FROM %s WHERE %s = %d AND %s < %d", table, groupColumn, range[0], evictColumn, cutoff);
+      if (keepCondition != null) {
+        delete += " AND NOT (" + String.format(keepCondition, range[0], cutoff) + ")";
+      }
+      try (Statement statement = myConnection.createStatement()) {
+        evicted += statement.executeUpdate(delete);
+      }
+    }
+    if (evicted > 0) {
+      onWrite();
+    }
+    return evicted;
+  }
+
+  /**
+   * @return the queue buffering this table's writes, which exposes the queue depth and flush latency metrics.
+   */
+  @NotNull
+  public BatchedWriteQueue<T> getWriteQueue() {
+    return myWriteQueue;
+  }
+
+  /**
+   * Writes every row queued by {@link #execute(Enum, Object...)} to the database, grouping consecutive rows of the same
+   * statement into a single JDBC batch. If the connection is closed the pending rows are discarded.
+   */
+  public void flush() {
+    try {
+      if (isClosed()) {
+        myWriteQueue.flush((statement, rows, start, end) -> {
+        });
+        return;
+      }
+      myWriteQueue.flush(this::executeBatch);
+    }
+    catch (SQLException ex) {
+      onError(ex);
+    }
+  }
+
+  private void executeBatch(@NotNull T statement, @NotNull Object[][] rows, int start, int end) throws SQLException {
+    PreparedStatement stmt = getStatementMap().get(statement);
+    for (int i = start; i < end; i++) {
+      applyParams(stmt, rows[i]);
+      stmt.addBatch();
+    }
+    stmt.executeBatch();
+  }
+
   protected static void onError(Throwable t) {
     LOG.error(t);
     for (DataStoreTableErrorCallback callback : ERROR_CALLBACKS) {
@@ -124,24 +294,38 @@ public abstract class DataStoreTable<T extends Enum> {
   }
 
   protected void createStatement(@NotNull T statement, @NotNull String stmt) throws SQLException {
+    myStatementSql.put(statement, stmt);
     getStatementMap().put(statement, myConnection.prepareStatement(stmt));
   }
 
   protected void createStatement(@NotNull T statement, @NotNull String stmt, int statementFlags) throws SQLException {
+    myStatementSql.put(statement, stmt);
     getStatementMap().put(statement, myConnection.prepareStatement(stmt, statementFlags));
   }
 
+  /**
+   * Queues a write. The row is not sent to the database until the table is flushed, which happens when the write queue fills up,
+   * before the table is queried, or when the owning {@link com.android.tools.datastore.DataStoreDatabase} commits.
+   */
   protected void execute(@NotNull T statement, Object... params) {
-    try {
-      if (isClosed()) {
-        return;
-      }
-      PreparedStatement stmt = getStatementMap().get(statement);
-      applyParams(stmt, params);
-      stmt.execute();
+    if (isClosed()) {
+      return;
     }
-    catch (SQLException ex) {
-      onError(ex);
+    boolean full = myWriteQueue.offer(statement, params == null ? new Object[0] : params);
+    onWrite();
+    if (full) {
+      flush();
+    }
+  }
+
+  /**
+   * Records that this table wrote rows that are not committed yet. Writes queued through {@link #execute(Enum, Object...)} and
+   * {@link #executeWithGeneratedKeys(Enum, Object...)} are recorded already; tables running statements from
+   * {@link #getStatementMap()} themselves should call this afterwards, so that their rows are committed before the next query.
+   */
+  protected void onWrite() {
+    if (myDatabase != null) {
+      myDatabase.onWrite();
     }
   }
 
@@ -150,10 +334,15 @@ public abstract class DataStoreTable<T extends Enum> {
       if (isClosed()) {
         return -1;
       }
+      // The generated key is only valid if the rows queued before this one are already written.
+      flush();
       PreparedStatement stmt = getStatementMap().get(statement);
       applyParams(stmt, params);
       stmt.execute();
-      return stmt.getGeneratedKeys().getLong(1);
+      onWrite();
+      try (ResultSet keys = stmt.getGeneratedKeys()) {
+        return keys.getLong(1);
+      }
     }
     catch (SQLException ex) {
       onError(ex);
@@ -161,13 +350,55 @@ public abstract class DataStoreTable<T extends Enum> {
     return KEYS_ERROR;
   }
 
+  /**
+   * Runs {@code statement} as a query. Callers must close the returned {@link ResultSet}: on databases with read connections, an
+   * open result set keeps its read transaction, and the snapshot it reads from, alive.
+   */
   protected ResultSet executeQuery(@NotNull T statement, Object... params) throws SQLException {
     // TODO: Handle when the database conneciton is closed and a query is made.
-    PreparedStatement stmt = getStatementMap().get(statement);
+    PreparedStatement stmt = getReadStatement(statement);
     applyParams(stmt, params);
     return stmt.executeQuery();
   }
 
+  /**
+   * @return the statement to run {@code statement} as a query. Queries observe every row written so far. If the table's database
+   * has read connections, the statement is prepared against the calling thread's read connection, so the query reads a snapshot
+   * without holding up the writer; that snapshot only includes committed rows, so pending writes are committed first. Otherwise
+   * queries share the writer's statements, after flushing the pending writes.
+   */
+  @NotNull
+  private PreparedStatement getReadStatement(@NotNull T statement) throws SQLException {
+    Connection readConnection = myDatabase == null ? null : myDatabase.getReadConnection();
+    String sql = myStatementSql.get(statement);
+    if (readConnection == null || sql == null) {
+      flush();
+      return getStatementMap().get(statement);
+    }
+    if (myDatabase.hasUncommittedWrites()) {
+      myDatabase.commit();
+    }
+    Map<T, PreparedStatement> readStatements = myReadStatementMap.get();
+    if (readStatements == null) {
+      readStatements = new HashMap<>();
+      myReadStatementMap.set(readStatements);
+    }
+    PreparedStatement stmt = readStatements.get(statement);
+    if (stmt == null) {
+      stmt = readConnection.prepareStatement(sql);
+      readStatements.put(statement, stmt);
+    }
+    return stmt;
+  }
+
+  /**
+   * @return the database id of {@code session}, or -1 if the session is unknown.
+   */
+  protected long getSessionId(@NotNull Common.Session session) {
+    Long id = mySessionIdLookup.get(session);
+    return id == null ? KEYS_ERROR : id;
+  }
+
   protected void applyParams(@NotNull PreparedStatement statement, Object... params) throws SQLException {
     for (int i = 0; params != null && i < params.length; i++) {
       if (params[i] == null) {
@@ -76,8 +76,7 @@ public class EventsTable extends DataStoreTable<EventsTable.EventStatements> {
   }
 
   public EventProfiler.ActivityData findActivityDataOrNull(long appId, long id, Common.Session session) {
-    try {
-      ResultSet results = executeQuery(EventStatements.FIND_ACTIVITY, id, appId, session);
+    try (ResultSet results = executeQuery(EventStatements.FIND_ACTIVITY, id, appId, session)) {
       List<EventProfiler.ActivityData> datas = getActivityDataFromResultSet(results);
       if (!datas.isEmpty()) {
         return datas.get(0);
@@ -93,8 +92,7 @@ public class EventsTable extends DataStoreTable<EventsTable.EventStatements> {
   }
 
   public List<EventProfiler.ActivityData> getActivityDataByApp(long appId, Common.Session session) {
-    try {
-      ResultSet results = executeQuery(EventStatements.QUERY_ACTIVITY, appId, session);
+    try (ResultSet results = executeQuery(EventStatements.QUERY_ACTIVITY, appId, session)) {
       return getActivityDataFromResultSet(results);
     } catch (SQLException ex) {
       getLogger().error(ex);
@@ -109,9 +107,8 @@ public class EventsTable extends DataStoreTable<EventsTable.EventStatements> {
 
   public List<EventProfiler.SystemData> getSystemDataByRequest(EventProfiler.EventDataRequest request) {
     List<EventProfiler.SystemData> events = new ArrayList<>();
-    try {
-      ResultSet results =
-        executeQuery(EventStatements.QUERY_SYSTEM, request.getSession(), request.getProcessId(), request.getStartTimestamp(), request.getEndTimestamp());
+    try (ResultSet results = executeQuery(EventStatements.QUERY_SYSTEM, request.getSession(), request.getProcessId(),
+                                          request.getStartTimestamp(), request.getEndTimestamp())) {
       while (results.next()) {
         EventProfiler.SystemData.Builder data = EventProfiler.SystemData.newBuilder();
         data.mergeFrom(results.getBytes(1));
@@ -84,6 +84,12 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
   // Note - Google Search app can easily allocate 100k+ temporary objects in an relatively short amount of time (e.g. one search query)
   private int myAllocationCountLimit = 5000000;
 
+  /**
+   * The number of rows in Memory_AllocationEvents, kept up to date by the inserts so the table doesn't need to be counted after every
+   * sample. -1 when unknown, e.g. after rows were pruned or evicted.
+   */
+  private volatile int myAllocationCount = -1;
+
   private static Logger getLogger() {
     return Logger.getInstance(MemoryLiveAllocationTable.class);
   }
@@ -140,35 +146,36 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
     MemoryProfiler.BatchAllocationSample.Builder sampleBuilder = MemoryProfiler.BatchAllocationSample.newBuilder();
     try {
       // Then get all allocation events that are valid for requestTime.
-      ResultSet allocResult = executeQuery(QUERY_ALLOC_BY_ALLOC_TIME, pid, session, startTime, endTime);
       long timestamp = Long.MIN_VALUE;
-
-      while (allocResult.next()) {
-        long allocTime = allocResult.getLong(3);
-        if (allocTime >= startTime) {
-          MemoryProfiler.AllocationEvent event = MemoryProfiler.AllocationEvent.newBuilder()
-            .setAllocData(
-              MemoryProfiler.AllocationEvent.Allocation.newBuilder().setTag(allocResult.getInt(1)).setClassTag(allocResult.getInt(2))
-                .setSize(allocResult.getLong(5)).setLength(allocResult.getInt(6)).setThreadId(allocResult.getInt(7))
-                .setStackId(allocResult.getInt(8)).setHeapId(allocResult.getInt(9)).build())
-            .setTimestamp(allocTime).build();
-          sampleBuilder.addEvents(event);
-          timestamp = Math.max(timestamp, allocTime);
+      try (ResultSet allocResult = executeQuery(QUERY_ALLOC_BY_ALLOC_TIME, pid, session, startTime, endTime)) {
+        while (allocResult.next()) {
+          long allocTime = allocResult.getLong(3);
+          if (allocTime >= startTime) {
+            MemoryProfiler.AllocationEvent event = MemoryProfiler.AllocationEvent.newBuilder()
+              .setAllocData(
+                MemoryProfiler.AllocationEvent.Allocation.newBuilder().setTag(allocResult.getInt(1)).setClassTag(allocResult.getInt(2))
+                  .setSize(allocResult.getLong(5)).setLength(allocResult.getInt(6)).setThreadId(allocResult.getInt(7))
+                  .setStackId(allocResult.getInt(8)).setHeapId(allocResult.getInt(9)).build())
+              .setTimestamp(allocTime).build();
+            sampleBuilder.addEvents(event);
+            timestamp = Math.max(timestamp, allocTime);
+          }
         }
       }
 
-      ResultSet freeResult = executeQuery(QUERY_ALLOC_BY_FREE_TIME, pid, session, startTime, endTime);
-      while (freeResult.next()) {
-        long freeTime = freeResult.getLong(4);
-        if (freeTime < endTime) {
-          MemoryProfiler.AllocationEvent event = MemoryProfiler.AllocationEvent.newBuilder()
-            .setFreeData(
-              MemoryProfiler.AllocationEvent.Deallocation.newBuilder().setTag(freeResult.getInt(1)).setClassTag(freeResult.getInt(2))
-                .setSize(freeResult.getLong(5)).setLength(freeResult.getInt(6)).setThreadId(freeResult.getInt(7))
-                .setStackId(freeResult.getInt(8)).setHeapId(freeResult.getInt(9)).build())
-            .setTimestamp(freeTime).build();
-          sampleBuilder.addEvents(event);
-          timestamp = Math.max(timestamp, freeTime);
+      try (ResultSet freeResult = executeQuery(QUERY_ALLOC_BY_FREE_TIME, pid, session, startTime, endTime)) {
+        while (freeResult.next()) {
+          long freeTime = freeResult.getLong(4);
+          if (freeTime < endTime) {
+            MemoryProfiler.AllocationEvent event = MemoryProfiler.AllocationEvent.newBuilder()
+              .setFreeData(
+                MemoryProfiler.AllocationEvent.Deallocation.newBuilder().setTag(freeResult.getInt(1)).setClassTag(freeResult.getInt(2))
+                  .setSize(freeResult.getLong(5)).setLength(freeResult.getInt(6)).setThreadId(freeResult.getInt(7))
+                  .setStackId(freeResult.getInt(8)).setHeapId(freeResult.getInt(9)).build())
+              .setTimestamp(freeTime).build();
+            sampleBuilder.addEvents(event);
+            timestamp = Math.max(timestamp, freeTime);
+          }
         }
       }
 
@@ -187,45 +194,47 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
     try {
       // Query all the classes
       // TODO: only return classes that are valid for current snapshot?
-      ResultSet klassResult = executeQuery(QUERY_CLASS, pid, session, startTime, endTime);
       long timestamp = Long.MIN_VALUE;
-
-      while (klassResult.next()) {
-        long allocTime = klassResult.getLong(2);
-        AllocatedClass klass =
-          AllocatedClass.newBuilder().setClassId(klassResult.getInt(1)).setClassName(klassResult.getString(3)).build();
-        resultBuilder.addAllocatedClasses(klass);
-        timestamp = Math.max(timestamp, allocTime);
+      try (ResultSet klassResult = executeQuery(QUERY_CLASS, pid, session, startTime, endTime)) {
+        while (klassResult.next()) {
+          long allocTime = klassResult.getLong(2);
+          AllocatedClass klass =
+            AllocatedClass.newBuilder().setClassId(klassResult.getInt(1)).setClassName(klassResult.getString(3)).build();
+          resultBuilder.addAllocatedClasses(klass);
+          timestamp = Math.max(timestamp, allocTime);
+        }
       }
 
-      ResultSet stackResult = executeQuery(QUERY_ENCODED_STACK_INFO_BY_TIME, pid, session, startTime, endTime);
-      while (stackResult.next()) {
-        AllocationStack.Builder stackBuilder = AllocationStack.newBuilder();
-
-        // Retrieve the EncodedAllocationStack proto and convert it into the AllocationStack format.
-        // Note that we are not accounting for the timestamp recorded in the stack, as stack entries from each batched allocation sample
-        // are inserted first into the database. So class data with an earlier timestamp can be inserted later.
-        EncodedAllocationStack encodedStack = EncodedAllocationStack.parseFrom(stackResult.getBytes(1));
-        stackBuilder.setStackId(encodedStack.getStackId());
-        AllocationStack.SmallFrameWrapper.Builder frameBuilder = AllocationStack.SmallFrameWrapper.newBuilder();
-        assert encodedStack.getMethodIdsCount() == encodedStack.getLineNumbersCount();
-        for (int i = 0; i < encodedStack.getMethodIdsCount(); i++) {
-          // Note that we don't return the class + method names here, as they are expensive to query and can incur huge memory footprint.
-          // Instead, they will be fetched on demand as needed by the UI.
-          AllocationStack.SmallFrame frame =
-            AllocationStack.SmallFrame.newBuilder().setMethodId(encodedStack.getMethodIds(i)).setLineNumber(encodedStack.getLineNumbers(i))
-              .build();
-          frameBuilder.addFrames(frame);
+      try (ResultSet stackResult = executeQuery(QUERY_ENCODED_STACK_INFO_BY_TIME, pid, session, startTime, endTime)) {
+        while (stackResult.next()) {
+          AllocationStack.Builder stackBuilder = AllocationStack.newBuilder();
+
+          // Retrieve the EncodedAllocationStack proto and convert it into the AllocationStack format.
+          // Note that we are not accounting for the timestamp recorded in the stack, as stack entries from each batched allocation sample
+          // are inserted first into the database. So class data with an earlier timestamp can be inserted later.
+          EncodedAllocationStack encodedStack = EncodedAllocationStack.parseFrom(stackResult.getBytes(1));
+          stackBuilder.setStackId(encodedStack.getStackId());
+          AllocationStack.SmallFrameWrapper.Builder frameBuilder = AllocationStack.SmallFrameWrapper.newBuilder();
+          assert encodedStack.getMethodIdsCount() == encodedStack.getLineNumbersCount();
+          for (int i = 0; i < encodedStack.getMethodIdsCount(); i++) {
+            // Note that we don't return the class + method names here, as they are expensive to query and can incur huge memory footprint.
+            // Instead, they will be fetched on demand as needed by the UI.
+            AllocationStack.SmallFrame frame =
+              AllocationStack.SmallFrame.newBuilder().setMethodId(encodedStack.getMethodIds(i))
+                .setLineNumber(encodedStack.getLineNumbers(i)).build();
+            frameBuilder.addFrames(frame);
+          }
+          stackBuilder.setSmallStack(frameBuilder);
+          resultBuilder.addAllocationStacks(stackBuilder);
         }
-        stackBuilder.setSmallStack(frameBuilder);
-        resultBuilder.addAllocationStacks(stackBuilder);
       }
 
-      ResultSet threadResult = executeQuery(QUERY_THREAD_INFO_BY_TIME, pid, session, startTime, endTime);
-      while (threadResult.next()) {
-        ThreadInfo thread =
-          ThreadInfo.newBuilder().setThreadId(threadResult.getInt(1)).setThreadName(threadResult.getString(2)).build();
-        resultBuilder.addAllocationThreads(thread);
+      try (ResultSet threadResult = executeQuery(QUERY_THREAD_INFO_BY_TIME, pid, session, startTime, endTime)) {
+        while (threadResult.next()) {
+          ThreadInfo thread =
+            ThreadInfo.newBuilder().setThreadId(threadResult.getInt(1)).setThreadName(threadResult.getString(2)).build();
+          resultBuilder.addAllocationThreads(thread);
+        }
       }
 
       resultBuilder.setTimestamp(timestamp);
@@ -238,62 +247,56 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
   }
 
   public void insertAllocationData(int pid, Common.Session session, MemoryProfiler.BatchAllocationSample sample) {
-    MemoryProfiler.AllocationEvent.EventCase currentCase = null;
-    PreparedStatement currentStatement = null;
-    int allocAndFreeCount = 0;
+    PreparedStatement classStatement = getStatementMap().get(INSERT_CLASS);
+    PreparedStatement allocStatement = getStatementMap().get(INSERT_ALLOC);
+    PreparedStatement freeStatement = getStatementMap().get(UPDATE_ALLOC);
+    assert classStatement != null && allocStatement != null && freeStatement != null;
+    int classCount = 0;
+    int allocCount = 0;
+    int freeCount = 0;
     try {
+      // Each kind of event goes into a single batch, rather than starting a new batch whenever the kind changes, which interleaved
+      // allocations and frees would turn into batches of a row or two. Frees are written last, so they find the allocations they update
+      // even if those are part of the same sample.
       for (MemoryProfiler.AllocationEvent event : sample.getEventsList()) {
-        if (currentCase != event.getEventCase()) {
-          if (currentCase != null) {
-            currentStatement.executeBatch();
-          }
-
-          currentCase = event.getEventCase();
-          switch (currentCase) {
-            case CLASS_DATA:
-              currentStatement = getStatementMap().get(INSERT_CLASS);
-              break;
-            case ALLOC_DATA:
-              currentStatement = getStatementMap().get(INSERT_ALLOC);
-              break;
-            case FREE_DATA:
-              currentStatement = getStatementMap().get(UPDATE_ALLOC);
-              break;
-            default:
-              assert false;
-          }
-        }
-
-        switch (currentCase) {
+        switch (event.getEventCase()) {
           case CLASS_DATA:
-            assert currentStatement != null;
             AllocatedClass klass = event.getClassData();
-            applyParams(currentStatement, pid, session, klass.getClassId(), event.getTimestamp(), jniToJavaName(klass.getClassName()));
+            applyParams(classStatement, pid, session, klass.getClassId(), event.getTimestamp(), jniToJavaName(klass.getClassName()));
+            classStatement.addBatch();
+            classCount++;
             break;
           case ALLOC_DATA:
-            assert currentStatement != null;
-            allocAndFreeCount++;
             AllocationEvent.Allocation allocation = event.getAllocData();
-            applyParams(currentStatement, pid, session, allocation.getTag(), allocation.getClassTag(),
+            applyParams(allocStatement, pid, session, allocation.getTag(), allocation.getClassTag(),
                         event.getTimestamp(), Long.MAX_VALUE, allocation.getSize(), allocation.getLength(), allocation.getThreadId(),
                         allocation.getStackId(), allocation.getHeapId());
+            allocStatement.addBatch();
+            allocCount++;
             break;
           case FREE_DATA:
-            assert currentStatement != null;
-            allocAndFreeCount++;
             AllocationEvent.Deallocation free = event.getFreeData();
-            applyParams(currentStatement, event.getTimestamp(), pid, session, free.getTag());
+            applyParams(freeStatement, event.getTimestamp(), pid, session, free.getTag());
+            freeStatement.addBatch();
+            freeCount++;
             break;
           default:
             assert false;
         }
-        currentStatement.addBatch();
       }
 
-      // Handles last batch after exiting from for-loop.
-      currentStatement.executeBatch();
+      if (classCount > 0) {
+        classStatement.executeBatch();
+      }
+      if (allocCount > 0) {
+        addAllocationCount(allocStatement.executeBatch());
+      }
+      if (freeCount > 0) {
+        freeStatement.executeBatch();
+      }
+      onWrite();
 
-      if (allocAndFreeCount > 0) {
+      if (allocCount + freeCount > 0) {
         pruneAllocations(pid, session);
       }
     }
@@ -302,6 +305,26 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
     }
   }
 
+  /**
+   * Adds the rows inserted by a batch of {@link MemoryStatements#INSERT_ALLOC} to {@link #myAllocationCount}, given the update counts
+   * returned by the batch. Ignored (duplicated) allocations have an update count of 0.
+   */
+  private void addAllocationCount(@NotNull int[] updateCounts) {
+    int count = myAllocationCount;
+    if (count < 0) {
+      return;
+    }
+    for (int updateCount : updateCounts) {
+      if (updateCount < 0) {
+        // The driver didn't say how many rows were inserted, count them again next time.
+        myAllocationCount = -1;
+        return;
+      }
+      count += updateCount;
+    }
+    myAllocationCount = count;
+  }
+
   public void insertMethodInfo(int pid, Common.Session session, List<AllocationStack.StackFrame> methods) {
     try {
       PreparedStatement statement = getStatementMap().get(INSERT_METHOD);
@@ -311,6 +334,7 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
         statement.addBatch();
       }
       statement.executeBatch();
+      onWrite();
     }
     catch (SQLException ex) {
       getLogger().error(ex);
@@ -320,8 +344,7 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
   @NotNull
   public StackFrameInfoResponse getStackFrameInfo(int pid, Common.Session session, long methodId) {
     StackFrameInfoResponse.Builder methodBuilder = StackFrameInfoResponse.newBuilder();
-    try {
-      ResultSet result = executeQuery(QUERY_METHOD_INFO, pid, session, methodId);
+    try (ResultSet result = executeQuery(QUERY_METHOD_INFO, pid, session, methodId)) {
       if (result.next()) {
         methodBuilder.setMethodName(result.getString(1)).setClassName(result.getString(2));
       }
@@ -342,6 +365,7 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
         statement.addBatch();
       }
       statement.executeBatch();
+      onWrite();
     }
     catch (SQLException ex) {
       getLogger().error(ex);
@@ -357,24 +381,42 @@ public class MemoryLiveAllocationTable extends DataStoreTable<MemoryLiveAllocati
         statement.addBatch();
       }
       statement.executeBatch();
+      onWrite();
     }
     catch (SQLException ex) {
       getLogger().error(ex);
     }
   }
 
+  @Override
+  protected int evict(@NotNull RetentionPolicy policy, boolean overBudget) throws SQLException {
+    // Only freed instances are evicted: instances that are still alive are part of every later live allocation snapshot.
+    int evicted = evictTimeBuckets("Memory_AllocationEvents", "AllocTime", "FreeTime", null, policy, overBudget);
+    if (evicted > 0) {
+      myAllocationCount = -1;
+    }
+    return evicted;
+  }
+
   /**
    * Removes entries from the allocations table so the process (in-memory DB) doesn't run out of memory.
    */
   private void pruneAllocations(int pid, @NotNull Common.Session session) {
     try {
       // TODO save data to disk
-      ResultSet result = executeQuery(COUNT_ALLOC);
-      result.next();
-      int rowCount = result.getInt(1);
+      int rowCount = myAllocationCount;
+      if (rowCount < 0) {
+        try (ResultSet result = executeQuery(COUNT_ALLOC)) {
+          result.next();
+          rowCount = result.getInt(1);
+        }
+        myAllocationCount = rowCount;
+      }
       if (rowCount > myAllocationCountLimit) {
         int pruneCount = rowCount - myAllocationCountLimit;
         execute(PRUNE_ALLOC, pid, session, pid, session, pruneCount);
+        // Only freed allocations are pruned, so there may be fewer of them than asked for.
+        myAllocationCount = -1;
         getLogger().info(String.format("Allocations have exceed %d entries. Attempting to prune %d.", myAllocationCountLimit, pruneCount));
       }
     }
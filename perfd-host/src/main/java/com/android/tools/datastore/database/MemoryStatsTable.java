@@ -103,8 +103,20 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     return Logger.getInstance(MemoryStatsTable.class);
   }
 
+  /**
+   * Holds the memory, alloc stats and gc stats samples when the table uses the {@link TimeSeriesBackend#COLUMNAR} backend, null
+   * otherwise. Series are keyed by {@link MemorySamplesType}.
+   */
+  @Nullable private final TimeSeriesColumnStore<Message> mySampleStore;
+
   public MemoryStatsTable(@NotNull Map<Common.Session, Long> sesstionIdLookup) {
+    this(sesstionIdLookup, TimeSeriesBackend.SQLITE);
+  }
+
+  public MemoryStatsTable(@NotNull Map<Common.Session, Long> sesstionIdLookup, @NotNull TimeSeriesBackend backend) {
     super(sesstionIdLookup);
+    // Memory_Samples rows are inserted with "INSERT OR IGNORE", so duplicated samples are dropped.
+    mySampleStore = backend == TimeSeriesBackend.COLUMNAR ? new TimeSeriesColumnStore<>(false) : null;
   }
 
   @Override
@@ -140,20 +152,28 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     }
   }
 
+  @Override
+  protected int evict(@NotNull RetentionPolicy policy, boolean overBudget) throws SQLException {
+    if (mySampleStore != null) {
+      return mySampleStore.applyRetentionPolicy(policy);
+    }
+    return evictTimeBuckets("Memory_Samples", "Timestamp", "Timestamp", null, policy, overBudget);
+  }
+
   @NotNull
   public MemoryData getData(MemoryRequest request) {
     int pid = request.getProcessId();
     long startTime = request.getStartTime();
     long endTime = request.getEndTime();
     List<MemoryData.MemorySample> memorySamples =
-      getResultsInfo(QUERY_MEMORY, pid, request.getSession(), startTime, endTime,
-                     MemoryData.MemorySample.getDefaultInstance());
+      getSamples(QUERY_MEMORY, MemorySamplesType.MEMORY, pid, request.getSession(), startTime, endTime,
+                 MemoryData.MemorySample.getDefaultInstance());
     List<MemoryData.AllocStatsSample> allocStatsSamples =
-      getResultsInfo(QUERY_ALLOC_STATS, pid, request.getSession(), startTime, endTime,
-                     MemoryData.AllocStatsSample.getDefaultInstance());
+      getSamples(QUERY_ALLOC_STATS, MemorySamplesType.ALLOC_STATS, pid, request.getSession(), startTime, endTime,
+                 MemoryData.AllocStatsSample.getDefaultInstance());
     List<MemoryData.GcStatsSample> gcStatsSamples =
-      getResultsInfo(QUERY_GC_STATS, pid, request.getSession(), startTime, endTime,
-                     MemoryData.GcStatsSample.getDefaultInstance());
+      getSamples(QUERY_GC_STATS, MemorySamplesType.GC_STATS, pid, request.getSession(), startTime, endTime,
+                 MemoryData.GcStatsSample.getDefaultInstance());
     List<HeapDumpInfo> heapDumpSamples =
       getResultsInfo(QUERY_HEAP_INFO_BY_TIME, pid, request.getSession(), startTime, endTime,
                      HeapDumpInfo.getDefaultInstance());
@@ -171,6 +191,10 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
 
   public void insertMemory(int pid, Common.Session session, List<MemoryData.MemorySample> samples) {
     for (MemoryData.MemorySample sample : samples) {
+      if (mySampleStore != null) {
+        insertSample(pid, session, MemorySamplesType.MEMORY, sample.getTimestamp(), sample);
+        continue;
+      }
       execute(INSERT_SAMPLE, pid, session, sample.getTimestamp(), MemorySamplesType.MEMORY.ordinal(),
               sample.toByteArray());
     }
@@ -178,6 +202,10 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
 
   public void insertAllocStats(int pid, Common.Session session, List<MemoryData.AllocStatsSample> samples) {
     for (MemoryData.AllocStatsSample sample : samples) {
+      if (mySampleStore != null) {
+        insertSample(pid, session, MemorySamplesType.ALLOC_STATS, sample.getTimestamp(), sample);
+        continue;
+      }
       execute(INSERT_SAMPLE, pid, session, sample.getTimestamp(), MemorySamplesType.ALLOC_STATS.ordinal(),
               sample.toByteArray());
     }
@@ -185,6 +213,10 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
 
   public void insertGcStats(int pid, Common.Session session, List<MemoryData.GcStatsSample> samples) {
     for (MemoryData.GcStatsSample sample : samples) {
+      if (mySampleStore != null) {
+        insertSample(pid, session, MemorySamplesType.GC_STATS, sample.getStartTime(), sample);
+        continue;
+      }
       execute(INSERT_SAMPLE, pid, session, sample.getStartTime(), MemorySamplesType.GC_STATS.ordinal(),
               sample.toByteArray());
     }
@@ -202,8 +234,7 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
    * @return the dump status corresponding to a particular dump. If the entry does not exist, NOT_FOUND is returned.
    */
   public DumpDataResponse.Status getHeapDumpStatus(int pid, Common.Session session, long dumpTime) {
-    try {
-      ResultSet result = executeQuery(QUERY_HEAP_STATUS_BY_ID, pid, session, dumpTime);
+    try (ResultSet result = executeQuery(QUERY_HEAP_STATUS_BY_ID, pid, session, dumpTime)) {
       if (result.next()) {
         return DumpDataResponse.Status.forNumber(result.getInt(1));
       }
@@ -232,8 +263,7 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
    */
   @Nullable
   public byte[] getHeapDumpData(int pid, Common.Session session, long dumpTime) {
-    try {
-      ResultSet resultSet = executeQuery(QUERY_HEAP_DUMP_BY_ID, pid, session, dumpTime);
+    try (ResultSet resultSet = executeQuery(QUERY_HEAP_DUMP_BY_ID, pid, session, dumpTime)) {
       if (resultSet.next()) {
         return resultSet.getBytes(1);
       }
@@ -270,8 +300,7 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
    */
   @Nullable
   public AllocationsInfo getAllocationsInfo(int pid, Common.Session session, long trackingStartTime) {
-    try {
-      ResultSet results = executeQuery(QUERY_ALLOCATION_INFO_BY_ID, pid, session, trackingStartTime);
+    try (ResultSet results = executeQuery(QUERY_ALLOCATION_INFO_BY_ID, pid, session, trackingStartTime)) {
       if (results.next()) {
         byte[] bytes = results.getBytes(1);
         if (bytes != null) {
@@ -293,8 +322,7 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
   @Nullable
   public LegacyAllocationEventsResponse getLegacyAllocationData(int pid, Common.Session session, long trackingStartTime) {
 
-    try {
-      ResultSet resultSet = executeQuery(QUERY_LEGACY_ALLOCATION_EVENTS_BY_ID, pid, session, trackingStartTime);
+    try (ResultSet resultSet = executeQuery(QUERY_LEGACY_ALLOCATION_EVENTS_BY_ID, pid, session, trackingStartTime)) {
       if (resultSet.next()) {
         byte[] bytes = resultSet.getBytes(1);
         if (bytes != null) {
@@ -314,8 +342,7 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
   @Nullable
   public byte[] getLegacyAllocationDumpData(int pid, Common.Session session, long trackingStartTime) {
 
-    try {
-      ResultSet resultSet = executeQuery(QUERY_LEGACY_ALLOCATION_DUMP_BY_ID, pid, session, trackingStartTime);
+    try (ResultSet resultSet = executeQuery(QUERY_LEGACY_ALLOCATION_DUMP_BY_ID, pid, session, trackingStartTime)) {
       if (resultSet.next()) {
         return resultSet.getBytes(1);
       }
@@ -343,20 +370,22 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     // TODO optimize queries
     try {
       for (int i = 0; i < request.getClassIdsCount(); i++) {
-        ResultSet classResultSet =
-          executeQuery(QUERY_LEGACY_ALLOCATED_CLASS, request.getProcessId(), request.getSession(), request.getClassIds(i));
-        if (classResultSet.next()) {
-          AllocatedClass data = AllocatedClass.newBuilder().mergeFrom(classResultSet.getBytes(1)).build();
-          builder.addAllocatedClasses(data);
+        try (ResultSet classResultSet =
+               executeQuery(QUERY_LEGACY_ALLOCATED_CLASS, request.getProcessId(), request.getSession(), request.getClassIds(i))) {
+          if (classResultSet.next()) {
+            AllocatedClass data = AllocatedClass.newBuilder().mergeFrom(classResultSet.getBytes(1)).build();
+            builder.addAllocatedClasses(data);
+          }
         }
       }
 
       for (int i = 0; i < request.getStackIdsCount(); i++) {
-        ResultSet stackResultSet =
-          executeQuery(QUERY_LEGACY_ALLOCATION_STACK, request.getProcessId(), request.getSession(), request.getStackIds(i));
-        if (stackResultSet.next()) {
-          AllocationStack data = AllocationStack.newBuilder().mergeFrom(stackResultSet.getBytes(1)).build();
-          builder.addAllocationStacks(data);
+        try (ResultSet stackResultSet =
+               executeQuery(QUERY_LEGACY_ALLOCATION_STACK, request.getProcessId(), request.getSession(), request.getStackIds(i))) {
+          if (stackResultSet.next()) {
+            AllocationStack data = AllocationStack.newBuilder().mergeFrom(stackResultSet.getBytes(1)).build();
+            builder.addAllocationStacks(data);
+          }
         }
       }
     }
@@ -366,6 +395,33 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
     return builder.build();
   }
 
+  private void insertSample(int pid, @NotNull Common.Session session, @NotNull MemorySamplesType type, long timestamp,
+                            @NotNull Message sample) {
+    assert mySampleStore != null;
+    mySampleStore.insert(new TimeSeriesColumnStore.SeriesKey(getSessionId(session), pid, type.ordinal()), timestamp, sample);
+  }
+
+  /**
+   * Queries the samples of {@code type} in (startTime, endTime], from the column store if the table has one, or through
+   * {@code query} otherwise.
+   */
+  @SuppressWarnings("unchecked")
+  private <T extends GeneratedMessageV3> List<T> getSamples(MemoryStatements query,
+                                                            MemorySamplesType type,
+                                                            int pid,
+                                                            Common.Session session,
+                                                            long startTime,
+                                                            long endTime,
+                                                            T defaultInstance) {
+    if (mySampleStore == null) {
+      return getResultsInfo(query, pid, session, startTime, endTime, defaultInstance);
+    }
+    List<T> samples = new ArrayList<>();
+    mySampleStore.forEach(new TimeSeriesColumnStore.SeriesKey(getSessionId(session), pid, type.ordinal()), startTime, endTime,
+                          (sample, timestamp) -> samples.add((T)sample));
+    return samples;
+  }
+
   /**
    * A helper method for querying samples for MemorySample, AllocStatsSample, GcStatsSample, HeapDumpInfo and AllocationsInfo
    */
@@ -376,8 +432,7 @@ public class MemoryStatsTable extends DataStoreTable<MemoryStatsTable.MemoryStat
                                                                 long endTime,
                                                                 T defaultInstance) {
     List<T> datas = new ArrayList<>();
-    try {
-      ResultSet resultSet = executeQuery(query, pid, session, startTime, endTime);
+    try (ResultSet resultSet = executeQuery(query, pid, session, startTime, endTime)) {
       while (resultSet.next()) {
         Message data = defaultInstance.toBuilder().mergeFrom(resultSet.getBytes(1)).build();
         datas.add((T)data);
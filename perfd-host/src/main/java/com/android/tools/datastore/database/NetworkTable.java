@@ -20,6 +20,7 @@ import com.android.tools.profiler.proto.NetworkProfiler;
 import com.google.protobuf3jarjar.InvalidProtocolBufferException;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -55,8 +56,20 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
     return Logger.getInstance(NetworkTable.class);
   }
 
+  /**
+   * Holds the Network_Data samples when the table uses the {@link TimeSeriesBackend#COLUMNAR} backend, null otherwise. Series are
+   * keyed by app id and request type; Network_Data is not partitioned by session.
+   */
+  @Nullable private final TimeSeriesColumnStore<NetworkProfiler.NetworkProfilerData> myDataStore;
+
   public NetworkTable(@NotNull Map<Common.Session, Long> sesstionIdLookup) {
+    this(sesstionIdLookup, TimeSeriesBackend.SQLITE);
+  }
+
+  public NetworkTable(@NotNull Map<Common.Session, Long> sesstionIdLookup, @NotNull TimeSeriesBackend backend) {
     super(sesstionIdLookup);
+    // Network_Data rows are inserted with "INSERT OR IGNORE", so duplicated samples are dropped.
+    myDataStore = backend == TimeSeriesBackend.COLUMNAR ? new TimeSeriesColumnStore<>(false) : null;
   }
 
   @Override
@@ -99,12 +112,22 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
     }
   }
 
+  @Override
+  protected int evict(@NotNull RetentionPolicy policy, boolean overBudget) throws SQLException {
+    // Network_Data is keyed by process id rather than by session.
+    int evicted = myDataStore != null
+                  ? myDataStore.applyRetentionPolicy(policy)
+                  : evictTimeBuckets("Network_Data", "Id", "EndTime", "EndTime", null, policy, overBudget);
+    // Connections that are still open (EndTime = 0) are kept whatever their age, since they are part of every later range.
+    evicted += evictTimeBuckets("Network_Connection", "StartTime", "EndTime", "EndTime = 0", policy, overBudget);
+    return evicted;
+  }
+
   public List<NetworkProfiler.HttpConnectionData> getNetworkConnectionDataByRequest(NetworkProfiler.HttpRangeRequest request) {
     List<NetworkProfiler.HttpConnectionData> datas = new ArrayList<>();
-    try {
-      ResultSet results = executeQuery(NetworkStatements.QUERY_COMMON_CONNECTION_DATA, request.getProcessId(), request.getSession(),
-                                       request.getStartTimestamp(),
-                                       request.getEndTimestamp());
+    try (ResultSet results = executeQuery(NetworkStatements.QUERY_COMMON_CONNECTION_DATA, request.getProcessId(), request.getSession(),
+                                          request.getStartTimestamp(),
+                                          request.getEndTimestamp())) {
       while (results.next()) {
         NetworkProfiler.HttpConnectionData.Builder data = NetworkProfiler.HttpConnectionData.newBuilder();
         data.mergeFrom(results.getBytes(1));
@@ -118,19 +141,11 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
   }
 
   public List<NetworkProfiler.NetworkProfilerData> getNetworkDataByRequest(NetworkProfiler.NetworkDataRequest request) {
+    if (myDataStore != null) {
+      return getColumnarNetworkData(request);
+    }
     List<NetworkProfiler.NetworkProfilerData> datas = new ArrayList<>();
-    ResultSet results;
-    try {
-      if (request.getType() == NetworkProfiler.NetworkDataRequest.Type.ALL) {
-        results =
-          executeQuery(NetworkStatements.QUERY_NETWORK_DATA, request.getProcessId(), Common.AppId.ANY_VALUE, request.getStartTimestamp(),
-                       request.getEndTimestamp());
-      }
-      else {
-        results = executeQuery(NetworkStatements.QUERY_NETWORK_DATA_BY_TYPE, request.getProcessId(), Common.AppId.ANY_VALUE,
-                               request.getType().getNumber(),
-                               request.getStartTimestamp(), request.getEndTimestamp());
-      }
+    try (ResultSet results = queryNetworkData(request)) {
       while (results.next()) {
         NetworkProfiler.NetworkProfilerData.Builder data = NetworkProfiler.NetworkProfilerData.newBuilder();
         data.mergeFrom(results.getBytes(1));
@@ -143,7 +158,50 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
     return datas;
   }
 
+  @NotNull
+  private ResultSet queryNetworkData(@NotNull NetworkProfiler.NetworkDataRequest request) throws SQLException {
+    if (request.getType() == NetworkProfiler.NetworkDataRequest.Type.ALL) {
+      return executeQuery(NetworkStatements.QUERY_NETWORK_DATA, request.getProcessId(), Common.AppId.ANY_VALUE, request.getStartTimestamp(),
+                          request.getEndTimestamp());
+    }
+    return executeQuery(NetworkStatements.QUERY_NETWORK_DATA_BY_TYPE, request.getProcessId(), Common.AppId.ANY_VALUE,
+                        request.getType().getNumber(),
+                        request.getStartTimestamp(), request.getEndTimestamp());
+  }
+
+  /**
+   * Merges, in timestamp order, the samples of the requested app and of {@link Common.AppId#ANY_VALUE} for the requested type(s).
+   */
+  @NotNull
+  private List<NetworkProfiler.NetworkProfilerData> getColumnarNetworkData(@NotNull NetworkProfiler.NetworkDataRequest request) {
+    assert myDataStore != null;
+    List<Integer> types = new ArrayList<>();
+    if (request.getType() == NetworkProfiler.NetworkDataRequest.Type.ALL) {
+      types.addAll(DATACASE_REQUEST_TYPE_MAP.values());
+    }
+    else {
+      types.add(request.getType().getNumber());
+    }
+    List<NetworkProfiler.NetworkProfilerData> datas = new ArrayList<>();
+    int[] ids = request.getProcessId() == Common.AppId.ANY_VALUE
+                ? new int[]{Common.AppId.ANY_VALUE}
+                : new int[]{request.getProcessId(), Common.AppId.ANY_VALUE};
+    for (int id : ids) {
+      for (int type : types) {
+        myDataStore.getRange(new TimeSeriesColumnStore.SeriesKey(0, id, type), request.getStartTimestamp(), request.getEndTimestamp(),
+                             datas);
+      }
+    }
+    datas.sort(Comparator.comparingLong(data -> data.getBasicInfo().getEndTimestamp()));
+    return datas;
+  }
+
   public void insert(int appId, NetworkProfiler.NetworkProfilerData data) {
+    if (myDataStore != null) {
+      myDataStore.insert(new TimeSeriesColumnStore.SeriesKey(0, appId, DATACASE_REQUEST_TYPE_MAP.get(data.getDataCase())),
+                         data.getBasicInfo().getEndTimestamp(), data);
+      return;
+    }
     execute(NetworkStatements.INSERT_NETWORK_DATA, appId, DATACASE_REQUEST_TYPE_MAP.get(data.getDataCase()),
             data.getBasicInfo().getEndTimestamp(), data.toByteArray());
   }
@@ -152,8 +210,7 @@ public class NetworkTable extends DataStoreTable<NetworkTable.NetworkStatements>
                                                                         Common.Session session,
                                                                         NetworkProfiler.HttpDetailsRequest.Type type) {
     NetworkProfiler.HttpDetailsResponse.Builder responseBuilder = NetworkProfiler.HttpDetailsResponse.newBuilder();
-    try {
-      ResultSet results = executeQuery(NetworkStatements.FIND_CONNECTION_DATA, connId, session);
+    try (ResultSet results = executeQuery(NetworkStatements.FIND_CONNECTION_DATA, connId, session)) {
       if (results.next()) {
         Optional<Integer> column = columnFor(type);
         if (column.isPresent()) {
@@ -113,8 +113,7 @@ public class ProfilerTable extends DataStoreTable<ProfilerTable.ProfilerStatemen
 
     synchronized (myLock) {
       Profiler.GetDevicesResponse.Builder responseBuilder = Profiler.GetDevicesResponse.newBuilder();
-      try {
-        ResultSet results = executeQuery(ProfilerStatements.SELECT_DEVICE);
+      try (ResultSet results = executeQuery(ProfilerStatements.SELECT_DEVICE)) {
         while (results.next()) {
           responseBuilder.addDevice(Profiler.Device.parseFrom(results.getBytes(1)));
         }
@@ -132,9 +131,7 @@ public class ProfilerTable extends DataStoreTable<ProfilerTable.ProfilerStatemen
     }
     synchronized (myLock) {
       Profiler.GetProcessesResponse.Builder responseBuilder = Profiler.GetProcessesResponse.newBuilder();
-      try {
-        ResultSet results =
-          executeQuery(ProfilerStatements.SELECT_PROCESSES, request.getSession(), Long.MIN_VALUE, Long.MAX_VALUE);
+      try (ResultSet results = executeQuery(ProfilerStatements.SELECT_PROCESSES, request.getSession(), Long.MIN_VALUE, Long.MAX_VALUE)) {
         while (results.next()) {
           byte[] data = results.getBytes(1);
           Profiler.Process process = data == null ? Profiler.Process.getDefaultInstance() : Profiler.Process.parseFrom(data);
@@ -168,8 +165,7 @@ public class ProfilerTable extends DataStoreTable<ProfilerTable.ProfilerStatemen
 
   public void insertOrUpdateProcess(Common.Session session, Profiler.Process process) {
     synchronized (myLock) {
-      try {
-        ResultSet results = executeQuery(ProfilerStatements.SELECT_PROCESS_BY_ID, session, process.getPid(), 0L);
+      try (ResultSet results = executeQuery(ProfilerStatements.SELECT_PROCESS_BY_ID, session, process.getPid(), 0L)) {
         if (results.next()) {
           execute(ProfilerStatements.UPDATE_PROCESS, 0L, process.toByteArray(), session, process.getPid(), 0L);
         }
@@ -192,9 +188,7 @@ public class ProfilerTable extends DataStoreTable<ProfilerTable.ProfilerStatemen
    */
   public void updateAgentStatus(Common.Session session, Profiler.Process process, Profiler.AgentStatusResponse agentStatus) {
     synchronized (myLock) {
-      try {
-        ResultSet results =
-          executeQuery(ProfilerStatements.FIND_AGENT_STATUS, session, process.getPid(), 0L);
+      try (ResultSet results = executeQuery(ProfilerStatements.FIND_AGENT_STATUS, session, process.getPid(), 0L)) {
         if (results.next()) {
           Profiler.AgentStatusResponse.Status status = Profiler.AgentStatusResponse.Status.forNumber(results.getInt(1));
           switch (status) {
@@ -221,9 +215,7 @@ public class ProfilerTable extends DataStoreTable<ProfilerTable.ProfilerStatemen
   public Profiler.AgentStatusResponse getAgentStatus(Profiler.AgentStatusRequest request) {
     synchronized (myLock) {
       Profiler.AgentStatusResponse.Builder responseBuilder = Profiler.AgentStatusResponse.newBuilder();
-      try {
-        ResultSet results =
-          executeQuery(ProfilerStatements.FIND_AGENT_STATUS, request.getSession(), request.getProcessId(), 0L);
+      try (ResultSet results = executeQuery(ProfilerStatements.FIND_AGENT_STATUS, request.getSession(), request.getProcessId(), 0L)) {
         if (results.next()) {
           responseBuilder.setStatusValue(results.getInt(1));
           responseBuilder.setLastTimestamp(results.getLong(2));
@@ -243,9 +235,7 @@ public class ProfilerTable extends DataStoreTable<ProfilerTable.ProfilerStatemen
 
   @Nullable
   public Profiler.BytesResponse getBytes(Profiler.BytesRequest request) {
-    try {
-      ResultSet results =
-        executeQuery(ProfilerStatements.GET_BYTES, request.getId(), request.getSession());
+    try (ResultSet results = executeQuery(ProfilerStatements.GET_BYTES, request.getId(), request.getSession())) {
       if (results.next()) {
         return Profiler.BytesResponse.parseFrom(results.getBytes(1));
       }
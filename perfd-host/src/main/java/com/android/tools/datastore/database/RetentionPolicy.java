@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how much time series data a {@link com.android.tools.datastore.DataStoreDatabase} keeps around. Rows are grouped
+ * per session into buckets of {@link #getBucketNs()} and evicted a whole bucket at a time, oldest first, either when they are
+ * older than {@link #getMaxAgeNs()} relative to the newest row of their session, or when the database grows past
+ * {@link #getMaxBytes()}.
+ */
+public final class RetentionPolicy {
+  public static final long UNLIMITED = Long.MAX_VALUE;
+  public static final long DEFAULT_BUCKET_NS = TimeUnit.SECONDS.toNanos(10);
+
+  public static final RetentionPolicy UNBOUNDED = new RetentionPolicy(UNLIMITED, UNLIMITED, DEFAULT_BUCKET_NS);
+
+  private final long myMaxAgeNs;
+  private final long myMaxBytes;
+  private final long myBucketNs;
+
+  /**
+   * @param maxAgeNs the age past which a session's rows are evicted, or {@link #UNLIMITED}.
+   * @param maxBytes the size past which the oldest bucket of each session is evicted, or {@link #UNLIMITED}.
+   * @param bucketNs the granularity at which rows are evicted.
+   */
+  public RetentionPolicy(long maxAgeNs, long maxBytes, long bucketNs) {
+    assert maxAgeNs > 0 && maxBytes > 0 && bucketNs > 0;
+    myMaxAgeNs = maxAgeNs;
+    myMaxBytes = maxBytes;
+    myBucketNs = bucketNs;
+  }
+
+  public long getMaxAgeNs() {
+    return myMaxAgeNs;
+  }
+
+  public long getMaxBytes() {
+    return myMaxBytes;
+  }
+
+  public long getBucketNs() {
+    return myBucketNs;
+  }
+
+  public boolean isUnbounded() {
+    return myMaxAgeNs == UNLIMITED && myMaxBytes == UNLIMITED;
+  }
+
+  /**
+   * @param minTimestamp the oldest timestamp stored for a session.
+   * @param maxTimestamp the newest timestamp stored for a session.
+   * @param overBudget   whether the database is currently larger than {@link #getMaxBytes()}.
+   * @return the timestamp before which the session's rows should be evicted, aligned to a bucket boundary. Nothing needs to be
+   * evicted if the returned value is not greater than {@code minTimestamp}.
+   */
+  public long getEvictionCutoff(long minTimestamp, long maxTimestamp, boolean overBudget) {
+    long cutoff = Long.MIN_VALUE;
+    if (myMaxAgeNs != UNLIMITED) {
+      cutoff = maxTimestamp - myMaxAgeNs;
+    }
+    if (overBudget) {
+      // Drop at least the oldest bucket, but never the one currently being written to.
+      cutoff = Math.max(cutoff, Math.min(minTimestamp + myBucketNs, maxTimestamp));
+    }
+    return cutoff == Long.MIN_VALUE ? cutoff : Math.floorDiv(cutoff, myBucketNs) * myBucketNs;
+  }
+}
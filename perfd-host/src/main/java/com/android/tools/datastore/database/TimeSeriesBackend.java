@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+/**
+ * Where a table keeps its periodic samples (e.g. CPU usage, memory and network speed samples).
+ */
+public enum TimeSeriesBackend {
+  /**
+   * Samples are serialized into rows of the table's database, and deserialized again on every range query.
+   */
+  SQLITE,
+  /**
+   * Samples are kept decoded in a {@link TimeSeriesColumnStore}, which trades durability for allocation-free range lookups.
+   */
+  COLUMNAR
+}
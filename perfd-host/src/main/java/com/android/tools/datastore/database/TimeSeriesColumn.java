@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A single time series of samples sorted by timestamp. Timestamps are stored in fixed size chunks as int deltas against a per-chunk
+ * base, next to a column holding the sample values, so a sample costs 4 bytes of timestamp plus a reference and range lookups are
+ * two binary searches (over the chunks, then within a chunk).
+ *
+ * This class is not thread safe, {@link TimeSeriesColumnStore} guards access to it.
+ */
+final class TimeSeriesColumn<V> {
+  static final int CHUNK_SIZE = 1024;
+
+  private static final class Chunk {
+    // Reference timestamp the deltas are relative to. It does not have to be the timestamp of the first sample.
+    private final long myBase;
+    private final int[] myDeltas = new int[CHUNK_SIZE];
+    private final Object[] myValues = new Object[CHUNK_SIZE];
+    private int mySize;
+
+    Chunk(long base) {
+      myBase = base;
+    }
+
+    long getTimestamp(int index) {
+      return myBase + myDeltas[index];
+    }
+
+    long getFirstTimestamp() {
+      return getTimestamp(0);
+    }
+
+    long getLastTimestamp() {
+      return getTimestamp(mySize - 1);
+    }
+
+    boolean canHold(long timestamp) {
+      long delta = timestamp - myBase;
+      return mySize < CHUNK_SIZE && delta >= Integer.MIN_VALUE && delta <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return the index of the first sample whose timestamp is greater or equal to {@code timestamp}.
+     */
+    int lowerBound(long timestamp) {
+      int low = 0;
+      int high = mySize;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (getTimestamp(mid) < timestamp) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    void insert(int index, long timestamp, Object value) {
+      System.arraycopy(myDeltas, index, myDeltas, index + 1, mySize - index);
+      System.arraycopy(myValues, index, myValues, index + 1, mySize - index);
+      myDeltas[index] = (int)(timestamp - myBase);
+      myValues[index] = value;
+      mySize++;
+    }
+
+    void removeFirst(int count) {
+      System.arraycopy(myDeltas, count, myDeltas, 0, mySize - count);
+      System.arraycopy(myValues, count, myValues, 0, mySize - count);
+      for (int i = mySize - count; i < mySize; i++) {
+        myValues[i] = null;
+      }
+      mySize -= count;
+    }
+  }
+
+  private final List<Chunk> myChunks = new ArrayList<>();
+  private int mySize;
+
+  int size() {
+    return mySize;
+  }
+
+  boolean isEmpty() {
+    return mySize == 0;
+  }
+
+  long getFirstTimestamp() {
+    assert !isEmpty();
+    return myChunks.get(0).getFirstTimestamp();
+  }
+
+  long getLastTimestamp() {
+    assert !isEmpty();
+    return myChunks.get(myChunks.size() - 1).getLastTimestamp();
+  }
+
+  /**
+   * Adds a sample. If a sample with the same timestamp already exists, it is replaced if {@code replace} is true, otherwise the
+   * new sample is ignored.
+   */
+  void put(long timestamp, @NotNull V value, boolean replace) {
+    if (isEmpty() || timestamp > getLastTimestamp()) {
+      // Fast path: samples almost always arrive in order.
+      Chunk last = myChunks.isEmpty() ? null : myChunks.get(myChunks.size() - 1);
+      if (last == null || !last.canHold(timestamp)) {
+        last = new Chunk(timestamp);
+        myChunks.add(last);
+      }
+      last.insert(last.mySize, timestamp, value);
+      mySize++;
+      return;
+    }
+
+    int chunkIndex = findChunk(timestamp);
+    Chunk chunk = myChunks.get(chunkIndex);
+    int index = chunk.lowerBound(timestamp);
+    if (index < chunk.mySize && chunk.getTimestamp(index) == timestamp) {
+      if (replace) {
+        chunk.myValues[index] = value;
+      }
+      return;
+    }
+    if (chunk.canHold(timestamp)) {
+      chunk.insert(index, timestamp, value);
+    }
+    else {
+      splitAndInsert(chunkIndex, index, timestamp, value);
+    }
+    mySize++;
+  }
+
+  /**
+   * Calls {@code consumer} with every sample whose timestamp is in (startExclusive, endInclusive], in timestamp order.
+   */
+  @SuppressWarnings("unchecked")
+  void forEach(long startExclusive, long endInclusive, @NotNull ObjLongConsumer<V> consumer) {
+    if (isEmpty() || startExclusive >= endInclusive || startExclusive == Long.MAX_VALUE) {
+      return;
+    }
+    long start = startExclusive + 1;
+    for (int chunkIndex = findChunk(start); chunkIndex < myChunks.size(); chunkIndex++) {
+      Chunk chunk = myChunks.get(chunkIndex);
+      for (int i = chunk.lowerBound(start); i < chunk.mySize; i++) {
+        long timestamp = chunk.getTimestamp(i);
+        if (timestamp > endInclusive) {
+          return;
+        }
+        consumer.accept((V)chunk.myValues[i], timestamp);
+      }
+    }
+  }
+
+  /**
+   * Removes every sample older than {@code cutoff}.
+   *
+   * @return the number of samples removed.
+   */
+  int evictBefore(long cutoff) {
+    int removed = 0;
+    while (!myChunks.isEmpty()) {
+      Chunk chunk = myChunks.get(0);
+      if (chunk.getLastTimestamp() < cutoff) {
+        removed += chunk.mySize;
+        myChunks.remove(0);
+        continue;
+      }
+      int count = chunk.lowerBound(cutoff);
+      if (count > 0) {
+        chunk.removeFirst(count);
+        removed += count;
+      }
+      break;
+    }
+    mySize -= removed;
+    return removed;
+  }
+
+  /**
+   * @return the index of the last chunk whose first timestamp is not greater than {@code timestamp}, or 0 if there is none.
+   */
+  private int findChunk(long timestamp) {
+    int low = 0;
+    int high = myChunks.size() - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (myChunks.get(mid).getFirstTimestamp() <= timestamp) {
+        low = mid;
+      }
+      else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Slow path for an out of order sample that does not fit in its chunk: the chunk is split in two around the insertion point.
+   */
+  private void splitAndInsert(int chunkIndex, int index, long timestamp, @NotNull V value) {
+    Chunk chunk = myChunks.get(chunkIndex);
+    List<Chunk> replacement = new ArrayList<>(3);
+    appendRange(replacement, chunk, 0, index);
+    appendSample(replacement, timestamp, value);
+    appendRange(replacement, chunk, index, chunk.mySize);
+    myChunks.remove(chunkIndex);
+    myChunks.addAll(chunkIndex, replacement);
+  }
+
+  private static void appendRange(@NotNull List<Chunk> chunks, @NotNull Chunk source, int from, int to) {
+    for (int i = from; i < to; i++) {
+      appendSample(chunks, source.getTimestamp(i), source.myValues[i]);
+    }
+  }
+
+  private static void appendSample(@NotNull List<Chunk> chunks, long timestamp, Object value) {
+    Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+    if (last == null || !last.canHold(timestamp)) {
+      last = new Chunk(timestamp);
+      chunks.add(last);
+    }
+    last.insert(last.mySize, timestamp, value);
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * In-memory alternative to storing time series samples as SQLite rows, used by tables created with
+ * {@link TimeSeriesBackend#COLUMNAR}. Samples are kept, already decoded, in one {@link TimeSeriesColumn} per series, so range
+ * queries neither hit the database nor deserialize blobs.
+ */
+public final class TimeSeriesColumnStore<V> {
+  /**
+   * Identifies a series, e.g. the samples of one type for one process of a session.
+   */
+  public static final class SeriesKey {
+    private final long mySession;
+    private final long myId;
+    private final int myType;
+
+    public SeriesKey(long session, long id, int type) {
+      mySession = session;
+      myId = id;
+      myType = type;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * Long.hashCode(mySession) + Long.hashCode(myId)) + myType;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof SeriesKey)) {
+        return false;
+      }
+      SeriesKey other = (SeriesKey)obj;
+      return mySession == other.mySession && myId == other.myId && myType == other.myType;
+    }
+  }
+
+  /**
+   * The store lives in the IDE's heap rather than in the database, so the database size budget of the {@link RetentionPolicy} does
+   * not cover it. Instead, a series holding more samples than this evicts its oldest buckets when the policy is applied.
+   */
+  public static final int DEFAULT_MAX_SAMPLES_PER_SERIES = 1 << 18;
+
+  private final ReadWriteLock myLock = new ReentrantReadWriteLock();
+  private final Map<SeriesKey, TimeSeriesColumn<V>> mySeries = new HashMap<>();
+  private final boolean myReplaceDuplicates;
+  private final int myMaxSamplesPerSeries;
+
+  /**
+   * @param replaceDuplicates whether a sample replaces an existing sample with the same timestamp (like "INSERT OR REPLACE"), or
+   *                          is ignored (like "INSERT OR IGNORE").
+   */
+  public TimeSeriesColumnStore(boolean replaceDuplicates) {
+    this(replaceDuplicates, DEFAULT_MAX_SAMPLES_PER_SERIES);
+  }
+
+  public TimeSeriesColumnStore(boolean replaceDuplicates, int maxSamplesPerSeries) {
+    assert maxSamplesPerSeries > 0;
+    myReplaceDuplicates = replaceDuplicates;
+    myMaxSamplesPerSeries = maxSamplesPerSeries;
+  }
+
+  public void insert(@NotNull SeriesKey key, long timestamp, @NotNull V value) {
+    myLock.writeLock().lock();
+    try {
+      mySeries.computeIfAbsent(key, k -> new TimeSeriesColumn<>()).put(timestamp, value, myReplaceDuplicates);
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Calls {@code consumer} with every sample of the series whose timestamp is in (startExclusive, endInclusive], in timestamp order.
+   * The consumer runs under the store's read lock and must not write to the store.
+   */
+  public void forEach(@NotNull SeriesKey key, long startExclusive, long endInclusive, @NotNull ObjLongConsumer<V> consumer) {
+    myLock.readLock().lock();
+    try {
+      TimeSeriesColumn<V> series = mySeries.get(key);
+      if (series != null) {
+        series.forEach(startExclusive, endInclusive, consumer);
+      }
+    }
+    finally {
+      myLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds to {@code out} the samples of the series whose timestamp is in (startExclusive, endInclusive], in timestamp order.
+   */
+  public void getRange(@NotNull SeriesKey key, long startExclusive, long endInclusive, @NotNull List<V> out) {
+    forEach(key, startExclusive, endInclusive, (value, timestamp) -> out.add(value));
+  }
+
+  /**
+   * Evicts the samples of every series that fall outside of {@code policy}, using the same bucketing as the SQLite backed tables.
+   * The size of the database does not matter here; instead, a series holding more than the maximum number of samples evicts its
+   * oldest buckets until it fits.
+   *
+   * @return the number of samples evicted.
+   */
+  public int applyRetentionPolicy(@NotNull RetentionPolicy policy) {
+    myLock.writeLock().lock();
+    try {
+      int evicted = 0;
+      for (TimeSeriesColumn<V> series : mySeries.values()) {
+        if (series.isEmpty()) {
+          continue;
+        }
+        boolean seriesOverBudget = series.size() > myMaxSamplesPerSeries;
+        while (!series.isEmpty()) {
+          long first = series.getFirstTimestamp();
+          long cutoff = policy.getEvictionCutoff(first, series.getLastTimestamp(), seriesOverBudget);
+          int seriesEvicted = cutoff > first ? series.evictBefore(cutoff) : 0;
+          evicted += seriesEvicted;
+          if (seriesEvicted == 0 || series.size() <= myMaxSamplesPerSeries) {
+            break;
+          }
+          seriesOverBudget = true;
+        }
+      }
+      mySeries.values().removeIf(TimeSeriesColumn::isEmpty);
+      return evicted;
+    }
+    finally {
+      myLock.writeLock().unlock();
+    }
+  }
+
+  public int getSampleCount() {
+    myLock.readLock().lock();
+    try {
+      int count = 0;
+      for (TimeSeriesColumn<V> series : mySeries.values()) {
+        count += series.size();
+      }
+      return count;
+    }
+    finally {
+      myLock.readLock().unlock();
+    }
+  }
+}
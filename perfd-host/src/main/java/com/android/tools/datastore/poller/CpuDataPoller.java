@@ -44,7 +44,7 @@ public class CpuDataPoller extends PollRunner {
                        @NotNull Common.Session session,
                        @NotNull CpuTable table,
                        @NotNull CpuServiceGrpc.CpuServiceBlockingStub pollingService) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, session);
     myProcessId = processId;
     myCpuTable = table;
     myPollingService = pollingService;
@@ -58,7 +58,7 @@ public class CpuDataPoller extends PollRunner {
       .setProcessId(myProcessId)
       .setStartTimestamp(getDataStartNs)
       .setEndTimestamp(Long.MAX_VALUE);
-    CpuProfiler.CpuDataResponse response = myPollingService.getData(request.build());
+    CpuProfiler.CpuDataResponse response = withPollDeadline(myPollingService).getData(request.build());
     for (CpuProfiler.CpuProfilerData data : response.getDataList()) {
       getDataStartNs = Math.max(getDataStartNs, data.getBasicInfo().getEndTimestamp());
       myCpuTable.insert(mySession, data);
@@ -69,7 +69,7 @@ public class CpuDataPoller extends PollRunner {
       .setProcessId(myProcessId)
       .setStartTimestamp(getThreadsStartNs)
       .setEndTimestamp(Long.MAX_VALUE);
-    CpuProfiler.GetThreadsResponse threadsResponse = myPollingService.getThreads(threadsRequest.build());
+    CpuProfiler.GetThreadsResponse threadsResponse = withPollDeadline(myPollingService).getThreads(threadsRequest.build());
 
     if (myDataRequestStartTimestampNs == Long.MIN_VALUE) {
       // Store the very first snapshot in the database.
@@ -33,7 +33,7 @@ public class EventDataPoller extends PollRunner {
   private final EventServiceGrpc.EventServiceBlockingStub myEventPollingService;
 
   public EventDataPoller(int processId, Common.Session session, EventsTable eventTable, EventServiceGrpc.EventServiceBlockingStub pollingService) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, session);
     myProcessId = processId;
     myEventsTable = eventTable;
     myEventPollingService = pollingService;
@@ -51,7 +51,8 @@ public class EventDataPoller extends PollRunner {
       .setStartTimestamp(myDataRequestStartTimestampNs)
       .setEndTimestamp(Long.MAX_VALUE);
     // Query for and cache activity data that has changed since our last polling.
-    EventProfiler.ActivityDataResponse activityResponse = myEventPollingService.getActivityData(dataRequestBuilder.build());
+    EventProfiler.ActivityDataResponse activityResponse =
+      withPollDeadline(myEventPollingService).getActivityData(dataRequestBuilder.build());
     for (EventProfiler.ActivityData data : activityResponse.getDataList()) {
       long id = data.getHash();
       EventProfiler.ActivityData cached_data = myEventsTable.findActivityDataOrNull(data.getProcessId(), id, mySession);
@@ -80,7 +81,7 @@ public class EventDataPoller extends PollRunner {
 
     // Poll for system event data. If we have a duplicate event then we replace it with the incomming one.
     // we replace the event as the event information may have changed, eg now it has an uptime where previously it didn't
-    EventProfiler.SystemDataResponse systemResponse = myEventPollingService.getSystemData(dataRequestBuilder.build());
+    EventProfiler.SystemDataResponse systemResponse = withPollDeadline(myEventPollingService).getSystemData(dataRequestBuilder.build());
     for (EventProfiler.SystemData data : systemResponse.getDataList()) {
       long id = data.getEventId();
       myEventsTable.insertOrReplace(id, mySession, data);
@@ -46,7 +46,7 @@ public class MemoryDataPoller extends PollRunner {
                           MemoryStatsTable statsTable,
                           MemoryServiceGrpc.MemoryServiceBlockingStub pollingService,
                           Consumer<Runnable> fetchExecutor) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, session);
     myProcessId = processId;
     mySession = session;
     myMemoryStatsTable = statsTable;
@@ -84,7 +84,7 @@ public class MemoryDataPoller extends PollRunner {
       .setProcessId(myProcessId)
       .setStartTime(myDataRequestStartTimestampNs)
       .setEndTime(Long.MAX_VALUE);
-    MemoryData response = myPollingService.getData(dataRequestBuilder.build());
+    MemoryData response = withPollDeadline(myPollingService).getData(dataRequestBuilder.build());
 
     // TODO: A UI request may come in while mid way through the poll, this can cause us to have partial data
     // returned to the UI. This can be solved using transactions in the DB when this class is moved fully over.
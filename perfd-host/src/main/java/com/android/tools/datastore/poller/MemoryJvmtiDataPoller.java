@@ -35,7 +35,7 @@ public class MemoryJvmtiDataPoller extends PollRunner {
                                Common.Session session,
                                MemoryLiveAllocationTable liveAllocationTable,
                                MemoryServiceGrpc.MemoryServiceBlockingStub pollingService) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, session);
     myProcessId = processId;
     mySession = session;
     myLiveAllocationTable = liveAllocationTable;
@@ -52,7 +52,7 @@ public class MemoryJvmtiDataPoller extends PollRunner {
       .setProcessId(myProcessId)
       .setStartTime(myDataRequestStartTimestampNs)
       .setEndTime(Long.MAX_VALUE);
-    MemoryData response = myPollingService.getJvmtiData(dataRequestBuilder.build());
+    MemoryData response = withPollDeadline(myPollingService).getJvmtiData(dataRequestBuilder.build());
 
     for (BatchAllocationSample sample : response.getAllocationSamplesList()) {
       myLiveAllocationTable.insertMethodInfo(myProcessId, mySession, sample.getMethodsList());
@@ -37,7 +37,7 @@ public class NetworkDataPoller extends PollRunner {
                            Common.Session session,
                            NetworkTable table,
                            NetworkServiceGrpc.NetworkServiceBlockingStub pollingService) {
-    super(POLLING_DELAY_NS);
+    super(POLLING_DELAY_NS, session);
     myProcessId = processId;
     myNetworkTable = table;
     mySession = session;
@@ -54,7 +54,7 @@ public class NetworkDataPoller extends PollRunner {
       .setStartTimestamp(myDataRequestStartTimestampNs)
       .setEndTimestamp(Long.MAX_VALUE)
       .setType(NetworkProfiler.NetworkDataRequest.Type.ALL);
-    NetworkProfiler.NetworkDataResponse response = myPollingService.getData(dataRequestBuilder.build());
+    NetworkProfiler.NetworkDataResponse response = withPollDeadline(myPollingService).getData(dataRequestBuilder.build());
 
     for (NetworkProfiler.NetworkProfilerData data : response.getDataList()) {
       myDataRequestStartTimestampNs = Math.max(myDataRequestStartTimestampNs, data.getBasicInfo().getEndTimestamp());
@@ -68,7 +68,7 @@ public class NetworkDataPoller extends PollRunner {
       .setProcessId(myProcessId)
       .setStartTimestamp(myHttpRangeRequestStartTimeNs)
       .setEndTimestamp(Long.MAX_VALUE);
-    NetworkProfiler.HttpRangeResponse response = myPollingService.getHttpRange(requestBuilder.build());
+    NetworkProfiler.HttpRangeResponse response = withPollDeadline(myPollingService).getHttpRange(requestBuilder.build());
 
     for (NetworkProfiler.HttpConnectionData data : response.getDataList()) {
       myHttpRangeRequestStartTimeNs = Math.max(myHttpRangeRequestStartTimeNs, data.getStartTimestamp() + 1);
@@ -98,6 +98,6 @@ public class NetworkDataPoller extends PollRunner {
       .setConnId(id)
       .setType(type)
       .build();
-    return myPollingService.getHttpDetails(request);
+    return withPollDeadline(myPollingService).getHttpDetails(request);
   }
 }
\ No newline at end of file
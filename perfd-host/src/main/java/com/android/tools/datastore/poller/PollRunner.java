@@ -15,31 +15,98 @@
  */
 package com.android.tools.datastore.poller;
 
+import com.android.tools.profiler.proto.Common;
+import com.intellij.openapi.diagnostic.Logger;
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.AbstractStub;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link RunnableFuture} which, while running, triggers a callback at a specified period
  * (which can be used to poll a target service at some frequency).
+ *
+ * Running the poller does not tie up the calling thread: {@link #run()} hands the poller over to the shared {@link PollScheduler},
+ * which calls {@link #poll()} on one of its threads until the poller is cancelled.
  */
 public abstract class PollRunner implements RunnableFuture<Void> {
 
   public static final long POLLING_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(250);
 
-  private long myPollPeriodNs;
+  /**
+   * How long a single RPC made while polling may take. The pollers share a few threads, so a device that stops answering must not
+   * hold on to one of them.
+   */
+  public static final long POLL_DEADLINE_NS = TimeUnit.SECONDS.toNanos(5);
+
+  /**
+   * How often a poller polls, relative to its period.
+   */
+  public enum Cadence {
+    /**
+     * The data is being looked at, poll at the poller's period.
+     */
+    FOREGROUND(1),
+    /**
+     * Nobody is looking at the data (e.g. the session is not the one selected in the profiler), poll less often.
+     */
+    BACKGROUND(4);
+
+    private final int myPeriodMultiplier;
+
+    Cadence(int periodMultiplier) {
+      myPeriodMultiplier = periodMultiplier;
+    }
+
+    public int getPeriodMultiplier() {
+      return myPeriodMultiplier;
+    }
+  }
+
+  private static Logger getLogger() {
+    return Logger.getInstance(PollRunner.class);
+  }
+
+  private final long myPollPeriodNs;
 
-  private boolean myIsRunning = false;
+  @Nullable private final Common.Session mySession;
+
+  private volatile Cadence myCadence = Cadence.FOREGROUND;
+
+  private volatile boolean myIsRunning = false;
 
   private CountDownLatch myRunning = new CountDownLatch(1);
 
   private CountDownLatch myIsDone = new CountDownLatch(1);
 
+  // Scheduling state, guarded by this.
+  @Nullable private ScheduledFuture<?> myNextPoll;
+  private boolean myIsPolling;
+  private long myScheduledTimeNs;
+
+  // Metrics, guarded by this.
+  private long myPollCount;
+  private long myOverrunCount;
+  private long myLastLagNs;
+  private long myMaxLagNs;
 
   public PollRunner(long pollPeriodNs) {
+    this(pollPeriodNs, null);
+  }
+
+  /**
+   * @param session the session the poller collects data for, used to slow the poller down while the session is not the one set
+   *                through {@link PollScheduler#setForegroundSession(Common.Session)}.
+   */
+  public PollRunner(long pollPeriodNs, @Nullable Common.Session session) {
     myPollPeriodNs = pollPeriodNs;
+    mySession = session;
   }
 
   public void stop() {
@@ -54,28 +121,147 @@ public abstract class PollRunner implements RunnableFuture<Void> {
 
   @Override
   public void run() {
-    try {
+    synchronized (this) {
+      if (myIsRunning) {
+        return;
+      }
       myIsRunning = true;
-      while (myRunning.getCount() > 0) {
-        long startTimeNs = System.nanoTime();
-        poll();
-        long sleepTime = Math.max(myPollPeriodNs - (System.nanoTime() - startTimeNs), 0L);
-        myRunning.await(sleepTime, TimeUnit.NANOSECONDS);
+      if (isCancelled()) {
+        myIsDone.countDown();
+        return;
       }
+      PollScheduler.getInstance().register(this);
+      // Spread the first polls so that pollers started together (e.g. for every process of a device) do not stay in lockstep.
+      long spreadNs = Math.min(myPollPeriodNs, POLLING_DELAY_NS) / 2;
+      myNextPoll = PollScheduler.getInstance().schedule(this, spreadNs, spreadNs);
     }
-    catch (InterruptedException | StatusRuntimeException e) {
-      Thread.currentThread().interrupt();
+  }
+
+  public abstract void poll();
+
+  /**
+   * @return {@code stub} with a deadline of {@link #POLL_DEADLINE_NS} from now, to be used for a single RPC of {@link #poll()}.
+   */
+  @NotNull
+  protected static <S extends AbstractStub<S>> S withPollDeadline(@NotNull S stub) {
+    return stub.withDeadlineAfter(POLL_DEADLINE_NS, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Called by the {@link PollScheduler} when a poll is due.
+   */
+  void tick() {
+    long startTimeNs = System.nanoTime();
+    synchronized (this) {
+      if (isCancelled()) {
+        finish();
+        return;
+      }
+      myIsPolling = true;
+      myLastLagNs = Math.max(0, startTimeNs - myScheduledTimeNs);
+      myMaxLagNs = Math.max(myMaxLagNs, myLastLagNs);
+    }
+
+    boolean keepPolling = false;
+    try {
+      poll();
+      keepPolling = true;
+    }
+    catch (StatusRuntimeException e) {
+      // The target service went away, stop polling. If it merely took too long to answer, try again at the next poll.
+      if (e.getStatus().getCode() == Status.Code.DEADLINE_EXCEEDED) {
+        getLogger().debug(e);
+        keepPolling = true;
+      }
+    }
+    catch (RuntimeException e) {
+      getLogger().warn(e);
     }
     finally {
-      myIsDone.countDown();
+      long pollDurationNs = System.nanoTime() - startTimeNs;
+      long periodNs = myPollPeriodNs * myCadence.getPeriodMultiplier();
+      synchronized (this) {
+        myIsPolling = false;
+        myPollCount++;
+        if (pollDurationNs > periodNs) {
+          myOverrunCount++;
+        }
+        if (!keepPolling || isCancelled()) {
+          finish();
+        }
+        else {
+          myNextPoll = PollScheduler.getInstance()
+            .schedule(this, Math.max(periodNs - pollDurationNs, 0L), (long)(periodNs * PollScheduler.JITTER_FRACTION));
+        }
+      }
     }
   }
 
-  public abstract void poll();
+  synchronized void onScheduled(long scheduledTimeNs) {
+    myScheduledTimeNs = scheduledTimeNs;
+  }
+
+  private synchronized void finish() {
+    myNextPoll = null;
+    PollScheduler.getInstance().unregister(this);
+    myIsDone.countDown();
+  }
+
+  @Nullable
+  public Common.Session getSession() {
+    return mySession;
+  }
+
+  @NotNull
+  public Cadence getCadence() {
+    return myCadence;
+  }
+
+  /**
+   * Changes how often the poller polls. Takes effect after the poll that is currently scheduled.
+   */
+  public void setCadence(@NotNull Cadence cadence) {
+    myCadence = cadence;
+  }
+
+  /**
+   * @return the number of times {@link #poll()} was called.
+   */
+  public synchronized long getPollCount() {
+    return myPollCount;
+  }
+
+  /**
+   * @return the number of polls that took longer than the poller's period, delaying the polls that followed.
+   */
+  public synchronized long getOverrunCount() {
+    return myOverrunCount;
+  }
+
+  /**
+   * @return how late, in nanoseconds, the last poll started compared to when it was scheduled (e.g. because every thread of the
+   * {@link PollScheduler} was busy).
+   */
+  public synchronized long getLastLagNs() {
+    return myLastLagNs;
+  }
+
+  public synchronized long getMaxLagNs() {
+    return myMaxLagNs;
+  }
 
   @Override
   public boolean cancel(boolean mayInterruptIfRunning) {
     myRunning.countDown();
+    synchronized (this) {
+      // If a poll is in progress, the poller finishes once it returns. Otherwise drop the pending poll right away.
+      if (myIsRunning && !myIsPolling && myIsDone.getCount() > 0) {
+        if (myNextPoll != null) {
+          myNextPoll.cancel(false);
+        }
+        finish();
+      }
+    }
     return true;
   }
 
@@ -94,7 +280,6 @@ public abstract class PollRunner implements RunnableFuture<Void> {
     if (myIsRunning) {
       myIsDone.await();
     }
-    myIsRunning = !isDone();
     return null;
   }
 
@@ -103,7 +288,6 @@ public abstract class PollRunner implements RunnableFuture<Void> {
     if (myIsRunning) {
       myIsDone.await(timeout, unit);
     }
-    myIsRunning = !isDone();
     return null;
   }
 }
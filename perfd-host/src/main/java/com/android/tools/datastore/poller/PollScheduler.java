@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.poller;
+
+import com.android.tools.profiler.proto.Common;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multiplexes every running {@link PollRunner} over a small shared pool of threads, instead of dedicating a thread to each poller.
+ * Each poll is scheduled individually, at the poller's period scaled by its {@link PollRunner.Cadence}, with some jitter so that
+ * pollers of different devices and processes do not all fire at the same instant.
+ *
+ * Once a foreground session is set (see {@link #setForegroundSession(Common.Session)}), only its pollers, and the ones that are not
+ * tied to a session, poll at the {@link PollRunner.Cadence#FOREGROUND} cadence.
+ */
+public final class PollScheduler {
+  /**
+   * Maximum fraction of a period by which a poll is randomly delayed or advanced.
+   */
+  static final double JITTER_FRACTION = 0.1;
+
+  private static final PollScheduler INSTANCE =
+    new PollScheduler(Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+
+  @NotNull private final ScheduledExecutorService myExecutor;
+  private final Set<PollRunner> myRunners = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+  private final Object myCadenceLock = new Object();
+  // Until a foreground session is set, every poller polls at the foreground cadence. Guarded by myCadenceLock.
+  private boolean myHasForegroundSession;
+  @Nullable private Common.Session myForegroundSession;
+
+  @NotNull
+  public static PollScheduler getInstance() {
+    return INSTANCE;
+  }
+
+  private PollScheduler(int threadCount) {
+    ScheduledThreadPoolExecutor executor =
+      new ScheduledThreadPoolExecutor(threadCount, new ThreadFactoryBuilder().setNameFormat("DataStorePoller-%d").setDaemon(true).build());
+    // Stopped pollers cancel their pending poll, don't keep them around until they would have fired.
+    executor.setRemoveOnCancelPolicy(true);
+    myExecutor = executor;
+  }
+
+  /**
+   * @return the pollers that are currently running, e.g. to inspect their lag and overrun counters.
+   */
+  @NotNull
+  public List<PollRunner> getRunners() {
+    return new ArrayList<>(myRunners);
+  }
+
+  /**
+   * Polls the data of {@code session} at the foreground cadence and the data of every other session at the background cadence, or of
+   * every session if {@code session} is null (e.g. while the data of none of them is being displayed). This applies to the running
+   * pollers as well as to the ones started later.
+   */
+  public void setForegroundSession(@Nullable Common.Session session) {
+    synchronized (myCadenceLock) {
+      myHasForegroundSession = true;
+      myForegroundSession = session;
+      for (PollRunner runner : myRunners) {
+        runner.setCadence(getCadence(runner));
+      }
+    }
+  }
+
+  /**
+   * Goes back to polling every session at the foreground cadence.
+   */
+  void clearForegroundSession() {
+    synchronized (myCadenceLock) {
+      myHasForegroundSession = false;
+      myForegroundSession = null;
+      for (PollRunner runner : myRunners) {
+        runner.setCadence(PollRunner.Cadence.FOREGROUND);
+      }
+    }
+  }
+
+  void register(@NotNull PollRunner runner) {
+    synchronized (myCadenceLock) {
+      runner.setCadence(getCadence(runner));
+      myRunners.add(runner);
+    }
+  }
+
+  void unregister(@NotNull PollRunner runner) {
+    myRunners.remove(runner);
+  }
+
+  @NotNull
+  private PollRunner.Cadence getCadence(@NotNull PollRunner runner) {
+    Common.Session session = runner.getSession();
+    if (!myHasForegroundSession || session == null || session.equals(myForegroundSession)) {
+      return PollRunner.Cadence.FOREGROUND;
+    }
+    return PollRunner.Cadence.BACKGROUND;
+  }
+
+  /**
+   * Schedules the next poll of {@code runner}, {@code delayNs} from now give or take up to {@code maxJitterNs}.
+   */
+  @NotNull
+  ScheduledFuture<?> schedule(@NotNull PollRunner runner, long delayNs, long maxJitterNs) {
+    long jitteredDelayNs = delayNs;
+    if (maxJitterNs > 0) {
+      jitteredDelayNs = Math.max(0, delayNs + ThreadLocalRandom.current().nextLong(-maxJitterNs, maxJitterNs + 1));
+    }
+    runner.onScheduled(System.nanoTime() + jitteredDelayNs);
+    return myExecutor.schedule(runner::tick, jitteredDelayNs, TimeUnit.NANOSECONDS);
+  }
+}
@@ -22,6 +22,7 @@ import com.android.tools.profiler.proto.Common;
 import com.android.tools.profiler.proto.Profiler;
 import com.android.tools.profiler.proto.Profiler.Device;
 import com.android.tools.profiler.proto.ProfilerServiceGrpc;
+import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 
 import java.util.HashMap;
@@ -66,7 +67,7 @@ public class ProfilerDevicePoller extends PollRunner implements DataStoreTable.D
   public void poll() {
     try {
       Profiler.GetDevicesRequest devicesRequest = Profiler.GetDevicesRequest.newBuilder().build();
-      Profiler.GetDevicesResponse deviceResponse = myPollingService.getDevices(devicesRequest);
+      Profiler.GetDevicesResponse deviceResponse = withPollDeadline(myPollingService).getDevices(devicesRequest);
       for (Device device : deviceResponse.getDeviceList()) {
         myTable.insertOrUpdateDevice(device);
         // TODO Store off session, and if it changes fix any session specific data in the database.
@@ -79,7 +80,7 @@ public class ProfilerDevicePoller extends PollRunner implements DataStoreTable.D
         myService.setConnectedClients(session, myPollingService.getChannel());
         Profiler.GetProcessesRequest processesRequest =
           Profiler.GetProcessesRequest.newBuilder().setSession(session).build();
-        Profiler.GetProcessesResponse processesResponse = myPollingService.getProcesses(processesRequest);
+        Profiler.GetProcessesResponse processesResponse = withPollDeadline(myPollingService).getProcesses(processesRequest);
 
         // Gather the list of last known active processes.
         Set<Profiler.Process> liveProcesses = new HashSet<>();
@@ -94,7 +95,7 @@ public class ProfilerDevicePoller extends PollRunner implements DataStoreTable.D
 
           Profiler.AgentStatusRequest agentStatusRequest =
             Profiler.AgentStatusRequest.newBuilder().setProcessId(process.getPid()).setSession(session).build();
-          Profiler.AgentStatusResponse agentStatusResponse = myPollingService.getAgentStatus(agentStatusRequest);
+          Profiler.AgentStatusResponse agentStatusResponse = withPollDeadline(myPollingService).getAgentStatus(agentStatusRequest);
           myTable.updateAgentStatus(session, process, agentStatusResponse);
         }
 
@@ -107,6 +108,10 @@ public class ProfilerDevicePoller extends PollRunner implements DataStoreTable.D
       }
     }
     catch (StatusRuntimeException ex) {
+      if (ex.getStatus().getCode() == Status.Code.DEADLINE_EXCEEDED) {
+        // The device is slow to answer, but still connected. Try again at the next poll.
+        return;
+      }
       // We expect this to get called when connection to the device is lost.
       // To properly clean up the state we first set all ALIVE processes to DEAD
       // then we disconnect the channel.
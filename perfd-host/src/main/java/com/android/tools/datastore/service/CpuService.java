@@ -15,9 +15,11 @@
  */
 package com.android.tools.datastore.service;
 
+import com.android.tools.datastore.DataStoreDatabase;
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.ServicePassThrough;
 import com.android.tools.datastore.database.CpuTable;
+import com.android.tools.datastore.database.TimeSeriesBackend;
 import com.android.tools.datastore.poller.CpuDataPoller;
 import com.android.tools.datastore.poller.PollRunner;
 import com.android.tools.profiler.proto.Common;
@@ -26,7 +28,6 @@ import com.android.tools.profiler.proto.CpuServiceGrpc;
 import io.grpc.stub.StreamObserver;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.Connection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -56,9 +57,19 @@ public class CpuService extends CpuServiceGrpc.CpuServiceImplBase implements Ser
   public CpuService(@NotNull DataStoreService dataStoreService,
                     Consumer<Runnable> fetchExecutor,
                     @NotNull Map<Common.Session, Long> sessionIdLookup) {
+    this(dataStoreService, fetchExecutor, sessionIdLookup, TimeSeriesBackend.SQLITE);
+  }
+
+  /**
+   * @param backend where the CPU usage samples are kept.
+   */
+  public CpuService(@NotNull DataStoreService dataStoreService,
+                    Consumer<Runnable> fetchExecutor,
+                    @NotNull Map<Common.Session, Long> sessionIdLookup,
+                    @NotNull TimeSeriesBackend backend) {
     myFetchExecutor = fetchExecutor;
     myService = dataStoreService;
-    myCpuTable = new CpuTable(sessionIdLookup);
+    myCpuTable = new CpuTable(sessionIdLookup, backend);
   }
 
   @Override
@@ -224,9 +235,9 @@ public class CpuService extends CpuServiceGrpc.CpuServiceImplBase implements Ser
   }
 
   @Override
-  public void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection) {
+  public void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull DataStoreDatabase database) {
     assert namespace == DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE;
-    myCpuTable.initialize(connection);
+    myCpuTable.initialize(database);
   }
 
   /**
@@ -15,11 +15,13 @@
  */
 package com.android.tools.datastore.service;
 
+import com.android.tools.datastore.DataStoreDatabase;
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.DataStoreService.BackingNamespace;
 import com.android.tools.datastore.ServicePassThrough;
 import com.android.tools.datastore.database.MemoryLiveAllocationTable;
 import com.android.tools.datastore.database.MemoryStatsTable;
+import com.android.tools.datastore.database.TimeSeriesBackend;
 import com.android.tools.datastore.poller.MemoryDataPoller;
 import com.android.tools.datastore.poller.MemoryJvmtiDataPoller;
 import com.android.tools.datastore.poller.PollRunner;
@@ -31,7 +33,6 @@ import com.google.protobuf3jarjar.ByteString;
 import io.grpc.stub.StreamObserver;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.Connection;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -54,9 +55,19 @@ public class MemoryService extends MemoryServiceGrpc.MemoryServiceImplBase imple
   public MemoryService(@NotNull DataStoreService dataStoreService,
                        Consumer<Runnable> fetchExecutor,
                        @NotNull Map<Common.Session, Long> sessionIdLookup) {
+    this(dataStoreService, fetchExecutor, sessionIdLookup, TimeSeriesBackend.SQLITE);
+  }
+
+  /**
+   * @param backend where the memory, alloc stats and gc stats samples are kept.
+   */
+  public MemoryService(@NotNull DataStoreService dataStoreService,
+                       Consumer<Runnable> fetchExecutor,
+                       @NotNull Map<Common.Session, Long> sessionIdLookup,
+                       @NotNull TimeSeriesBackend backend) {
     myFetchExecutor = fetchExecutor;
     myService = dataStoreService;
-    myStatsTable = new MemoryStatsTable(sessionIdLookup);
+    myStatsTable = new MemoryStatsTable(sessionIdLookup, backend);
     myAllocationsTable = new MemoryLiveAllocationTable(sessionIdLookup);
   }
 
@@ -318,13 +329,13 @@ public class MemoryService extends MemoryServiceGrpc.MemoryServiceImplBase imple
   }
 
   @Override
-  public void setBackingStore(@NotNull BackingNamespace namespace, @NotNull Connection connection) {
+  public void setBackingStore(@NotNull BackingNamespace namespace, @NotNull DataStoreDatabase database) {
     assert getBackingNamespaces().contains(namespace);
     if (namespace.equals(BackingNamespace.DEFAULT_SHARED_NAMESPACE)) {
-      myStatsTable.initialize(connection);
+      myStatsTable.initialize(database);
     }
     else {
-      myAllocationsTable.initialize(connection);
+      myAllocationsTable.initialize(database);
     }
   }
 }
\ No newline at end of file
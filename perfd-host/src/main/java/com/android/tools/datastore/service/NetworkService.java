@@ -15,9 +15,11 @@
  */
 package com.android.tools.datastore.service;
 
+import com.android.tools.datastore.DataStoreDatabase;
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.datastore.ServicePassThrough;
 import com.android.tools.datastore.database.NetworkTable;
+import com.android.tools.datastore.database.TimeSeriesBackend;
 import com.android.tools.datastore.poller.NetworkDataPoller;
 import com.android.tools.datastore.poller.PollRunner;
 import com.android.tools.profiler.proto.Common;
@@ -26,7 +28,6 @@ import com.android.tools.profiler.proto.NetworkServiceGrpc;
 import io.grpc.stub.StreamObserver;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.Connection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -42,9 +43,17 @@ public class NetworkService extends NetworkServiceGrpc.NetworkServiceImplBase im
 
   public NetworkService(@NotNull DataStoreService service, Consumer<Runnable> fetchExecutor,
                         @NotNull Map<Common.Session, Long> sessionIdLookup) {
+    this(service, fetchExecutor, sessionIdLookup, TimeSeriesBackend.SQLITE);
+  }
+
+  /**
+   * @param backend where the network speed and connectivity samples are kept.
+   */
+  public NetworkService(@NotNull DataStoreService service, Consumer<Runnable> fetchExecutor,
+                        @NotNull Map<Common.Session, Long> sessionIdLookup, @NotNull TimeSeriesBackend backend) {
     myFetchExecutor = fetchExecutor;
     myService = service;
-    myNetworkTable = new NetworkTable(sessionIdLookup);
+    myNetworkTable = new NetworkTable(sessionIdLookup, backend);
   }
 
   @Override
@@ -135,8 +144,8 @@ public class NetworkService extends NetworkServiceGrpc.NetworkServiceImplBase im
   }
 
   @Override
-  public void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull Connection connection) {
+  public void setBackingStore(@NotNull DataStoreService.BackingNamespace namespace, @NotNull DataStoreDatabase database) {
     assert namespace == DataStoreService.BackingNamespace.DEFAULT_SHARED_NAMESPACE;
-    myNetworkTable.initialize(connection);
+    myNetworkTable.initialize(database);
   }
 }
\ No newline at end of file
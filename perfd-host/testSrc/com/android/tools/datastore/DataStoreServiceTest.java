@@ -32,7 +32,6 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
-import java.sql.Connection;
 import java.util.*;
 import java.util.function.Consumer;
 
@@ -211,7 +210,7 @@ public class DataStoreServiceTest extends DataStorePollerTest {
     @NotNull private final List<BackingNamespace> myNamespaces = Arrays.asList(
       new BackingNamespace("durable", DURABLE), new BackingNamespace("inmemory", PERFORMANT));
 
-    @NotNull private final Map<BackingNamespace, Connection> myReceivedBackingStores = new HashMap<>();
+    @NotNull private final Map<BackingNamespace, DataStoreDatabase> myReceivedBackingStores = new HashMap<>();
 
     @NotNull
     @Override
@@ -226,10 +225,10 @@ public class DataStoreServiceTest extends DataStorePollerTest {
     }
 
     @Override
-    public void setBackingStore(@NotNull BackingNamespace namespace, @NotNull Connection connection) {
+    public void setBackingStore(@NotNull BackingNamespace namespace, @NotNull DataStoreDatabase database) {
       assert myNamespaces.contains(namespace) && !myReceivedBackingStores.containsKey(namespace) && !myReceivedBackingStores
-        .containsValue(connection);
-      myReceivedBackingStores.put(namespace, connection);
+        .containsValue(database);
+      myReceivedBackingStores.put(namespace, database);
     }
 
     public void assertCorrectness() {
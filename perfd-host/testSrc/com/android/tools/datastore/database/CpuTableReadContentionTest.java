@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import com.android.tools.datastore.DataStoreDatabase;
+import com.android.tools.profiler.proto.Common;
+import com.android.tools.profiler.proto.CpuProfiler;
+import com.intellij.openapi.util.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link CpuTable} queries served from the read connections see the rows written before them, and that a reader
+ * holding a snapshot open doesn't block the writer.
+ */
+public class CpuTableReadContentionTest {
+  private static final Common.Session SESSION = Common.Session.newBuilder().setBootId("Contention").setDeviceSerial("SERIAL").build();
+  private static final int PID = 1;
+
+  private File myDbFile;
+  private DataStoreDatabase myDatabase;
+  private CpuTable myTable;
+
+  @Before
+  public void setUp() throws Exception {
+    Map<Common.Session, Long> sessionLookup = new HashMap<>();
+    sessionLookup.put(SESSION, 1L);
+    myDbFile = FileUtil.createTempFile("CpuTableReadContention", "mysql");
+    myDatabase = new DataStoreDatabase(myDbFile.getAbsolutePath(), DataStoreDatabase.Characteristic.DURABLE);
+    myTable = new CpuTable(sessionLookup);
+    myTable.initialize(myDatabase);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    myDatabase.disconnect();
+    FileUtil.delete(myDbFile);
+  }
+
+  @Test
+  public void testQueriesSeeCommittedRows() throws Exception {
+    assertNotNull(myDatabase.getReadConnection());
+    insertActivity(1, 1);
+    insertActivity(2, 2);
+    myDatabase.commit();
+
+    assertEquals(2, getThreads().size());
+  }
+
+  @Test
+  public void testQueriesSeeRowsWrittenBeforeThem() throws Exception {
+    // No explicit commit: the rows are still queued when the query runs, well before the commit timer fires.
+    insertActivity(1, 1);
+    assertTrue(myDatabase.hasUncommittedWrites());
+    assertEquals(1, getThreads().size());
+    assertFalse(myDatabase.hasUncommittedWrites());
+
+    // Same when the rows are written from another thread.
+    CompletableFuture.runAsync(() -> insertActivity(2, 2)).get(5, TimeUnit.SECONDS);
+    assertEquals(2, getThreads().size());
+  }
+
+  @Test
+  public void testOpenReadDoesNotBlockWriter() throws Exception {
+    insertActivity(1, 1);
+    myDatabase.commit();
+
+    try (Statement statement = myDatabase.getReadConnection().createStatement();
+         ResultSet results = statement.executeQuery("SELECT * FROM Thread_Activities")) {
+      // Keep the read transaction open while another thread writes and commits.
+      assertTrue(results.next());
+      CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+        insertActivity(2, 2);
+        myDatabase.commit();
+      });
+      writer.get(5, TimeUnit.SECONDS);
+    }
+
+    assertEquals(2, getThreads().size());
+  }
+
+  private void insertActivity(int tid, long timestamp) {
+    myTable.insertActivities(PID, SESSION, tid, "Thread " + tid, Collections.singletonList(
+      CpuProfiler.GetThreadsResponse.ThreadActivity.newBuilder()
+        .setTimestamp(timestamp)
+        .setNewState(CpuProfiler.GetThreadsResponse.State.RUNNING)
+        .build()));
+  }
+
+  private List<CpuProfiler.GetThreadsResponse.Thread> getThreads() {
+    return myTable.getThreadsDataByRequest(
+      CpuProfiler.GetThreadsRequest.newBuilder().setProcessId(PID).setSession(SESSION).setStartTimestamp(0)
+        .setEndTimestamp(Long.MAX_VALUE).build());
+  }
+}
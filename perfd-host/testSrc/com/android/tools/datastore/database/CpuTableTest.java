@@ -50,19 +50,20 @@ public class CpuTableTest {
     .build();
 
   private File myDbFile;
+  private HashMap<Common.Session, Long> mySessionLookup;
   private CpuTable myTable;
   private DataStoreDatabase myDatabase;
 
   @Before
   public void setUp() throws Exception {
-    HashMap<Common.Session, Long> sessionLookup = new HashMap<>();
-    sessionLookup.put(SESSION_HUNDREDS, 1L);
-    sessionLookup.put(SESSION_THOUSANDS, 2L);
+    mySessionLookup = new HashMap<>();
+    mySessionLookup.put(SESSION_HUNDREDS, 1L);
+    mySessionLookup.put(SESSION_THOUSANDS, 2L);
     myDbFile = FileUtil.createTempFile("CpuTable", "mysql");
     myDatabase = new DataStoreDatabase(myDbFile.getAbsolutePath(), DataStoreDatabase.Characteristic.DURABLE);
-    myTable = new CpuTable(sessionLookup);
+    myTable = new CpuTable(mySessionLookup);
     myTable.initialize(myDatabase.getConnection());
-    populateDatabase();
+    populateDatabase(myTable);
   }
 
   @After
@@ -71,7 +72,7 @@ public class CpuTableTest {
     FileUtil.delete(myDbFile);
   }
 
-  private void populateDatabase() {
+  private static void populateDatabase(CpuTable table) {
 
     for (int i = 0; i < TEST_DATA; i++) {
       CpuProfiler.CpuProfilerData testData = CpuProfiler.CpuProfilerData.newBuilder()
@@ -82,7 +83,7 @@ public class CpuTableTest {
                        .setAppCpuTimeInMillisec(SESSION_ONE_OFFSET + i)
                        .setSystemCpuTimeInMillisec(SESSION_ONE_OFFSET + i)
                        .setElapsedTimeInMillisec(SESSION_ONE_OFFSET + i)).build();
-      myTable.insert(SESSION_HUNDREDS, testData);
+      table.insert(SESSION_HUNDREDS, testData);
     }
 
     for (int i = 0; i < TEST_DATA; i++) {
@@ -94,7 +95,7 @@ public class CpuTableTest {
                        .setAppCpuTimeInMillisec(SESSION_TWO_OFFSET + i)
                        .setSystemCpuTimeInMillisec(SESSION_TWO_OFFSET + i)
                        .setElapsedTimeInMillisec(SESSION_TWO_OFFSET + i)).build();
-      myTable.insert(SESSION_THOUSANDS, testData);
+      table.insert(SESSION_THOUSANDS, testData);
     }
 
     List<CpuProfiler.GetThreadsResponse.ThreadActivity> activities = new ArrayList<>();
@@ -104,7 +105,7 @@ public class CpuTableTest {
                        .setNewState(CpuProfiler.GetThreadsResponse.State.SLEEPING)
                        .build());
     }
-    myTable.insertActivities(PROCESS_ID, SESSION_HUNDREDS, SESSION_ONE_OFFSET, "Thread 100", activities);
+    table.insertActivities(PROCESS_ID, SESSION_HUNDREDS, SESSION_ONE_OFFSET, "Thread 100", activities);
     activities.clear();
     for (int i = 0; i < TEST_DATA; i++) {
       activities.add(CpuProfiler.GetThreadsResponse.ThreadActivity.newBuilder()
@@ -112,7 +113,7 @@ public class CpuTableTest {
                        .setNewState(CpuProfiler.GetThreadsResponse.State.RUNNING)
                        .build());
     }
-    myTable.insertActivities(PROCESS_ID, SESSION_THOUSANDS, SESSION_TWO_OFFSET, "Thread 1000", activities);
+    table.insertActivities(PROCESS_ID, SESSION_THOUSANDS, SESSION_TWO_OFFSET, "Thread 1000", activities);
 
     for (int i = 0; i < TEST_DATA; i++) {
       CpuProfiler.TraceInfo trace = CpuProfiler.TraceInfo.newBuilder()
@@ -122,8 +123,8 @@ public class CpuTableTest {
         .setToTimestamp(SESSION_ONE_OFFSET + 1 + i)
         .build();
 
-      myTable.insertTrace(PROCESS_ID, trace.getTraceId(), SESSION_HUNDREDS, trace.getProfilerType(), ByteString.copyFromUtf8("100s club: " + i));
-      myTable.insertTraceInfo(PROCESS_ID, trace, SESSION_HUNDREDS);
+      table.insertTrace(PROCESS_ID, trace.getTraceId(), SESSION_HUNDREDS, trace.getProfilerType(), ByteString.copyFromUtf8("100s club: " + i));
+      table.insertTraceInfo(PROCESS_ID, trace, SESSION_HUNDREDS);
     }
   }
 
@@ -151,6 +152,62 @@ public class CpuTableTest {
     }
   }
 
+  @Test
+  public void testColumnarBackendMatchesSqlite() throws Exception {
+    File dbFile = FileUtil.createTempFile("CpuTableColumnar", "mysql");
+    DataStoreDatabase database = new DataStoreDatabase(dbFile.getAbsolutePath(), DataStoreDatabase.Characteristic.DURABLE);
+    try {
+      CpuTable table = new CpuTable(mySessionLookup, TimeSeriesBackend.COLUMNAR);
+      table.initialize(database.getConnection());
+      populateDatabase(table);
+
+      long[][] ranges = {{0, Long.MAX_VALUE}, {SESSION_ONE_OFFSET, SESSION_ONE_OFFSET + 5}, {SESSION_TWO_OFFSET, SESSION_TWO_OFFSET}};
+      for (Common.Session session : new Common.Session[]{SESSION_HUNDREDS, SESSION_THOUSANDS}) {
+        for (long[] range : ranges) {
+          CpuProfiler.CpuDataRequest request = CpuProfiler.CpuDataRequest.newBuilder()
+            .setSession(session)
+            .setStartTimestamp(range[0])
+            .setEndTimestamp(range[1])
+            .setProcessId(PROCESS_ID)
+            .build();
+          assertEquals(myTable.getCpuDataByRequest(request), table.getCpuDataByRequest(request));
+        }
+      }
+    }
+    finally {
+      database.disconnect();
+      FileUtil.delete(dbFile);
+    }
+  }
+
+  @Test
+  public void testRetentionPolicyEvictsOldData() throws Exception {
+    myDatabase.setRetentionPolicy(new RetentionPolicy(5, RetentionPolicy.UNLIMITED, 1));
+    myDatabase.applyRetentionPolicy();
+
+    CpuProfiler.CpuDataRequest request = CpuProfiler.CpuDataRequest.newBuilder()
+      .setSession(SESSION_HUNDREDS)
+      .setStartTimestamp(0)
+      .setEndTimestamp(Long.MAX_VALUE)
+      .setProcessId(PROCESS_ID)
+      .build();
+    List<CpuProfiler.CpuProfilerData> response = myTable.getCpuDataByRequest(request);
+    // Samples older than 5ns relative to the newest one (SESSION_ONE_OFFSET + TEST_DATA - 1) are gone.
+    assertEquals(6, response.size());
+    assertEquals(SESSION_ONE_OFFSET + TEST_DATA - 6, response.get(0).getBasicInfo().getEndTimestamp());
+
+    CpuProfiler.GetThreadsRequest threadsRequest = CpuProfiler.GetThreadsRequest.newBuilder()
+      .setSession(SESSION_HUNDREDS)
+      .setProcessId(PROCESS_ID)
+      .setStartTimestamp(0)
+      .setEndTimestamp(Long.MAX_VALUE)
+      .build();
+    List<CpuProfiler.GetThreadsResponse.Thread> threads = myTable.getThreadsDataByRequest(threadsRequest);
+    assertEquals(1, threads.size());
+    // The newest activity preceding the cutoff is kept so the thread state before any retained range is still known.
+    assertEquals(7, threads.get(0).getActivitiesCount());
+  }
+
   @Test
   public void testGetDataInvalidProcess() throws Exception {
     CpuProfiler.CpuDataRequest request = CpuProfiler.CpuDataRequest.newBuilder()
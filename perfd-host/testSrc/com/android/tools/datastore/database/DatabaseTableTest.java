@@ -30,6 +30,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -66,6 +67,65 @@ public class DatabaseTableTest {
     assertTrue(myTable.isClosed());
   }
 
+  @Test
+  public void testDurableDatabaseIsBoundedByDefault() throws Exception {
+    assertEquals(DataStoreDatabase.DEFAULT_DURABLE_RETENTION_POLICY, myDatabase.getRetentionPolicy());
+    assertFalse(myDatabase.getRetentionPolicy().isUnbounded());
+  }
+
+  @Test
+  public void testQueuedWritesAreFlushedBeforeQuery() throws Exception {
+    myTable.insertData(1, 2, 3);
+    BatchedWriteQueue queue = myTable.getWriteQueue();
+    assertEquals(3, queue.getQueueDepth());
+
+    ResultSet rs = myTable.readDataRaw();
+    int count = 0;
+    while (rs.next()) {
+      count++;
+    }
+    assertEquals(3, count);
+    assertEquals(0, queue.getQueueDepth());
+    assertEquals(3, queue.getPeakQueueDepth());
+    assertEquals(1, queue.getFlushCount());
+    assertEquals(3, queue.getFlushedRowCount());
+  }
+
+  @Test
+  public void testFullWriteQueueFlushes() throws Exception {
+    int[] data = new int[DataStoreTable.WRITE_QUEUE_CAPACITY + 1];
+    myTable.insertData(data);
+    BatchedWriteQueue queue = myTable.getWriteQueue();
+    assertEquals(1, queue.getFlushCount());
+    assertEquals(DataStoreTable.WRITE_QUEUE_CAPACITY, queue.getFlushedRowCount());
+    assertEquals(1, queue.getQueueDepth());
+
+    myDatabase.commit();
+    assertEquals(0, queue.getQueueDepth());
+    assertEquals(DataStoreTable.WRITE_QUEUE_CAPACITY + 1, queue.getFlushedRowCount());
+  }
+
+  @Test
+  public void testFailedFlushDropsRows() throws Exception {
+    BatchedWriteQueue<ThreadTableStatement> queue = new BatchedWriteQueue<>(4);
+    queue.offer(ThreadTableStatement.INSERT_DATA, new Object[]{1});
+    queue.offer(ThreadTableStatement.READ_DATA, new Object[]{});
+    queue.offer(ThreadTableStatement.INSERT_DATA, new Object[]{2});
+    try {
+      queue.flush((statement, rows, start, end) -> {
+        if (statement == ThreadTableStatement.READ_DATA) {
+          throw new SQLException("Rejected");
+        }
+      });
+    }
+    catch (SQLException ex) {
+      // Expected.
+    }
+    assertEquals(0, queue.getQueueDepth());
+    assertEquals(1, queue.getFlushedRowCount());
+    assertEquals(2, queue.getDroppedRowCount());
+  }
+
   @Test
   public void testThreadMultiThreadExecute() throws Exception {
     // Insert some fake data
@@ -328,6 +328,56 @@ public class MemoryLiveAllocationTableTest {
     Truth.assertThat(querySample.getEvents(1)).isEqualTo(alloc4);
   }
 
+  @Test
+  public void testPruningInterleavedAllocationData() throws Exception {
+    myAllocationTable.setAllocationCountLimit(2);
+
+    AllocationEvent alloc1 = AllocationEvent.newBuilder()
+      .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(KLASS1_INSTANCE1_TAG).setClassTag(CLASS1)).setTimestamp(0).build();
+    AllocationEvent dealloc1 = AllocationEvent.newBuilder()
+      .setFreeData(AllocationEvent.Deallocation.newBuilder().setTag(KLASS1_INSTANCE1_TAG).setClassTag(CLASS1)).setTimestamp(1).build();
+    AllocationEvent alloc2 = AllocationEvent.newBuilder()
+      .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(KLASS2_INSTANCE1_TAG).setClassTag(CLASS2)).setTimestamp(2).build();
+    AllocationEvent duplicatedAlloc2 = AllocationEvent.newBuilder()
+      .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(KLASS2_INSTANCE1_TAG).setClassTag(CLASS2)).setTimestamp(3).build();
+    AllocationEvent alloc3 = AllocationEvent.newBuilder()
+      .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(KLASS1_INSTANCE2_TAG).setClassTag(CLASS1)).setTimestamp(4).build();
+
+    // Three instances are allocated, the duplicate is ignored, so the freed alloc1 is pruned.
+    BatchAllocationSample insertSample = BatchAllocationSample.newBuilder()
+      .addEvents(alloc1)
+      .addEvents(dealloc1)
+      .addEvents(alloc2)
+      .addEvents(duplicatedAlloc2)
+      .addEvents(alloc3).build();
+    myAllocationTable.insertAllocationData(VALID_PID, VALID_SESSION, insertSample);
+    BatchAllocationSample querySample = myAllocationTable.getAllocations(VALID_PID, VALID_SESSION, 0, Long.MAX_VALUE);
+    Truth.assertThat(querySample.getEventsCount()).isEqualTo(2);
+    Truth.assertThat(querySample.getEvents(0)).isEqualTo(alloc2);
+    Truth.assertThat(querySample.getEvents(1)).isEqualTo(alloc3);
+
+    // Back at the limit, nothing is pruned.
+    AllocationEvent dealloc2 = AllocationEvent.newBuilder()
+      .setFreeData(AllocationEvent.Deallocation.newBuilder().setTag(KLASS2_INSTANCE1_TAG).setClassTag(CLASS2)).setTimestamp(5).build();
+    insertSample = BatchAllocationSample.newBuilder().addEvents(dealloc2).build();
+    myAllocationTable.insertAllocationData(VALID_PID, VALID_SESSION, insertSample);
+    querySample = myAllocationTable.getAllocations(VALID_PID, VALID_SESSION, 0, Long.MAX_VALUE);
+    Truth.assertThat(querySample.getEventsCount()).isEqualTo(3);
+    Truth.assertThat(querySample.getEvents(0)).isEqualTo(alloc2);
+    Truth.assertThat(querySample.getEvents(1)).isEqualTo(alloc3);
+    Truth.assertThat(querySample.getEvents(2)).isEqualTo(dealloc2);
+
+    // One more allocation goes over the limit again, and the freed alloc2 is pruned.
+    AllocationEvent alloc4 = AllocationEvent.newBuilder()
+      .setAllocData(AllocationEvent.Allocation.newBuilder().setTag(KLASS2_INSTANCE2_TAG).setClassTag(CLASS2)).setTimestamp(6).build();
+    insertSample = BatchAllocationSample.newBuilder().addEvents(alloc4).build();
+    myAllocationTable.insertAllocationData(VALID_PID, VALID_SESSION, insertSample);
+    querySample = myAllocationTable.getAllocations(VALID_PID, VALID_SESSION, 0, Long.MAX_VALUE);
+    Truth.assertThat(querySample.getEventsCount()).isEqualTo(2);
+    Truth.assertThat(querySample.getEvents(0)).isEqualTo(alloc3);
+    Truth.assertThat(querySample.getEvents(1)).isEqualTo(alloc4);
+  }
+
   @Test
   public void testIgnoreDuplicatedAllocationContext() throws Exception {
     List<StackFrame> methodsToInsert = new ArrayList<>();
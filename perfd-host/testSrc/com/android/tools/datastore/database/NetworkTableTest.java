@@ -174,4 +174,21 @@ public class NetworkTableTest {
     List<NetworkProfiler.HttpConnectionData> response = myTable.getNetworkConnectionDataByRequest(request);
     assertEquals(0, response.size());
   }
+
+  @Test
+  public void testRetentionPolicyEvictsOldConnections() throws Exception {
+    myDatabase.setRetentionPolicy(new RetentionPolicy(5, RetentionPolicy.UNLIMITED, 1));
+    myDatabase.applyRetentionPolicy();
+
+    NetworkProfiler.HttpRangeRequest request = NetworkProfiler.HttpRangeRequest.newBuilder()
+      .setSession(VALID_SESSION)
+      .setProcessId(PROCESS_ID)
+      .setStartTimestamp(0)
+      .setEndTimestamp(Long.MAX_VALUE)
+      .build();
+    List<NetworkProfiler.HttpConnectionData> response = myTable.getNetworkConnectionDataByRequest(request);
+    // Connections that ended more than 5ns before the newest one started (100 + TEST_DATA - 1) are gone.
+    assertEquals(TEST_DATA - 3, response.size());
+    assertEquals(VALID_CONN_ID + 3, response.get(0).getConnId());
+  }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.datastore.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimeSeriesColumnStoreTest {
+  private static final TimeSeriesColumnStore.SeriesKey KEY = new TimeSeriesColumnStore.SeriesKey(1, 2, 0);
+  private static final TimeSeriesColumnStore.SeriesKey OTHER_KEY = new TimeSeriesColumnStore.SeriesKey(1, 3, 0);
+
+  @Test
+  public void testRangeIsStartExclusiveEndInclusive() {
+    TimeSeriesColumnStore<Long> store = new TimeSeriesColumnStore<>(false);
+    for (long i = 0; i < 10; i++) {
+      store.insert(KEY, i * 10, i);
+    }
+    store.insert(OTHER_KEY, 20, -1L);
+
+    assertEquals(Arrays.asList(2L, 3L, 4L), getRange(store, KEY, 10, 40));
+    assertEquals(Arrays.asList(0L, 1L), getRange(store, KEY, Long.MIN_VALUE, 10));
+    assertEquals(Arrays.asList(9L), getRange(store, KEY, 85, Long.MAX_VALUE));
+    assertTrue(getRange(store, KEY, 40, 40).isEmpty());
+    assertTrue(getRange(store, new TimeSeriesColumnStore.SeriesKey(2, 2, 0), Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+  }
+
+  @Test
+  public void testSpansMultipleChunks() {
+    TimeSeriesColumnStore<Long> store = new TimeSeriesColumnStore<>(false);
+    int count = TimeSeriesColumn.CHUNK_SIZE * 3 + 7;
+    for (long i = 0; i < count; i++) {
+      store.insert(KEY, i, i);
+    }
+    List<Long> range = getRange(store, KEY, TimeSeriesColumn.CHUNK_SIZE - 3, TimeSeriesColumn.CHUNK_SIZE * 2 + 3);
+    assertEquals(TimeSeriesColumn.CHUNK_SIZE + 6, range.size());
+    for (int i = 0; i < range.size(); i++) {
+      assertEquals(TimeSeriesColumn.CHUNK_SIZE - 2 + i, range.get(i).longValue());
+    }
+  }
+
+  @Test
+  public void testTimestampGapsLargerThanDeltaRange() {
+    TimeSeriesColumnStore<Long> store = new TimeSeriesColumnStore<>(false);
+    store.insert(KEY, 0, 0L);
+    store.insert(KEY, Integer.MAX_VALUE * 4L, 1L);
+    store.insert(KEY, Long.MAX_VALUE - 1, 2L);
+    store.insert(KEY, Integer.MAX_VALUE * 2L, 3L);
+    assertEquals(Arrays.asList(0L, 3L, 1L, 2L), getRange(store, KEY, Long.MIN_VALUE, Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testOutOfOrderInsertsIntoFullChunk() {
+    TimeSeriesColumnStore<Long> store = new TimeSeriesColumnStore<>(false);
+    for (long i = 0; i < TimeSeriesColumn.CHUNK_SIZE; i++) {
+      store.insert(KEY, i * 2, i * 2);
+    }
+    store.insert(KEY, 11, 11L);
+    store.insert(KEY, -5, -5L);
+    assertEquals(Arrays.asList(-5L, 0L, 2L), getRange(store, KEY, Long.MIN_VALUE, 3));
+    assertEquals(Arrays.asList(10L, 11L, 12L), getRange(store, KEY, 9, 12));
+    assertEquals(TimeSeriesColumn.CHUNK_SIZE + 2, store.getSampleCount());
+  }
+
+  @Test
+  public void testDuplicates() {
+    TimeSeriesColumnStore<Long> ignoring = new TimeSeriesColumnStore<>(false);
+    ignoring.insert(KEY, 5, 1L);
+    ignoring.insert(KEY, 5, 2L);
+    assertEquals(Arrays.asList(1L), getRange(ignoring, KEY, 0, 10));
+
+    TimeSeriesColumnStore<Long> replacing = new TimeSeriesColumnStore<>(true);
+    replacing.insert(KEY, 5, 1L);
+    replacing.insert(KEY, 5, 2L);
+    assertEquals(Arrays.asList(2L), getRange(replacing, KEY, 0, 10));
+  }
+
+  @Test
+  public void testRetentionPolicy() {
+    TimeSeriesColumnStore<Long> store = new TimeSeriesColumnStore<>(false);
+    for (long i = 0; i < 100; i++) {
+      store.insert(KEY, i, i);
+    }
+    // Keep the last 10ns, evicting in 5ns buckets.
+    assertEquals(85, store.applyRetentionPolicy(new RetentionPolicy(10, RetentionPolicy.UNLIMITED, 5)));
+    List<Long> remaining = getRange(store, KEY, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertEquals(15, remaining.size());
+    assertEquals(85L, remaining.get(0).longValue());
+  }
+
+  @Test
+  public void testSeriesAreBoundedBySampleCount() {
+    TimeSeriesColumnStore<Long> store = new TimeSeriesColumnStore<>(false, 20);
+    for (long i = 0; i < 100; i++) {
+      store.insert(KEY, i, i);
+    }
+    // No age limit, but the series holds more than 20 samples: it evicts 10ns buckets until it fits.
+    assertEquals(80, store.applyRetentionPolicy(new RetentionPolicy(RetentionPolicy.UNLIMITED, RetentionPolicy.UNLIMITED, 10)));
+    List<Long> remaining = getRange(store, KEY, Long.MIN_VALUE, Long.MAX_VALUE);
+    assertEquals(20, remaining.size());
+    assertEquals(80L, remaining.get(0).longValue());
+  }
+
+  private static List<Long> getRange(TimeSeriesColumnStore<Long> store, TimeSeriesColumnStore.SeriesKey key, long start, long end) {
+    List<Long> values = new ArrayList<>();
+    store.getRange(key, start, end, values);
+    return values;
+  }
+}
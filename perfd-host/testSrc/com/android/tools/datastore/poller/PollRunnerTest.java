@@ -15,11 +15,16 @@
  */
 package com.android.tools.datastore.poller;
 
+import com.android.tools.profiler.proto.Common;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class PollRunnerTest {
 
@@ -42,6 +47,60 @@ public class PollRunnerTest {
     assertEquals(runner.get(1, TimeUnit.SECONDS), null); // For code completion
   }
 
+  @Test
+  public void testCadenceFollowsForegroundSession() throws Exception {
+    Common.Session session = Common.Session.newBuilder().setBootId("Cadence").setDeviceSerial("SERIAL").build();
+    Common.Session otherSession = session.toBuilder().setBootId("Other").build();
+    CountingPollRunner runner = new CountingPollRunner(session, 2);
+    CountingPollRunner otherRunner = new CountingPollRunner(otherSession, 1);
+    try {
+      runner.run();
+      otherRunner.run();
+      assertTrue(PollScheduler.getInstance().getRunners().contains(runner));
+      assertEquals(PollRunner.Cadence.FOREGROUND, runner.getCadence());
+      assertEquals(PollRunner.Cadence.FOREGROUND, otherRunner.getCadence());
+
+      PollScheduler.getInstance().setForegroundSession(otherSession);
+      assertEquals(PollRunner.Cadence.BACKGROUND, runner.getCadence());
+      assertEquals(PollRunner.Cadence.FOREGROUND, otherRunner.getCadence());
+
+      // Pollers started afterwards pick up the cadence of their session.
+      CountingPollRunner lateRunner = new CountingPollRunner(session, 1);
+      lateRunner.run();
+      assertEquals(PollRunner.Cadence.BACKGROUND, lateRunner.getCadence());
+      lateRunner.stop();
+
+      PollScheduler.getInstance().setForegroundSession(null);
+      assertEquals(PollRunner.Cadence.BACKGROUND, otherRunner.getCadence());
+
+      // Background pollers still poll.
+      assertTrue(runner.myPolled.await(10, TimeUnit.SECONDS));
+      assertTrue(otherRunner.myPolled.await(10, TimeUnit.SECONDS));
+    }
+    finally {
+      PollScheduler.getInstance().clearForegroundSession();
+      runner.stop();
+      otherRunner.stop();
+    }
+    assertTrue(runner.isDone());
+    assertFalse(PollScheduler.getInstance().getRunners().contains(runner));
+    assertFalse(PollScheduler.getInstance().getRunners().contains(otherRunner));
+  }
+
+  private static class CountingPollRunner extends PollRunner {
+    @NotNull private final CountDownLatch myPolled;
+
+    public CountingPollRunner(@NotNull Common.Session session, int pollCount) {
+      super(TEST_PERIOD_NS, session);
+      myPolled = new CountDownLatch(pollCount);
+    }
+
+    @Override
+    public void poll() {
+      myPolled.countDown();
+    }
+  }
+
   private static class PollRunnerMinimalImpl extends PollRunner {
     private long myLastCallbackTime = 0;
     private long myTickCallCount = 0;
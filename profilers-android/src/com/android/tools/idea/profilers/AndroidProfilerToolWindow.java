@@ -25,6 +25,9 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.startup.StartupManager;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.openapi.wm.ex.ToolWindowManagerAdapter;
+import com.intellij.openapi.wm.ex.ToolWindowManagerEx;
+import com.intellij.openapi.wm.ex.ToolWindowManagerListener;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -38,12 +41,21 @@ public class AndroidProfilerToolWindow extends AspectObserver implements Disposa
   private final StudioProfilers myProfilers;
   @NotNull
   private final Project myProject;
+  @NotNull
+  private final ProfilerService myService;
+  @NotNull
+  private final ToolWindowManagerListener myToolWindowListener = new ToolWindowManagerAdapter() {
+    @Override
+    public void stateChanged() {
+      updatePollingCadence();
+    }
+  };
 
   public AndroidProfilerToolWindow(@NotNull final Project project) {
     myProject = project;
 
-    ProfilerService service = ProfilerService.getInstance(myProject);
-    ProfilerClient client = service.getProfilerClient();
+    myService = ProfilerService.getInstance(myProject);
+    ProfilerClient client = myService.getProfilerClient();
     myProfilers = new StudioProfilers(client, new IntellijProfilerServices(myProject));
 
     StartupManager.getInstance(project)
@@ -53,7 +65,10 @@ public class AndroidProfilerToolWindow extends AspectObserver implements Disposa
 
     myProfilers.addDependency(this)
       .onChange(ProfilerAspect.MODE, this::updateToolWindow)
-      .onChange(ProfilerAspect.STAGE, this::updateToolWindow);
+      .onChange(ProfilerAspect.STAGE, this::updateToolWindow)
+      .onChange(ProfilerAspect.PROCESSES, this::updatePollingCadence);
+    ToolWindowManagerEx.getInstanceEx(myProject).addToolWindowManagerListener(myToolWindowListener);
+    updatePollingCadence();
   }
 
   public void updateToolWindow() {
@@ -68,8 +83,20 @@ public class AndroidProfilerToolWindow extends AspectObserver implements Disposa
     }
   }
 
+  /**
+   * Polls the selected device at the full rate while the profiler is visible, and slows down the polling of every other device
+   * (or of all of them while the profiler is hidden).
+   */
+  private void updatePollingCadence() {
+    ToolWindow window = ToolWindowManager.getInstance(myProject).getToolWindow(AndroidProfilerToolWindowFactory.ID);
+    boolean isVisible = window != null && window.isVisible();
+    myService.setForegroundSession(isVisible ? myProfilers.getSession() : null);
+  }
+
   @Override
   public void dispose() {
+    ToolWindowManagerEx.getInstanceEx(myProject).removeToolWindowManagerListener(myToolWindowListener);
+    myService.setForegroundSession(null);
     myProfilers.removeDependencies(this);
     myProfilers.stop();
   }
@@ -17,12 +17,14 @@ package com.android.tools.idea.profilers;
 
 import com.android.tools.datastore.DataStoreService;
 import com.android.tools.idea.sdk.IdeSdks;
+import com.android.tools.profiler.proto.Common;
 import com.android.tools.profilers.ProfilerClient;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.nio.file.Paths;
@@ -37,6 +39,8 @@ public class ProfilerService implements Disposable {
 
   private static final String DATASTORE_NAME = "DataStoreService";
 
+  @NotNull
+  private final DataStoreService myDataStoreService;
   @NotNull
   private final StudioProfilerDeviceManager myManager;
   @NotNull
@@ -44,9 +48,9 @@ public class ProfilerService implements Disposable {
 
   private ProfilerService() {
     String datastoreDirectory = Paths.get(System.getProperty("user.home"), ".android").toString() + File.separator;
-    DataStoreService dataStoreService =
+    myDataStoreService =
       new DataStoreService(DATASTORE_NAME, datastoreDirectory, ApplicationManager.getApplication()::executeOnPooledThread);
-    myManager = new StudioProfilerDeviceManager(dataStoreService);
+    myManager = new StudioProfilerDeviceManager(myDataStoreService);
     myClient = new ProfilerClient(DATASTORE_NAME);
     IdeSdks.subscribe(myManager, this);
   }
@@ -60,4 +64,12 @@ public class ProfilerService implements Disposable {
   public ProfilerClient getProfilerClient() {
     return myClient;
   }
+
+  /**
+   * Polls the device of {@code session}, the one being profiled, at the full rate and every other device (or all of them, if
+   * {@code session} is null) less often.
+   */
+  public void setForegroundSession(@Nullable Common.Session session) {
+    myDataStoreService.setForegroundSession(session);
+  }
 }
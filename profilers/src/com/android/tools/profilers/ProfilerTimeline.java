@@ -30,7 +30,11 @@ import java.util.concurrent.TimeUnit;
 public final class ProfilerTimeline extends AspectModel<ProfilerTimeline.Aspect> implements Updatable {
 
   public enum Aspect {
-    STREAMING
+    STREAMING,
+    /**
+     * A zoom was requested. The view range is interpolated towards it over the next updates.
+     */
+    ZOOM
   }
 
   @VisibleForTesting
@@ -188,14 +192,17 @@ public final class ProfilerTimeline extends AspectModel<ProfilerTimeline.Aspect>
 
   public void zoomOut() {
     myZoomLeft += myViewRangeUs.getLength() * 0.1f;
+    changed(Aspect.ZOOM);
   }
 
   public void zoomIn() {
     myZoomLeft -= myViewRangeUs.getLength() * 0.1f;
+    changed(Aspect.ZOOM);
   }
 
   public void resetZoom() {
     myZoomLeft = DEFAULT_VIEW_LENGTH_US - myViewRangeUs.getLength();
+    changed(Aspect.ZOOM);
   }
 
   public void pan(double deltaUs) {
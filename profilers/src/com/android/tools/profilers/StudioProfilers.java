@@ -137,6 +137,15 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     myUpdater.register(myTimeline);
     myUpdater.register(myViewAxis);
     myUpdater.register(this);
+
+    // Let the updater slow down while nothing moves on the timeline, e.g. when the user scrolled back or the session ended. The data
+    // range isn't included, as it keeps growing as long as the process is alive.
+    myUpdater.wakeUpOn(myTimeline.getViewRange());
+    myUpdater.wakeUpOn(myTimeline.getSelectionRange());
+    myUpdater.wakeUpOn(myTimeline.getTooltipRange());
+    myTimeline.addDependency(this)
+      .onChange(ProfilerTimeline.Aspect.STREAMING, myUpdater::wakeUp)
+      .onChange(ProfilerTimeline.Aspect.ZOOM, myUpdater::wakeUp);
   }
 
 
@@ -472,6 +481,7 @@ public class StudioProfilers extends AspectModel<ProfilerAspect> implements Upda
     getTimeline().getSelectionRange().clear();
     myStage = stage;
     myStage.enter();
+    myUpdater.wakeUp();
     this.changed(ProfilerAspect.STAGE);
   }
 
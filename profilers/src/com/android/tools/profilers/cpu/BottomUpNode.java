@@ -18,6 +18,7 @@ package com.android.tools.profilers.cpu;
 import com.android.tools.adtui.model.HNode;
 import com.android.tools.adtui.model.Range;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
@@ -26,6 +27,7 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
   private final List<HNode<MethodModel>> myPathNodes = new ArrayList<>();
   private final boolean myIsRoot;
   private boolean myChildrenBuilt;
+  @Nullable private RangeAggregationIndex myOuterNodesIndex;
 
   private BottomUpNode(String id) {
     super(id);
@@ -108,38 +110,45 @@ public class BottomUpNode extends CpuTreeNode<BottomUpNode> {
   @Override
   public void update(@NotNull Range range) {
     // how much time was spent in this call stack path, and in the functions it called
-    myTotal = 0;
+    myTotal = getOuterNodesIndex().getIntersectionLength(range);
     // how much time was spent doing work directly in this call stack path
-    double self = 0;
+    double self = getNodesIndex().getIntersectionLength(range) - getChildrenIndex().getIntersectionLength(range);
+    myChildrenTotal = myTotal - self;
+  }
 
-    // The node that is at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20],
-    // then the second method can't be outerSoFar.
-    // It's used to exclude nodes which aren't at the top of the
-    // call stack from the total time calculation.
-    HNode<MethodModel> outerSoFar = null;
+  @NotNull
+  private RangeAggregationIndex getOuterNodesIndex() {
+    // Validates the indexes against the clock type of the nodes.
+    getNodesIndex();
+    if (myOuterNodesIndex == null) {
+      myOuterNodesIndex = RangeAggregationIndex.of(getOuterNodes());
+    }
+    return myOuterNodesIndex;
+  }
 
+  /**
+   * @return the nodes at the top of the call stack, e.g if the call stack looks like B [0..30] -> B [1..20], then the second method
+   * is nested in the first one and only the first one is returned. Their total time is the total time of this call stack path.
+   */
+  @NotNull
+  private List<CaptureNode> getOuterNodes() {
+    List<CaptureNode> outerNodes = new ArrayList<>();
+    CaptureNode outerSoFar = null;
     // myNodes is sorted by CaptureNode#getStart() in increasing order,
     // if they are equal then ancestor comes first
-    for (CaptureNode node: myNodes) {
+    for (CaptureNode node : myNodes) {
       if (outerSoFar == null || node.getEnd() > outerSoFar.getEnd()) {
-        if (outerSoFar != null) {
-          // |outerSoFar| is at the top of the call stack
-          myTotal += getIntersection(range, outerSoFar);
-        }
+        outerNodes.add(node);
         outerSoFar = node;
       }
-
-      self += getIntersection(range, node);
-      for (CaptureNode child : node.getChildren()) {
-        self -= getIntersection(range, child);
-      }
     }
+    return outerNodes;
+  }
 
-    if (outerSoFar != null) {
-      // |outerSoFar| is at the top of the call stack
-      myTotal += getIntersection(range, outerSoFar);
-    }
-    myChildrenTotal = myTotal - self;
+  @Override
+  protected void invalidateIndexes() {
+    super.invalidateIndexes();
+    myOuterNodesIndex = null;
   }
 
   @Override
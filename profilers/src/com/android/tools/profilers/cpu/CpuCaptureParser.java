@@ -23,16 +23,18 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.protobuf3jarjar.ByteString;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
-import com.intellij.util.containers.HashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.nio.BufferUnderflowException;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleConsumer;
 
 /**
  * Manages the parsing of traces into {@link CpuCapture} objects and provide a way to retrieve them.
@@ -47,9 +49,48 @@ public class CpuCaptureParser {
   static final int MAX_SUPPORTED_TRACE_SIZE = 1024 * 1024 * 100; // 100MB
 
   /**
-   * Maps a trace id to a corresponding {@link CompletableFuture<CpuCapture>}.
+   * Maximum supported size, in bytes, of ART traces. These are parsed straight from the trace bytes, without any copy, so larger
+   * traces than the ones produced by other profilers can be parsed before the user is warned.
    */
-  private final Map<Integer, CompletableFuture<CpuCapture>> myCaptures;
+  @VisibleForTesting
+  static final int MAX_SUPPORTED_ART_TRACE_SIZE = 1024 * 1024 * 1024; // 1GB
+
+  /**
+   * Rough retained size, in bytes, of a {@link CaptureNode}: its fields, its list of children and its share of the children arrays.
+   */
+  @VisibleForTesting
+  static final long ESTIMATED_CAPTURE_NODE_SIZE_BYTES = 160;
+
+  /**
+   * Maps a trace id to a corresponding {@link CompletableFuture<CpuCapture>}, in least recently used order.
+   */
+  private final LinkedHashMap<Integer, CompletableFuture<CpuCapture>> myCaptures;
+
+  /**
+   * The captures of {@link #myCaptures} that are parsed, with their estimated retained size.
+   */
+  private final Map<Integer, ParsedCapture> myParsedCaptures = new HashMap<>();
+
+  /**
+   * Captures evicted from {@link #myCaptures}. They are only softly reachable, so they can be handed out again without being re-parsed
+   * as long as the garbage collector didn't need their memory.
+   */
+  private final Map<Integer, SoftReference<ParsedCapture>> myEvictedCaptures = new HashMap<>();
+
+  /**
+   * Estimated retained size above which the least recently used captures are evicted.
+   */
+  private final long myMaxCachedBytes;
+
+  private long myCachedBytes;
+  private long myHitCount;
+  private long myMissCount;
+  private long myEvictionCount;
+
+  /**
+   * Maps the id of a trace being parsed to the fraction of it parsed so far, when the parser reports its progress.
+   */
+  private final Map<Integer, Double> myParsingProgress = new ConcurrentHashMap<>();
 
   /**
    * Services containing the {@link java.util.concurrent.Executor} responsible for parsing the capture.
@@ -59,8 +100,17 @@ public class CpuCaptureParser {
   private final IdeProfilerServices myServices;
 
   public CpuCaptureParser(@NotNull IdeProfilerServices services) {
+    this(services, Runtime.getRuntime().maxMemory() / 8);
+  }
+
+  /**
+   * @param maxCachedBytes estimated retained size of parsed captures above which the least recently used ones are evicted. The most
+   *                       recently parsed or requested capture is never evicted.
+   */
+  public CpuCaptureParser(@NotNull IdeProfilerServices services, long maxCachedBytes) {
     myServices = services;
-    myCaptures = new HashMap<>();
+    myCaptures = new LinkedHashMap<>(16, 0.75f, true);
+    myMaxCachedBytes = maxCachedBytes;
   }
 
   private static Logger getLogger() {
@@ -68,12 +118,71 @@ public class CpuCaptureParser {
   }
 
   /**
-   * Returns a capture (or a promise of one) in case {@link #parse} was already called for the given trace id.
-   *
+   * Returns a capture (or a promise of one) in case {@link #parse} was already called for the given trace id, and the capture was not
+   * evicted since. Evicted captures have to be parsed again.
    */
   @Nullable
-  public CompletableFuture<CpuCapture> getCapture(int traceId) {
-    return myCaptures.get(traceId);
+  public synchronized CompletableFuture<CpuCapture> getCapture(int traceId) {
+    CompletableFuture<CpuCapture> capture = findCapture(traceId);
+    if (capture != null) {
+      myHitCount++;
+    }
+    else {
+      myMissCount++;
+    }
+    return capture;
+  }
+
+  /**
+   * @return the number of times {@link #getCapture(int)} returned a capture that was already parsed or being parsed.
+   */
+  public synchronized long getCacheHitCount() {
+    return myHitCount;
+  }
+
+  /**
+   * @return the number of times {@link #getCapture(int)} didn't find a capture, e.g. because it was evicted.
+   */
+  public synchronized long getCacheMissCount() {
+    return myMissCount;
+  }
+
+  public synchronized long getCacheEvictionCount() {
+    return myEvictionCount;
+  }
+
+  /**
+   * @return the estimated retained size, in bytes, of the parsed captures held by this parser.
+   */
+  public synchronized long getCachedBytes() {
+    return myCachedBytes;
+  }
+
+  @Nullable
+  private CompletableFuture<CpuCapture> findCapture(int traceId) {
+    CompletableFuture<CpuCapture> capture = myCaptures.get(traceId);
+    if (capture != null) {
+      return capture;
+    }
+    SoftReference<ParsedCapture> evictedReference = myEvictedCaptures.remove(traceId);
+    ParsedCapture evicted = evictedReference != null ? evictedReference.get() : null;
+    if (evicted == null) {
+      return null;
+    }
+    // The capture was evicted but is still in memory, bring it back.
+    capture = CompletableFuture.completedFuture(evicted.myCapture);
+    myCaptures.put(traceId, capture);
+    onCaptureParsed(traceId, evicted);
+    return capture;
+  }
+
+  /**
+   * Returns the fraction (between 0 and 1) of the given trace parsed so far, or null if the trace is not being parsed or its
+   * parser doesn't report progress.
+   */
+  @Nullable
+  public Double getParsingProgress(int traceId) {
+    return myParsingProgress.get(traceId);
   }
 
   /**
@@ -82,62 +191,167 @@ public class CpuCaptureParser {
    * the trace id as key. Finally, returns the {@link CompletableFuture<CpuCapture>} created.
    */
   @Nullable
-  public CompletableFuture<CpuCapture> parse(int traceId, @NotNull ByteString traceData, CpuProfiler.CpuProfilerType profilerType) {
-    if (!myCaptures.containsKey(traceId)) {
-      // Trace is not being parsed nor is already parsed. We need to start parsing it.
-      if (traceData.size() <= MAX_SUPPORTED_TRACE_SIZE) {
+  public CompletableFuture<CpuCapture> parse(int traceId,
+                                             @NotNull ByteString traceData,
+                                             CpuProfiler.CpuProfilerType profilerType) {
+    synchronized (this) {
+      if (isKnownTrace(traceId)) {
+        return myCaptures.get(traceId);
+      }
+      if (traceData.size() <= getMaxSupportedTraceSize(profilerType)) {
         // Trace size is supported. Start parsing normally and create the future object corresponding to the capture.
-        myCaptures.put(traceId, createCaptureFuture(traceData, profilerType));
+        startParsing(traceId, traceData, profilerType);
+        return myCaptures.get(traceId);
       }
-      else {
-        Runnable yesCallback = () -> {
-          getLogger().warn(String.format("Parsing long (%d bytes) trace file.", traceData.size()));
-          // User decided to proceed with capture. Start parsing and create the future object corresponding to the capture.
-          myCaptures.put(traceId, createCaptureFuture(traceData, profilerType));
-        };
-
-        Runnable noCallback = () -> {
-          // User aborted the parsing before it starts. Add an entry for the trace id to the map with a null value.
-          // This way, next time our model requests this trace capture, we return early.
-          getLogger().warn(String.format("Parsing of a long (%d bytes) trace file was aborted by the user.", traceData.size()));
+    }
+
+    // The dialog asking the user is modal, so it is opened without holding the lock: other callers keep being served while it's open.
+    // The trace may have been parsed or declined in the meantime, which is checked again once the user answered.
+    Runnable yesCallback = () -> {
+      getLogger().warn(String.format("Parsing long (%d bytes) trace file.", traceData.size()));
+      // User decided to proceed with capture. Start parsing and create the future object corresponding to the capture.
+      synchronized (this) {
+        if (!isKnownTrace(traceId)) {
+          startParsing(traceId, traceData, profilerType);
+        }
+      }
+    };
+
+    Runnable noCallback = () -> {
+      // User aborted the parsing before it starts. Add an entry for the trace id to the map with a null value.
+      // This way, next time our model requests this trace capture, we return early.
+      getLogger().warn(String.format("Parsing of a long (%d bytes) trace file was aborted by the user.", traceData.size()));
+      synchronized (this) {
+        if (!isKnownTrace(traceId)) {
           myCaptures.put(traceId, null);
-        };
-        // Open the dialog warning the user the trace is too large and asking them if they want to proceed with parsing.
-        myServices.openParseLargeTracesDialog(yesCallback, noCallback);
+        }
       }
+    };
+    // Open the dialog warning the user the trace is too large and asking them if they want to proceed with parsing.
+    myServices.openParseLargeTracesDialog(yesCallback, noCallback);
+
+    synchronized (this) {
+      return myCaptures.get(traceId);
     }
+  }
 
-    return myCaptures.get(traceId);
+  /**
+   * @return whether the trace is parsed, being parsed, or was declined by the user.
+   */
+  private boolean isKnownTrace(int traceId) {
+    return findCapture(traceId) != null || myCaptures.containsKey(traceId);
   }
 
-  private CompletableFuture<CpuCapture> createCaptureFuture(ByteString traceBytes, CpuProfiler.CpuProfilerType profilerType) {
-    return CompletableFuture.supplyAsync(() -> traceBytesToCapture(traceBytes, profilerType), myServices.getPoolExecutor());
+  private synchronized void startParsing(int traceId, @NotNull ByteString traceData, CpuProfiler.CpuProfilerType profilerType) {
+    myCaptures.put(traceId, createCaptureFuture(traceId, traceData, profilerType));
   }
 
-  private static CpuCapture traceBytesToCapture(@NotNull ByteString traceData, CpuProfiler.CpuProfilerType profilerType) {
-    // TODO: Remove layers, analyze whether we can keep the whole file in memory.
-    try {
-      File trace = FileUtil.createTempFile("cpu_trace", ".trace");
-      try (FileOutputStream out = new FileOutputStream(trace)) {
-        out.write(traceData.toByteArray());
+  /**
+   * Accounts for the size of a capture that was just parsed (or brought back) and evicts the least recently used captures if the
+   * parsed captures don't fit in the budget anymore.
+   */
+  private synchronized void onCaptureParsed(int traceId, @NotNull ParsedCapture capture) {
+    myParsedCaptures.put(traceId, capture);
+    myCachedBytes += capture.mySizeBytes;
+
+    Iterator<Integer> it = myCaptures.keySet().iterator();
+    while (myCachedBytes > myMaxCachedBytes && it.hasNext()) {
+      int id = it.next();
+      ParsedCapture parsed = myParsedCaptures.get(id);
+      if (id == traceId || parsed == null) {
+        // Keep the capture that was just parsed, and captures still being parsed or not parsed at all.
+        continue;
       }
+      it.remove();
+      myParsedCaptures.remove(id);
+      myCachedBytes -= parsed.mySizeBytes;
+      myEvictionCount++;
+      myEvictedCaptures.put(id, new SoftReference<>(parsed));
+    }
+  }
 
+  @VisibleForTesting
+  static long estimateRetainedSize(@NotNull CpuCapture capture) {
+    long nodeCount = 0;
+    Deque<CaptureNode> nodes = new ArrayDeque<>();
+    for (CpuThreadInfo thread : capture.getThreads()) {
+      CaptureNode root = capture.getCaptureNode(thread.getId());
+      if (root != null) {
+        nodes.push(root);
+      }
+    }
+    while (!nodes.isEmpty()) {
+      CaptureNode node = nodes.pop();
+      nodeCount++;
+      for (CaptureNode child : node.getChildren()) {
+        nodes.push(child);
+      }
+    }
+    return nodeCount * ESTIMATED_CAPTURE_NODE_SIZE_BYTES;
+  }
+
+  private static int getMaxSupportedTraceSize(CpuProfiler.CpuProfilerType profilerType) {
+    return profilerType == CpuProfiler.CpuProfilerType.ART ? MAX_SUPPORTED_ART_TRACE_SIZE : MAX_SUPPORTED_TRACE_SIZE;
+  }
+
+  private CompletableFuture<CpuCapture> createCaptureFuture(int traceId,
+                                                            ByteString traceBytes,
+                                                            CpuProfiler.CpuProfilerType profilerType) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        CpuCapture capture = traceBytesToCapture(traceBytes, profilerType, progress -> myParsingProgress.put(traceId, progress));
+        // Account for the capture before completing the future, so it is already part of the cache when the caller gets it.
+        onCaptureParsed(traceId, new ParsedCapture(capture));
+        return capture;
+      }
+      finally {
+        myParsingProgress.remove(traceId);
+      }
+    }, myServices.getPoolExecutor());
+  }
+
+  private static CpuCapture traceBytesToCapture(@NotNull ByteString traceData,
+                                                CpuProfiler.CpuProfilerType profilerType,
+                                                @NotNull DoubleConsumer progressListener) {
+    try {
       TraceParser parser;
       if (profilerType == CpuProfiler.CpuProfilerType.ART) {
-        parser = new ArtTraceParser();
+        ArtTraceParser artParser = new ArtTraceParser(progressListener);
+        // Parse the received bytes in place. For a flat ByteString (which is what gRPC hands us), this doesn't copy the trace.
+        artParser.parse(traceData.asReadOnlyByteBuffer());
+        parser = artParser;
       }
       else if (profilerType == CpuProfiler.CpuProfilerType.SIMPLE_PERF) {
         parser = new SimplePerfTraceParser();
+        File trace = FileUtil.createTempFile("cpu_trace", ".trace");
+        try {
+          try (FileOutputStream out = new FileOutputStream(trace)) {
+            traceData.writeTo(out);
+          }
+          parser.parse(trace);
+        }
+        finally {
+          FileUtil.delete(trace);
+        }
       }
       else {
         throw new IllegalStateException("Trace file cannot be parsed. Profiler type (ART or simpleperf) needs to be set.");
       }
 
-      parser.parse(trace);
       return new CpuCapture(parser.getRange(), parser.getCaptureTrees());
     }
     catch (IOException | BufferUnderflowException e) {
       throw new IllegalStateException(e);
     }
   }
+
+  private static final class ParsedCapture {
+    @NotNull private final CpuCapture myCapture;
+    private final long mySizeBytes;
+
+    private ParsedCapture(@NotNull CpuCapture capture) {
+      myCapture = capture;
+      mySizeBytes = estimateRetainedSize(capture);
+    }
+  }
 }
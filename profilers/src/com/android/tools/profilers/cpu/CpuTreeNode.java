@@ -15,9 +15,10 @@
  */
 package com.android.tools.profilers.cpu;
 
-import com.android.tools.adtui.model.HNode;
 import com.android.tools.adtui.model.Range;
+import com.android.tools.perflib.vmtrace.ClockType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -34,6 +35,14 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   protected double myTotal = 0;
   protected double myChildrenTotal = 0;
 
+  /**
+   * Indexes of {@link #myNodes} and of their children, built the first time they're needed, which answer {@link #update(Range)} and
+   * {@link #inRange(Range)} without iterating over every node.
+   */
+  @Nullable private RangeAggregationIndex myNodesIndex;
+  @Nullable private RangeAggregationIndex myChildrenIndex;
+  @Nullable private ClockType myIndexClockType;
+
   public CpuTreeNode(String id) {
     myId = id;
   }
@@ -44,6 +53,7 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
 
   protected void addNode(@NotNull CaptureNode node) {
     myNodes.add(node);
+    invalidateIndexes();
   }
 
   protected void addNodes(@NotNull List<CaptureNode> nodes) {
@@ -76,24 +86,54 @@ public abstract class CpuTreeNode<T extends CpuTreeNode> {
   }
 
   public void update(@NotNull Range range) {
-    myTotal = 0.0;
-    myChildrenTotal = 0;
+    myTotal = getNodesIndex().getIntersectionLength(range);
+    myChildrenTotal = getChildrenIndex().getIntersectionLength(range);
+  }
 
-    for (CaptureNode node : myNodes) {
-      myTotal += getIntersection(range, node);
-      for (HNode<MethodModel> child : node.getChildren()) {
-        myChildrenTotal += getIntersection(range, child);
-      }
+  /**
+   * @return an index of {@link #myNodes}.
+   */
+  @NotNull
+  protected RangeAggregationIndex getNodesIndex() {
+    validateIndexes();
+    if (myNodesIndex == null) {
+      myNodesIndex = RangeAggregationIndex.of(myNodes);
+    }
+    return myNodesIndex;
+  }
+
+  /**
+   * @return an index of the children of all the nodes of {@link #myNodes}.
+   */
+  @NotNull
+  protected RangeAggregationIndex getChildrenIndex() {
+    validateIndexes();
+    if (myChildrenIndex == null) {
+      List<CaptureNode> children = new ArrayList<>();
+      myNodes.forEach(node -> children.addAll(node.getChildren()));
+      myChildrenIndex = RangeAggregationIndex.of(children);
+    }
+    return myChildrenIndex;
+  }
+
+  /**
+   * Drops the indexes if the nodes they were built from now use a different clock, and thus have different start and end times.
+   */
+  private void validateIndexes() {
+    ClockType clockType = myNodes.isEmpty() ? null : myNodes.get(0).getClockType();
+    if (clockType != myIndexClockType) {
+      invalidateIndexes();
+      myIndexClockType = clockType;
     }
   }
 
-  protected static double getIntersection(@NotNull Range range, @NotNull HNode<MethodModel> node) {
-    Range intersection = range.getIntersection(new Range(node.getStart(), node.getEnd()));
-    return intersection.isEmpty() ? 0.0 : intersection.getLength();
+  protected void invalidateIndexes() {
+    myNodesIndex = null;
+    myChildrenIndex = null;
   }
 
   public boolean inRange(Range range) {
-    return myNodes.stream().anyMatch(node -> node.getStart() < range.getMax() && range.getMin() < node.getEnd());
+    return getNodesIndex().overlaps(range);
   }
 
   public void reset() {
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.android.tools.adtui.model.HNode;
+import com.android.tools.adtui.model.Range;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Answers, in O(log n), how much of a range is covered by a fixed set of {@link HNode}s: the sum of the lengths of the intersections
+ * between the range and each node, which is what {@link CpuTreeNode}s aggregate every time the selection changes.
+ *
+ * The index stores the running integral of the number of nodes covering each instant, sampled at every node boundary. The covered
+ * length of [min, max] is then the integral at max minus the integral at min, each found with a binary search.
+ */
+final class RangeAggregationIndex {
+  private static final RangeAggregationIndex EMPTY = new RangeAggregationIndex(new double[0], new double[0], new int[0],
+                                                                                new double[0], new double[0]);
+
+  /**
+   * Sorted start and end points of the nodes.
+   */
+  @NotNull private final double[] myBoundaries;
+
+  /**
+   * Integral of the node coverage from the first boundary up to each boundary.
+   */
+  @NotNull private final double[] myIntegrals;
+
+  /**
+   * Number of nodes covering the instants right after each boundary (and up to the next one).
+   */
+  @NotNull private final int[] myCoverage;
+
+  /**
+   * Node starts in increasing order, and the greatest end of the nodes starting at or before each of them.
+   */
+  @NotNull private final double[] mySortedStarts;
+  @NotNull private final double[] myMaxEnds;
+
+  private RangeAggregationIndex(@NotNull double[] boundaries,
+                                @NotNull double[] integrals,
+                                @NotNull int[] coverage,
+                                @NotNull double[] sortedStarts,
+                                @NotNull double[] maxEnds) {
+    myBoundaries = boundaries;
+    myIntegrals = integrals;
+    myCoverage = coverage;
+    mySortedStarts = sortedStarts;
+    myMaxEnds = maxEnds;
+  }
+
+  @NotNull
+  static RangeAggregationIndex of(@NotNull List<? extends HNode<?>> nodes) {
+    if (nodes.isEmpty()) {
+      return EMPTY;
+    }
+
+    // Nodes ending before they start don't cover anything.
+    int count = 0;
+    double[] starts = new double[nodes.size()];
+    double[] ends = new double[nodes.size()];
+    for (HNode<?> node : nodes) {
+      if (node.getEnd() > node.getStart()) {
+        starts[count] = node.getStart();
+        ends[count] = node.getEnd();
+        count++;
+      }
+    }
+    Arrays.sort(starts, 0, count);
+    Arrays.sort(ends, 0, count);
+
+    // Sweep the boundaries in order: the coverage goes up by one at each start and down by one at each end.
+    double[] boundaries = new double[count * 2];
+    double[] integrals = new double[count * 2];
+    int[] coverage = new int[count * 2];
+    int nextStart = 0;
+    int nextEnd = 0;
+    int covered = 0;
+    double integral = 0;
+    for (int i = 0; i < boundaries.length; i++) {
+      boolean isStart = nextStart < count && starts[nextStart] <= ends[nextEnd];
+      double boundary = isStart ? starts[nextStart++] : ends[nextEnd++];
+      if (i > 0) {
+        integral += covered * (boundary - boundaries[i - 1]);
+      }
+      covered += isStart ? 1 : -1;
+      boundaries[i] = boundary;
+      integrals[i] = integral;
+      coverage[i] = covered;
+    }
+
+    List<HNode<?>> byStart = new ArrayList<>(nodes);
+    byStart.sort(Comparator.comparingLong(HNode::getStart));
+    double[] sortedStarts = new double[byStart.size()];
+    double[] maxEnds = new double[byStart.size()];
+    double maxEnd = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < byStart.size(); i++) {
+      sortedStarts[i] = byStart.get(i).getStart();
+      maxEnd = Math.max(maxEnd, byStart.get(i).getEnd());
+      maxEnds[i] = maxEnd;
+    }
+
+    return new RangeAggregationIndex(boundaries, integrals, coverage, sortedStarts, maxEnds);
+  }
+
+  /**
+   * @return the sum of the lengths of the intersections between {@code range} and each node.
+   */
+  double getIntersectionLength(@NotNull Range range) {
+    if (range.isEmpty() || myBoundaries.length == 0) {
+      return 0;
+    }
+    return integralAt(range.getMax()) - integralAt(range.getMin());
+  }
+
+  /**
+   * @return whether any node overlaps {@code range}, i.e. starts before its max and ends after its min.
+   */
+  boolean overlaps(@NotNull Range range) {
+    // Among the nodes starting before the range max, check whether the one ending last ends after the range min.
+    int index = lastIndexBefore(mySortedStarts, range.getMax());
+    return index >= 0 && myMaxEnds[index] > range.getMin();
+  }
+
+  private double integralAt(double x) {
+    int index = lastIndexAtOrBefore(myBoundaries, x);
+    if (index < 0) {
+      return 0;
+    }
+    return myIntegrals[index] + myCoverage[index] * (x - myBoundaries[index]);
+  }
+
+  /**
+   * @return the index of the last value of the sorted {@code values} that is not greater than {@code x}, or -1 if there is none.
+   */
+  private static int lastIndexAtOrBefore(@NotNull double[] values, double x) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (values[mid] <= x) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low - 1;
+  }
+
+  /**
+   * @return the index of the last value of the sorted {@code values} that is less than {@code x}, or -1 if there is none.
+   */
+  private static int lastIndexBefore(@NotNull double[] values, double x) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (values[mid] < x) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low - 1;
+  }
+}
@@ -24,6 +24,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 public class ArtTraceHandler implements VmTraceHandler {
   private static final String KEY_ELAPSED_TIME_US = "elapsed-time-usec";
@@ -98,28 +99,21 @@ public class ArtTraceHandler implements VmTraceHandler {
 
   @NotNull
   private Map<CpuThreadInfo, CaptureNode> createThreadsGraph() {
-    Map<CpuThreadInfo, CaptureNode> threadsGraph = new HashMap<>(myThreads.size());
-
-    for (Map.Entry<Integer, String> entry : myThreads.entrySet()) {
-      final int id = entry.getKey();
-      final String name = entry.getValue();
-
-      CaptureNodeConstructor constructor = myNodeConstructors.get(id);
-      if (constructor == null) {
-        continue;
-      }
-
-      CaptureNode topLevelCall = constructor.getTopLevel();
-      assert topLevelCall != null;
-      CpuThreadInfo info = new CpuThreadInfo(id, name);
-
-      long topLevelGlobalStart = topLevelCall.getStartGlobal() + myStartTimeUs;
-      adjustNodesTimeAndDepth(topLevelCall, topLevelGlobalStart, 0);
+    // Finishing the call tree of a thread only touches the nodes of that thread, so the trees are finished in parallel.
+    return myThreads.entrySet().parallelStream()
+      .filter(entry -> myNodeConstructors.containsKey(entry.getKey()))
+      .collect(Collectors.toMap(entry -> new CpuThreadInfo(entry.getKey(), entry.getValue()),
+                                entry -> createThreadGraph(myNodeConstructors.get(entry.getKey()))));
+  }
 
-      threadsGraph.put(info, topLevelCall);
-    }
+  @NotNull
+  private CaptureNode createThreadGraph(@NotNull CaptureNodeConstructor constructor) {
+    CaptureNode topLevelCall = constructor.getTopLevel();
+    assert topLevelCall != null;
 
-    return threadsGraph;
+    long topLevelGlobalStart = topLevelCall.getStartGlobal() + myStartTimeUs;
+    adjustNodesTimeAndDepth(topLevelCall, topLevelGlobalStart, 0);
+    return topLevelCall;
   }
 
   /**
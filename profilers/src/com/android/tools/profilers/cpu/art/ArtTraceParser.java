@@ -16,26 +16,55 @@
 package com.android.tools.profilers.cpu.art;
 
 import com.android.tools.adtui.model.Range;
-import com.android.tools.perflib.vmtrace.VmTraceParser;
 import com.android.tools.profilers.cpu.CaptureNode;
 import com.android.tools.profilers.cpu.CpuThreadInfo;
 import com.android.tools.profilers.cpu.TraceParser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Map;
+import java.util.function.DoubleConsumer;
 
 /**
  * Receives a binary trace file generated by using ART and parse it into {@link CpuThreadInfo} and {@link CaptureNode}.
+ * The call trees are built while the trace is read, directly from the trace bytes (see {@link #parse(ByteBuffer)}) or from a
+ * memory-mapped trace file, so parsing doesn't need any memory other than the trees themselves.
  */
 public class ArtTraceParser implements TraceParser {
 
   private final ArtTraceHandler myTraceHandler = new ArtTraceHandler();
 
+  @Nullable
+  private final DoubleConsumer myProgressListener;
+
+  public ArtTraceParser() {
+    this(null);
+  }
+
+  /**
+   * @param progressListener called, on the parsing thread, with the fraction (between 0 and 1) of the trace parsed so far.
+   */
+  public ArtTraceParser(@Nullable DoubleConsumer progressListener) {
+    myProgressListener = progressListener;
+  }
+
   @Override
   public void parse(File trace) throws IOException {
-    VmTraceParser parser = new VmTraceParser(trace, myTraceHandler);
-    parser.parse();
+    try (RandomAccessFile file = new RandomAccessFile(trace, "r"); FileChannel channel = file.getChannel()) {
+      parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Parses a trace from its bytes, from the buffer's position to its limit. The buffer is not modified.
+   */
+  public void parse(@NotNull ByteBuffer trace) throws IOException {
+    new ArtTraceReader(trace, myTraceHandler, myProgressListener).read();
   }
 
   @Override
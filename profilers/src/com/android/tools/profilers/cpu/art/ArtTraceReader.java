@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.art;
+
+import com.android.tools.perflib.vmtrace.MethodInfo;
+import com.android.tools.perflib.vmtrace.TraceAction;
+import com.android.tools.perflib.vmtrace.VmTraceHandler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Reads an ART method trace (a text header followed by binary method entry/exit records) straight from a {@link ByteBuffer}, e.g. a
+ * buffer wrapping the trace bytes received from the device or a memory-mapped trace file, and forwards everything it reads to a
+ * {@link VmTraceHandler}. Records are handed over one at a time, so the trace is never copied nor kept in an intermediate model.
+ */
+final class ArtTraceReader {
+  private static final int TRACE_MAGIC = 0x574f4c53; // 'SLOW'
+
+  private static final String HEADER_SECTION_VERSION = "*version";
+  private static final String HEADER_SECTION_THREADS = "*threads";
+  private static final String HEADER_SECTION_METHODS = "*methods";
+  private static final String HEADER_END = "*end";
+
+  private static final String KEY_CLOCK = "clock";
+
+  /**
+   * Number of times the progress is reported while reading the method records.
+   */
+  private static final int PROGRESS_STEPS = 100;
+
+  private enum Clock {
+    THREAD_CPU, WALL, DUAL
+  }
+
+  @NotNull private final ByteBuffer myBuffer;
+  @NotNull private final VmTraceHandler myHandler;
+  @Nullable private final DoubleConsumer myProgressListener;
+
+  private Clock myClock = Clock.THREAD_CPU;
+
+  /**
+   * @param progressListener called with the fraction (between 0 and 1) of the trace that has been read so far.
+   */
+  ArtTraceReader(@NotNull ByteBuffer buffer, @NotNull VmTraceHandler handler, @Nullable DoubleConsumer progressListener) {
+    myBuffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    myHandler = handler;
+    myProgressListener = progressListener;
+  }
+
+  void read() throws IOException {
+    readHeader();
+    readData();
+  }
+
+  private void readHeader() throws IOException {
+    String line = readLine();
+    if (!HEADER_SECTION_VERSION.equals(line)) {
+      throw new IOException("Trace does not start with a " + HEADER_SECTION_VERSION + " section.");
+    }
+    String section = HEADER_SECTION_VERSION;
+    line = readLine();
+    myHandler.setVersion(parseInt(line));
+
+    while ((line = readLine()) != null) {
+      if (line.startsWith("*")) {
+        if (line.equals(HEADER_END)) {
+          return;
+        }
+        section = line;
+        continue;
+      }
+      switch (section) {
+        case HEADER_SECTION_VERSION:
+          readProperty(line);
+          break;
+        case HEADER_SECTION_THREADS:
+          readThread(line);
+          break;
+        case HEADER_SECTION_METHODS:
+          readMethod(line);
+          break;
+        default:
+          // Unknown section, ignore its content.
+          break;
+      }
+    }
+    throw new IOException("Trace header does not end with " + HEADER_END + ".");
+  }
+
+  private void readProperty(@NotNull String line) {
+    int separator = line.indexOf('=');
+    if (separator < 0) {
+      return;
+    }
+    String key = line.substring(0, separator);
+    String value = line.substring(separator + 1);
+    if (key.equals(KEY_CLOCK)) {
+      if (value.equals("wall")) {
+        myClock = Clock.WALL;
+      }
+      else if (value.equals("dual")) {
+        myClock = Clock.DUAL;
+      }
+      else {
+        myClock = Clock.THREAD_CPU;
+      }
+    }
+    myHandler.setProperty(key, value);
+  }
+
+  /**
+   * Malformed thread entries are skipped: the actions of an unknown thread are still attributed to it, under a made up name.
+   */
+  private void readThread(@NotNull String line) {
+    String[] tokens = line.split("\t", 2);
+    Long id = tokens.length == 2 ? decode(tokens[0]) : null;
+    if (id != null) {
+      myHandler.addThread(id.intValue(), tokens[1]);
+    }
+  }
+
+  /**
+   * Malformed method entries are skipped, the same way as thread entries.
+   */
+  private void readMethod(@NotNull String line) {
+    // Method entries are "id  class  [method  signature]  [source file  [line number]]", separated by tabs.
+    String[] tokens = line.split("\t");
+    Long decodedId = tokens.length >= 2 ? decode(tokens[0]) : null;
+    if (decodedId == null) {
+      return;
+    }
+    long id = decodedId;
+    String className = tokens[1];
+    String methodName = null;
+    String signature = null;
+    String sourceFile = null;
+    int lineNumber = -1;
+    int next = 2;
+    if (tokens.length > 3 && tokens[3].startsWith("(")) {
+      methodName = tokens[2];
+      signature = tokens[3];
+      next = 4;
+    }
+    if (tokens.length > next) {
+      sourceFile = tokens[next];
+    }
+    if (tokens.length > next + 1) {
+      Long decodedLineNumber = decode(tokens[next + 1]);
+      lineNumber = decodedLineNumber != null ? decodedLineNumber.intValue() : -1;
+    }
+    myHandler.addMethod(id, new MethodInfo(id, className, methodName, signature, sourceFile, lineNumber));
+  }
+
+  private void readData() throws IOException {
+    int dataStart = myBuffer.position();
+    int magic = myBuffer.getInt();
+    if (magic != TRACE_MAGIC) {
+      throw new IOException(String.format("Unexpected trace magic number 0x%x.", magic));
+    }
+    int version = myBuffer.getShort();
+    int dataOffset = myBuffer.getShort();
+    myHandler.setStartTimeUs(myBuffer.getLong());
+
+    boolean wideThreadIds = version > 1;
+    int recordSize;
+    if (version >= 3) {
+      recordSize = myBuffer.getShort();
+    }
+    else {
+      recordSize = (wideThreadIds ? 2 : 1) + 4 + (myClock == Clock.DUAL ? 8 : 4);
+    }
+    myBuffer.position(dataStart + dataOffset);
+
+    int progressStep = Math.max(1, myBuffer.remaining() / PROGRESS_STEPS);
+    int nextProgress = myBuffer.position() + progressStep;
+    while (myBuffer.hasRemaining()) {
+      int recordStart = myBuffer.position();
+      int threadId = wideThreadIds ? myBuffer.getShort() & 0xFFFF : myBuffer.get() & 0xFF;
+      int methodValue = myBuffer.getInt();
+      int threadTime;
+      int globalTime;
+      switch (myClock) {
+        case WALL:
+          globalTime = myBuffer.getInt();
+          threadTime = globalTime;
+          break;
+        case DUAL:
+          threadTime = myBuffer.getInt();
+          globalTime = myBuffer.getInt();
+          break;
+        case THREAD_CPU:
+        default:
+          threadTime = myBuffer.getInt();
+          globalTime = threadTime;
+          break;
+      }
+      // Newer trace versions may append fields we don't know about to each record.
+      if (myBuffer.position() - recordStart < recordSize) {
+        if (recordStart + recordSize > myBuffer.limit()) {
+          throw new BufferUnderflowException();
+        }
+        myBuffer.position(recordStart + recordSize);
+      }
+
+      long methodId = (methodValue & ~0x03) & 0xFFFFFFFFL;
+      myHandler.addMethodAction(threadId, methodId, decodeAction(methodValue & 0x03), threadTime, globalTime);
+
+      if (myProgressListener != null && myBuffer.position() >= nextProgress) {
+        myProgressListener.accept((double)myBuffer.position() / myBuffer.limit());
+        nextProgress += progressStep;
+      }
+    }
+    if (myProgressListener != null) {
+      myProgressListener.accept(1);
+    }
+  }
+
+  @NotNull
+  private static TraceAction decodeAction(int action) {
+    switch (action) {
+      case 0:
+        return TraceAction.METHOD_ENTER;
+      case 1:
+        return TraceAction.METHOD_EXIT;
+      default:
+        return TraceAction.METHOD_EXIT_UNROLL;
+    }
+  }
+
+  /**
+   * @return the next line of the header, or null if the end of the buffer was reached before the end of the line.
+   */
+  @Nullable
+  private String readLine() {
+    int start = myBuffer.position();
+    for (int i = start; i < myBuffer.limit(); i++) {
+      if (myBuffer.get(i) == '\n') {
+        byte[] bytes = new byte[i - start];
+        myBuffer.get(bytes);
+        myBuffer.get(); // Skip the line break.
+        return new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+    return null;
+  }
+
+  private static int parseInt(@Nullable String value) throws IOException {
+    Long decoded = value != null ? decode(value) : null;
+    if (decoded == null) {
+      throw new IOException("Malformed trace header value: " + value);
+    }
+    return decoded.intValue();
+  }
+
+  @Nullable
+  private static Long decode(@NotNull String value) {
+    try {
+      return Long.decode(value.trim());
+    }
+    catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -33,7 +33,10 @@ import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Parses a trace file obtained using simpleperf to a map threadId -> {@link CaptureNode}.
@@ -67,16 +70,14 @@ public class SimplePerfTraceParser implements TraceParser {
   private final Map<CpuThreadInfo, CaptureNode> myCaptureTrees;
 
   /**
-   * Maps a thread id to its last callchain collected in samples.
+   * Method models of the call chain entries, shared by every node calling the same method, across all threads.
    */
-  private final Map<Integer, List<SimpleperfReport.Sample.CallChainEntry>> myLastCallChain;
+  private final Map<String, MethodModel> myMethodModels;
 
   /**
-   * Stores the {@link CaptureNode} on the top of the last call stack corresponding to a thread.
-   * Storing a {@link CaptureNode} for each thread is important, for instance,
-   * to avoid parsing the same call chain multiple times.
+   * Whether the call trees of different threads are built in parallel.
    */
-  private final Map<Integer, CaptureNode> myLastCallStackTopNode;
+  private final boolean myParallel;
 
   /**
    * Number of samples read from trace file.
@@ -94,12 +95,19 @@ public class SimplePerfTraceParser implements TraceParser {
   private Range myRange;
 
   public SimplePerfTraceParser() {
+    this(true);
+  }
+
+  /**
+   * @param parallel whether the call trees of different threads should be built in parallel, using the common fork/join pool.
+   */
+  public SimplePerfTraceParser(boolean parallel) {
     myFiles = new HashMap<>();
     mySamples = new ArrayList<>();
     myCaptureTrees = new HashMap<>();
-    myLastCallChain = new HashMap<>();
-    myLastCallStackTopNode = new HashMap<>();
     myThreads = new HashMap<>();
+    myMethodModels = new ConcurrentHashMap<>();
+    myParallel = parallel;
   }
 
   /**
@@ -151,9 +159,9 @@ public class SimplePerfTraceParser implements TraceParser {
   }
 
   @NotNull
-  private static CaptureNode createCaptureNode(String name, long timestamp) {
+  private static CaptureNode createCaptureNode(MethodModel method, long timestamp) {
     CaptureNode node = new CaptureNode();
-    node.setMethodModel(new MethodModel(name));
+    node.setMethodModel(method);
     setNodeStartTime(node, timestamp);
     node.setDepth(0);
     return node;
@@ -226,22 +234,42 @@ public class SimplePerfTraceParser implements TraceParser {
       return;
     }
     long startTimestamp = mySamples.get(0).getTime();
+    long endTimestamp = mySamples.get(mySamples.size() - 1).getTime();
+    myRange = new Range(TimeUnit.NANOSECONDS.toMicros(startTimestamp), TimeUnit.NANOSECONDS.toMicros(endTimestamp));
 
-    // Process each sample
+    // First, split the samples by thread. The call tree of a thread only depends on its own samples, so the trees can then be built
+    // independently from each other.
+    Map<Integer, List<SimpleperfReport.Sample>> samplesByThread = new LinkedHashMap<>();
     for (SimpleperfReport.Sample sample : mySamples) {
-      parseCallChain(sample.getCallchainList(), sample.getThreadId(), sample.getTime());
+      int threadId = sample.getThreadId();
+      if (!myThreads.containsKey(threadId)) {
+        throw new IllegalStateException("Malformed trace file: thread with id " + threadId + " not found.");
+      }
+      samplesByThread.computeIfAbsent(threadId, id -> new ArrayList<>()).add(sample);
     }
 
-    // Update the end timestamp of the last active call chain of each thread
-    long endTimestamp = mySamples.get(mySamples.size() - 1).getTime();
-    myRange = new Range(TimeUnit.NANOSECONDS.toMicros(startTimestamp), TimeUnit.NANOSECONDS.toMicros(endTimestamp));
-    for (CaptureNode lastNode : myLastCallStackTopNode.values()) {
-      CaptureNode node = lastNode;
-      while (node != null && node.getEnd() == 0) {
-        setNodeEndTime(node, endTimestamp);
-        node = node.getParent();
-      }
+    Stream<Map.Entry<Integer, List<SimpleperfReport.Sample>>> threads =
+      myParallel ? samplesByThread.entrySet().parallelStream() : samplesByThread.entrySet().stream();
+    myCaptureTrees.putAll(threads.collect(Collectors.toMap(entry -> new CpuThreadInfo(entry.getKey(), myThreads.get(entry.getKey())),
+                                                           entry -> buildCallTree(entry.getKey(), entry.getValue(), endTimestamp))));
+  }
+
+  /**
+   * Builds the call tree of a thread from its samples, sorted by timestamp.
+   */
+  @NotNull
+  private CaptureNode buildCallTree(int threadId, @NotNull List<SimpleperfReport.Sample> samples, long endTimestamp) {
+    CallTreeBuilder builder = new CallTreeBuilder(new MethodModel(myThreads.get(threadId)), samples.get(0).getTime());
+    for (SimpleperfReport.Sample sample : samples) {
+      builder.parseCallChain(sample.getCallchainList(), sample.getTime());
     }
+    // Update the end timestamp of the last active call chain of the thread
+    CaptureNode node = builder.myLastCallStackTopNode;
+    while (node != null && node.getEnd() == 0) {
+      setNodeEndTime(node, endTimestamp);
+      node = node.getParent();
+    }
+    return builder.myRoot;
   }
 
   // TODO: support thread time
@@ -257,83 +285,100 @@ public class SimplePerfTraceParser implements TraceParser {
   }
 
   /**
-   * Given a {@link SimpleperfReport.Sample.CallChainEntry}, a thread id and a sample timestamp, update the {@link CaptureNode}
-   * corresponding to that thread with the information obtained from the call chain.
+   * Builds the call tree of a single thread, one call chain at a time.
    */
-  private void parseCallChain(List<SimpleperfReport.Sample.CallChainEntry> callChain, int threadId, long timestamp) {
-    if (!myLastCallStackTopNode.containsKey(threadId)) {
-      // if there is no entry for threadId in the map, create one to represent the thread itself.
-      CaptureNode main = createCaptureNode(myThreads.getOrDefault(threadId, "main"), timestamp);
-      main.setDepth(0);
-      if (!myThreads.containsKey(threadId)) {
-        throw new IllegalStateException("Malformed trace file: thread with id " + threadId + " not found.");
-      }
-      myCaptureTrees.put(new CpuThreadInfo(threadId, myThreads.get(threadId)), main);
-      myLastCallStackTopNode.put(threadId, main);
-      // Initiate the previous call chain as an empty list
-      myLastCallChain.put(threadId, new LinkedList<>());
+  private final class CallTreeBuilder {
+    /**
+     * Node representing the thread itself, the root of the call tree.
+     */
+    @NotNull private final CaptureNode myRoot;
+
+    /**
+     * The last callchain collected in the thread's samples.
+     */
+    @NotNull private List<SimpleperfReport.Sample.CallChainEntry> myLastCallChain = Collections.emptyList();
+
+    /**
+     * The {@link CaptureNode} on the top of the last call stack. Storing it is important, for instance,
+     * to avoid parsing the same call chain multiple times.
+     */
+    @NotNull private CaptureNode myLastCallStackTopNode;
+
+    CallTreeBuilder(@NotNull MethodModel threadMethod, long startTimestamp) {
+      myRoot = createCaptureNode(threadMethod, startTimestamp);
+      myLastCallStackTopNode = myRoot;
     }
 
-    List<SimpleperfReport.Sample.CallChainEntry> previousCallChain = myLastCallChain.get(threadId);
-    // First, identify where the call chains diverge, so we update the endTime of the nodes that are not in the call chain anymore.
-    // If the last call chain is empty, there is no divergent index and no end values need to be updated.
-    // TODO: We probably can just reverse the callchain in the beginning of the method with no performance impact.
-    // Revisit that later to check that and make the change to simplify the code. Make sure to benchmark to verify the efficiency.
-    int previousCallChainIndex = previousCallChain.size() - 1;
-    int newCallChainIndex = callChain.size() - 1;
-    CaptureNode divergentNodeParent = null;
-    if (!previousCallChain.isEmpty()) {
-      while (previousCallChainIndex >= 0 && newCallChainIndex >= 0 &&
-             equals(previousCallChain.get(previousCallChainIndex), callChain.get(newCallChainIndex))) {
-        previousCallChainIndex--;
-        newCallChainIndex--;
+    /**
+     * Given a {@link SimpleperfReport.Sample.CallChainEntry} and a sample timestamp, update the call tree with the information
+     * obtained from the call chain.
+     */
+    void parseCallChain(List<SimpleperfReport.Sample.CallChainEntry> callChain, long timestamp) {
+      List<SimpleperfReport.Sample.CallChainEntry> previousCallChain = myLastCallChain;
+      // First, identify where the call chains diverge, so we update the endTime of the nodes that are not in the call chain anymore.
+      // If the last call chain is empty, there is no divergent index and no end values need to be updated.
+      // TODO: We probably can just reverse the callchain in the beginning of the method with no performance impact.
+      // Revisit that later to check that and make the change to simplify the code. Make sure to benchmark to verify the efficiency.
+      int previousCallChainIndex = previousCallChain.size() - 1;
+      int newCallChainIndex = callChain.size() - 1;
+      CaptureNode divergentNodeParent = null;
+      if (!previousCallChain.isEmpty()) {
+        while (previousCallChainIndex >= 0 && newCallChainIndex >= 0 &&
+               SimplePerfTraceParser.equals(previousCallChain.get(previousCallChainIndex), callChain.get(newCallChainIndex))) {
+          previousCallChainIndex--;
+          newCallChainIndex--;
+        }
+        divergentNodeParent = findDivergenceAndUpdateEndTime(previousCallChainIndex, timestamp);
       }
-      divergentNodeParent = findDivergenceAndUpdateEndTime(previousCallChainIndex, threadId, timestamp);
-    }
 
-    // Now, add the nodes of the new call chain to the tree
-    if (newCallChainIndex >= 0) {
-      divergentNodeParent = divergentNodeParent == null ? myLastCallStackTopNode.get(threadId) : divergentNodeParent;
-      addNewNodes(callChain, divergentNodeParent, newCallChainIndex, timestamp, threadId);
+      // Now, add the nodes of the new call chain to the tree
+      if (newCallChainIndex >= 0) {
+        divergentNodeParent = divergentNodeParent == null ? myLastCallStackTopNode : divergentNodeParent;
+        addNewNodes(callChain, divergentNodeParent, newCallChainIndex, timestamp);
+      }
+
+      // Finally, update previous call chain
+      myLastCallChain = callChain;
     }
 
-    // Finally, update previous call chain and previous last node
-    myLastCallChain.put(threadId, callChain);
-  }
+    /**
+     * Update the end timestamp of the last call chain node.
+     * Then, go backwards and do the same to the ancestors of the node until the newly read call chain
+     * matches with the previous one. When a divergence is found, return the parent of the divergent node.
+     */
+    private CaptureNode findDivergenceAndUpdateEndTime(int divergenceCount, long endTimestamp) {
+      CaptureNode node = myLastCallStackTopNode;
+      for (int i = 0; i < divergenceCount; i++) {
+        assert node != null;
+        setNodeEndTime(node, endTimestamp);
+        node = node.getParent();
+      }
 
-  /**
-   * Update the end timestamp of the last call chain node corresponding to a thread.
-   * Then, go backwards and do the same to the ancestors of the node until the newly read call chain
-   * matches with the previous one. When a divergence is found, return the parent of the divergent node.
-   */
-  private CaptureNode findDivergenceAndUpdateEndTime(int divergenceCount, int tid, long endTimestamp) {
-    CaptureNode node = myLastCallStackTopNode.get(tid);
-    for (int i = 0; i < divergenceCount; i++) {
-      assert node != null;
-      setNodeEndTime(node, endTimestamp);
-      node = node.getParent();
+      // Node should be the parent of the first divergent node
+      return node;
     }
 
-    // Node should be the parent of the first divergent node
-    return node;
+    /**
+     * Given a list of call chain entries and a start index, convert them to {@link CaptureNode}
+     * and add them to the call tree as descendants of a given node.
+     */
+    private void addNewNodes(List<SimpleperfReport.Sample.CallChainEntry> callChain,
+                             CaptureNode node, int startIndex, long startTimestamp) {
+      assert node != null;
+      for (int i = startIndex; i >= 0; i--) {
+        CaptureNode child = createCaptureNode(getMethodModel(callChain.get(i)), startTimestamp);
+        node.addChild(child);
+        child.setDepth(node.getDepth() + 1);
+        node = child;
+      }
+      // Update the pointer to the last call chain node
+      myLastCallStackTopNode = node;
+    }
   }
 
-  /**
-   * Given a list of call chain entries and a start index, convert them to {@link CaptureNode}
-   * and add them to the call tree corresponding to the thread id passed as argument, as descendants
-   * of a given node.
-   */
-  private void addNewNodes(List<SimpleperfReport.Sample.CallChainEntry> callChain,
-                           CaptureNode node, int startIndex, long startTimestamp, int tid) {
-    assert node != null;
-    for (int i = startIndex; i >= 0; i--) {
-      CaptureNode child = createCaptureNode(parseMethodName(callChain.get(i)), startTimestamp);
-      node.addChild(child);
-      child.setDepth(node.getDepth() + 1);
-      node = child;
-    }
-    // Update the pointer to the last call chain node
-    myLastCallStackTopNode.put(tid, node);
+  @NotNull
+  private MethodModel getMethodModel(SimpleperfReport.Sample.CallChainEntry callChainEntry) {
+    return myMethodModels.computeIfAbsent(parseMethodName(callChainEntry), MethodModel::new);
   }
 
   private String parseMethodName(SimpleperfReport.Sample.CallChainEntry callChainEntry) {
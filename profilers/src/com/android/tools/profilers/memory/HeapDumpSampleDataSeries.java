@@ -24,20 +24,28 @@ import com.android.tools.profilers.RelativeTimeConverter;
 import com.android.tools.profilers.analytics.FeatureTracker;
 import com.android.tools.profilers.memory.adapters.CaptureObject;
 import com.android.tools.profilers.memory.adapters.HeapDumpCaptureObject;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.intellij.openapi.util.io.FileUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 class HeapDumpSampleDataSeries extends CaptureDataSeries<CaptureObject> {
+  @Nullable private MemoryProfilerStage myStage;
+
   public HeapDumpSampleDataSeries(@NotNull MemoryServiceGrpc.MemoryServiceBlockingStub client,
                                   @Nullable Common.Session session,
                                   int processId,
                                   @NotNull RelativeTimeConverter converter,
-                                  @NotNull FeatureTracker featureTracker) {
+                                  @NotNull FeatureTracker featureTracker,
+                                  @Nullable MemoryProfilerStage stage) {
     super(client, session, processId, converter, featureTracker);
+    myStage = stage;
   }
 
   @Override
@@ -56,7 +64,11 @@ class HeapDumpSampleDataSeries extends CaptureDataSeries<CaptureObject> {
           getDurationUs(info.getStartTime(), info.getEndTime()), false, false,
           new CaptureEntry<>(
             info,
-            () -> new HeapDumpCaptureObject(myClient, mySession, myProcessId, info, null, myConverter, myFeatureTracker)))));
+            () -> new HeapDumpCaptureObject(myClient, mySession, myProcessId, info, null, myConverter, myFeatureTracker,
+                                            Executors.newSingleThreadExecutor(
+                                              new ThreadFactoryBuilder().setNameFormat("profiler-heap-dump-dominators")
+                                                .setDaemon(true).build()),
+                                            myStage, new File(FileUtil.getTempDirectory(), "profiler-heap-dumps"))))));
     }
 
     return seriesData;
@@ -192,6 +192,25 @@ public abstract class ClassifierSet implements MemoryObject {
     myInstancesWithStackInfoCount = 0;
   }
 
+  /**
+   * Recomputes the total retained size of this set and of its already partitioned descendants from their instances, for captures which
+   * only know the retained sizes of their instances after adding them (e.g. heap dumps computing dominators in the background). Only
+   * valid for sets whose instances were all added with {@link #addInstanceObject(InstanceObject)}.
+   */
+  public void refreshTotalRetainedSize() {
+    long totalRetainedSize = 0;
+    for (InstanceObject instance : myInstances) {
+      totalRetainedSize += instance.getRetainedSize() == INVALID_VALUE ? 0 : instance.getRetainedSize();
+    }
+    if (myClassifier != null) {
+      for (ClassifierSet set : myClassifier.getClassifierSets()) {
+        set.refreshTotalRetainedSize();
+        totalRetainedSize += set.getTotalRetainedSize();
+      }
+    }
+    myTotalRetainedSize = totalRetainedSize;
+  }
+
   public int getInstancesCount() {
     if (myClassifier == null) {
       return myInstances.size();
@@ -287,6 +306,11 @@ public abstract class ClassifierSet implements MemoryObject {
    */
   @VisibleForTesting(visibility = VisibleForTesting.Visibility.PROTECTED)
   public static abstract class Classifier {
+    /**
+     * Below this number of instances, {@link #partition(Set)} isn't worth splitting across threads.
+     */
+    static final int PARALLEL_PARTITION_THRESHOLD = 100000;
+
     public static final Classifier IDENTITY_CLASSIFIER = new Classifier() {
       @Override
       public boolean isTerminalClassifier() {
@@ -327,33 +351,69 @@ public abstract class ClassifierSet implements MemoryObject {
 
     /**
      * Partitions {@link InstanceObject}s in {@code myInstances} according to the current {@link ClassifierSet}'s strategy.
-     * This will consume the instance from the input.
+     * This will consume the classified instances from the input, see {@link #isClassified(InstanceObject)}.
      */
     public final void partition(@NotNull Set<InstanceObject> instances) {
-      List<InstanceObject> partitionedInstances = new ArrayList<>(instances.size());
+      partition(instances, instances.size() >= PARALLEL_PARTITION_THRESHOLD);
+    }
+
+    /**
+     * @param parallel whether the instances should be added to the child {@link ClassifierSet}s in parallel, using the common fork/join
+     *                 pool. The resulting sets are the same either way.
+     */
+    @VisibleForTesting
+    final void partition(@NotNull Set<InstanceObject> instances, boolean parallel) {
+      if (isTerminalClassifier()) {
+        return;
+      }
 
-      if (!isTerminalClassifier()) {
+      if (!parallel) {
         instances.forEach(instance -> {
-          if (instance.hasTimeData()) {
-            if (instance.hasAllocData()) {
-              getOrCreateClassifierSet(instance).addInstanceObject(instance);
-            }
-            if (instance.hasDeallocData()) {
-              getOrCreateClassifierSet(instance).freeInstanceObject(instance);
-            }
-            partitionedInstances.add(instance);
-          }
-          else {
-            getOrCreateClassifierSet(instance).addInstanceObject(instance);
-            partitionedInstances.add(instance);
+          if (isClassified(instance)) {
+            addToClassifierSet(getOrCreateClassifierSet(instance), instance);
           }
         });
       }
-      if (partitionedInstances.size() == instances.size()) {
-        instances.clear();
+      else {
+        // Creating the child sets isn't thread safe, so the set of each instance is found on this thread, in order, which also keeps
+        // the order of the sets and of their instances. Adding the instances to their sets, which hashes them and adds up their sizes,
+        // is then done in parallel, one set per task.
+        Map<ClassifierSet, List<InstanceObject>> instancesBySet = new IdentityHashMap<>();
+        List<ClassifierSet> sets = new ArrayList<>();
+        for (InstanceObject instance : instances) {
+          if (!isClassified(instance)) {
+            continue;
+          }
+          instancesBySet.computeIfAbsent(getOrCreateClassifierSet(instance), set -> {
+            sets.add(set);
+            return new ArrayList<>();
+          }).add(instance);
+        }
+        sets.parallelStream().forEach(set -> instancesBySet.get(set).forEach(instance -> addToClassifierSet(set, instance)));
+      }
+      // Instances that weren't classified stay in the parent set.
+      instances.removeIf(Classifier::isClassified);
+    }
+
+    /**
+     * @return false if {@code instance} has time data, but neither its allocation nor its deallocation happened in the time range, in
+     * which case it doesn't belong in any set.
+     */
+    private static boolean isClassified(@NotNull InstanceObject instance) {
+      return !instance.hasTimeData() || instance.hasAllocData() || instance.hasDeallocData();
+    }
+
+    private static void addToClassifierSet(@NotNull ClassifierSet set, @NotNull InstanceObject instance) {
+      if (instance.hasTimeData()) {
+        if (instance.hasAllocData()) {
+          set.addInstanceObject(instance);
+        }
+        if (instance.hasDeallocData()) {
+          set.freeInstanceObject(instance);
+        }
       }
       else {
-        instances.removeAll(partitionedInstances);
+        set.addInstanceObject(instance);
       }
     }
   }
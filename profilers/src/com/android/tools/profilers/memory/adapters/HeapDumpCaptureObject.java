@@ -17,7 +17,6 @@ package com.android.tools.profilers.memory.adapters;
 
 import com.android.tools.adtui.model.Range;
 import com.android.tools.adtui.model.formatter.TimeAxisFormatter;
-import com.android.tools.perflib.heap.ClassObj;
 import com.android.tools.perflib.heap.Heap;
 import com.android.tools.perflib.heap.Instance;
 import com.android.tools.perflib.heap.Snapshot;
@@ -30,15 +29,19 @@ import com.android.tools.profiler.proto.MemoryProfiler.HeapDumpInfo;
 import com.android.tools.profiler.proto.MemoryServiceGrpc.MemoryServiceBlockingStub;
 import com.android.tools.profilers.RelativeTimeConverter;
 import com.android.tools.profilers.analytics.FeatureTracker;
+import com.android.tools.profilers.memory.MemoryProfilerStage;
 import com.android.tools.proguard.ProguardMap;
 import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.*;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Stream;
@@ -46,6 +49,14 @@ import java.util.stream.Stream;
 import static com.android.tools.profilers.memory.adapters.CaptureObject.ClassifierAttribute.*;
 
 public class HeapDumpCaptureObject implements CaptureObject {
+  /**
+   * How many heap dumps keep their retained sizes and depths in the cache directory. The files of the least recently loaded ones are
+   * deleted beyond that, since the directory is shared by all the sessions and never cleaned up otherwise.
+   */
+  @VisibleForTesting
+  static final int MAX_CACHED_HEAP_DUMPS = 10;
+
+  private static final String CACHE_FILE_EXTENSION = ".dominators";
 
   @NotNull
   private final MemoryServiceBlockingStub myClient;
@@ -64,12 +75,6 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @NotNull
   private final Map<Integer, HeapSet> myHeapSets = new HashMap<>();
 
-  @NotNull
-  private final Map<ClassObj, InstanceObject> myClassObjectIndex = new HashMap<>();
-
-  @NotNull
-  private final Map<Instance, InstanceObject> myInstanceIndex = new HashMap<>();
-
   @NotNull
   private final ClassDb myClassDb = new ClassDb();
 
@@ -82,10 +87,38 @@ public class HeapDumpCaptureObject implements CaptureObject {
   @Nullable
   private volatile Snapshot mySnapshot;
 
+  @Nullable
+  private volatile HeapDumpIndex myIndex;
+
   private volatile boolean myIsLoadingError = false;
 
   private boolean myHasNativeAllocations;
 
+  /**
+   * Runs the dominator computation, so that the instances can be shown (with their shallow sizes) before their retained sizes are known.
+   * When null, the dominators are computed during {@link #load(Range, Executor)}.
+   */
+  @Nullable
+  private final ExecutorService myDominatorService;
+
+  @Nullable
+  private final MemoryProfilerStage myStage;
+
+  /**
+   * Where the retained sizes and depths are saved once computed, so that loading the same heap dump again doesn't wait for the
+   * dominators. When null, they are always computed.
+   */
+  @Nullable
+  private final File myCacheDirectory;
+
+  private volatile boolean myHasRetainedSizes = false;
+
+  /**
+   * Set once the capture is unloaded. The dominator computation can't be interrupted, so this is what keeps it from publishing its
+   * results (and refreshing views that no longer show this capture) once it is done.
+   */
+  private volatile boolean myIsUnloaded = false;
+
   public HeapDumpCaptureObject(@NotNull MemoryServiceBlockingStub client,
                                @Nullable Common.Session session,
                                int appId,
@@ -93,6 +126,19 @@ public class HeapDumpCaptureObject implements CaptureObject {
                                @Nullable ProguardMap proguardMap,
                                @NotNull RelativeTimeConverter converter,
                                @NotNull FeatureTracker featureTracker) {
+    this(client, session, appId, heapDumpInfo, proguardMap, converter, featureTracker, null, null, null);
+  }
+
+  public HeapDumpCaptureObject(@NotNull MemoryServiceBlockingStub client,
+                               @Nullable Common.Session session,
+                               int appId,
+                               @NotNull HeapDumpInfo heapDumpInfo,
+                               @Nullable ProguardMap proguardMap,
+                               @NotNull RelativeTimeConverter converter,
+                               @NotNull FeatureTracker featureTracker,
+                               @Nullable ExecutorService dominatorService,
+                               @Nullable MemoryProfilerStage stage,
+                               @Nullable File cacheDirectory) {
     myClient = client;
     myProcessId = appId;
     mySession = session;
@@ -104,6 +150,9 @@ public class HeapDumpCaptureObject implements CaptureObject {
         .getFixedPointFormattedString(TimeUnit.MILLISECONDS.toMicros(1),
                                       TimeUnit.NANOSECONDS.toMicros(converter.convertToRelativeTime(myHeapDumpInfo.getStartTime())));
     myFeatureTracker = featureTracker;
+    myDominatorService = dominatorService;
+    myStage = stage;
+    myCacheDirectory = cacheDirectory;
   }
 
   @NotNull
@@ -182,6 +231,13 @@ public class HeapDumpCaptureObject implements CaptureObject {
     return myHasNativeAllocations;
   }
 
+  /**
+   * @return whether the retained sizes and depths of the instances are known. Until then, they are {@link MemoryObject#INVALID_VALUE}.
+   */
+  public boolean hasRetainedSizes() {
+    return myHasRetainedSizes;
+  }
+
   @Override
   public boolean load(@Nullable Range queryRange, @Nullable Executor queryJoiner) {
     DumpDataResponse response;
@@ -218,52 +274,173 @@ public class HeapDumpCaptureObject implements CaptureObject {
     else {
       snapshot = Snapshot.createSnapshot(buffer, new ProguardMap(), Arrays.asList(nativeRegistryPostProcessor));
     }
-    snapshot.computeDominators();
     myHasNativeAllocations = nativeRegistryPostProcessor.getHasNativeAllocations();
     mySnapshot = snapshot;
 
-    Map<Heap, HeapSet> heapSets = new HashMap<>(snapshot.getHeaps().size());
-    InstanceObject javaLangClassObject = null;
-    for (Heap heap : snapshot.getHeaps()) {
-      HeapSet heapSet = new HeapSet(this, heap.getName(), heap.getId());
-      heapSets.put(heap, heapSet);
-      if (javaLangClassObject == null) {
-        ClassObj javaLangClass =
-          heap.getClasses().stream().filter(classObj -> ClassDb.JAVA_LANG_CLASS.equals(classObj.getClassName())).findFirst().orElse(null);
-        if (javaLangClass != null) {
-          javaLangClassObject = createClassObjectInstance(null, javaLangClass);
-        }
-      }
+    HeapDumpIndex index = HeapDumpIndex.build(this, snapshot, myClassDb);
+    myIndex = index;
+
+    long dumpSize = response.getData().size();
+    File cacheFile = getCacheFile();
+    boolean isCached = cacheFile != null && readCache(index, cacheFile, dumpSize);
+    myHasRetainedSizes = isCached;
+    if (!isCached && myDominatorService == null) {
+      computeDominators(snapshot, index, cacheFile, dumpSize);
     }
 
-    InstanceObject finalJavaLangClassObject = javaLangClassObject;
+    Map<Integer, HeapSet> heapSets = new HashMap<>(snapshot.getHeaps().size());
     for (Heap heap : snapshot.getHeaps()) {
-      HeapSet heapSet = heapSets.get(heap);
-      heap.getClasses().forEach(classObj -> {
-        InstanceObject classObject = createClassObjectInstance(finalJavaLangClassObject, classObj);
-        myInstanceIndex.put(classObj, classObject);
-        heapSet.addInstanceObject(classObject);
-      });
+      heapSets.put(heap.getId(), new HeapDumpHeapSet(this, heap.getName(), heap.getId(), index));
     }
+    myHeapSets.putAll(heapSets);
 
-    for (Heap heap : snapshot.getHeaps()) {
-      HeapSet heapSet = heapSets.get(heap);
-      heap.forEachInstance(instance -> {
-        assert !ClassDb.JAVA_LANG_CLASS.equals(getName());
-        ClassObj classObj = instance.getClassObj();
-        InstanceObject instanceObject =
-          new HeapDumpInstanceObject(this, getClassObjectInstance(instance), instance,
-                                     myClassDb.registerClass(classObj.getClassLoaderId(), classObj.getClassName()), null);
-        myInstanceIndex.put(instance, instanceObject);
-        heapSet.addInstanceObject(instanceObject);
-        return true;
+    if (!isCached && myDominatorService != null) {
+      myDominatorService.execute(() -> {
+        if (myIsUnloaded) {
+          return;
+        }
+        Map<Integer, Map<ClassDb.ClassEntry, Long>> retainedSizesByClass;
+        try {
+          computeDominators(snapshot, index, cacheFile, dumpSize);
+          // Added up here rather than on the joiner, which only applies the totals to the sets already shown.
+          retainedSizesByClass = myIsUnloaded ? null : index.getRetainedSizesByClass();
+        }
+        catch (RuntimeException | OutOfMemoryError e) {
+          // The instances stay usable, only without retained sizes and depths.
+          getLogger().warn("Could not compute the retained sizes of " + myLabel, e);
+          return;
+        }
+        if (queryJoiner != null && retainedSizesByClass != null && !myIsUnloaded) {
+          queryJoiner.execute(() -> refreshRetainedSizes(retainedSizesByClass));
+        }
       });
     }
-    heapSets.entrySet().forEach(entry -> myHeapSets.put(entry.getKey().getId(), entry.getValue()));
 
     return true;
   }
 
+  /**
+   * Computes the dominators of {@code snapshot} and fills the retained sizes and depths of {@code index} from them. The dominator
+   * computation writes the distances and retained sizes of the perflib instances, so those are never read from the instances while it
+   * may be running, but from the index once {@link #hasRetainedSizes()} publishes them (see {@link #getDepth(Instance)}).
+   *
+   * @param cacheFile where to save the retained sizes and depths once filled, null if they aren't saved.
+   */
+  private void computeDominators(@NotNull Snapshot snapshot, @NotNull HeapDumpIndex index, @Nullable File cacheFile, long dumpSize) {
+    snapshot.computeDominators();
+    if (myIsUnloaded) {
+      return;
+    }
+    index.fillDominatorColumns();
+    myHasRetainedSizes = true;
+    if (cacheFile != null) {
+      try {
+        index.writeDominatorColumns(cacheFile, dumpSize);
+        trimCacheDirectory();
+      }
+      catch (IOException e) {
+        getLogger().warn("Could not save the retained sizes of " + myLabel, e);
+      }
+    }
+  }
+
+  /**
+   * @return the depth of {@code instance}, or {@link MemoryObject#INVALID_VALUE} until the dominators are computed.
+   */
+  int getDepth(@NotNull Instance instance) {
+    HeapDumpIndex index = myIndex;
+    int row = index != null ? index.findRow(instance.getId()) : HeapDumpIndex.INVALID_ROW;
+    return row != HeapDumpIndex.INVALID_ROW ? index.getDepth(row) : MemoryObject.INVALID_VALUE;
+  }
+
+  /**
+   * @return the retained size of {@code instance}, or {@link MemoryObject#INVALID_VALUE} until the dominators are computed.
+   */
+  long getRetainedSize(@NotNull Instance instance) {
+    HeapDumpIndex index = myIndex;
+    int row = index != null ? index.findRow(instance.getId()) : HeapDumpIndex.INVALID_ROW;
+    return row != HeapDumpIndex.INVALID_ROW ? index.getRetainedSize(row) : MemoryObject.INVALID_VALUE;
+  }
+
+  /**
+   * Updates the totals of the heaps and classes now that the retained sizes of their instances are known, and the views showing them.
+   *
+   * @param retainedSizesByClass the retained size of the instances of each class, by heap id, see
+   *                             {@link HeapDumpIndex#getRetainedSizesByClass()}.
+   */
+  private void refreshRetainedSizes(@NotNull Map<Integer, Map<ClassDb.ClassEntry, Long>> retainedSizesByClass) {
+    if (myIsUnloaded) {
+      return;
+    }
+    for (HeapSet heapSet : myHeapSets.values()) {
+      ((HeapDumpHeapSet)heapSet).refreshRetainedSizes(retainedSizesByClass.getOrDefault(heapSet.getId(), Collections.emptyMap()));
+    }
+    if (myStage != null) {
+      myStage.refreshSelectedHeap();
+    }
+  }
+
+  private boolean readCache(@NotNull HeapDumpIndex index, @NotNull File cacheFile, long dumpSize) {
+    if (!cacheFile.exists()) {
+      return false;
+    }
+    try {
+      if (!index.readDominatorColumns(cacheFile, dumpSize)) {
+        return false;
+      }
+      // Marks the file as recently used, see trimCacheDirectory().
+      if (!cacheFile.setLastModified(System.currentTimeMillis())) {
+        getLogger().info("Could not update the modification time of " + cacheFile);
+      }
+      return true;
+    }
+    catch (IOException e) {
+      getLogger().warn("Could not read the retained sizes of " + myLabel, e);
+      return false;
+    }
+  }
+
+  /**
+   * @return the file caching the retained sizes and depths of this heap dump, or null if they aren't cached. Heap dumps are streamed
+   * from the device rather than read from a local file, so they are identified by the device, process and time of the dump.
+   */
+  @VisibleForTesting
+  @Nullable
+  File getCacheFile() {
+    if (myCacheDirectory == null || mySession == null) {
+      return null;
+    }
+    if (!myCacheDirectory.isDirectory() && !myCacheDirectory.mkdirs()) {
+      return null;
+    }
+    String name = String.format("%s_%s_%d_%d", mySession.getDeviceSerial(), mySession.getBootId(), myProcessId,
+                                myHeapDumpInfo.getStartTime());
+    return new File(myCacheDirectory, name.replaceAll("[^A-Za-z0-9._-]", "_") + CACHE_FILE_EXTENSION);
+  }
+
+  /**
+   * Deletes the least recently used cache files (and temporary files left by interrupted writes) beyond
+   * {@link #MAX_CACHED_HEAP_DUMPS}. Files are ordered by their modification time, which is updated when they are read.
+   */
+  private void trimCacheDirectory() {
+    assert myCacheDirectory != null;
+    File[] files = myCacheDirectory.listFiles((dir, name) -> name.contains(CACHE_FILE_EXTENSION));
+    if (files == null || files.length <= MAX_CACHED_HEAP_DUMPS) {
+      return;
+    }
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+    for (int i = MAX_CACHED_HEAP_DUMPS; i < files.length; i++) {
+      if (!files[i].delete()) {
+        getLogger().info("Could not delete " + files[i]);
+      }
+    }
+  }
+
+  @NotNull
+  private static Logger getLogger() {
+    return Logger.getInstance(HeapDumpCaptureObject.class);
+  }
+
   @Override
   public boolean isDoneLoading() {
     return mySnapshot != null || myIsLoadingError;
@@ -276,7 +453,10 @@ public class HeapDumpCaptureObject implements CaptureObject {
 
   @Override
   public void unload() {
-
+    myIsUnloaded = true;
+    if (myDominatorService != null) {
+      myDominatorService.shutdownNow();
+    }
   }
 
   @NotNull
@@ -299,36 +479,12 @@ public class HeapDumpCaptureObject implements CaptureObject {
 
   @Nullable
   public InstanceObject findInstanceObject(@NotNull Instance instance) {
-    if (mySnapshot == null) {
+    HeapDumpIndex index = myIndex;
+    if (mySnapshot == null || index == null) {
       return null;
     }
 
-    return myInstanceIndex.get(instance);
-  }
-
-  @NotNull
-  InstanceObject createClassObjectInstance(@Nullable InstanceObject javaLangClass, @NotNull ClassObj classObj) {
-    if (javaLangClass == null) {
-      // Deal with the root java.lang.Class object.
-      assert !myClassObjectIndex.containsKey(classObj);
-      InstanceObject rootInstanceObject =
-        new HeapDumpInstanceObject(this, null, classObj,
-                                   myClassDb.registerClass(classObj.getClassLoaderId(), "java.lang.Class"),
-                                   ValueObject.ValueType.CLASS);
-      myClassObjectIndex.put(classObj, rootInstanceObject);
-      return rootInstanceObject;
-    }
-    else {
-      HeapDumpInstanceObject classObject = new HeapDumpInstanceObject(this, javaLangClass, classObj, myClassDb
-        .registerClass(classObj.getClassLoaderId(), javaLangClass.getClassEntry().getClassName()), ValueObject.ValueType.CLASS);
-      myClassObjectIndex.put(classObj, classObject);
-      return classObject;
-    }
-  }
-
-  @Nullable
-  InstanceObject getClassObjectInstance(@NotNull Instance instance) {
-    ClassObj classObj = instance.getClassObj();
-    return myClassObjectIndex.get(classObj);
+    int row = index.findRow(instance.getId());
+    return row == HeapDumpIndex.INVALID_ROW ? null : index.getInstanceObject(row);
   }
 }
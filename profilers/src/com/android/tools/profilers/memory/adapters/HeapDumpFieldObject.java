@@ -39,17 +39,19 @@ final class HeapDumpFieldObject implements FieldObject {
     .put(Type.DOUBLE, DOUBLE)
     .build();
 
+  @NotNull private final HeapDumpCaptureObject myCaptureObject;
+  @NotNull private final Instance myParentInstance;
   @NotNull private final FieldValue myField;
   @NotNull private final ValueObject.ValueType myValueType;
   @Nullable private final InstanceObject myInstanceObject;
-  private final int myDepth;
   private final long myNativeSize;
   private final int myShallowSize;
-  private final long myRetainedSize;
 
   private final int myHashCode;
 
   public HeapDumpFieldObject(@NotNull HeapDumpCaptureObject captureObject, @NotNull Instance parentInstance, @NotNull FieldValue field) {
+    myCaptureObject = captureObject;
+    myParentInstance = parentInstance;
     myField = field;
     Type type = myField.getField().getType();
     if (type == Type.OBJECT) {
@@ -59,8 +61,6 @@ final class HeapDumpFieldObject implements FieldObject {
         myInstanceObject = null;
         myNativeSize = 0;
         myShallowSize = 0;
-        myRetainedSize = 0;
-        myDepth = Integer.MAX_VALUE;
       }
       else {
         myInstanceObject = captureObject.findInstanceObject(instance);
@@ -79,8 +79,6 @@ final class HeapDumpFieldObject implements FieldObject {
 
         myNativeSize = instance.getNativeSize();
         myShallowSize = instance.getSize();
-        myRetainedSize = instance.getTotalRetainedSize();
-        myDepth = instance.getDistanceToGcRoot();
       }
     }
     else {
@@ -88,8 +86,6 @@ final class HeapDumpFieldObject implements FieldObject {
       myInstanceObject = null;
       myNativeSize = 0;
       myShallowSize = type.getSize();
-      myRetainedSize = type.getSize();
-      myDepth = parentInstance.getDistanceToGcRoot();
     }
 
     myHashCode = Arrays.hashCode(new Object[]{myInstanceObject, getFieldName(), getValueType(), myField.getValue()});
@@ -107,10 +103,10 @@ final class HeapDumpFieldObject implements FieldObject {
     }
 
     HeapDumpFieldObject other = (HeapDumpFieldObject)obj;
-    return other.myInstanceObject == myInstanceObject &&
+    return Objects.equals(other.myInstanceObject, myInstanceObject) &&
            getFieldName().equals(other.getFieldName()) &&
            getValueType() == other.getValueType() &&
-           (getAsInstance() == other.getAsInstance() || Objects.equals(myField.getValue(), other.myField.getValue()));
+           (Objects.equals(getAsInstance(), other.getAsInstance()) || Objects.equals(myField.getValue(), other.myField.getValue()));
   }
 
   @NotNull
@@ -129,14 +125,26 @@ final class HeapDumpFieldObject implements FieldObject {
     return myShallowSize;
   }
 
+  /**
+   * Read from the capture rather than copied when the field is created, since the retained sizes may not be computed yet.
+   */
   @Override
   public long getRetainedSize() {
-    return myRetainedSize;
+    if (myValueType == NULL) {
+      return 0;
+    }
+    else if (myValueType.getIsPrimitive()) {
+      return myShallowSize;
+    }
+    return myCaptureObject.getRetainedSize((Instance)myField.getValue());
   }
 
   @Override
   public int getDepth() {
-    return myDepth;
+    if (myValueType == NULL) {
+      return Integer.MAX_VALUE;
+    }
+    return myCaptureObject.getDepth(myValueType.getIsPrimitive() ? myParentInstance : (Instance)myField.getValue());
   }
 
   @NotNull
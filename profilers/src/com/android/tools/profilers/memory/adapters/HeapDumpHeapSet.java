@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.profilers.memory.MemoryProfilerConfiguration.ClassGrouping;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A {@link HeapSet} of a heap dump, which only creates the {@link InstanceObject}s of its rows in the {@link HeapDumpIndex} the first
+ * time its contents are read. Most of the instances of a heap dump belong to the zygote and image heaps, which are rarely shown.
+ */
+final class HeapDumpHeapSet extends HeapSet {
+  @NotNull private final HeapDumpIndex myIndex;
+  private boolean myIsPopulated = false;
+
+  HeapDumpHeapSet(@NotNull CaptureObject captureObject, @NotNull String heapName, int id, @NotNull HeapDumpIndex index) {
+    super(captureObject, heapName, id);
+    myIndex = index;
+  }
+
+  private void ensurePopulated() {
+    if (myIsPopulated) {
+      return;
+    }
+    myIsPopulated = true;
+    IntBuffer rows = myIndex.getHeapRows(getId());
+    for (int i = 0; i < rows.limit(); i++) {
+      super.addInstanceObject(myIndex.getInstanceObject(rows.get(i)));
+    }
+  }
+
+  /**
+   * Updates the retained sizes of this heap and of the sets it is already partitioned into, once the retained sizes of the instances are
+   * known. The totals are derived from {@code classRetainedSizes}, the retained size of the instances of each class in this heap, so the
+   * instances aren't added up again, except under the call stack grouping whose class sets only hold some of the instances of a class.
+   */
+  void refreshRetainedSizes(@NotNull Map<ClassDb.ClassEntry, Long> classRetainedSizes) {
+    // Not populated yet, the totals are computed with the retained sizes known when the instances are added.
+    if (!myIsPopulated) {
+      return;
+    }
+    if (getClassGrouping() == ClassGrouping.ARRANGE_BY_CALLSTACK) {
+      refreshTotalRetainedSize();
+      return;
+    }
+
+    // The retained size of each package (e.g. "com", "com.example") of the heap, for the package sets that aren't partitioned yet.
+    Map<String, Long> packageRetainedSizes = new HashMap<>();
+    for (Map.Entry<ClassDb.ClassEntry, Long> entry : classRetainedSizes.entrySet()) {
+      StringBuilder packageName = new StringBuilder();
+      for (String packageElement : entry.getKey().getSplitPackageName()) {
+        packageName.append(packageName.length() == 0 ? "" : ".").append(packageElement);
+        packageRetainedSizes.merge(packageName.toString(), entry.getValue(), Long::sum);
+      }
+    }
+    myTotalRetainedSize = classRetainedSizes.values().stream().mapToLong(Long::longValue).sum();
+    refreshChildRetainedSizes(this, "", classRetainedSizes, packageRetainedSizes);
+  }
+
+  private static void refreshChildRetainedSizes(@NotNull ClassifierSet set,
+                                                @NotNull String packageName,
+                                                @NotNull Map<ClassDb.ClassEntry, Long> classRetainedSizes,
+                                                @NotNull Map<String, Long> packageRetainedSizes) {
+    if (set.myClassifier == null) {
+      return;
+    }
+    for (ClassifierSet child : set.myClassifier.getClassifierSets()) {
+      if (child instanceof ClassSet) {
+        child.myTotalRetainedSize = classRetainedSizes.getOrDefault(((ClassSet)child).getClassEntry(), 0L);
+      }
+      else if (child instanceof PackageSet) {
+        String childPackageName = packageName.isEmpty() ? child.getName() : packageName + "." + child.getName();
+        child.myTotalRetainedSize = packageRetainedSizes.getOrDefault(childPackageName, 0L);
+        refreshChildRetainedSizes(child, childPackageName, classRetainedSizes, packageRetainedSizes);
+      }
+    }
+  }
+
+  @Override
+  public boolean isEmpty() {
+    ensurePopulated();
+    return super.isEmpty();
+  }
+
+  @Override
+  public int getAllocatedCount() {
+    ensurePopulated();
+    return super.getAllocatedCount();
+  }
+
+  @Override
+  public int getDeallocatedCount() {
+    ensurePopulated();
+    return super.getDeallocatedCount();
+  }
+
+  @Override
+  public long getTotalRetainedSize() {
+    ensurePopulated();
+    return super.getTotalRetainedSize();
+  }
+
+  @Override
+  public long getTotalShallowSize() {
+    ensurePopulated();
+    return super.getTotalShallowSize();
+  }
+
+  @Override
+  public long getTotalNativeSize() {
+    ensurePopulated();
+    return super.getTotalNativeSize();
+  }
+
+  @Override
+  public boolean addInstanceObject(@NotNull InstanceObject instanceObject) {
+    ensurePopulated();
+    return super.addInstanceObject(instanceObject);
+  }
+
+  @Override
+  public int getInstancesCount() {
+    ensurePopulated();
+    return super.getInstancesCount();
+  }
+
+  @NotNull
+  @Override
+  public Stream<InstanceObject> getInstancesStream() {
+    ensurePopulated();
+    return super.getInstancesStream();
+  }
+
+  @Override
+  public boolean hasStackInfo() {
+    ensurePopulated();
+    return super.hasStackInfo();
+  }
+
+  @NotNull
+  @Override
+  public List<ClassifierSet> getChildrenClassifierSets() {
+    ensurePopulated();
+    return super.getChildrenClassifierSets();
+  }
+
+  @Nullable
+  @Override
+  public ClassifierSet findContainingClassifierSet(@NotNull InstanceObject target) {
+    ensurePopulated();
+    return super.findContainingClassifierSet(target);
+  }
+}
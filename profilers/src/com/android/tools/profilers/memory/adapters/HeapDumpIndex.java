@@ -0,0 +1,540 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.perflib.heap.*;
+import com.android.tools.profiler.proto.MemoryProfiler.AllocationStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static com.android.tools.profilers.memory.adapters.ValueObject.ValueType.*;
+
+/**
+ * An index of the instances (including class objects) of a heap dump {@link Snapshot}, one row per instance, sorted by instance id.
+ *
+ * The attributes needed to classify instances and to populate the classifier/instance tables (heap, class, sizes, depths) are kept in
+ * primitive columns allocated outside of the Java heap. {@link InstanceObject}s handed out by the index are thin views over a row; the
+ * corresponding perflib {@link Instance} is only looked up when its fields, references or value are actually displayed.
+ *
+ * Retained sizes and depths need the dominators of the snapshot, which take much longer to compute than the rest of the index. They
+ * are {@link MemoryObject#INVALID_VALUE} until filled, either from the snapshot once its dominators are computed, or from a file written
+ * by a previous load of the same heap dump.
+ */
+final class HeapDumpIndex {
+  static final int INVALID_ROW = -1;
+
+  private static final ValueObject.ValueType[] VALUE_TYPES = ValueObject.ValueType.values();
+
+  private static final int DOMINATOR_FILE_MAGIC = 0x48505244;
+  private static final int DOMINATOR_FILE_VERSION = 1;
+  // Magic, version, byte order, row count, heap dump size and id checksum.
+  private static final int DOMINATOR_FILE_HEADER_SIZE = Integer.BYTES * 3 + Byte.BYTES + Long.BYTES * 2;
+
+  @NotNull private final HeapDumpCaptureObject myCaptureObject;
+  @NotNull private final Snapshot mySnapshot;
+  @NotNull private final List<ClassDb.ClassEntry> myClassEntries;
+  private final int myRowCount;
+
+  @NotNull private final LongBuffer myIds;
+  @NotNull private final IntBuffer myHeapIds;
+  @NotNull private final IntBuffer myClassEntryIndices;
+  @NotNull private final IntBuffer myClassObjectRows;
+  @NotNull private final ByteBuffer myValueTypes;
+  @NotNull private final IntBuffer myShallowSizes;
+  @NotNull private final LongBuffer myNativeSizes;
+  @NotNull private final ByteBuffer myRetainedSizeColumn;
+  @NotNull private final LongBuffer myRetainedSizes;
+  @NotNull private final ByteBuffer myDepthColumn;
+  @NotNull private final IntBuffer myDepths;
+  @NotNull private final IntBuffer myCallStackDepths;
+  // The rows of each heap, in row order, so a heap's instances are found without scanning the rows of the other heaps.
+  @NotNull private final Map<Integer, IntBuffer> myHeapRows = new HashMap<>();
+  // Whether every instance's unique id is its id, which lets the value text be formatted without looking up the perflib instance.
+  private boolean myIdsAreUnique = true;
+
+  private HeapDumpIndex(@NotNull HeapDumpCaptureObject captureObject, @NotNull Snapshot snapshot, int rowCount) {
+    myCaptureObject = captureObject;
+    mySnapshot = snapshot;
+    myClassEntries = new ArrayList<>();
+    myRowCount = rowCount;
+    myIds = allocate(rowCount, Long.BYTES).asLongBuffer();
+    myHeapIds = allocate(rowCount, Integer.BYTES).asIntBuffer();
+    myClassEntryIndices = allocate(rowCount, Integer.BYTES).asIntBuffer();
+    myClassObjectRows = allocate(rowCount, Integer.BYTES).asIntBuffer();
+    myValueTypes = allocate(rowCount, Byte.BYTES);
+    myShallowSizes = allocate(rowCount, Integer.BYTES).asIntBuffer();
+    myNativeSizes = allocate(rowCount, Long.BYTES).asLongBuffer();
+    myRetainedSizeColumn = allocate(rowCount, Long.BYTES);
+    myRetainedSizes = myRetainedSizeColumn.asLongBuffer();
+    myDepthColumn = allocate(rowCount, Integer.BYTES);
+    myDepths = myDepthColumn.asIntBuffer();
+    myCallStackDepths = allocate(rowCount, Integer.BYTES).asIntBuffer();
+    for (int row = 0; row < rowCount; row++) {
+      myRetainedSizes.put(row, MemoryObject.INVALID_VALUE);
+      myDepths.put(row, MemoryObject.INVALID_VALUE);
+    }
+  }
+
+  /**
+   * Indexes all the classes and instances of the heaps of {@code snapshot}, leaving out retained sizes and depths (see
+   * {@link #fillDominatorColumns()}). Class names are registered in {@code classDb}.
+   */
+  @NotNull
+  static HeapDumpIndex build(@NotNull HeapDumpCaptureObject captureObject, @NotNull Snapshot snapshot, @NotNull ClassDb classDb) {
+    // The instances are only collected here to be sorted by id, the list is dropped once the columns are filled.
+    List<Instance> instances = new ArrayList<>();
+    Map<ClassObj, Integer> classHeapIds = new IdentityHashMap<>();
+    ClassObj javaLangClass = null;
+    for (Heap heap : snapshot.getHeaps()) {
+      for (ClassObj classObj : heap.getClasses()) {
+        if (javaLangClass == null && ClassDb.JAVA_LANG_CLASS.equals(classObj.getClassName())) {
+          javaLangClass = classObj;
+        }
+        instances.add(classObj);
+        classHeapIds.put(classObj, heap.getId());
+      }
+      heap.forEachInstance(instance -> {
+        instances.add(instance);
+        return true;
+      });
+    }
+    instances.sort(Comparator.comparingLong(Instance::getId));
+
+    HeapDumpIndex index = new HeapDumpIndex(captureObject, snapshot, instances.size());
+    for (int row = 0; row < instances.size(); row++) {
+      index.myIds.put(row, instances.get(row).getId());
+    }
+
+    int javaLangClassRow = javaLangClass != null ? index.findRow(javaLangClass.getId()) : INVALID_ROW;
+    Map<ClassDb.ClassEntry, Integer> classEntryIndices = new HashMap<>();
+    for (int row = 0; row < instances.size(); row++) {
+      Instance instance = instances.get(row);
+      int heapId;
+      ClassDb.ClassEntry classEntry;
+      int classObjectRow;
+      if (instance instanceof ClassObj) {
+        // Class objects belong to the heap listing them.
+        heapId = classHeapIds.get(instance);
+        classEntry = classDb.registerClass(((ClassObj)instance).getClassLoaderId(), ClassDb.JAVA_LANG_CLASS);
+        classObjectRow = javaLangClassRow;
+      }
+      else {
+        ClassObj classObj = instance.getClassObj();
+        heapId = instance.getHeap().getId();
+        classEntry = classDb.registerClass(classObj.getClassLoaderId(), classObj.getClassName());
+        classObjectRow = index.findRow(classObj.getId());
+      }
+
+      index.myHeapIds.put(row, heapId);
+      index.myClassEntryIndices.put(row, classEntryIndices.computeIfAbsent(classEntry, entry -> {
+        index.myClassEntries.add(entry);
+        return index.myClassEntries.size() - 1;
+      }));
+      index.myClassObjectRows.put(row, classObjectRow);
+      index.myValueTypes.put(row, (byte)getValueType(instance).ordinal());
+      index.myShallowSizes.put(row, instance.getSize());
+      index.myNativeSizes.put(row, instance.getNativeSize());
+      index.myCallStackDepths.put(row, instance.getStack() != null ? instance.getStack().getFrames().length : 0);
+      index.myIdsAreUnique &= instance.getUniqueId() == instance.getId();
+    }
+    index.bucketRowsByHeap();
+    return index;
+  }
+
+  private void bucketRowsByHeap() {
+    Map<Integer, Integer> heapRowCounts = new LinkedHashMap<>();
+    for (int row = 0; row < myRowCount; row++) {
+      heapRowCounts.merge(myHeapIds.get(row), 1, Integer::sum);
+    }
+
+    // All the buckets share a single column, each heap's rows being a slice of it.
+    IntBuffer rows = allocate(myRowCount, Integer.BYTES).asIntBuffer();
+    int start = 0;
+    for (Map.Entry<Integer, Integer> entry : heapRowCounts.entrySet()) {
+      rows.limit(start + entry.getValue());
+      rows.position(start);
+      myHeapRows.put(entry.getKey(), rows.slice());
+      start += entry.getValue();
+    }
+    for (int row = 0; row < myRowCount; row++) {
+      myHeapRows.get(myHeapIds.get(row)).put(row);
+    }
+    myHeapRows.values().forEach(IntBuffer::rewind);
+  }
+
+  /**
+   * Fills the retained sizes and depths from the snapshot, whose dominators must already be computed.
+   */
+  void fillDominatorColumns() {
+    for (int row = 0; row < myRowCount; row++) {
+      Instance instance = getInstance(row);
+      myRetainedSizes.put(row, instance.getTotalRetainedSize());
+      myDepths.put(row, instance.getDistanceToGcRoot());
+    }
+  }
+
+  /**
+   * Adds up the retained sizes of the instances of each class, per heap, so the totals of the heaps and of their classes don't have to
+   * be recomputed from their instances. Called on the thread which filled the dominator columns.
+   *
+   * @return the retained size of the instances of each class, by heap id.
+   */
+  @NotNull
+  Map<Integer, Map<ClassDb.ClassEntry, Long>> getRetainedSizesByClass() {
+    Map<Integer, Map<ClassDb.ClassEntry, Long>> retainedSizes = new HashMap<>();
+    for (Map.Entry<Integer, IntBuffer> entry : myHeapRows.entrySet()) {
+      long[] classRetainedSizes = new long[myClassEntries.size()];
+      IntBuffer rows = entry.getValue();
+      for (int i = 0; i < rows.limit(); i++) {
+        int row = rows.get(i);
+        long retainedSize = myRetainedSizes.get(row);
+        classRetainedSizes[myClassEntryIndices.get(row)] += retainedSize == MemoryObject.INVALID_VALUE ? 0 : retainedSize;
+      }
+
+      Map<ClassDb.ClassEntry, Long> heapRetainedSizes = new HashMap<>();
+      for (int classEntryIndex = 0; classEntryIndex < classRetainedSizes.length; classEntryIndex++) {
+        if (classRetainedSizes[classEntryIndex] != 0) {
+          heapRetainedSizes.put(myClassEntries.get(classEntryIndex), classRetainedSizes[classEntryIndex]);
+        }
+      }
+      retainedSizes.put(entry.getKey(), heapRetainedSizes);
+    }
+    return retainedSizes;
+  }
+
+  /**
+   * Writes the retained sizes and depths to {@code file}, to be read back by {@link #readDominatorColumns(File, long)} when the same
+   * heap dump is loaded again. {@code dumpSize} is the size in bytes of the heap dump.
+   */
+  void writeDominatorColumns(@NotNull File file, long dumpSize) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(DOMINATOR_FILE_HEADER_SIZE);
+    header.putInt(DOMINATOR_FILE_MAGIC)
+      .putInt(DOMINATOR_FILE_VERSION)
+      .put((byte)(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0))
+      .putInt(myRowCount)
+      .putLong(dumpSize)
+      .putLong(getIdChecksum());
+    header.flip();
+
+    // Write to a temporary file first, so a concurrent or interrupted write never leaves a truncated file behind.
+    File tempFile = new File(file.getPath() + ".tmp");
+    try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeFully(channel, header);
+      writeFully(channel, myRetainedSizeColumn.duplicate());
+      writeFully(channel, myDepthColumn.duplicate());
+    }
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Fills the retained sizes and depths from a file written by {@link #writeDominatorColumns(File, long)}.
+   *
+   * @return whether the file matched this index and was read. When false, the columns must be filled again.
+   */
+  boolean readDominatorColumns(@NotNull File file, long dumpSize) throws IOException {
+    if (file.length() != DOMINATOR_FILE_HEADER_SIZE + (long)myRowCount * (Long.BYTES + Integer.BYTES)) {
+      return false;
+    }
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(DOMINATOR_FILE_HEADER_SIZE);
+      if (!readFully(channel, header)) {
+        return false;
+      }
+      header.flip();
+      if (header.getInt() != DOMINATOR_FILE_MAGIC ||
+          header.getInt() != DOMINATOR_FILE_VERSION ||
+          header.get() != (byte)(ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 0) ||
+          header.getInt() != myRowCount ||
+          header.getLong() != dumpSize ||
+          header.getLong() != getIdChecksum()) {
+        return false;
+      }
+      return readFully(channel, myRetainedSizeColumn.duplicate()) && readFully(channel, myDepthColumn.duplicate());
+    }
+  }
+
+  private long getIdChecksum() {
+    long checksum = 0;
+    for (int row = 0; row < myRowCount; row++) {
+      checksum = checksum * 31 + myIds.get(row);
+    }
+    return checksum;
+  }
+
+  private static void writeFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer) throws IOException {
+    buffer.rewind();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static boolean readFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer) throws IOException {
+    buffer.rewind();
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the rows of the instances of the heap {@code heapId}, in row order.
+   */
+  @NotNull
+  IntBuffer getHeapRows(int heapId) {
+    IntBuffer rows = myHeapRows.get(heapId);
+    return rows != null ? rows.asReadOnlyBuffer() : IntBuffer.allocate(0);
+  }
+
+  /**
+   * @return the row of the instance with the given id, or {@link #INVALID_ROW} if it isn't part of the index.
+   */
+  int findRow(long id) {
+    int low = 0;
+    int high = myRowCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midId = myIds.get(mid);
+      if (midId < id) {
+        low = mid + 1;
+      }
+      else if (midId > id) {
+        high = mid - 1;
+      }
+      else {
+        return mid;
+      }
+    }
+    return INVALID_ROW;
+  }
+
+  /**
+   * @return the depth of the instance at {@code row}, or {@link MemoryObject#INVALID_VALUE} until the dominator columns are filled. The
+   * columns are written by another thread, {@link HeapDumpCaptureObject#hasRetainedSizes()} is what makes them visible.
+   */
+  int getDepth(int row) {
+    return myCaptureObject.hasRetainedSizes() ? myDepths.get(row) : MemoryObject.INVALID_VALUE;
+  }
+
+  /**
+   * @return the retained size of the instance at {@code row}, or {@link MemoryObject#INVALID_VALUE} until the dominator columns are
+   * filled, see {@link #getDepth(int)}.
+   */
+  long getRetainedSize(int row) {
+    return myCaptureObject.hasRetainedSizes() ? myRetainedSizes.get(row) : MemoryObject.INVALID_VALUE;
+  }
+
+  /**
+   * @return a view of the instance at {@code row}. Views are cheap and not cached, two views of the same row are equal. They are only
+   * created for the heaps which are shown, see {@link HeapDumpHeapSet}.
+   */
+  @NotNull
+  InstanceObject getInstanceObject(int row) {
+    return new RowInstanceObject(this, row);
+  }
+
+  /**
+   * Looks up the perflib instance of a row, to read what isn't stored in the index.
+   */
+  @NotNull
+  private Instance getInstance(int row) {
+    Instance instance = mySnapshot.findInstance(myIds.get(row));
+    assert instance != null;
+    return instance;
+  }
+
+  @NotNull
+  private static ValueObject.ValueType getValueType(@NotNull Instance instance) {
+    if (instance instanceof ClassObj) {
+      return CLASS;
+    }
+    ClassObj classObj = instance.getClassObj();
+    if (instance instanceof ClassInstance && classObj.getClassName().equals(ClassDb.JAVA_LANG_STRING)) {
+      return STRING;
+    }
+    else if (classObj.getClassName().endsWith("[]")) {
+      return ARRAY;
+    }
+    return OBJECT;
+  }
+
+  @NotNull
+  private static ByteBuffer allocate(int rowCount, int bytesPerRow) {
+    return ByteBuffer.allocateDirect(rowCount * bytesPerRow).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * An {@link InstanceObject} reading its attributes from a row of the index. Everything else is delegated to a
+   * {@link HeapDumpInstanceObject} created the first time it's needed, which keeps the perflib instance of the row.
+   */
+  private static final class RowInstanceObject implements InstanceObject {
+    @NotNull private final HeapDumpIndex myIndex;
+    private final int myRow;
+    @Nullable private HeapDumpInstanceObject myHeapDumpInstanceObject;
+
+    private RowInstanceObject(@NotNull HeapDumpIndex index, int row) {
+      myIndex = index;
+      myRow = row;
+    }
+
+    @NotNull
+    private HeapDumpInstanceObject toHeapDumpInstanceObject() {
+      if (myHeapDumpInstanceObject == null) {
+        myHeapDumpInstanceObject = new HeapDumpInstanceObject(myIndex.myCaptureObject, getClassObject(), myIndex.getInstance(myRow),
+                                                              getClassEntry(), getValueType());
+      }
+      return myHeapDumpInstanceObject;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof RowInstanceObject)) {
+        return false;
+      }
+
+      RowInstanceObject other = (RowInstanceObject)obj;
+      return myIndex == other.myIndex && myRow == other.myRow;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(myIndex.myIds.get(myRow));
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+      // Same as HeapDumpInstanceObject: instances are unnamed, they are labelled (and sorted) by their value text.
+      return "";
+    }
+
+    @NotNull
+    @Override
+    public String getValueText() {
+      if (!myIndex.myIdsAreUnique) {
+        return toHeapDumpInstanceObject().getValueText();
+      }
+      // Computed for every instance when sorting by label, so it must not look up the perflib instance.
+      long id = myIndex.myIds.get(myRow);
+      return String.format(HeapDumpInstanceObject.NAME_FORMATTER, getClassEntry().getSimpleClassName(), id, id);
+    }
+
+    @NotNull
+    @Override
+    public String getToStringText() {
+      return myIndex.myValueTypes.get(myRow) == STRING.ordinal() ? toHeapDumpInstanceObject().getToStringText() : "";
+    }
+
+    @NotNull
+    @Override
+    public ValueType getValueType() {
+      return VALUE_TYPES[myIndex.myValueTypes.get(myRow)];
+    }
+
+    @Override
+    public int getHeapId() {
+      return myIndex.myHeapIds.get(myRow);
+    }
+
+    @NotNull
+    @Override
+    public ClassDb.ClassEntry getClassEntry() {
+      return myIndex.myClassEntries.get(myIndex.myClassEntryIndices.get(myRow));
+    }
+
+    @Nullable
+    @Override
+    public InstanceObject getClassObject() {
+      int classObjectRow = myIndex.myClassObjectRows.get(myRow);
+      return classObjectRow == INVALID_ROW ? null : myIndex.getInstanceObject(classObjectRow);
+    }
+
+    @Override
+    public int getDepth() {
+      return myIndex.getDepth(myRow);
+    }
+
+    @Override
+    public long getNativeSize() {
+      return myIndex.myNativeSizes.get(myRow);
+    }
+
+    @Override
+    public int getShallowSize() {
+      return myIndex.myShallowSizes.get(myRow);
+    }
+
+    @Override
+    public long getRetainedSize() {
+      return myIndex.getRetainedSize(myRow);
+    }
+
+    @Override
+    public int getFieldCount() {
+      return toHeapDumpInstanceObject().getFieldCount();
+    }
+
+    @NotNull
+    @Override
+    public List<FieldObject> getFields() {
+      return toHeapDumpInstanceObject().getFields();
+    }
+
+    @Nullable
+    @Override
+    public ArrayObject getArrayObject() {
+      return getValueType() == ARRAY ? toHeapDumpInstanceObject().getArrayObject() : null;
+    }
+
+    @Nullable
+    @Override
+    public AllocationStack getCallStack() {
+      return getCallStackDepth() > 0 ? toHeapDumpInstanceObject().getCallStack() : null;
+    }
+
+    @Override
+    public int getCallStackDepth() {
+      // Checked for every instance while classifying, so it must not look up the perflib instance.
+      return myIndex.myCallStackDepths.get(myRow);
+    }
+
+    @NotNull
+    @Override
+    public List<ReferenceObject> getReferences() {
+      return toHeapDumpInstanceObject().getReferences();
+    }
+
+    @Override
+    public boolean getIsRoot() {
+      return toHeapDumpInstanceObject().getIsRoot();
+    }
+  }
+}
@@ -32,9 +32,8 @@ import static com.android.tools.profilers.memory.adapters.ValueObject.ValueType.
  * A UI representation of a {@link ClassInstance}.
  */
 class HeapDumpInstanceObject implements InstanceObject {
-  private static final String NAME_FORMATTER = "%s@%d (0x%x)";
+  static final String NAME_FORMATTER = "%s@%d (0x%x)";
   private static final int MAX_VALUE_TEXT_LENGTH = 1024;
-  private static final Comparator<Instance> DEPTH_COMPARATOR = Comparator.comparingInt(Instance::getDistanceToGcRoot);
   private static final String INVALID_STRING_VALUE = " ...<invalid string value>...";
   private static final Map<Type, ValueType> VALUE_TYPE_MAP = ImmutableMap.<Type, ValueObject.ValueType>builder()
     .put(Type.BOOLEAN, BOOLEAN)
@@ -54,7 +53,6 @@ class HeapDumpInstanceObject implements InstanceObject {
   @Nullable private final InstanceObject myClassInstanceObject;
   @NotNull private final Instance myInstance;
   @NotNull private final ClassDb.ClassEntry myClassEntry;
-  @NotNull private final String myMemoizedLabel;
 
   @VisibleForTesting(visibility = VisibleForTesting.Visibility.PACKAGE)
   public HeapDumpInstanceObject(@NotNull HeapDumpCaptureObject captureObject,
@@ -67,8 +65,6 @@ class HeapDumpInstanceObject implements InstanceObject {
     myInstance = instance;
     myClassEntry = classEntry;
 
-    myMemoizedLabel =
-      String.format(NAME_FORMATTER, myClassEntry.getSimpleClassName(), myInstance.getUniqueId(), myInstance.getUniqueId());
     if (precomputedValueType != null) {
       myValueType = precomputedValueType;
       return;
@@ -114,7 +110,7 @@ class HeapDumpInstanceObject implements InstanceObject {
   @Override
   public String getValueText() {
     // TODO show length of array instance
-    return myMemoizedLabel;
+    return String.format(NAME_FORMATTER, myClassEntry.getSimpleClassName(), myInstance.getUniqueId(), myInstance.getUniqueId());
   }
 
   @NotNull
@@ -161,7 +157,7 @@ class HeapDumpInstanceObject implements InstanceObject {
 
   @Override
   public int getDepth() {
-    return myInstance.getDistanceToGcRoot();
+    return myCaptureObject.getDepth(myInstance);
   }
 
   @Override
@@ -176,7 +172,7 @@ class HeapDumpInstanceObject implements InstanceObject {
 
   @Override
   public long getRetainedSize() {
-    return myInstance.getTotalRetainedSize();
+    return myCaptureObject.getRetainedSize(myInstance);
   }
 
   @Override
@@ -313,14 +309,17 @@ class HeapDumpInstanceObject implements InstanceObject {
   @VisibleForTesting(visibility = VisibleForTesting.Visibility.PRIVATE)
   @NotNull
   public List<ReferenceObject> extractReferences() {
+    // The depths of the perflib instances are written while the dominators are computed, so they're read from the capture.
+    Comparator<Instance> depthComparator = Comparator.comparingInt(myCaptureObject::getDepth);
+
     // Sort hard referrers to appear first.
     List<Instance> sortedReferences = new ArrayList<>(myInstance.getHardReverseReferences());
-    sortedReferences.sort(DEPTH_COMPARATOR);
+    sortedReferences.sort(depthComparator);
 
     // Sort soft referrers to appear second.
     if (myInstance.getSoftReverseReferences() != null) {
       List<Instance> sortedSoftReferences = new ArrayList<>(myInstance.getSoftReverseReferences());
-      sortedSoftReferences.sort(DEPTH_COMPARATOR);
+      sortedSoftReferences.sort(depthComparator);
       sortedReferences.addAll(sortedSoftReferences);
     }
 
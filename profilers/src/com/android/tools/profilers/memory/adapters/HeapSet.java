@@ -50,6 +50,11 @@ public class HeapSet extends ClassifierSet {
     myInstances.addAll(descendantsStream);
   }
 
+  @NotNull
+  public ClassGrouping getClassGrouping() {
+    return myClassGrouping;
+  }
+
   public int getId() {
     return myId;
   }
@@ -70,7 +70,10 @@ public class LiveAllocationCaptureObject implements CaptureObject {
   private final List<HeapSet> myHeapSets;
   private final AspectObserver myAspectObserver;
 
-  private long myEventsEndTimeNs;
+  /**
+   * The events received so far. Only the events of its tail and after are queried, changes of the query range are served from it.
+   */
+  private final LiveAllocationEventLog myEventLog;
   private long myContextEndTimeNs;
   private long myPreviousQueryStartTimeNs;
   private long myPreviousQueryEndTimeNs;
@@ -85,6 +88,17 @@ public class LiveAllocationCaptureObject implements CaptureObject {
                                      long captureStartTime,
                                      @Nullable ExecutorService loadService,
                                      @Nullable MemoryProfilerStage stage) {
+    this(client, session, processId, captureStartTime, loadService, stage, new LiveAllocationEventLog());
+  }
+
+  @VisibleForTesting
+  LiveAllocationCaptureObject(@NotNull MemoryServiceBlockingStub client,
+                              @Nullable Common.Session session,
+                              int processId,
+                              long captureStartTime,
+                              @Nullable ExecutorService loadService,
+                              @Nullable MemoryProfilerStage stage,
+                              @NotNull LiveAllocationEventLog eventLog) {
     if (loadService == null) {
       myExecutorService = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("profiler-live-allocation").build());
     }
@@ -110,7 +124,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
                                new HeapSet(this, ZYGOTE_HEAP_NAME, 2),  // zygote
                                new HeapSet(this, APP_HEAP_NAME, 3)); // app
 
-    myEventsEndTimeNs = Long.MIN_VALUE;
+    myEventLog = eventLog;
     myContextEndTimeNs = Long.MIN_VALUE;
     myPreviousQueryStartTimeNs = Long.MIN_VALUE;
     myPreviousQueryEndTimeNs = Long.MIN_VALUE;
@@ -198,8 +212,7 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     assert queryRange != null;
     assert queryJoiner != null;
     myQueryRange = queryRange;
-    // TODO There's a problem with this, as the datastore is effectively a real-time system.
-    // TODO In other words, when we query for some range, we may not get back entries that are still being inserted, and we don't re-query.
+    // The events of the tail of the log are queried again whenever the range reaches them, as the datastore may still be inserting them.
     myQueryRange.addDependency(myAspectObserver).onChange(Range.Aspect.RANGE, () -> loadTimeRange(myQueryRange, queryJoiner));
 
     // Load the initial data within queryRange.
@@ -278,17 +291,24 @@ public class LiveAllocationCaptureObject implements CaptureObject {
         joiner.execute(() -> myStage.getAspect().changed(MemoryProfilerAspect.CURRENT_HEAP_UPDATING));
         updateAllocationContexts(newEndTimeNs);
 
-        // myEventEndTimeNs represents latest timestamp we have event data
-        // If newEndTimeNs > myEventEndTimeNs + 1, we set newEndTimeNs as myEventEndTimeNs + 1
-        // We +1 because current range is left close and right open
-        if (newEndTimeNs > myEventsEndTimeNs + 1) {
-          BatchAllocationSample sampleResponse =
-            myClient.getAllocations(AllocationSnapshotRequest.newBuilder().setProcessId(myProcessId).setSession(mySession)
-                                      .setStartTime(myEventsEndTimeNs + 1).setEndTime(newEndTimeNs).build());
-
-          myEventsEndTimeNs = Math.max(myEventsEndTimeNs, sampleResponse.getTimestamp());
-          if (newEndTimeNs > myEventsEndTimeNs + 1) {
-            newEndTimeNs = myEventsEndTimeNs + 1;
+        // The event log has the events up to its end time, but the datastore may still be inserting the ones of its tail. Query the events
+        // after the end time, or once in a while the events from the tail on, and if newEndTimeNs is still after the end time, set
+        // newEndTimeNs to the end time + 1, as the current range is left closed and right open.
+        BitSet lateEvents = new BitSet();
+        if (newEndTimeNs > myEventLog.getTailStartTimeNs()) {
+          long tailEndTimeNs = Math.max(newEndTimeNs, myEventLog.getEndTimeNs() + 1);
+          if (myEventLog.needsTailRefresh()) {
+            lateEvents = myEventLog.refreshTail(
+              myClient.getAllocations(AllocationSnapshotRequest.newBuilder().setProcessId(myProcessId).setSession(mySession)
+                                        .setStartTime(myEventLog.getTailStartTimeNs()).setEndTime(tailEndTimeNs).build()));
+          }
+          else if (newEndTimeNs > myEventLog.getEndTimeNs() + 1) {
+            myEventLog.appendNewEvents(
+              myClient.getAllocations(AllocationSnapshotRequest.newBuilder().setProcessId(myProcessId).setSession(mySession)
+                                        .setStartTime(myEventLog.getEndTimeNs() + 1).setEndTime(tailEndTimeNs).build()));
+          }
+          if (newEndTimeNs > myEventLog.getEndTimeNs() + 1) {
+            newEndTimeNs = myEventLog.getEndTimeNs() + 1;
             newStartTimeNs = Math.min(newStartTimeNs, newEndTimeNs);
           }
         }
@@ -326,41 +346,37 @@ public class LiveAllocationCaptureObject implements CaptureObject {
             continue;
           }
 
-          BatchAllocationSample sampleResponse =
-            myClient.getAllocations(AllocationSnapshotRequest.newBuilder().setProcessId(myProcessId).setSession(mySession)
-                                      .setStartTime(startTimeNs).setEndTime(endTimeNs).build());
-
-          for (AllocationEvent event : sampleResponse.getEventsList()) {
-            if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
-              AllocationEvent.Allocation allocation = event.getAllocData();
-              LiveAllocationInstanceObject instance =
-                getOrCreateInstanceObject(allocation.getTag(), allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
-                                          allocation.getSize(), allocation.getHeapId());
-              if (insideCurrentRange) {
-                instance.setAllocationTime(event.getTimestamp());
-                setAllocationList.add(instance);
-              }
-              else {
-                instance.setAllocationTime(Long.MIN_VALUE);
-                resetAllocationList.add(instance);
-              }
+          // Events dropped from the log are queried again.
+          if (startTimeNs < myEventLog.getStartTimeNs()) {
+            LiveAllocationEventLog droppedEvents = new LiveAllocationEventLog(0, Integer.MAX_VALUE);
+            droppedEvents.refreshTail(
+              myClient.getAllocations(AllocationSnapshotRequest.newBuilder().setProcessId(myProcessId).setSession(mySession)
+                                        .setStartTime(startTimeNs).setEndTime(Math.min(endTimeNs, myEventLog.getStartTimeNs())).build()));
+            for (int i = 0; i < droppedEvents.size(); i++) {
+              collectEvent(droppedEvents, i, insideCurrentRange, setAllocationList, resetAllocationList, setDeallocationList,
+                           resetDeallocationList);
             }
-            else if (event.getEventCase() == AllocationEvent.EventCase.FREE_DATA) {
-              AllocationEvent.Deallocation deallocation = event.getFreeData();
-              LiveAllocationInstanceObject instance =
-                getOrCreateInstanceObject(deallocation.getTag(), deallocation.getClassTag(), deallocation.getStackId(),
-                                          deallocation.getThreadId(), deallocation.getSize(), deallocation.getHeapId());
-              if (insideCurrentRange) {
-                instance.setDeallocTime(event.getTimestamp());
-                setDeallocationList.add(instance);
-              }
-              else {
-                instance.setDeallocTime(Long.MAX_VALUE);
-                resetDeallocationList.add(instance);
-              }
+          }
+
+          int endIndex = myEventLog.firstIndexAtOrAfter(endTimeNs);
+          for (int i = myEventLog.firstIndexAtOrAfter(startTimeNs); i < endIndex; i++) {
+            // Late events were never added to the previous range.
+            if (!insideCurrentRange && lateEvents.get(i)) {
+              continue;
             }
-            else {
-              assert false;
+            collectEvent(myEventLog, i, insideCurrentRange, setAllocationList, resetAllocationList, setDeallocationList,
+                         resetDeallocationList);
+          }
+        }
+
+        // The segments inside both ranges were processed before. Add the events the datastore only returned since.
+        if (!clear) {
+          long overlapStartTimeNs = Math.max(myPreviousQueryStartTimeNs, newStartTimeNs);
+          long overlapEndTimeNs = Math.min(myPreviousQueryEndTimeNs, newEndTimeNs);
+          for (int i = lateEvents.nextSetBit(0); i >= 0; i = lateEvents.nextSetBit(i + 1)) {
+            long timestamp = myEventLog.getTimestamp(i);
+            if (timestamp >= overlapStartTimeNs && timestamp < overlapEndTimeNs) {
+              collectEvent(myEventLog, i, true, setAllocationList, resetAllocationList, setDeallocationList, resetDeallocationList);
             }
           }
         }
@@ -401,6 +417,42 @@ public class LiveAllocationCaptureObject implements CaptureObject {
     }
   }
 
+  /**
+   * Adds the instance of the event at {@code index} of {@code log} to the list of instances whose allocation or free time is set, if the
+   * event is inside the current range, or reset otherwise.
+   */
+  private void collectEvent(@NotNull LiveAllocationEventLog log,
+                            int index,
+                            boolean insideCurrentRange,
+                            @NotNull List<InstanceObject> setAllocationList,
+                            @NotNull List<InstanceObject> resetAllocationList,
+                            @NotNull List<InstanceObject> setDeallocationList,
+                            @NotNull List<InstanceObject> resetDeallocationList) {
+    LiveAllocationInstanceObject instance =
+      getOrCreateInstanceObject(log.getTag(index), log.getClassTag(index), log.getStackId(index), log.getThreadId(index),
+                                log.getSize(index), log.getHeapId(index));
+    if (!log.isFree(index)) {
+      if (insideCurrentRange) {
+        instance.setAllocationTime(log.getTimestamp(index));
+        setAllocationList.add(instance);
+      }
+      else {
+        instance.setAllocationTime(Long.MIN_VALUE);
+        resetAllocationList.add(instance);
+      }
+    }
+    else {
+      if (insideCurrentRange) {
+        instance.setDeallocTime(log.getTimestamp(index));
+        setDeallocationList.add(instance);
+      }
+      else {
+        instance.setDeallocTime(Long.MAX_VALUE);
+        resetDeallocationList.add(instance);
+      }
+    }
+  }
+
   @NotNull
   private LiveAllocationInstanceObject getOrCreateInstanceObject(int tag, int classTag, int stackId, int threadId, long size, int heapId) {
     LiveAllocationInstanceObject instance = myInstanceMap.get(tag);
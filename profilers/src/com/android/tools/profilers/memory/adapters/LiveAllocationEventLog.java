@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.profiler.proto.MemoryProfiler.AllocationEvent;
+import com.android.tools.profiler.proto.MemoryProfiler.BatchAllocationSample;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TLongArrayList;
+import gnu.trove.TLongHashSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The allocation and free events of a live allocation capture received so far, sorted by time, in primitive columns.
+ *
+ * The events of a time range only need to be queried once, however many times the range is looked at, except for the most recent ones:
+ * the datastore may still be inserting events older than the latest one it returned (e.g. the agent buffers events before sending them).
+ * New events are appended as they come, see {@link #appendNewEvents(BatchAllocationSample)}, and once the log has grown by
+ * {@code tailWindowNs} since the events of its tail were last checked, the events of the last {@code tailWindowNs} are queried again to
+ * pick up the late ones, see {@link #needsTailRefresh()} and {@link #refreshTail(BatchAllocationSample)}.
+ *
+ * An event takes about 37 bytes. Past {@code maxEventCount} events, the oldest ones are dropped and have to be queried from the
+ * datastore again if needed, see {@link #getStartTimeNs()}.
+ */
+final class LiveAllocationEventLog {
+  /**
+   * Covers the commit period of the datastore and the time the agent buffers events before sending them.
+   */
+  static final long DEFAULT_TAIL_WINDOW_NS = TimeUnit.SECONDS.toNanos(2);
+
+  /**
+   * About 75MB of events, at least several minutes of a busy app.
+   */
+  static final int DEFAULT_MAX_EVENT_COUNT = 2_000_000;
+
+  @NotNull private final TLongArrayList myTimestamps = new TLongArrayList();
+  @NotNull private BitSet myFrees = new BitSet();
+  @NotNull private final TIntArrayList myTags = new TIntArrayList();
+  @NotNull private final TIntArrayList myClassTags = new TIntArrayList();
+  @NotNull private final TIntArrayList myStackIds = new TIntArrayList();
+  @NotNull private final TIntArrayList myThreadIds = new TIntArrayList();
+  @NotNull private final TLongArrayList mySizes = new TLongArrayList();
+  @NotNull private final TIntArrayList myHeapIds = new TIntArrayList();
+
+  private final long myTailWindowNs;
+  private final int myMaxEventCount;
+
+  /**
+   * The earliest time the log has all the events from (inclusive). Events before it were dropped.
+   */
+  private long myStartTimeNs = Long.MIN_VALUE;
+
+  /**
+   * The latest time the log has events up to (inclusive).
+   */
+  private long myEndTimeNs = Long.MIN_VALUE;
+
+  /**
+   * What {@link #myEndTimeNs} was the last time the events of the tail were queried again.
+   */
+  private long myTailCheckedTimeNs = Long.MIN_VALUE;
+
+  LiveAllocationEventLog() {
+    this(DEFAULT_TAIL_WINDOW_NS, DEFAULT_MAX_EVENT_COUNT);
+  }
+
+  LiveAllocationEventLog(long tailWindowNs, int maxEventCount) {
+    myTailWindowNs = tailWindowNs;
+    myMaxEventCount = maxEventCount;
+  }
+
+  long getStartTimeNs() {
+    return myStartTimeNs;
+  }
+
+  long getEndTimeNs() {
+    return myEndTimeNs;
+  }
+
+  /**
+   * @return the time from which events may still be missing from the log, and which {@link #refreshTail(BatchAllocationSample)} expects
+   * the events from.
+   */
+  long getTailStartTimeNs() {
+    if (myEndTimeNs == Long.MIN_VALUE) {
+      return Long.MIN_VALUE;
+    }
+    if (myTailCheckedTimeNs == Long.MIN_VALUE) {
+      return myStartTimeNs;
+    }
+    // The events appended since the tail was last checked weren't checked either.
+    return Math.max(myStartTimeNs, myTailCheckedTimeNs - myTailWindowNs);
+  }
+
+  int size() {
+    return myTimestamps.size();
+  }
+
+  /**
+   * @return whether the events of the tail should be queried again through {@link #refreshTail(BatchAllocationSample)}, rather than only
+   * the events after {@link #getEndTimeNs()} through {@link #appendNewEvents(BatchAllocationSample)}.
+   */
+  boolean needsTailRefresh() {
+    return myEndTimeNs == Long.MIN_VALUE || myEndTimeNs - myTailCheckedTimeNs >= myTailWindowNs;
+  }
+
+  /**
+   * Adds the events of {@code sample}, which must be all the events after {@link #getEndTimeNs()}. Events older than that which the
+   * datastore inserts since are only picked up by the next {@link #refreshTail(BatchAllocationSample)}.
+   */
+  void appendNewEvents(@NotNull BatchAllocationSample sample) {
+    for (AllocationEvent event : sortByTime(sample.getEventsList())) {
+      assert event.getTimestamp() > myEndTimeNs;
+      addEvent(event);
+    }
+    myEndTimeNs = Math.max(myEndTimeNs, sample.getTimestamp());
+    dropOldestIfFull();
+  }
+
+  /**
+   * Replaces the events from {@link #getTailStartTimeNs()} on with the events of {@code sample}, which must be all the events from that
+   * time on, up to at least {@link #getEndTimeNs()}.
+   *
+   * @return the indices of the events which weren't in the log before even though they aren't after its previous end time, i.e. the
+   * events that were still being inserted when their time was last queried.
+   */
+  @NotNull
+  BitSet refreshTail(@NotNull BatchAllocationSample sample) {
+    long tailStartTimeNs = getTailStartTimeNs();
+    long previousEndTimeNs = myEndTimeNs;
+    int tailIndex = firstIndexAtOrAfter(tailStartTimeNs);
+    // Tags are unique to an instance, which is only allocated and freed once.
+    TLongHashSet tailEvents = new TLongHashSet();
+    for (int i = tailIndex; i < size(); i++) {
+      tailEvents.add(getEventKey(myTags.get(i), myFrees.get(i)));
+    }
+    truncate(tailIndex);
+
+    BitSet lateEvents = new BitSet();
+    for (AllocationEvent event : sortByTime(sample.getEventsList())) {
+      assert event.getTimestamp() >= tailStartTimeNs;
+      if (!addEvent(event)) {
+        continue;
+      }
+      int index = size() - 1;
+      if (event.getTimestamp() <= previousEndTimeNs && !tailEvents.contains(getEventKey(myTags.get(index), myFrees.get(index)))) {
+        lateEvents.set(index);
+      }
+    }
+    myEndTimeNs = Math.max(myEndTimeNs, sample.getTimestamp());
+    myTailCheckedTimeNs = myEndTimeNs;
+
+    int droppedCount = dropOldestIfFull();
+    return droppedCount == 0 ? lateEvents : lateEvents.get(droppedCount, Math.max(droppedCount, lateEvents.length()));
+  }
+
+  @NotNull
+  private static List<AllocationEvent> sortByTime(@NotNull List<AllocationEvent> events) {
+    List<AllocationEvent> sortedEvents = new ArrayList<>(events);
+    // The datastore returns the allocations before the frees. The sort is stable, so an instance allocated and freed at the same time
+    // keeps its allocation first.
+    sortedEvents.sort(Comparator.comparingLong(AllocationEvent::getTimestamp));
+    return sortedEvents;
+  }
+
+  /**
+   * @return false if {@code event} is neither an allocation nor a free, and wasn't added.
+   */
+  private boolean addEvent(@NotNull AllocationEvent event) {
+    if (event.getEventCase() == AllocationEvent.EventCase.ALLOC_DATA) {
+      AllocationEvent.Allocation allocation = event.getAllocData();
+      add(event.getTimestamp(), false, allocation.getTag(), allocation.getClassTag(), allocation.getStackId(), allocation.getThreadId(),
+          allocation.getSize(), allocation.getHeapId());
+      return true;
+    }
+    if (event.getEventCase() == AllocationEvent.EventCase.FREE_DATA) {
+      AllocationEvent.Deallocation deallocation = event.getFreeData();
+      add(event.getTimestamp(), true, deallocation.getTag(), deallocation.getClassTag(), deallocation.getStackId(),
+          deallocation.getThreadId(), deallocation.getSize(), deallocation.getHeapId());
+      return true;
+    }
+    assert false;
+    return false;
+  }
+
+  private static long getEventKey(int tag, boolean free) {
+    return ((long)tag << 1) | (free ? 1 : 0);
+  }
+
+  private void add(long timestamp, boolean free, int tag, int classTag, int stackId, int threadId, long size, int heapId) {
+    myFrees.set(myTimestamps.size(), free);
+    myTimestamps.add(timestamp);
+    myTags.add(tag);
+    myClassTags.add(classTag);
+    myStackIds.add(stackId);
+    myThreadIds.add(threadId);
+    mySizes.add(size);
+    myHeapIds.add(heapId);
+  }
+
+  private void truncate(int size) {
+    int count = size() - size;
+    if (count == 0) {
+      return;
+    }
+    myFrees.clear(size, size());
+    myTimestamps.remove(size, count);
+    myTags.remove(size, count);
+    myClassTags.remove(size, count);
+    myStackIds.remove(size, count);
+    myThreadIds.remove(size, count);
+    mySizes.remove(size, count);
+    myHeapIds.remove(size, count);
+  }
+
+  /**
+   * Past the maximum number of events, drops the oldest ones down to three quarters of it, so that the columns are only shifted once in
+   * a while. The events of the tail are kept, and so are all the events of a given time, so that the log has all the events from
+   * {@link #getStartTimeNs()} on.
+   *
+   * @return the number of events dropped.
+   */
+  private int dropOldestIfFull() {
+    if (size() <= myMaxEventCount) {
+      return 0;
+    }
+    int keptIndex = Math.min(size() - myMaxEventCount * 3 / 4, firstIndexAtOrAfter(getTailStartTimeNs()));
+    int count = firstIndexAtOrAfter(myTimestamps.get(keptIndex));
+    if (count == 0) {
+      return 0;
+    }
+    myStartTimeNs = myTimestamps.get(count);
+    myFrees = myFrees.get(count, Math.max(count, myFrees.length()));
+    myTimestamps.remove(0, count);
+    myTags.remove(0, count);
+    myClassTags.remove(0, count);
+    myStackIds.remove(0, count);
+    myThreadIds.remove(0, count);
+    mySizes.remove(0, count);
+    myHeapIds.remove(0, count);
+    return count;
+  }
+
+  /**
+   * @return the index of the first event at or after {@code timeNs}, {@link #size()} if there is none.
+   */
+  int firstIndexAtOrAfter(long timeNs) {
+    int low = 0;
+    int high = myTimestamps.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (myTimestamps.get(mid) < timeNs) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  long getTimestamp(int index) {
+    return myTimestamps.get(index);
+  }
+
+  boolean isFree(int index) {
+    return myFrees.get(index);
+  }
+
+  int getTag(int index) {
+    return myTags.get(index);
+  }
+
+  int getClassTag(int index) {
+    return myClassTags.get(index);
+  }
+
+  int getStackId(int index) {
+    return myStackIds.get(index);
+  }
+
+  int getThreadId(int index) {
+    return myThreadIds.get(index);
+  }
+
+  long getSize(int index) {
+    return mySizes.get(index);
+  }
+
+  int getHeapId(int index) {
+    return myHeapIds.get(index);
+  }
+}
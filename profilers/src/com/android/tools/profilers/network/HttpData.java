@@ -33,6 +33,9 @@ import java.util.*;
  * Data of http url connection. Each {@code HttpData} object matches a http connection with a unique id, and it includes both request data
  * and response data. Request data is filled immediately when the connection starts. Response data may be empty, it will filled when
  * connection completes.
+ *
+ * Header fields and the stack trace are only parsed the first time they are read, as most connections of a chatty app are only ever
+ * shown as a row of the connections table.
  */
 public class HttpData {
   // TODO: Way more robust handling of different types. See also:
@@ -63,6 +66,10 @@ public class HttpData {
 
   @Nullable private final String myResponsePayloadId;
 
+  // Raw fields as received, parsed into the maps below on first access and dropped then.
+  @Nullable private String myRawResponseFields;
+  @Nullable private String myRawRequestFields;
+
   private int myStatusCode = NO_STATUS_CODE;
   // Field key is formatted as always lower case.
   private final Map<String, String> myResponseFields = new HashMap<>();
@@ -83,12 +90,8 @@ public class HttpData {
 
     myResponsePayloadId = builder.myResponsePayloadId;
 
-    if (builder.myResponseFields != null) {
-      parseResponseFields(builder.myResponseFields);
-    }
-    if (builder.myRequestFields != null) {
-      parseRequestFields(builder.myRequestFields);
-    }
+    myRawResponseFields = builder.myResponseFields;
+    myRawRequestFields = builder.myRequestFields;
   }
 
   public long getId() {
@@ -134,6 +137,7 @@ public class HttpData {
   }
 
   public int getStatusCode() {
+    ensureResponseFieldsParsed();
     return myStatusCode;
   }
 
@@ -148,6 +152,7 @@ public class HttpData {
 
   @Nullable
   public String getResponseField(@NotNull String field) {
+    ensureResponseFieldsParsed();
     return myResponseFields.get(field.toLowerCase());
   }
 
@@ -159,14 +164,27 @@ public class HttpData {
 
   @NotNull
   public ImmutableMap<String, String> getResponseHeaders() {
+    ensureResponseFieldsParsed();
     return ImmutableMap.copyOf(myResponseFields);
   }
 
   @NotNull
   public ImmutableMap<String, String> getRequestHeaders() {
+    if (myRawRequestFields != null) {
+      parseRequestFields(myRawRequestFields);
+      myRawRequestFields = null;
+    }
     return ImmutableMap.copyOf(myRequestFields);
   }
 
+  private void ensureResponseFieldsParsed() {
+    if (myRawResponseFields != null) {
+      String fields = myRawResponseFields;
+      myRawResponseFields = null;
+      parseResponseFields(fields);
+    }
+  }
+
   private void parseResponseFields(@NotNull String fields) {
     fields = fields.trim();
     if (fields.isEmpty()) {
@@ -262,23 +280,25 @@ public class HttpData {
   }
 
   public static final class StackTrace {
-    private final ImmutableList<CodeLocation> myLocations;
+    @Nullable private ImmutableList<CodeLocation> myLocations;
     private final String myTrace;
 
     private StackTrace(@NotNull String trace) {
       myTrace = trace;
-      ImmutableList.Builder<CodeLocation> builder = new ImmutableList.Builder<>();
-      for (String line: trace.split("\\n")) {
-        if (line.trim().isEmpty()) {
-          continue;
-        }
-        builder.add(new StackFrameParser(line).toCodeLocation());
-      }
-      myLocations = builder.build();
     }
 
     @NotNull
     public ImmutableList<CodeLocation> getCodeLocations() {
+      if (myLocations == null) {
+        ImmutableList.Builder<CodeLocation> builder = new ImmutableList.Builder<>();
+        for (String line : myTrace.split("\\n")) {
+          if (line.trim().isEmpty()) {
+            continue;
+          }
+          builder.add(new StackFrameParser(line).toCodeLocation());
+        }
+        myLocations = builder.build();
+      }
       return myLocations;
     }
 
@@ -22,14 +22,20 @@ import com.google.protobuf3jarjar.ByteString;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link NetworkConnectionsModel} that uses an RPC mechanism to complete its queries.
+ *
+ * The details of a connection take several RPCs to fetch, and never change once the connection is completed. Completed connections
+ * are kept as long as they are part of the last queried range, so that polling a range while it streams or moves a little only fetches
+ * the details of the connections that are new or still in progress. Recently requested response payloads are kept as well, up to
+ * {@link #PAYLOAD_CACHE_MAX_BYTES}.
  */
 public class RpcNetworkConnectionsModel implements NetworkConnectionsModel {
+  static final int PAYLOAD_CACHE_MAX_BYTES = 16 * 1024 * 1024;
+
   @NotNull
   private final ProfilerServiceGrpc.ProfilerServiceBlockingStub myProfilerService;
   private final NetworkServiceGrpc.NetworkServiceBlockingStub myNetworkService;
@@ -37,6 +43,17 @@ public class RpcNetworkConnectionsModel implements NetworkConnectionsModel {
   private final int myPid;
   private final Common.Session mySession;
 
+  /**
+   * Completed connections of the last queried range, by id.
+   */
+  @NotNull private Map<Long, HttpData> myCompletedData = new HashMap<>();
+
+  /**
+   * Response payloads by id, least recently requested first.
+   */
+  @NotNull private final LinkedHashMap<String, ByteString> myPayloads = new LinkedHashMap<>(16, 0.75f, true);
+  private long myPayloadsSize;
+
   public RpcNetworkConnectionsModel(@NotNull ProfilerServiceGrpc.ProfilerServiceBlockingStub profilerService,
                                     @NotNull NetworkServiceGrpc.NetworkServiceBlockingStub networkService,
                                     int pid, Common.Session session) {
@@ -57,7 +74,15 @@ public class RpcNetworkConnectionsModel implements NetworkConnectionsModel {
     NetworkProfiler.HttpRangeResponse response = myNetworkService.getHttpRange(request);
 
     List<HttpData> httpDataList = new ArrayList<>(response.getDataList().size());
+    Map<Long, HttpData> completedData = new HashMap<>();
     for (NetworkProfiler.HttpConnectionData connection : response.getDataList()) {
+      HttpData cachedData = myCompletedData.get(connection.getConnId());
+      if (cachedData != null) {
+        httpDataList.add(cachedData);
+        completedData.put(cachedData.getId(), cachedData);
+        continue;
+      }
+
       long startTimeUs = TimeUnit.NANOSECONDS.toMicros(connection.getStartTimestamp());
       long endTimeUs = TimeUnit.NANOSECONDS.toMicros(connection.getEndTimestamp());
       long downloadTimeUs = TimeUnit.NANOSECONDS.toMicros(connection.getDownloadingTimestamp());
@@ -66,12 +91,19 @@ public class RpcNetworkConnectionsModel implements NetworkConnectionsModel {
       requestHttpRequest(connection.getConnId(), httpBuilder);
       requestAccessingThreads(connection.getConnId(), httpBuilder);
 
+      HttpData data;
       if (connection.getEndTimestamp() != 0) {
         requestHttpResponse(connection.getConnId(), httpBuilder);
         requestHttpResponseBody(connection.getConnId(), httpBuilder);
+        data = httpBuilder.build();
+        completedData.put(data.getId(), data);
       }
-      httpDataList.add(httpBuilder.build());
+      else {
+        data = httpBuilder.build();
+      }
+      httpDataList.add(data);
     }
+    myCompletedData = completedData;
 
     return httpDataList;
   }
@@ -104,17 +136,33 @@ public class RpcNetworkConnectionsModel implements NetworkConnectionsModel {
   @NotNull
   @Override
   public ByteString requestResponsePayload(@NotNull HttpData data) {
-    if (StringUtil.isEmpty(data.getResponsePayloadId())) {
+    String payloadId = data.getResponsePayloadId();
+    if (StringUtil.isEmpty(payloadId)) {
       return ByteString.EMPTY;
     }
 
+    ByteString payload = myPayloads.get(payloadId);
+    if (payload != null) {
+      return payload;
+    }
+
     Profiler.BytesRequest request = Profiler.BytesRequest.newBuilder()
-      .setId(data.getResponsePayloadId())
+      .setId(payloadId)
       .setSession(mySession)
       .build();
 
     Profiler.BytesResponse response = myProfilerService.getBytes(request);
-    return response.getContents();
+    payload = response.getContents();
+    if (!payload.isEmpty() && payload.size() <= PAYLOAD_CACHE_MAX_BYTES) {
+      myPayloads.put(payloadId, payload);
+      myPayloadsSize += payload.size();
+      Iterator<ByteString> it = myPayloads.values().iterator();
+      while (myPayloadsSize > PAYLOAD_CACHE_MAX_BYTES) {
+        myPayloadsSize -= it.next().size();
+        it.remove();
+      }
+    }
+    return payload;
   }
 
   private void requestHttpResponse(long connectionId, @NotNull HttpData.Builder httpBuilder) {
@@ -17,11 +17,14 @@ package com.android.tools.profilers.cpu
 
 import com.android.tools.profiler.proto.CpuProfiler
 import com.android.tools.profilers.FakeIdeProfilerServices
+import com.android.tools.profilers.IdeProfilerServices
 import com.google.common.truth.Truth.assertThat
 import com.google.protobuf3jarjar.ByteString
 import org.junit.Assert.fail
 import org.junit.Test
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
 
 class CpuCaptureParserTest {
 
@@ -48,7 +51,18 @@ class CpuCaptureParserTest {
     // Decide not to parse long trace files
     fakeServices.setShouldParseLongTraces(false)
     val parser = CpuCaptureParser(fakeServices)
-    assertThat(parser.parse(ANY_TRACE_ID, largeTraceFile, CpuProfiler.CpuProfilerType.ART)).isNull()
+    assertThat(parser.parse(ANY_TRACE_ID, largeTraceFile, CpuProfiler.CpuProfilerType.SIMPLE_PERF)).isNull()
+  }
+
+  @Test
+  fun artTracesAboveTheDefaultLimitAreParsedWithoutAsking() {
+    val largeTraceFile = ByteString.copyFrom(ByteArray(CpuCaptureParser.MAX_SUPPORTED_TRACE_SIZE + 1))
+    val fakeServices = FakeIdeProfilerServices()
+    // ART traces are parsed in place, so they don't need to be confirmed until they reach a much larger size.
+    fakeServices.setShouldParseLongTraces(false)
+    val parser = CpuCaptureParser(fakeServices)
+    assertThat(CpuCaptureParser.MAX_SUPPORTED_ART_TRACE_SIZE).isGreaterThan(CpuCaptureParser.MAX_SUPPORTED_TRACE_SIZE)
+    assertThat(parser.parse(ANY_TRACE_ID, largeTraceFile, CpuProfiler.CpuProfilerType.ART)).isNotNull()
   }
 
   @Test
@@ -58,7 +72,30 @@ class CpuCaptureParserTest {
     // Decide to parse long trace files
     fakeServices.setShouldParseLongTraces(true)
     val parser = CpuCaptureParser(fakeServices)
-    assertThat(parser.parse(ANY_TRACE_ID, largeTraceFile, CpuProfiler.CpuProfilerType.ART)).isNotNull()
+    assertThat(parser.parse(ANY_TRACE_ID, largeTraceFile, CpuProfiler.CpuProfilerType.SIMPLE_PERF)).isNotNull()
+  }
+
+  @Test
+  fun parserIsNotLockedWhileAskingToParseLongTrace() {
+    val largeTraceFile = ByteString.copyFrom(ByteArray(CpuCaptureParser.MAX_SUPPORTED_TRACE_SIZE + 1))
+    lateinit var parser: CpuCaptureParser
+    var otherCapture: CompletableFuture<CpuCapture>? = null
+    val fakeServices = object : IdeProfilerServices by FakeIdeProfilerServices() {
+      override fun openParseLargeTracesDialog(yesCallback: Runnable, noCallback: Runnable) {
+        // While the user is being asked, other threads can still use the parser.
+        val traceBytes = CpuProfilerTestUtils.traceFileToByteString("valid_trace.trace")
+        otherCapture = CompletableFuture.supplyAsync {
+          parser.getCapture(ANY_TRACE_ID)
+          parser.parse(ANY_TRACE_ID + 1, traceBytes, CpuProfiler.CpuProfilerType.ART)
+        }.get(10, TimeUnit.SECONDS)
+        noCallback.run()
+      }
+    }
+    parser = CpuCaptureParser(fakeServices)
+
+    assertThat(parser.parse(ANY_TRACE_ID, largeTraceFile, CpuProfiler.CpuProfilerType.SIMPLE_PERF)).isNull()
+    assertThat(otherCapture).isNotNull()
+    assertThat(parser.getCapture(ANY_TRACE_ID + 1)).isSameAs(otherCapture)
   }
 
   @Test
@@ -143,6 +180,48 @@ class CpuCaptureParserTest {
     }
   }
 
+  @Test
+  fun leastRecentlyUsedCapturesAreEvictedWhenOverBudget() {
+    // A budget of 0 bytes only keeps the most recently parsed capture.
+    val parser = CpuCaptureParser(FakeIdeProfilerServices(), 0)
+    val traceBytes = CpuProfilerTestUtils.traceFileToByteString("valid_trace.trace")
+
+    val firstCapture = parser.parse(ANY_TRACE_ID, traceBytes, CpuProfiler.CpuProfilerType.ART)!!.get()
+    val firstSize = CpuCaptureParser.estimateRetainedSize(firstCapture)
+    assertThat(firstSize).isGreaterThan(0L)
+    assertThat(parser.cachedBytes).isEqualTo(firstSize)
+
+    parser.parse(ANY_TRACE_ID + 1, traceBytes, CpuProfiler.CpuProfilerType.ART)!!.get()
+    assertThat(parser.cacheEvictionCount).isEqualTo(1)
+    assertThat(parser.cachedBytes).isEqualTo(firstSize)
+
+    // The evicted capture is only softly reachable. Unless it was collected, it is handed back without being parsed again, which in
+    // turn evicts the other capture.
+    val evicted = parser.getCapture(ANY_TRACE_ID)
+    if (evicted != null) {
+      assertThat(evicted.get()).isSameAs(firstCapture)
+      assertThat(parser.cacheEvictionCount).isEqualTo(2)
+      assertThat(parser.cacheHitCount).isEqualTo(1)
+    }
+    else {
+      assertThat(parser.cacheMissCount).isEqualTo(1)
+    }
+    assertThat(parser.cachedBytes).isEqualTo(firstSize)
+  }
+
+  @Test
+  fun capturesWithinBudgetAreNotEvicted() {
+    val parser = CpuCaptureParser(FakeIdeProfilerServices(), Long.MAX_VALUE)
+    val traceBytes = CpuProfilerTestUtils.traceFileToByteString("valid_trace.trace")
+    val first = parser.parse(ANY_TRACE_ID, traceBytes, CpuProfiler.CpuProfilerType.ART)!!
+    first.get()
+    parser.parse(ANY_TRACE_ID + 1, traceBytes, CpuProfiler.CpuProfilerType.ART)!!.get()
+
+    assertThat(parser.cacheEvictionCount).isEqualTo(0)
+    assertThat(parser.getCapture(ANY_TRACE_ID)).isSameAs(first)
+    assertThat(parser.cacheHitCount).isEqualTo(1)
+  }
+
   /**
    * Check some fields of a [CpuCapture] to see if it was properly built.
    */
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu;
+
+import com.android.tools.adtui.model.Range;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RangeAggregationIndexTest {
+  @Test
+  public void matchesBruteForceOverOverlappingNodes() {
+    Random random = new Random(1);
+    List<CaptureNode> nodes = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      long start = random.nextInt(10000);
+      // Include empty and nested nodes, like recursive calls.
+      nodes.add(createNode(start, start + random.nextInt(200)));
+    }
+    RangeAggregationIndex index = RangeAggregationIndex.of(nodes);
+
+    for (int i = 0; i < 1000; i++) {
+      double min = random.nextInt(11000) - 500;
+      Range range = new Range(min, min + random.nextInt(3000));
+      assertEquals(bruteForceIntersectionLength(nodes, range), index.getIntersectionLength(range), 1e-6);
+      assertEquals(bruteForceOverlaps(nodes, range), index.overlaps(range));
+    }
+    Range everything = new Range(-Double.MAX_VALUE, Double.MAX_VALUE);
+    assertEquals(bruteForceIntersectionLength(nodes, everything), index.getIntersectionLength(everything), 1e-6);
+  }
+
+  @Test
+  public void emptyIndex() {
+    RangeAggregationIndex index = RangeAggregationIndex.of(new ArrayList<>());
+    assertEquals(0, index.getIntersectionLength(new Range(-Double.MAX_VALUE, Double.MAX_VALUE)), 0);
+    assertFalse(index.overlaps(new Range(-Double.MAX_VALUE, Double.MAX_VALUE)));
+  }
+
+  @Test
+  public void rangeBoundariesAreExclusiveForOverlaps() {
+    RangeAggregationIndex index = RangeAggregationIndex.of(Arrays.asList(createNode(10, 20), createNode(30, 40)));
+    assertFalse(index.overlaps(new Range(20, 30)));
+    assertTrue(index.overlaps(new Range(19, 30)));
+    assertEquals(0, index.getIntersectionLength(new Range(20, 30)), 0);
+    assertEquals(2, index.getIntersectionLength(new Range(19, 31)), 0);
+    assertEquals(0, index.getIntersectionLength(new Range()), 0);
+  }
+
+  private static CaptureNode createNode(long start, long end) {
+    CaptureNode node = new CaptureNode();
+    node.setMethodModel(new MethodModel("root"));
+    node.setStartGlobal(start);
+    node.setEndGlobal(end);
+    node.setStartThread(start);
+    node.setEndThread(end);
+    return node;
+  }
+
+  private static double bruteForceIntersectionLength(List<CaptureNode> nodes, Range range) {
+    double length = 0;
+    for (CaptureNode node : nodes) {
+      length += Math.max(0, Math.min(range.getMax(), node.getEnd()) - Math.max(range.getMin(), node.getStart()));
+    }
+    return length;
+  }
+
+  private static boolean bruteForceOverlaps(List<CaptureNode> nodes, Range range) {
+    return nodes.stream().anyMatch(node -> node.getStart() < range.getMax() && range.getMin() < node.getEnd());
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.art;
+
+import com.android.tools.perflib.vmtrace.VmTraceParser;
+import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CpuProfilerTestUtils;
+import com.android.tools.profilers.cpu.CpuThreadInfo;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ArtTraceParserTest {
+  @Test
+  public void parsingBytesMatchesPerflibParser() throws IOException {
+    for (String traceName : new String[]{"basic.trace", "valid_trace.trace"}) {
+      File traceFile = CpuProfilerTestUtils.getTraceFile(traceName);
+      ArtTraceHandler expected = new ArtTraceHandler();
+      new VmTraceParser(traceFile, expected).parse();
+
+      ArtTraceParser parser = new ArtTraceParser();
+      parser.parse(ByteBuffer.wrap(Files.readAllBytes(traceFile.toPath())));
+
+      assertEquals(expected.getStartTimeUs(), parser.getRange().getMin(), 0);
+      assertEquals(expected.getStartTimeUs() + expected.getElapsedTimeUs(), parser.getRange().getMax(), 0);
+      assertEquals(describe(expected.getThreadsGraph()), describe(parser.getCaptureTrees()));
+    }
+  }
+
+  @Test
+  public void parsingFileMatchesParsingBytes() throws IOException {
+    File traceFile = CpuProfilerTestUtils.getTraceFile("valid_trace.trace");
+    ArtTraceParser fileParser = new ArtTraceParser();
+    fileParser.parse(traceFile);
+    ArtTraceParser bytesParser = new ArtTraceParser();
+    bytesParser.parse(ByteBuffer.wrap(Files.readAllBytes(traceFile.toPath())));
+
+    assertEquals(describe(bytesParser.getCaptureTrees()), describe(fileParser.getCaptureTrees()));
+  }
+
+  @Test
+  public void progressIsReportedUpToCompletion() throws IOException {
+    List<Double> progress = new ArrayList<>();
+    ArtTraceParser parser = new ArtTraceParser(progress::add);
+    parser.parse(ByteBuffer.wrap(Files.readAllBytes(CpuProfilerTestUtils.getTraceFile("valid_trace.trace").toPath())));
+
+    assertTrue(progress.size() > 1);
+    for (int i = 1; i < progress.size(); i++) {
+      assertTrue(progress.get(i) >= progress.get(i - 1));
+    }
+    assertEquals(1, progress.get(progress.size() - 1), 0);
+  }
+
+  @Test(expected = IOException.class)
+  public void traceWithoutHeaderIsRejected() throws IOException {
+    new ArtTraceParser().parse(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+  }
+
+  /**
+   * Flattens call trees into a string describing each thread and the method, depth and timestamps of every node.
+   */
+  private static List<String> describe(Map<CpuThreadInfo, CaptureNode> trees) {
+    List<String> lines = new ArrayList<>();
+    for (Map.Entry<CpuThreadInfo, CaptureNode> entry : trees.entrySet()) {
+      lines.add("thread " + entry.getKey().getId() + " " + entry.getKey().getName());
+      describe(entry.getValue(), lines);
+    }
+    lines.sort(String::compareTo);
+    return lines;
+  }
+
+  private static void describe(CaptureNode node, List<String> lines) {
+    lines.add(String.format("%s depth=%d global=%d-%d thread=%d-%d", node.getData().getId(), node.getDepth(), node.getStartGlobal(),
+                            node.getEndGlobal(), node.getStartThread(), node.getEndThread()));
+    for (CaptureNode child : node.getChildren()) {
+      describe(child, lines);
+    }
+  }
+}
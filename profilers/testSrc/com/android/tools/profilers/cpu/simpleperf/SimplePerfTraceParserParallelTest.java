@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.cpu.simpleperf;
+
+import com.android.tools.profiler.proto.SimpleperfReport;
+import com.android.tools.profilers.cpu.CaptureNode;
+import com.android.tools.profilers.cpu.CpuThreadInfo;
+import com.intellij.openapi.util.io.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that building the call trees of a synthetic simpleperf trace in parallel produces the same trees as building them
+ * sequentially.
+ */
+public class SimplePerfTraceParserParallelTest {
+  private static final int THREAD_COUNT = 16;
+  private static final int SYMBOL_COUNT = 200;
+  private static final int MAX_DEPTH = 40;
+  private static final long TRACE_SIZE_BYTES = 256 * 1024;
+
+  private File myTraceFile;
+
+  @Before
+  public void setUp() throws IOException {
+    myTraceFile = FileUtil.createTempFile("synthetic_simpleperf", ".trace");
+    writeSyntheticTrace(myTraceFile, TRACE_SIZE_BYTES);
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.delete(myTraceFile);
+  }
+
+  @Test
+  public void parallelParsingMatchesSequentialParsing() throws IOException {
+    SimplePerfTraceParser sequential = new SimplePerfTraceParser(false);
+    sequential.parse(myTraceFile);
+    SimplePerfTraceParser parallel = new SimplePerfTraceParser(true);
+    parallel.parse(myTraceFile);
+
+    List<String> sequentialTrees = describe(sequential.getCaptureTrees());
+    assertEquals(THREAD_COUNT, sequential.getCaptureTrees().size());
+    assertEquals(sequentialTrees, describe(parallel.getCaptureTrees()));
+  }
+
+  /**
+   * Writes a trace where each thread randomly walks up and down a call stack, in the format read by
+   * {@link SimplePerfTraceParser#parseTraceFile(File)}.
+   */
+  private static void writeSyntheticTrace(File file, long sizeBytes) throws IOException {
+    Random random = new Random(1);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      SimpleperfReport.File.Builder symbols = SimpleperfReport.File.newBuilder().setId(0).setPath("/system/lib/libsynthetic.so");
+      for (int i = 0; i < SYMBOL_COUNT; i++) {
+        symbols.addSymbol("synthetic_function_" + i);
+      }
+      writeRecord(out, SimpleperfReport.Record.newBuilder().setFile(symbols).build());
+      for (int tid = 1; tid <= THREAD_COUNT; tid++) {
+        writeRecord(out, SimpleperfReport.Record.newBuilder()
+          .setThread(SimpleperfReport.Thread.newBuilder().setThreadId(tid).setProcessId(1).setThreadName("Thread " + tid)).build());
+      }
+
+      List<List<SimpleperfReport.Sample.CallChainEntry>> stacks = new ArrayList<>();
+      for (int tid = 0; tid < THREAD_COUNT; tid++) {
+        stacks.add(new ArrayList<>());
+      }
+      long sampleCount = 0;
+      long time = TimeUnit.SECONDS.toNanos(1);
+      while (out.size() < sizeBytes) {
+        int thread = random.nextInt(THREAD_COUNT);
+        // Call chains are stored leaf first, so the stack is grown and shrunk from its start.
+        List<SimpleperfReport.Sample.CallChainEntry> stack = stacks.get(thread);
+        int pops = stack.isEmpty() ? 0 : random.nextInt(Math.min(stack.size(), 4) + 1);
+        stack.subList(0, pops).clear();
+        int pushes = stack.size() >= MAX_DEPTH ? 0 : random.nextInt(4);
+        for (int i = 0; i < pushes; i++) {
+          // Symbol id -1 exercises the "file+address" names.
+          int symbolId = random.nextInt(10) == 0 ? -1 : random.nextInt(SYMBOL_COUNT);
+          stack.add(0, SimpleperfReport.Sample.CallChainEntry.newBuilder()
+            .setFileId(0).setSymbolId(symbolId).setVaddrInFile(random.nextInt(1 << 20)).build());
+        }
+        time += TimeUnit.MICROSECONDS.toNanos(50 + random.nextInt(100));
+        writeRecord(out, SimpleperfReport.Record.newBuilder()
+          .setSample(SimpleperfReport.Sample.newBuilder().setTime(time).setThreadId(thread + 1).addAllCallchain(stack)).build());
+        sampleCount++;
+      }
+      writeRecord(out, SimpleperfReport.Record.newBuilder()
+        .setLost(SimpleperfReport.LostSituation.newBuilder().setSampleCount(sampleCount).setLostCount(0)).build());
+      out.writeInt(0);
+    }
+  }
+
+  private static void writeRecord(DataOutputStream out, SimpleperfReport.Record record) throws IOException {
+    out.writeInt(Integer.reverseBytes(record.getSerializedSize()));
+    record.writeTo(out);
+  }
+
+  private static List<String> describe(Map<CpuThreadInfo, CaptureNode> trees) {
+    List<Map.Entry<CpuThreadInfo, CaptureNode>> entries = new ArrayList<>(trees.entrySet());
+    entries.sort(Comparator.comparingInt(entry -> entry.getKey().getId()));
+    List<String> lines = new ArrayList<>();
+    for (Map.Entry<CpuThreadInfo, CaptureNode> entry : entries) {
+      lines.add("thread " + entry.getKey().getId() + " " + entry.getKey().getName());
+      describe(entry.getKey().getId(), entry.getValue(), lines);
+    }
+    return lines;
+  }
+
+  private static void describe(int threadId, CaptureNode node, List<String> lines) {
+    lines.add(String.format("%d %s %d %d-%d", threadId, node.getData().getId(), node.getDepth(), node.getStartGlobal(),
+                            node.getEndGlobal()));
+    for (CaptureNode child : node.getChildren()) {
+      describe(threadId, child, lines);
+    }
+  }
+}
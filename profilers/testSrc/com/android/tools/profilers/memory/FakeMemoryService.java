@@ -68,6 +68,7 @@ public class FakeMemoryService extends MemoryServiceGrpc.MemoryServiceImplBase {
   private int myTrackAllocationCount;
   private int mySuspectAllocationCount;
   private int myResumeAllocationCount;
+  private int myGetAllocationsCount;
   private int myAppId;
 
   @Override
@@ -195,6 +196,7 @@ public class FakeMemoryService extends MemoryServiceGrpc.MemoryServiceImplBase {
   @Override
   public void getAllocations(AllocationSnapshotRequest request,
                              StreamObserver<BatchAllocationSample> responseObserver) {
+    myGetAllocationsCount++;
     long startTime = Math.max(0, request.getStartTime());
     startTime = (long)Math.ceil(startTime / (float)US_TO_NS) * US_TO_NS;
     long endTime = request.getEndTime();
@@ -370,6 +372,10 @@ public class FakeMemoryService extends MemoryServiceGrpc.MemoryServiceImplBase {
     return myResumeAllocationCount;
   }
 
+  public int getGetAllocationsCount() {
+    return myGetAllocationsCount;
+  }
+
   @NotNull
   public Range getLastRequestedDataRange() {
     return myLastRequestedDataRange;
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Times partitioning synthetic heaps by class and by package, sequentially and in parallel. This is not a unit test, run it as an
+ * application with the instance counts to benchmark as arguments (1M, 10M and 50M by default) and a large enough heap, e.g. -Xmx24g for
+ * 50M instances.
+ */
+public final class ClassifierSetPartitionBenchmark {
+  private static final int PACKAGE_COUNT = 200;
+  private static final int CLASS_COUNT = 5000;
+  private static final int RUNS = 3;
+
+  public static void main(String[] args) {
+    int[] instanceCounts = {1_000_000, 10_000_000, 50_000_000};
+    if (args.length > 0) {
+      instanceCounts = new int[args.length];
+      for (int i = 0; i < args.length; i++) {
+        instanceCounts[i] = Integer.parseInt(args[i]);
+      }
+    }
+
+    for (int instanceCount : instanceCounts) {
+      FakeCaptureObject captureObject = new FakeCaptureObject.Builder().build();
+      List<InstanceObject> instances =
+        ClassifierSetPartitionTest.createInstances(captureObject, PACKAGE_COUNT, CLASS_COUNT, instanceCount);
+      benchmark(instances, "class", ClassSet::createDefaultClassifier);
+      benchmark(instances, "package", () -> PackageSet.createDefaultClassifier(captureObject));
+    }
+  }
+
+  private static void benchmark(@NotNull List<InstanceObject> instances,
+                                @NotNull String grouping,
+                                @NotNull Supplier<ClassifierSet.Classifier> classifierSupplier) {
+    long sequentialNs = Long.MAX_VALUE;
+    long parallelNs = Long.MAX_VALUE;
+    for (int run = 0; run < RUNS; run++) {
+      sequentialNs = Math.min(sequentialNs, partition(instances, classifierSupplier.get(), false));
+      parallelNs = Math.min(parallelNs, partition(instances, classifierSupplier.get(), true));
+    }
+    System.out.println(String.format("Partitioning %d instances by %s on %d cores: sequential %d ms, parallel %d ms (best of %d)",
+                                     instances.size(), grouping, Runtime.getRuntime().availableProcessors(),
+                                     TimeUnit.NANOSECONDS.toMillis(sequentialNs), TimeUnit.NANOSECONDS.toMillis(parallelNs), RUNS));
+  }
+
+  private static long partition(@NotNull List<InstanceObject> instances, @NotNull ClassifierSet.Classifier classifier, boolean parallel) {
+    Set<InstanceObject> instanceSet = new LinkedHashSet<>(instances);
+    long startNs = System.nanoTime();
+    classifier.partition(instanceSet, parallel);
+    return System.nanoTime() - startNs;
+  }
+}
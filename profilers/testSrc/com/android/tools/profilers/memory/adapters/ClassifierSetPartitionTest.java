@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that partitioning a synthetic heap in parallel produces the same sets as partitioning it sequentially, and that instances which
+ * have time data but were neither allocated nor freed in the range stay in the partitioned set.
+ */
+public class ClassifierSetPartitionTest {
+  private static final int PACKAGE_COUNT = 50;
+  private static final int CLASS_COUNT = 500;
+  private static final int INSTANCE_COUNT = 20000;
+
+  private FakeCaptureObject myCaptureObject;
+  private List<InstanceObject> myInstances;
+
+  @Before
+  public void setUp() {
+    myCaptureObject = new FakeCaptureObject.Builder().build();
+    myInstances = createInstances(myCaptureObject, PACKAGE_COUNT, CLASS_COUNT, INSTANCE_COUNT);
+  }
+
+  /**
+   * @return {@code instanceCount} instances of {@code classCount} classes spread over {@code packageCount} packages, with all kinds of
+   * time data. Also used by {@link ClassifierSetPartitionBenchmark}.
+   */
+  @NotNull
+  static List<InstanceObject> createInstances(@NotNull FakeCaptureObject captureObject, int packageCount, int classCount,
+                                              int instanceCount) {
+    Random random = new Random(1);
+    List<ClassDb.ClassEntry> classes = new ArrayList<>();
+    for (int i = 0; i < classCount; i++) {
+      int packageId = random.nextInt(packageCount);
+      classes.add(captureObject.registerClass(CaptureObject.DEFAULT_CLASSLOADER_ID,
+                                              "com.example" + packageId % 10 + ".package" + packageId + ".Class" + i));
+    }
+    List<InstanceObject> instances = new ArrayList<>(instanceCount);
+    for (int i = 0; i < instanceCount; i++) {
+      // Skew the distribution, like in real heaps where a few classes have most of the instances.
+      int classIndex = (int)(Math.pow(random.nextDouble(), 4) * classCount);
+      instances.add(new SyntheticInstanceObject(classes.get(classIndex), 8 + random.nextInt(64), random.nextInt(1024),
+                                                TimeData.values()[random.nextInt(TimeData.values().length)]));
+    }
+    return instances;
+  }
+
+  @Test
+  public void parallelPartitionByClassMatchesSequentialPartition() {
+    checkPartitions(ClassSet::createDefaultClassifier);
+  }
+
+  @Test
+  public void parallelPartitionByPackageMatchesSequentialPartition() {
+    checkPartitions(() -> PackageSet.createDefaultClassifier(myCaptureObject));
+  }
+
+  @Test
+  public void instancesOutsideOfTheRangeStayInTheParent() {
+    HeapSet heapSet = new HeapSet(myCaptureObject, "default", FakeCaptureObject.Builder.DEFAULT_HEAP_ID);
+    SyntheticInstanceObject allocated =
+      new SyntheticInstanceObject(myCaptureObject.registerClass(CaptureObject.DEFAULT_CLASSLOADER_ID, "com.example.Foo"), 8, 8,
+                                  TimeData.ALLOCATED);
+    SyntheticInstanceObject outsideOfRange =
+      new SyntheticInstanceObject(myCaptureObject.registerClass(CaptureObject.DEFAULT_CLASSLOADER_ID, "com.example.Bar"), 8, 8,
+                                  TimeData.OUTSIDE_OF_RANGE);
+    heapSet.addInstanceObject(allocated);
+    heapSet.addInstanceObject(outsideOfRange);
+
+    List<ClassifierSet> classSets = heapSet.getChildrenClassifierSets();
+    assertEquals(1, classSets.size());
+    assertEquals(1, classSets.get(0).getInstancesCount());
+    assertEquals(allocated, classSets.get(0).getInstancesStream().findFirst().orElse(null));
+    // The instance outside of the range isn't classified, but is still part of the heap.
+    assertSame(classSets.get(0), heapSet.findContainingClassifierSet(allocated));
+    assertSame(heapSet, heapSet.findContainingClassifierSet(outsideOfRange));
+    assertEquals(2, heapSet.getInstancesCount());
+  }
+
+  private void checkPartitions(@NotNull Supplier<ClassifierSet.Classifier> classifierSupplier) {
+    List<InstanceObject> unclassified =
+      myInstances.stream().filter(instance -> instance.hasTimeData() && !instance.hasAllocData() && !instance.hasDeallocData())
+        .collect(Collectors.toList());
+
+    ClassifierSet.Classifier sequential = classifierSupplier.get();
+    Set<InstanceObject> instances = new LinkedHashSet<>(myInstances);
+    sequential.partition(instances, false);
+    assertEquals(unclassified, new ArrayList<>(instances));
+
+    ClassifierSet.Classifier parallel = classifierSupplier.get();
+    instances = new LinkedHashSet<>(myInstances);
+    parallel.partition(instances, true);
+    assertEquals(unclassified, new ArrayList<>(instances));
+
+    assertEquals(describe(sequential), describe(parallel));
+  }
+
+  @NotNull
+  static List<String> describe(@NotNull ClassifierSet.Classifier classifier) {
+    List<String> lines = new ArrayList<>();
+    for (ClassifierSet set : classifier.getClassifierSets()) {
+      describe(set, 0, lines);
+    }
+    return lines;
+  }
+
+  private static void describe(@NotNull ClassifierSet set, int depth, @NotNull List<String> lines) {
+    lines.add(String.format("%d %s %d %d %d %d", depth, set.getName(), set.getAllocatedCount(), set.getInstancesCount(),
+                            set.getTotalShallowSize(), set.getTotalRetainedSize()));
+    for (ClassifierSet child : set.getChildrenClassifierSets()) {
+      describe(child, depth + 1, lines);
+    }
+  }
+
+  private enum TimeData {
+    NONE,
+    ALLOCATED,
+    FREED,
+    ALLOCATED_AND_FREED,
+    OUTSIDE_OF_RANGE
+  }
+
+  private static final class SyntheticInstanceObject implements InstanceObject {
+    @NotNull private final ClassDb.ClassEntry myClassEntry;
+    private final int myShallowSize;
+    private final long myRetainedSize;
+    @NotNull private final TimeData myTimeData;
+
+    private SyntheticInstanceObject(@NotNull ClassDb.ClassEntry classEntry, int shallowSize, long retainedSize, @NotNull TimeData timeData) {
+      myClassEntry = classEntry;
+      myShallowSize = shallowSize;
+      myRetainedSize = retainedSize;
+      myTimeData = timeData;
+    }
+
+    @NotNull
+    @Override
+    public String getName() {
+      return "";
+    }
+
+    @Override
+    public int getHeapId() {
+      return FakeCaptureObject.Builder.DEFAULT_HEAP_ID;
+    }
+
+    @NotNull
+    @Override
+    public ClassDb.ClassEntry getClassEntry() {
+      return myClassEntry;
+    }
+
+    @Nullable
+    @Override
+    public InstanceObject getClassObject() {
+      return null;
+    }
+
+    @NotNull
+    @Override
+    public ValueType getValueType() {
+      return ValueType.OBJECT;
+    }
+
+    @Override
+    public int getShallowSize() {
+      return myShallowSize;
+    }
+
+    @Override
+    public long getRetainedSize() {
+      return myRetainedSize;
+    }
+
+    @Override
+    public boolean hasTimeData() {
+      return myTimeData != TimeData.NONE;
+    }
+
+    @Override
+    public boolean hasAllocData() {
+      return myTimeData == TimeData.ALLOCATED || myTimeData == TimeData.ALLOCATED_AND_FREED;
+    }
+
+    @Override
+    public boolean hasDeallocData() {
+      return myTimeData == TimeData.FREED || myTimeData == TimeData.ALLOCATED_AND_FREED;
+    }
+  }
+}
@@ -22,16 +22,23 @@ import com.android.tools.profilers.FakeIdeProfilerServices;
 import com.android.tools.profilers.ProfilersTestData;
 import com.android.tools.profilers.RelativeTimeConverter;
 import com.android.tools.profilers.memory.FakeMemoryService;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static com.android.tools.profilers.memory.MemoryProfilerTestUtils.findChildClassSetWithName;
 import static org.junit.Assert.*;
@@ -47,6 +54,9 @@ public class HeapDumpCaptureObjectTest {
   @Rule
   public FakeGrpcChannel myGrpcChannel = new FakeGrpcChannel("HeapDumpCaptureObjectTest", myService);
 
+  @Rule
+  public TemporaryFolder myTemporaryFolder = new TemporaryFolder();
+
   /**
    * This is a high-level test that validates the generation of the hprof MemoryObject hierarchy based on a Snapshot buffer.
    * We want to ensure not only the HeapDumpCaptureObject holds the correct HeapSet(s) representing the Snapshot, but
@@ -127,6 +137,37 @@ public class HeapDumpCaptureObjectTest {
     assertEquals(reference1.getReferenceInstance(), instance0);
   }
 
+  @Test
+  public void testInstanceObjectsAreCreatedOnDemand() throws Exception {
+    MemoryProfiler.HeapDumpInfo dumpInfo = MemoryProfiler.HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
+    HeapDumpCaptureObject capture =
+      new HeapDumpCaptureObject(myGrpcChannel.getClient().getMemoryClient(), ProfilersTestData.SESSION_DATA, -1, dumpInfo, null,
+                                myRelativeTimeConverter, myIdeProfilerServices.getFeatureTracker());
+    myService.setExplicitSnapshotBuffer(new SnapshotBuilder(2, 0, 0).addReferences(1, 2).addRoot(1).getByteBuffer());
+    myService.setExplicitDumpDataStatus(MemoryProfiler.DumpDataResponse.Status.SUCCESS);
+    assertTrue(capture.load(null, null));
+
+    HeapSet testHeap = capture.getHeapSets().stream().filter(heap -> "testHeap".equals(heap.getName())).findFirst().orElse(null);
+    assertNotNull(testHeap);
+    InstanceObject instance0 = findChildClassSetWithName(testHeap, "Class0").getInstancesStream().findFirst().orElse(null);
+    InstanceObject instance1 = findChildClassSetWithName(testHeap, "Class1").getInstancesStream().findFirst().orElse(null);
+    assertNotNull(instance0);
+    assertNotNull(instance1);
+
+    // Instances are views over the heap dump index: looking one up again gives an equal, but new, object.
+    InstanceObject fieldInstance = instance0.getFields().get(0).getAsInstance();
+    assertEquals(instance1, fieldInstance);
+    assertEquals(instance1.hashCode(), fieldInstance.hashCode());
+    assertNotSame(instance1, fieldInstance);
+
+    InstanceObject classObject = instance1.getClassObject();
+    assertNotNull(classObject);
+    assertEquals(ValueObject.ValueType.CLASS, classObject.getValueType());
+    assertEquals(ClassDb.JAVA_LANG_CLASS, classObject.getClassEntry().getClassName());
+    assertEquals(instance1.getHeapId(), testHeap.getId());
+    assertEquals(0, instance1.getCallStackDepth());
+  }
+
   @Test
   public void testLoadingFailure() throws Exception {
     MemoryProfiler.HeapDumpInfo dumpInfo = MemoryProfiler.HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
@@ -185,6 +226,174 @@ public class HeapDumpCaptureObjectTest {
     assertArrayEquals(buffer, baos.toByteArray());
   }
 
+  @Test
+  public void testRetainedSizesAreComputedInTheBackground() throws Exception {
+    myService.setExplicitSnapshotBuffer(new SnapshotBuilder(2, 0, 0).addReferences(1, 2).addRoot(1).getByteBuffer());
+    myService.setExplicitDumpDataStatus(MemoryProfiler.DumpDataResponse.Status.SUCCESS);
+    HeapDumpCaptureObject reference = createCapture(null, null);
+    assertTrue(reference.load(null, null));
+    assertTrue(reference.hasRetainedSizes());
+
+    ExecutorService dominatorService = Executors.newSingleThreadExecutor();
+    CountDownLatch dominatorLatch = new CountDownLatch(1);
+    dominatorService.submit(() -> {
+      dominatorLatch.await();
+      return null;
+    });
+    HeapDumpCaptureObject capture = createCapture(dominatorService, null);
+    assertTrue(capture.load(null, MoreExecutors.directExecutor()));
+
+    // The instances and their shallow sizes are available before the dominators are computed.
+    assertTrue(capture.isDoneLoading());
+    assertFalse(capture.hasRetainedSizes());
+    HeapSet testHeap = getTestHeap(capture);
+    assertEquals(getTestHeap(reference).getTotalShallowSize(), testHeap.getTotalShallowSize());
+    assertEquals(0, testHeap.getTotalRetainedSize());
+    InstanceObject instance0 = findChildClassSetWithName(testHeap, "Class0").getInstancesStream().findFirst().orElse(null);
+    assertNotNull(instance0);
+    assertEquals(MemoryObject.INVALID_VALUE, instance0.getRetainedSize());
+    assertEquals(MemoryObject.INVALID_VALUE, instance0.getDepth());
+    FieldObject field0 = instance0.getFields().get(0);
+    assertEquals(MemoryObject.INVALID_VALUE, field0.getRetainedSize());
+    assertEquals(MemoryObject.INVALID_VALUE, field0.getDepth());
+
+    dominatorLatch.countDown();
+    dominatorService.shutdown();
+    assertTrue(dominatorService.awaitTermination(10, TimeUnit.SECONDS));
+    assertTrue(capture.hasRetainedSizes());
+    verifySameRetainedSizes(reference, capture);
+    // The classes shown before the dominators are computed get their totals too.
+    for (String className : new String[]{"Class0", "Class1", ClassDb.JAVA_LANG_CLASS}) {
+      assertEquals(findChildClassSetWithName(getTestHeap(reference), className).getTotalRetainedSize(),
+                   findChildClassSetWithName(testHeap, className).getTotalRetainedSize());
+    }
+    // Fields created before the dominators are computed show the depths and retained sizes once they are.
+    assertEquals(field0.getAsInstance().getRetainedSize(), field0.getRetainedSize());
+    assertEquals(1, field0.getDepth());
+  }
+
+  @Test
+  public void testUnloadedCaptureIsNotRefreshed() throws Exception {
+    myService.setExplicitSnapshotBuffer(new SnapshotBuilder(2, 0, 0).addReferences(1, 2).addRoot(1).getByteBuffer());
+    myService.setExplicitDumpDataStatus(MemoryProfiler.DumpDataResponse.Status.SUCCESS);
+    ExecutorService dominatorService = Executors.newSingleThreadExecutor();
+    CountDownLatch dominatorLatch = new CountDownLatch(1);
+    dominatorService.submit(() -> {
+      dominatorLatch.await();
+      return null;
+    });
+    List<Runnable> joinedTasks = new ArrayList<>();
+    HeapDumpCaptureObject capture = createCapture(dominatorService, null);
+    assertTrue(capture.load(null, joinedTasks::add));
+    HeapSet testHeap = getTestHeap(capture);
+    assertEquals(0, testHeap.getTotalRetainedSize());
+
+    dominatorLatch.countDown();
+    dominatorService.shutdown();
+    assertTrue(dominatorService.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(1, joinedTasks.size());
+
+    // The refresh was posted before the capture was unloaded, it doesn't touch the capture anymore.
+    capture.unload();
+    joinedTasks.forEach(Runnable::run);
+    assertEquals(0, testHeap.getTotalRetainedSize());
+  }
+
+  @Test
+  public void testRetainedSizesAreReadFromTheCache() throws Exception {
+    myService.setExplicitSnapshotBuffer(new SnapshotBuilder(2, 0, 0).addReferences(1, 2).addRoot(1).getByteBuffer());
+    myService.setExplicitDumpDataStatus(MemoryProfiler.DumpDataResponse.Status.SUCCESS);
+    File cacheDirectory = myTemporaryFolder.newFolder();
+    HeapDumpCaptureObject first = createCapture(null, cacheDirectory);
+    assertTrue(first.load(null, null));
+    File cacheFile = first.getCacheFile();
+    assertNotNull(cacheFile);
+    assertTrue(cacheFile.exists());
+
+    // Loading the same heap dump again doesn't wait for the dominators, which never get computed here.
+    ExecutorService dominatorService = Executors.newSingleThreadExecutor();
+    CountDownLatch dominatorLatch = new CountDownLatch(1);
+    dominatorService.submit(() -> {
+      dominatorLatch.await();
+      return null;
+    });
+    HeapDumpCaptureObject second = createCapture(dominatorService, cacheDirectory);
+    assertTrue(second.load(null, MoreExecutors.directExecutor()));
+    assertTrue(second.hasRetainedSizes());
+    verifySameRetainedSizes(first, second);
+    dominatorService.shutdownNow();
+
+    // A different heap dump doesn't match the cache file.
+    myService.setExplicitSnapshotBuffer(new SnapshotBuilder(3, 0, 0).addReferences(1, 2).addReferences(2, 3).addRoot(1).getByteBuffer());
+    HeapDumpCaptureObject other = createCapture(null, cacheDirectory);
+    assertTrue(other.load(null, null));
+    assertEquals(cacheFile, other.getCacheFile());
+    verifySameRetainedSizes(createLoadedCapture(), other);
+  }
+
+  @Test
+  public void testCacheDirectoryIsBounded() throws Exception {
+    myService.setExplicitSnapshotBuffer(new SnapshotBuilder(2, 0, 0).addReferences(1, 2).addRoot(1).getByteBuffer());
+    myService.setExplicitDumpDataStatus(MemoryProfiler.DumpDataResponse.Status.SUCCESS);
+    File cacheDirectory = myTemporaryFolder.newFolder();
+    List<File> oldFiles = new ArrayList<>();
+    for (int i = 0; i < HeapDumpCaptureObject.MAX_CACHED_HEAP_DUMPS; i++) {
+      File oldFile = new File(cacheDirectory, "old" + i + (i == 0 ? ".dominators.tmp" : ".dominators"));
+      assertTrue(oldFile.createNewFile());
+      assertTrue(oldFile.setLastModified(TimeUnit.DAYS.toMillis(i + 1)));
+      oldFiles.add(oldFile);
+    }
+    File unrelatedFile = new File(cacheDirectory, "unrelated");
+    assertTrue(unrelatedFile.createNewFile());
+    assertTrue(unrelatedFile.setLastModified(0));
+
+    HeapDumpCaptureObject capture = createCapture(null, cacheDirectory);
+    assertTrue(capture.load(null, null));
+    File cacheFile = capture.getCacheFile();
+    assertNotNull(cacheFile);
+    assertTrue(cacheFile.exists());
+
+    // Only the least recently used file is deleted, leaving the files of other tools alone.
+    assertFalse(oldFiles.get(0).exists());
+    assertTrue(oldFiles.subList(1, oldFiles.size()).stream().allMatch(File::exists));
+    assertTrue(unrelatedFile.exists());
+  }
+
+  @NotNull
+  private HeapDumpCaptureObject createCapture(@Nullable ExecutorService dominatorService, @Nullable File cacheDirectory) {
+    MemoryProfiler.HeapDumpInfo dumpInfo = MemoryProfiler.HeapDumpInfo.newBuilder().setStartTime(3).setEndTime(8).build();
+    return new HeapDumpCaptureObject(myGrpcChannel.getClient().getMemoryClient(), ProfilersTestData.SESSION_DATA, -1, dumpInfo, null,
+                                     myRelativeTimeConverter, myIdeProfilerServices.getFeatureTracker(), dominatorService, null,
+                                     cacheDirectory);
+  }
+
+  @NotNull
+  private HeapDumpCaptureObject createLoadedCapture() {
+    HeapDumpCaptureObject capture = createCapture(null, null);
+    assertTrue(capture.load(null, null));
+    return capture;
+  }
+
+  @NotNull
+  private static HeapSet getTestHeap(@NotNull HeapDumpCaptureObject capture) {
+    HeapSet testHeap = capture.getHeapSets().stream().filter(heap -> "testHeap".equals(heap.getName())).findFirst().orElse(null);
+    assertNotNull(testHeap);
+    return testHeap;
+  }
+
+  private static void verifySameRetainedSizes(@NotNull HeapDumpCaptureObject expected, @NotNull HeapDumpCaptureObject actual) {
+    assertEquals(getTestHeap(expected).getTotalRetainedSize(), getTestHeap(actual).getTotalRetainedSize());
+    List<InstanceObject> expectedInstances = new ArrayList<>();
+    expected.getInstances().forEach(expectedInstances::add);
+    List<InstanceObject> actualInstances = new ArrayList<>();
+    actual.getInstances().forEach(actualInstances::add);
+    assertEquals(expectedInstances.size(), actualInstances.size());
+    for (int i = 0; i < expectedInstances.size(); i++) {
+      assertEquals(expectedInstances.get(i).getRetainedSize(), actualInstances.get(i).getRetainedSize());
+      assertEquals(expectedInstances.get(i).getDepth(), actualInstances.get(i).getDepth());
+    }
+  }
+
   private static void verifyInstance(@NotNull InstanceObject instance,
                                      @NotNull String valueText,
                                      int depth,
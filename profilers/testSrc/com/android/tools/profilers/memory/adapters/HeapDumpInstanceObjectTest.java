@@ -289,5 +289,11 @@ public class HeapDumpInstanceObjectTest {
     public InstanceObject findInstanceObject(@NotNull Instance instance) {
       return myInstanceObjectMap.get(instance);
     }
+
+    @Override
+    int getDepth(@NotNull Instance instance) {
+      // The mock instances are created with their distances, there are no dominators to compute.
+      return instance.getDistanceToGcRoot();
+    }
   }
 }
\ No newline at end of file
@@ -405,6 +405,82 @@ public class LiveAllocationCaptureObjectTest {
     verifyClassifierResult(heapSet, new LinkedList<>(expected_0_to_4), 0);
   }
 
+  // Events are only queried once, moving the selection over data that was already loaded is served locally.
+  @Test
+  public void testEventsAreOnlyQueriedOnce() throws Exception {
+    LiveAllocationCaptureObject capture = new LiveAllocationCaptureObject(myGrpcChannel.getClient().getMemoryClient(),
+                                                                          ProfilersTestData.SESSION_DATA,
+                                                                          APP_ID,
+                                                                          CAPTURE_START_TIME,
+                                                                          LOAD_SERVICE,
+                                                                          myStage,
+                                                                          new LiveAllocationEventLog(0, Integer.MAX_VALUE));
+    HeapSet heapSet = capture.getHeapSet(LiveAllocationCaptureObject.DEFAULT_HEAP_ID);
+    heapSet.setClassGrouping(MemoryProfilerConfiguration.ClassGrouping.ARRANGE_BY_PACKAGE);
+
+    Queue<String> expected_0_to_4 = new LinkedList<>();
+    expected_0_to_4.add(String.format(NODE_FORMAT, DEFAULT_HEAP_NAME, 4, 2, 4, 2, true));
+    expected_0_to_4.add(" " + String.format(NODE_FORMAT, "This", 2, 1, 2, 2, true));
+    expected_0_to_4.add("  " + String.format(NODE_FORMAT, "Is", 1, 1, 1, 1, true));
+    expected_0_to_4.add("   " + String.format(NODE_FORMAT, "Foo", 1, 1, 1, 0, true));
+    expected_0_to_4.add("  " + String.format(NODE_FORMAT, "Also", 1, 0, 1, 1, true));
+    expected_0_to_4.add("   " + String.format(NODE_FORMAT, "Foo", 1, 0, 1, 0, true));
+    expected_0_to_4.add(" " + String.format(NODE_FORMAT, "That", 2, 1, 2, 2, true));
+    expected_0_to_4.add("  " + String.format(NODE_FORMAT, "Is", 1, 1, 1, 1, true));
+    expected_0_to_4.add("   " + String.format(NODE_FORMAT, "Bar", 1, 1, 1, 0, true));
+    expected_0_to_4.add("  " + String.format(NODE_FORMAT, "Also", 1, 0, 1, 1, true));
+    expected_0_to_4.add("   " + String.format(NODE_FORMAT, "Bar", 1, 0, 1, 0, true));
+
+    // The events are received up to the last one in the range, t = 7.
+    Range loadRange = new Range(CAPTURE_START_TIME, CAPTURE_START_TIME + 8);
+    capture.load(loadRange, LOAD_JOINER);
+    assertThat(myService.getGetAllocationsCount()).isEqualTo(1);
+
+    for (int i = 0; i < 3; i++) {
+      loadRange.set(CAPTURE_START_TIME + 3, CAPTURE_START_TIME + 7);
+      loadRange.set(CAPTURE_START_TIME, CAPTURE_START_TIME + 4);
+      verifyClassifierResult(heapSet, new LinkedList<>(expected_0_to_4), 0);
+    }
+    assertThat(myService.getGetAllocationsCount()).isEqualTo(1);
+
+    // Only the events after the ones already received are queried.
+    loadRange.set(CAPTURE_START_TIME + 4, CAPTURE_START_TIME + 12);
+    assertThat(myService.getGetAllocationsCount()).isEqualTo(2);
+  }
+
+  // Only the events after the ones already received are queried as the selection moves forward, and the events of the tail of the log are
+  // queried again once the log grew by the tail window since they were last queried, without counting them twice.
+  @Test
+  public void testTailEventsAreQueriedAgain() throws Exception {
+    LiveAllocationCaptureObject capture = createCaptureWithTailWindow(TimeUnit.MICROSECONDS.toNanos(2));
+    HeapSet heapSet = capture.getHeapSet(LiveAllocationCaptureObject.DEFAULT_HEAP_ID);
+
+    // The events are received up to t = 7, the tail starts at t = 5.
+    Range loadRange = new Range(CAPTURE_START_TIME, CAPTURE_START_TIME + 8);
+    capture.load(loadRange, LOAD_JOINER);
+    assertThat(myService.getGetAllocationsCount()).isEqualTo(1);
+
+    loadRange.set(CAPTURE_START_TIME, CAPTURE_START_TIME + 4);
+    loadRange.set(CAPTURE_START_TIME, CAPTURE_START_TIME + 8);
+    assertThat(myService.getGetAllocationsCount()).isEqualTo(1);
+
+    // The events up to t = 8, then t = 10, are appended.
+    loadRange.set(CAPTURE_START_TIME, CAPTURE_START_TIME + 9);
+    assertThat(myService.getGetAllocationsCount()).isEqualTo(2);
+    loadRange.set(CAPTURE_START_TIME, CAPTURE_START_TIME + 11);
+    assertThat(myService.getGetAllocationsCount()).isEqualTo(3);
+
+    // The log grew by more than the tail window, the events from t = 5 on are queried again.
+    loadRange.set(CAPTURE_START_TIME, CAPTURE_START_TIME + 12);
+    assertThat(myService.getGetAllocationsCount()).isEqualTo(4);
+
+    LiveAllocationCaptureObject reference = createCaptureWithTailWindow(0);
+    HeapSet referenceHeapSet = reference.getHeapSet(LiveAllocationCaptureObject.DEFAULT_HEAP_ID);
+    reference.load(new Range(CAPTURE_START_TIME, CAPTURE_START_TIME + 12), LOAD_JOINER);
+    assertThat(heapSet.getAllocatedCount()).isEqualTo(referenceHeapSet.getAllocatedCount());
+    assertThat(heapSet.getDeallocatedCount()).isEqualTo(referenceHeapSet.getDeallocatedCount());
+  }
+
   // Class + method names in each StackFrame are lazy-loaded. Check that the method info are fetched correctly.
   @Test
   public void testLazyLoadedCallStack() throws Exception {
@@ -440,6 +516,13 @@ public class LiveAllocationCaptureObjectTest {
     verifyClassifierResult(heapSet, expected_0_to_4, 0);
   }
 
+  @NotNull
+  private LiveAllocationCaptureObject createCaptureWithTailWindow(long tailWindowNs) {
+    return new LiveAllocationCaptureObject(myGrpcChannel.getClient().getMemoryClient(), ProfilersTestData.SESSION_DATA, APP_ID,
+                                           CAPTURE_START_TIME, LOAD_SERVICE, myStage,
+                                           new LiveAllocationEventLog(tailWindowNs, Integer.MAX_VALUE));
+  }
+
   /**
    * Helper method to walk through the ClassifierSet tree and validate each node against the data stored in the expected queue.
    */
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.tools.profilers.memory.adapters;
+
+import com.android.tools.profiler.proto.MemoryProfiler.AllocationEvent;
+import com.android.tools.profiler.proto.MemoryProfiler.BatchAllocationSample;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class LiveAllocationEventLogTest {
+  @Test
+  public void refreshingTheTailReportsLateEvents() {
+    LiveAllocationEventLog log = new LiveAllocationEventLog(15, Integer.MAX_VALUE);
+    BitSet lateEvents = log.refreshTail(BatchAllocationSample.newBuilder()
+                                          .addEvents(alloc(1, 10))
+                                          .addEvents(alloc(2, 20))
+                                          .setTimestamp(20).build());
+    assertThat(lateEvents.isEmpty()).isTrue();
+    assertThat(log.getEndTimeNs()).isEqualTo(20);
+    assertThat(log.getTailStartTimeNs()).isEqualTo(5);
+
+    // The allocation of 3 and the free of 1 were inserted after t = 20 was queried.
+    lateEvents = log.refreshTail(BatchAllocationSample.newBuilder()
+                                   .addEvents(alloc(1, 10))
+                                   .addEvents(alloc(3, 15))
+                                   .addEvents(alloc(2, 20))
+                                   .addEvents(alloc(4, 30))
+                                   .addEvents(free(1, 18))
+                                   .setTimestamp(30).build());
+    assertThat(log.size()).isEqualTo(5);
+    assertThat(log.getEndTimeNs()).isEqualTo(30);
+    assertThat(lateEvents.cardinality()).isEqualTo(2);
+    assertThat(log.getTag(lateEvents.nextSetBit(0))).isEqualTo(3);
+    int lateFree = lateEvents.nextSetBit(lateEvents.nextSetBit(0) + 1);
+    assertThat(log.getTag(lateFree)).isEqualTo(1);
+    assertThat(log.isFree(lateFree)).isTrue();
+  }
+
+  @Test
+  public void newEventsAreAppendedUntilTheTailIsChecked() {
+    LiveAllocationEventLog log = new LiveAllocationEventLog(15, Integer.MAX_VALUE);
+    assertThat(log.needsTailRefresh()).isTrue();
+    log.refreshTail(BatchAllocationSample.newBuilder().addEvents(alloc(1, 10)).addEvents(alloc(2, 20)).setTimestamp(20).build());
+    assertThat(log.needsTailRefresh()).isFalse();
+
+    log.appendNewEvents(BatchAllocationSample.newBuilder().addEvents(free(1, 30)).addEvents(alloc(3, 25)).setTimestamp(30).build());
+    assertThat(log.size()).isEqualTo(4);
+    assertThat(log.getTag(2)).isEqualTo(3);
+    assertThat(log.isFree(3)).isTrue();
+    assertThat(log.getEndTimeNs()).isEqualTo(30);
+    // The appended events are part of the tail until it is checked again.
+    assertThat(log.getTailStartTimeNs()).isEqualTo(5);
+    assertThat(log.needsTailRefresh()).isFalse();
+
+    log.appendNewEvents(BatchAllocationSample.newBuilder().addEvents(alloc(4, 35)).setTimestamp(35).build());
+    assertThat(log.needsTailRefresh()).isTrue();
+    BitSet lateEvents = log.refreshTail(BatchAllocationSample.newBuilder()
+                                          .addEvents(alloc(1, 10))
+                                          .addEvents(alloc(2, 20))
+                                          .addEvents(alloc(5, 22))
+                                          .addEvents(alloc(3, 25))
+                                          .addEvents(alloc(4, 35))
+                                          .addEvents(free(1, 30))
+                                          .setTimestamp(35).build());
+    assertThat(log.size()).isEqualTo(6);
+    assertThat(lateEvents.cardinality()).isEqualTo(1);
+    assertThat(log.getTag(lateEvents.nextSetBit(0))).isEqualTo(5);
+    assertThat(log.needsTailRefresh()).isFalse();
+    assertThat(log.getTailStartTimeNs()).isEqualTo(20);
+  }
+
+  @Test
+  public void oldestEventsAreDroppedPastTheLimit() {
+    LiveAllocationEventLog log = new LiveAllocationEventLog(0, 4);
+    BatchAllocationSample.Builder sample = BatchAllocationSample.newBuilder();
+    for (int i = 1; i <= 6; i++) {
+      sample.addEvents(alloc(i, i));
+    }
+    log.refreshTail(sample.setTimestamp(6).build());
+
+    // Down to three quarters of the limit.
+    assertThat(log.size()).isEqualTo(3);
+    assertThat(log.getStartTimeNs()).isEqualTo(4);
+    assertThat(log.getTimestamp(0)).isEqualTo(4);
+    assertThat(log.getTailStartTimeNs()).isEqualTo(6);
+  }
+
+  @NotNull
+  private static AllocationEvent alloc(int tag, long timestamp) {
+    return AllocationEvent.newBuilder().setAllocData(AllocationEvent.Allocation.newBuilder().setTag(tag)).setTimestamp(timestamp).build();
+  }
+
+  @NotNull
+  private static AllocationEvent free(int tag, long timestamp) {
+    return AllocationEvent.newBuilder().setFreeData(AllocationEvent.Deallocation.newBuilder().setTag(tag)).setTimestamp(timestamp).build();
+  }
+}
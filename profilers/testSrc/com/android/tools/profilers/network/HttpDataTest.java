@@ -76,7 +76,8 @@ public class HttpDataTest {
   public void invalidResponseFields() {
     HttpData.Builder builder = new HttpData.Builder(1, 0, 0, 0);
     builder.setResponseFields("Invalid response fields");
-    builder.build();
+    // Fields are parsed when first read.
+    builder.build().getStatusCode();
   }
 
   @Test
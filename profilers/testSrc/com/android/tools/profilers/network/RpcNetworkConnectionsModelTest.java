@@ -28,7 +28,7 @@ import org.junit.Test;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class RpcNetworkConnectionsModelTest {
   private static final String FAKE_PAYLOAD_ID = "Test Payload";
@@ -88,6 +88,41 @@ public class RpcNetworkConnectionsModelTest {
     assertEquals(ByteString.EMPTY, myModel.requestResponsePayload(data));
   }
 
+  @Test
+  public void requestResponsePayloadIsCached() {
+    myProfilerService.addFile(FAKE_PAYLOAD_ID, ByteString.copyFromUtf8("Dummy Contents"));
+    HttpData data = new HttpData.Builder(0, 0, 0, 0).setResponsePayloadId(FAKE_PAYLOAD_ID).build();
+    assertEquals("Dummy Contents", myModel.requestResponsePayload(data).toStringUtf8());
+
+    // The payload of a connection never changes, so it isn't requested again.
+    myProfilerService.addFile(FAKE_PAYLOAD_ID, ByteString.copyFromUtf8("Other Contents"));
+    assertEquals("Dummy Contents", myModel.requestResponsePayload(data).toStringUtf8());
+  }
+
+  @Test
+  public void completedConnectionsAreReusedWhileInRange() {
+    Range range = new Range(TimeUnit.SECONDS.toMicros(0), TimeUnit.SECONDS.toMicros(10));
+    List<HttpData> firstData = myModel.getData(range);
+    List<HttpData> secondData = myModel.getData(range);
+    assertEquals(firstData.size(), secondData.size());
+    for (int i = 0; i < firstData.size(); ++i) {
+      if (firstData.get(i).getEndTimeUs() != 0) {
+        assertSame(firstData.get(i), secondData.get(i));
+      }
+      else {
+        // A connection in progress may have changed since.
+        assertNotSame(firstData.get(i), secondData.get(i));
+      }
+    }
+
+    // Connections out of the last queried range are dropped.
+    HttpData data1 = firstData.stream().filter(data -> data.getId() == 1).findFirst().orElse(null);
+    assertNotNull(data1);
+    checkGetData(12, 14, 0, 2, 3);
+    List<HttpData> thirdData = myModel.getData(range);
+    assertNotSame(data1, thirdData.stream().filter(data -> data.getId() == 1).findFirst().orElse(null));
+  }
+
   @Test
   public void rangeCanIncludeAllRequests() {
     checkGetData(0, 10, 0, 1, 2, 3);